@@ -0,0 +1,113 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.tools.command.text.diagram.options.DiagramOutputFormat;
+import schemacrawler.tools.sqlite.SchemaCrawlerSQLiteUtility;
+import us.fatehi.schemacrawler.webapp.service.processing.DiagramUtility;
+import us.fatehi.schemacrawler.webapp.test.utility.SyntheticSchemaGenerator;
+
+/**
+ * Generating a diagram from synthetic SQLite databases of increasing size. The default output format does
+ * not need Graphviz, so the benchmark can run anywhere. Pass "-p format=png" to include Graphviz
+ * in the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class DiagramGenerationBenchmark {
+
+  @Param({"10", "50", "200"})
+  private int tables;
+
+  @Param({"8"})
+  private int columnsPerTable;
+
+  @Param({"scdot"})
+  private String format;
+
+  private Path databaseFile;
+  private DiagramOutputFormat outputFormat;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, SQLException {
+    databaseFile = Files.createTempFile("benchmark.", ".db");
+    new SyntheticSchemaGenerator()
+        .tables(tables)
+        .columnsPerTable(columnsPerTable)
+        .views(tables / 10)
+        .rowsPerTable(100)
+        .generate(databaseFile);
+    outputFormat = DiagramOutputFormat.fromFormat(format);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(databaseFile);
+  }
+
+  @Benchmark
+  public Catalog crawl() {
+    return DiagramUtility.crawl(databaseFile);
+  }
+
+  @Benchmark
+  public long executeForOutput() throws IOException {
+    final Path outputFile =
+        SchemaCrawlerSQLiteUtility.executeForOutput(databaseFile, "Benchmark", outputFormat);
+    try {
+      return Files.size(outputFile);
+    } finally {
+      Files.deleteIfExists(outputFile);
+    }
+  }
+}
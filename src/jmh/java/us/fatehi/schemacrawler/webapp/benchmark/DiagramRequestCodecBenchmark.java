@@ -0,0 +1,97 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.benchmark;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
+import us.fatehi.schemacrawler.webapp.model.DiagramRequestUtility;
+
+/**
+ * Round trip of a diagram request through JSON. The baseline builds a new object mapper for each
+ * call, which is how requests used to be serialized. Run with "-prof gc" to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiagramRequestCodecBenchmark {
+
+  private DiagramRequest diagramRequest;
+  private String json;
+
+  @Setup
+  public void setup() {
+    diagramRequest = new DiagramRequest();
+    diagramRequest.setName("Sualeh Fatehi");
+    diagramRequest.setEmail("sualeh@hotmail.com");
+    diagramRequest.setFile("test.db");
+    diagramRequest.setTitle("Test Diagram");
+    json = diagramRequest.toJson();
+  }
+
+  @Benchmark
+  public DiagramRequest roundtripNewMapper() throws Exception {
+    final ObjectMapper mapper = new DiagramRequestUtility().objectMapper();
+    final String serialized = mapper.writeValueAsString(diagramRequest);
+    return new DiagramRequestUtility()
+        .objectMapper()
+        .readValue(new StringReader(serialized), DiagramRequest.class);
+  }
+
+  @Benchmark
+  public DiagramRequest roundtripCodec() {
+    return DiagramRequest.fromJson(new StringReader(diagramRequest.toJson()));
+  }
+
+  @Benchmark
+  public String serializeCodec() {
+    return diagramRequest.toJson();
+  }
+
+  @Benchmark
+  public DiagramRequest deserializeCodec() {
+    return DiagramRequest.fromJson(new StringReader(json));
+  }
+}
@@ -0,0 +1,110 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.benchmark;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tika.Tika;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import us.fatehi.schemacrawler.webapp.service.storage.InspectedUpload;
+
+/**
+ * Checking uploads of several sizes. An upload is hashed with MD5 and its header is checked while
+ * it is read, and MIME type detection is the fallback for files that are not SQLite databases.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UploadInspectionBenchmark {
+
+  @Param({"16384", "1048576", "16777216"})
+  private int size;
+
+  private byte[] upload;
+  private Path uploadFile;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    upload = new byte[size];
+    new Random(size).nextBytes(upload);
+    final byte[] header = "SQLite format 3\0".getBytes(US_ASCII);
+    System.arraycopy(header, 0, upload, 0, header.length);
+
+    uploadFile = Files.createTempFile("upload.", ".db");
+    Files.write(uploadFile, upload);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(uploadFile);
+  }
+
+  @Benchmark
+  public String inspect() throws IOException {
+    final InspectedUpload inspectedUpload =
+        new InspectedUpload(() -> new ByteArrayInputStream(upload));
+    try (final InputStream inputStream = inspectedUpload.getInputStream()) {
+      inputStream.transferTo(OutputStream.nullOutputStream());
+    }
+    if (!inspectedUpload.isSQLiteDatabase()) {
+      throw new IllegalStateException("Upload is not a SQLite database");
+    }
+    return inspectedUpload.getMd5Hex();
+  }
+
+  @Benchmark
+  public String detectMimeType() throws IOException {
+    // The same as the request controller, which creates a detector for each upload
+    return new Tika().detect(uploadFile);
+  }
+}
@@ -0,0 +1,73 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import us.fatehi.schemacrawler.webapp.service.processing.PipelineLanes;
+import us.fatehi.schemacrawler.webapp.service.processing.PipelineStage;
+
+/**
+ * Thread pools for the stages of diagram processing. Storage and notification work waits on the
+ * network, so it runs on virtual threads. Crawling and rendering use the CPU, so they run on pools
+ * that share a thread per processor, with separate lanes for small, medium and large schemas. Each
+ * stage has its own bounded queue, so that slow storage does not hold up rendering, and large
+ * schemas do not hold up small ones.
+ */
+@Configuration
+public class PipelineConfiguration {
+
+  @Value("${SC_WEBAPP_IO_CONCURRENCY:64}")
+  private int ioConcurrency;
+
+  @Value("${SC_WEBAPP_STAGE_QUEUE_CAPACITY:500}")
+  private int queueCapacity;
+
+  @Value("${SC_WEBAPP_SMALL_SCHEMA_MAX_COST:1000}")
+  private long smallSchemaMaxCost;
+
+  @Value("${SC_WEBAPP_MEDIUM_SCHEMA_MAX_COST:10000}")
+  private long mediumSchemaMaxCost;
+
+  @Bean(name = "ioStage")
+  public PipelineStage ioStage() {
+    return PipelineStage.virtualThreads("io", ioConcurrency, queueCapacity);
+  }
+
+  @Bean
+  public PipelineLanes pipelineLanes() {
+    return new PipelineLanes(
+        Runtime.getRuntime().availableProcessors(),
+        queueCapacity,
+        smallSchemaMaxCost,
+        mediumSchemaMaxCost);
+  }
+}
@@ -29,7 +29,6 @@ http://www.gnu.org/licenses/
 package us.fatehi.schemacrawler.webapp.controller;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.nio.file.StandardOpenOption.READ;
 import static org.apache.commons.io.IOUtils.toInputStream;
 import static us.fatehi.schemacrawler.webapp.controller.URIConstants.API_PREFIX;
 import static us.fatehi.schemacrawler.webapp.controller.URIConstants.UI_PREFIX;
@@ -37,16 +36,21 @@ import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.D
 import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.JSON;
 import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.LOG;
 import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.SQLITE_DB;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.PrintWriter;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 import org.apache.tika.Tika;
 import org.apache.tika.mime.MimeType;
@@ -54,46 +58,76 @@ import org.apache.tika.mime.MimeTypeException;
 import org.apache.tika.mime.MimeTypes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.PathResource;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
-import org.springframework.util.DigestUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
 import static us.fatehi.utility.Utility.isBlank;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import jakarta.validation.constraints.NotNull;
 import schemacrawler.schemacrawler.exceptions.ExecutionRuntimeException;
 import us.fatehi.schemacrawler.webapp.model.DiagramKey;
 import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
-import us.fatehi.schemacrawler.webapp.service.notification.NotificationService;
+import us.fatehi.schemacrawler.webapp.service.notification.CallbackService;
 import us.fatehi.schemacrawler.webapp.service.processing.ProcessingService;
+import us.fatehi.schemacrawler.webapp.service.processing.StageMetrics;
+import us.fatehi.schemacrawler.webapp.service.storage.IdempotencyRecord;
+import us.fatehi.schemacrawler.webapp.service.storage.IdempotencyStore;
+import us.fatehi.schemacrawler.webapp.service.storage.InspectedUpload;
 import us.fatehi.schemacrawler.webapp.service.storage.StorageService;
 
 @Controller
+@Profile("!worker")
 public class DiagramRequestController {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DiagramRequestController.class);
 
+  private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+  private static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+  private static final String PREFER = "Prefer";
+  private static final String PREFERENCE_APPLIED = "Preference-Applied";
+  private static final String RESPOND_ASYNC = "respond-async";
+
   private final StorageService storageService;
   private final ProcessingService processingService;
-  private final NotificationService notificationService;
+  private final CallbackService callbackService;
+  private final IdempotencyStore idempotencyStore;
+  private final StageMetrics metrics;
+  private final Validator validator;
+  private final Duration submitTimeout;
 
   public DiagramRequestController(
       @NotNull(message = "Storage service not provided") final StorageService storageService,
       @NotNull(message = "Processing service not provided")
           final ProcessingService processingService,
-      @NotNull(message = "Notification service not provided")
-          final NotificationService notificationService) {
+      @NotNull(message = "Callback service not provided") final CallbackService callbackService,
+      @NotNull(message = "Idempotency store not provided")
+          final IdempotencyStore idempotencyStore,
+      @NotNull(message = "Stage metrics not provided") final StageMetrics metrics,
+      @NotNull(message = "Validator not provided") final Validator validator,
+      @Value("${SC_WEBAPP_SUBMIT_TIMEOUT_SECONDS:60}") final long submitTimeoutSeconds) {
     this.storageService = storageService;
     this.processingService = processingService;
-    this.notificationService = notificationService;
+    this.callbackService = callbackService;
+    this.idempotencyStore = idempotencyStore;
+    this.metrics = metrics;
+    this.validator = validator;
+    submitTimeout = Duration.ofSeconds(submitTimeoutSeconds);
   }
 
   @GetMapping(UI_PREFIX)
@@ -115,22 +149,56 @@ public class DiagramRequestController {
       // Save validation errors
       saveBindingResultLogFile(diagramRequest.getKey(), bindingResult);
       saveDiagramRequest(diagramRequest);
+      seal(diagramRequest.getKey());
       return "SchemaCrawlerDiagramForm";
     }
 
+    // The requester is notified once the diagram is ready, or could not be generated
     generateSchemaCrawlerDiagram(diagramRequest, file);
-    notificationService.notify(diagramRequest);
 
     return "SchemaCrawlerDiagramResult";
   }
 
+  /**
+   * Makes a request to generate a diagram. The upload is saved, and by default the response is
+   * deferred until the database file is checked and queued for processing, without holding a
+   * request thread. With a "Prefer: respond-async" header, the response is sent as soon as the
+   * upload is saved, and errors from checking the file are reported in the processing status. A
+   * retry of a request with the same "Idempotency-Key" header gets the response to the first
+   * request, instead of creating a new diagram request.
+   *
+   * @param diagramRequest Diagram request
+   * @param bindingResult Validation results for the diagram request
+   * @param file Uploaded SQLite database file
+   * @param prefer Preferences for how the request is handled
+   * @param callbackUrl URL to post the diagram request to once it is processed
+   * @param idempotencyKey Key that identifies retries of the same request
+   * @return Diagram request, with 201 Created once the request is checked, or 202 Accepted
+   */
   @PostMapping(value = API_PREFIX, produces = MediaType.APPLICATION_JSON_VALUE)
   @ResponseBody
-  public ResponseEntity<DiagramRequest> diagramRequestFormSubmitApi(
+  public DeferredResult<ResponseEntity<DiagramRequest>> diagramRequestFormSubmitApi(
       @ModelAttribute("diagramRequest") @NotNull(message = "Diagram request not provided") @Valid
           final DiagramRequest diagramRequest,
       final BindingResult bindingResult,
-      @RequestParam("file") final Optional<MultipartFile> file) {
+      @RequestParam("file") final Optional<MultipartFile> file,
+      @RequestHeader(value = PREFER, required = false) final Optional<String> prefer,
+      @RequestParam(value = "callback-url", required = false) final Optional<String> callbackUrl,
+      @RequestHeader(value = IDEMPOTENCY_KEY, required = false)
+          final Optional<String> idempotencyKey) {
+
+    final DeferredResult<ResponseEntity<DiagramRequest>> result =
+        new DeferredResult<>(submitTimeout.toMillis());
+
+    // The callback URL is sent with the same name as in the JSON, so it is not bound to the
+    // request, and is validated separately
+    if (callbackUrl.isPresent()) {
+      diagramRequest.setCallbackUrl(callbackUrl.get());
+      for (final ConstraintViolation<DiagramRequest> violation :
+          validator.validateProperty(diagramRequest, "callbackUrl")) {
+        bindingResult.rejectValue("callbackUrl", "Invalid", violation.getMessage());
+      }
+    }
 
     // Check for bad requests
     if (!file.isPresent()) {
@@ -147,27 +215,115 @@ public class DiagramRequestController {
       // Save validation errors
       saveBindingResultLogFile(diagramRequest.getKey(), bindingResult);
       saveDiagramRequest(diagramRequest);
+    } else if (idempotencyKey.isPresent() && !isValidIdempotencyKey(idempotencyKey.get())) {
+      diagramRequest.setError(IDEMPOTENCY_KEY + " must be 1 to 255 visible ASCII characters");
+      // Save validation errors
+      saveDiagramRequest(diagramRequest);
     }
 
     if (diagramRequest.hasLogMessage()) {
-      return ResponseEntity.badRequest().body(diagramRequest);
+      seal(diagramRequest.getKey());
+      result.setResult(ResponseEntity.badRequest().body(diagramRequest));
+      return result;
     }
 
-    // Generate diagram
-    URI location = null;
+    // Save the upload on the request thread, and check it on the pipeline. The upload is hashed
+    // while it is saved, so the hash is ready for the idempotency fingerprint.
+    final DiagramKey key = diagramRequest.getKey();
+    final InspectedUpload upload = new InspectedUpload(file.get());
+    final Path localPath;
     try {
-      generateSchemaCrawlerDiagram(diagramRequest, file.get());
-      location = new URI("./" + diagramRequest.getKey());
+      localPath = spool(diagramRequest, upload);
     } catch (final Exception e) {
-      LOGGER.error(String.format("%s%n%s", e.getMessage(), diagramRequest));
-      LOGGER.trace(e.getMessage(), e);
-      diagramRequest.setError(e.getMessage());
+      saveFailedUpload(diagramRequest, file.get(), null, e);
+      // The idempotency key was not reserved, so a retry is processed as a new request
+      respond(
+          result, Optional.empty(), null, ResponseEntity.internalServerError(), diagramRequest);
+      return result;
     }
 
-    if (diagramRequest.hasLogMessage()) {
-      return ResponseEntity.internalServerError().body(diagramRequest);
+    // A retry gets the response to the earlier request, instead of creating another request
+    final String fingerprint =
+        idempotencyKey.isPresent() ? fingerprint(diagramRequest, file.get()) : null;
+    if (idempotencyKey.isPresent()) {
+      final Optional<IdempotencyRecord> earlier;
+      try {
+        earlier = idempotencyStore.reserve(idempotencyKey.get(), fingerprint, key);
+      } catch (final RuntimeException e) {
+        deleteLocal(localPath);
+        throw e;
+      }
+      if (earlier.isPresent()) {
+        deleteLocal(localPath);
+        result.setResult(replay(diagramRequest, earlier.get(), fingerprint));
+        return result;
+      }
+    }
+
+    final boolean respondAsync = prefersRespondAsync(prefer);
+    final DiagramRequest acceptedRequest;
+    final ProcessingService.AcceptedJob accepted;
+    try {
+      // Copied before processing starts, since processing updates the request
+      acceptedRequest = respondAsync ? copyOf(diagramRequest) : diagramRequest;
+      accepted =
+          processingService.acceptSchemaCrawlerDiagram(
+              diagramRequest, localPath, () -> inspect(diagramRequest, upload, localPath));
+    } catch (final Exception e) {
+      saveFailedUpload(diagramRequest, file.get(), localPath, e);
+      respond(
+          result,
+          idempotencyKey,
+          fingerprint,
+          ResponseEntity.internalServerError(),
+          diagramRequest);
+      return result;
     }
-    return ResponseEntity.created(location).body(diagramRequest);
+
+    accepted
+        .queued()
+        .whenComplete(
+            (queued, throwable) -> {
+              if (throwable != null) {
+                saveFailedUpload(diagramRequest, null, localPath, unwrap(throwable));
+              }
+              if (respondAsync) {
+                return;
+              }
+              if (throwable != null) {
+                respond(
+                    result,
+                    idempotencyKey,
+                    fingerprint,
+                    ResponseEntity.internalServerError(),
+                    diagramRequest);
+              } else {
+                respond(
+                    result,
+                    idempotencyKey,
+                    fingerprint,
+                    ResponseEntity.created(URI.create("./" + key)),
+                    diagramRequest);
+              }
+            });
+
+    if (respondAsync) {
+      // Answered once the request is journaled, without holding the request thread while the
+      // journal is synced to disk
+      accepted
+          .journaled()
+          .whenComplete(
+              (journaled, throwable) ->
+                  respond(
+                      result,
+                      idempotencyKey,
+                      fingerprint,
+                      ResponseEntity.accepted()
+                          .location(URI.create("./" + key + "/status"))
+                          .header(PREFERENCE_APPLIED, RESPOND_ASYNC),
+                      acceptedRequest));
+    }
+    return result;
   }
 
   @GetMapping(value = "/")
@@ -175,6 +331,76 @@ public class DiagramRequestController {
     return "redirect:/schemacrawler";
   }
 
+  private static DiagramRequest copyOf(final DiagramRequest diagramRequest) {
+    return DiagramRequest.fromJson(new StringReader(diagramRequest.toJson()));
+  }
+
+  /**
+   * Hashes the request parameters and uploaded file, so that a retry can be told apart from a
+   * different request that reuses an idempotency key. The file is represented by the hash that
+   * was computed while it was saved, so it is not read again.
+   */
+  private static String fingerprint(final DiagramRequest diagramRequest, final MultipartFile file) {
+    return IdempotencyStore.fingerprint(
+        diagramRequest.getName(),
+        diagramRequest.getEmail(),
+        diagramRequest.getTitle(),
+        diagramRequest.getCallbackUrl(),
+        file.getOriginalFilename(),
+        String.valueOf(file.getSize()),
+        diagramRequest.getFileHash());
+  }
+
+  /** Checks that an idempotency key is short, visible ASCII, so that it is safe to log. */
+  private static boolean isValidIdempotencyKey(final String idempotencyKey) {
+    return idempotencyKey.length() <= 255 && idempotencyKey.matches("[\\x21-\\x7E]+");
+  }
+
+  /** Checks for the "respond-async" preference, from RFC 7240. */
+  private static boolean prefersRespondAsync(final Optional<String> prefer) {
+    return prefer.stream()
+        .flatMap(value -> Arrays.stream(value.split(",")))
+        .map(preference -> preference.split(";")[0].trim())
+        .anyMatch(RESPOND_ASYNC::equalsIgnoreCase);
+  }
+
+  /** Answers a retry with the response to the earlier request with the same idempotency key. */
+  private static ResponseEntity<DiagramRequest> replay(
+      final DiagramRequest diagramRequest,
+      final IdempotencyRecord record,
+      final String fingerprint) {
+    if (!record.getFingerprint().equals(fingerprint)) {
+      diagramRequest.setError(IDEMPOTENCY_KEY + " was already used for a different request");
+      return ResponseEntity.unprocessableEntity().body(diagramRequest);
+    }
+    if (record.isInProgress()) {
+      diagramRequest.setError(
+          "A request with the same " + IDEMPOTENCY_KEY + " is still being handled");
+      return ResponseEntity.status(HttpStatus.CONFLICT).body(diagramRequest);
+    }
+
+    final ResponseEntity.BodyBuilder response =
+        ResponseEntity.status(record.getStatus()).header(IDEMPOTENT_REPLAYED, "true");
+    if (record.getLocation() != null) {
+      response.location(URI.create(record.getLocation()));
+    }
+    if (record.getStatus() == HttpStatus.ACCEPTED.value()) {
+      response.header(PREFERENCE_APPLIED, RESPOND_ASYNC);
+    }
+    return response.body(DiagramRequest.fromJson(new StringReader(record.getBody())));
+  }
+
+  private static Exception unwrap(final Throwable throwable) {
+    final Throwable cause =
+        throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause()
+            : throwable;
+    if (cause instanceof Exception) {
+      return (Exception) cause;
+    }
+    return new ExecutionRuntimeException(cause.getMessage(), cause);
+  }
+
   private void checkMimeType(final DiagramRequest diagramRequest, final Path localPath)
       throws ExecutionRuntimeException {
     try {
@@ -194,42 +420,72 @@ public class DiagramRequestController {
         throw new ExecutionRuntimeException(exceptionMessage.toString());
       }
     } catch (final MimeTypeException | IOException | NullPointerException e) {
-      LOGGER.error(String.format("%s%n%s", e.getMessage(), diagramRequest));
+      LOGGER.error(String.format("%s%n%s", e.getMessage(), diagramRequest.toJson()));
       LOGGER.trace(e.getMessage(), e);
     }
   }
 
-  private void generateSchemaCrawlerDiagram(
-      final DiagramRequest diagramRequest, final MultipartFile file) throws Exception {
-
-    final DiagramKey key = diagramRequest.getKey();
+  private void deleteLocal(final Path localPath) {
     try {
+      Files.deleteIfExists(localPath);
+    } catch (final IOException e) {
+      LOGGER.warn(String.format("Could not delete <%s>: %s", localPath, e.getMessage()));
+    }
+  }
 
-      // Store the uploaded database file locally, so it can be processed
-      final Path localPath = storageService.storeLocal(file, key, SQLITE_DB);
-      try (InputStream is = Files.newInputStream(localPath, READ)) {
-        final String md5DigestHex = DigestUtils.md5DigestAsHex(is);
-        diagramRequest.setFileHash(md5DigestHex);
-      }
+  private CompletableFuture<Void> generateSchemaCrawlerDiagram(
+      final DiagramRequest diagramRequest, final MultipartFile file) throws Exception {
 
-      checkMimeType(diagramRequest, localPath);
+    final InspectedUpload upload = new InspectedUpload(file);
+    Path localPath = null;
+    try {
+      localPath = spool(diagramRequest, upload);
+      inspect(diagramRequest, upload, localPath);
 
-      // Make asynchronous call to generate diagram
-      processingService.generateSchemaCrawlerDiagram(diagramRequest, localPath);
+      // Make asynchronous call to generate diagram, which also stores the diagram request
+      return processingService.generateSchemaCrawlerDiagram(diagramRequest, localPath);
     } catch (final Exception e) {
-      LOGGER.error(String.format("%s%n%s", e.getMessage(), diagramRequest));
-      LOGGER.warn(e.getMessage(), e);
-      saveExceptionLogFile(key, e);
-      diagramRequest.setError(e.getMessage());
-      // Save a copy of the uploaded file, which may not be a SQLite database
-      storageService.store(file, key, DATA);
+      saveFailedUpload(diagramRequest, file, localPath, e);
       throw e;
-    } finally {
-      // Diagram request may contain an error message due to exceptions thrown
-      saveDiagramRequest(diagramRequest);
     }
   }
 
+  /** Checks the type of an upload that does not look like a SQLite database. */
+  private void inspect(
+      final DiagramRequest diagramRequest, final InspectedUpload upload, final Path localPath) {
+    if (!upload.isSQLiteDatabase()) {
+      metrics.time(StageMetrics.MIME_CHECK, () -> checkMimeType(diagramRequest, localPath));
+    }
+  }
+
+  /**
+   * Sends a response, and keeps it for retries with the same idempotency key. Error responses are
+   * not kept, so that a retry is handled as a new request.
+   */
+  private void respond(
+      final DeferredResult<ResponseEntity<DiagramRequest>> result,
+      final Optional<String> idempotencyKey,
+      final String fingerprint,
+      final ResponseEntity.BodyBuilder response,
+      final DiagramRequest body) {
+    final ResponseEntity<DiagramRequest> entity = response.body(body);
+    if (idempotencyKey.isPresent()) {
+      if (entity.getStatusCode().is2xxSuccessful()) {
+        final URI location = entity.getHeaders().getLocation();
+        idempotencyStore.record(
+            idempotencyKey.get(),
+            fingerprint,
+            body.getKey(),
+            entity.getStatusCode().value(),
+            location == null ? null : location.toString(),
+            body.toJsonBytes());
+      } else {
+        idempotencyStore.release(idempotencyKey.get());
+      }
+    }
+    result.setResult(entity);
+  }
+
   private void saveBindingResultLogFile(final DiagramKey key, final BindingResult bindingResult) {
     try {
       // Write out stack trace to a log file, and save it
@@ -249,11 +505,50 @@ public class DiagramRequestController {
     }
     final DiagramKey key = diagramRequest.getKey();
     try {
-      storageService.store(() -> toInputStream(diagramRequest.toJson(), UTF_8), key, JSON);
+      final byte[] json = diagramRequest.toJsonBytes();
+      storageService.store(() -> new ByteArrayInputStream(json), key, JSON);
     } catch (final Exception e) {
       LOGGER.error(
-          String.format("Could not save diagram request%n%s%n%s", e.getMessage(), diagramRequest));
+          String.format(
+              "Could not save diagram request%n%s%n%s", e.getMessage(), diagramRequest.toJson()));
+    }
+  }
+
+  /**
+   * Saves the error for an upload that could not be processed, with a copy of the uploaded file,
+   * which may not be a SQLite database.
+   *
+   * @param diagramRequest Diagram request
+   * @param file Upload, which is only used if it was not saved locally
+   * @param localPath Locally saved upload, or null
+   * @param exception Reason that the upload could not be processed
+   */
+  private void saveFailedUpload(
+      final DiagramRequest diagramRequest,
+      final MultipartFile file,
+      final Path localPath,
+      final Exception exception) {
+    final DiagramKey key = diagramRequest.getKey();
+    LOGGER.error(String.format("%s%n%s", exception.getMessage(), diagramRequest.toJson()));
+    LOGGER.warn(exception.getMessage(), exception);
+    saveExceptionLogFile(key, exception);
+    diagramRequest.setError(exception.getMessage());
+    processingService.failed(key, exception.getMessage());
+    // Save the diagram request with the error message
+    saveDiagramRequest(diagramRequest);
+    try {
+      if (localPath != null) {
+        storageService.store(new PathResource(localPath), key, DATA);
+        Files.deleteIfExists(localPath);
+      } else if (file != null) {
+        storageService.store(file, key, DATA);
+      }
+    } catch (final Exception e) {
+      LOGGER.error(String.format("Could not save upload for <%s>: %s", key, e.getMessage()));
+      LOGGER.warn(e.getMessage(), e);
     }
+    seal(key);
+    callbackService.send(diagramRequest);
   }
 
   private void saveExceptionLogFile(final DiagramKey key, final Exception exception) {
@@ -268,4 +563,29 @@ public class DiagramRequestController {
       LOGGER.warn(e.getMessage(), e);
     }
   }
+
+  /** Marks that all files for a request have been stored. */
+  private void seal(final DiagramKey key) {
+    try {
+      storageService.seal(key);
+    } catch (final Exception e) {
+      LOGGER.error(String.format("Could not seal files for <%s>: %s", key, e.getMessage()));
+      LOGGER.warn(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Saves the upload locally, so it can be processed. The upload is hashed, and its header is
+   * captured, while it is being saved, so it does not need to be read again.
+   */
+  private Path spool(final DiagramRequest diagramRequest, final InspectedUpload upload)
+      throws Exception {
+    final DiagramKey key = diagramRequest.getKey();
+    final Path localPath =
+        metrics.timeChecked(
+            StageMetrics.SPOOL, () -> storageService.storeLocal(upload, key, SQLITE_DB));
+    diagramRequest.setFileHash(upload.getMd5Hex());
+    metrics.recordUploadSize(upload.getSize());
+    return localPath;
+  }
 }
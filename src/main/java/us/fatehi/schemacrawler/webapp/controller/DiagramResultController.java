@@ -29,51 +29,135 @@ http://www.gnu.org/licenses/
 package us.fatehi.schemacrawler.webapp.controller;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.nio.file.Files.newBufferedReader;
+import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
 import static us.fatehi.schemacrawler.webapp.controller.URIConstants.API_PREFIX;
 import static us.fatehi.schemacrawler.webapp.controller.URIConstants.UI_RESULTS_PREFIX;
 import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.JSON;
 import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.PNG;
-import java.nio.file.Path;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.PathResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.constraints.NotNull;
 import schemacrawler.schemacrawler.exceptions.ExecutionRuntimeException;
+import us.fatehi.schemacrawler.webapp.model.DiagramJobStatus;
 import us.fatehi.schemacrawler.webapp.model.DiagramKey;
 import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
+import us.fatehi.schemacrawler.webapp.model.JobStatus;
 import us.fatehi.schemacrawler.webapp.service.processing.ProcessingService;
 import us.fatehi.schemacrawler.webapp.service.storage.StorageService;
+import us.fatehi.schemacrawler.webapp.service.storage.StoredObject;
+import us.fatehi.schemacrawler.webapp.service.storage.StoredObjectMetadata;
 
 @Controller
+@Profile("!worker")
 public class DiagramResultController {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DiagramResultController.class);
 
+  // Diagrams are never changed once they are stored under a key
+  private static final CacheControl DIAGRAM_CACHE_CONTROL =
+      CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+  // Results are stored before processing finishes, and may be stored again, so revalidate them
+  private static final CacheControl RESULTS_CACHE_CONTROL = CacheControl.noCache();
+
   private final StorageService storageService;
+  private final ProcessingService processingService;
+  private final Duration maxStatusWait;
 
   public DiagramResultController(
       @NotNull(message = "StorageService not provided") final StorageService storageService,
       @NotNull(message = "ProcessingService not provided")
-          final ProcessingService processingService) {
+          final ProcessingService processingService,
+      @Value("${SC_WEBAPP_MAX_STATUS_WAIT_SECONDS:25}") final long maxStatusWaitSeconds) {
     this.storageService = storageService;
+    this.processingService = processingService;
+    maxStatusWait = Duration.ofSeconds(Math.max(0, maxStatusWaitSeconds));
   }
 
   @GetMapping(
       value = {API_PREFIX + "/{key}/diagram", UI_RESULTS_PREFIX + "/{key}/diagram"},
       produces = MediaType.IMAGE_PNG_VALUE)
   @ResponseBody
-  public Resource diagramImage(
-      @PathVariable @NotNull(message = "Key not provided") final DiagramKey key) throws Exception {
-    return retrieveDiagramLocal(key);
+  public ResponseEntity<Resource> diagramImage(
+      @PathVariable @NotNull(message = "Key not provided") final DiagramKey key,
+      @RequestHeader(value = HttpHeaders.RANGE, required = false) final String rangeHeader,
+      final ServletWebRequest webRequest)
+      throws Exception {
+
+    // Answer conditional requests from metadata, without reading the diagram
+    final StoredObjectMetadata metadata =
+        storageService
+            .describe(key, PNG)
+            .orElseThrow(
+                () -> new ExecutionRuntimeException(String.format("Cannot find key <%s>", key)));
+    if (checkNotModified(webRequest, metadata, DIAGRAM_CACHE_CONTROL)) {
+      return null;
+    }
+
+    final HttpRange range =
+        ifRangeMatches(webRequest, metadata) ? singleRange(rangeHeader) : null;
+    final StoredObject diagram;
+    try {
+      diagram =
+          storageService
+              .retrieve(key, PNG, range)
+              .orElseThrow(
+                  () ->
+                      new ExecutionRuntimeException(String.format("Cannot find key <%s>", key)));
+    } catch (final IllegalArgumentException e) {
+      LOGGER.trace(e.getMessage(), e);
+      return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+          .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+          .build();
+    }
+
+    // Stream the bytes from storage to the client
+    final ResponseEntity.BodyBuilder response;
+    if (diagram.isPartial()) {
+      response =
+          ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+              .header(
+                  HttpHeaders.CONTENT_RANGE,
+                  String.format(
+                      "bytes %d-%d/%d",
+                      diagram.getRangeStart(), diagram.getRangeEnd(), diagram.getTotalLength()));
+    } else {
+      response = ResponseEntity.ok();
+    }
+    return response
+        .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+        .contentType(MediaType.parseMediaType(diagram.getContentType()))
+        .contentLength(diagram.getContentLength())
+        // A plain InputStreamResource is streamed as it is, without Spring applying the Range
+        // header to it again, or reading it to find its length
+        .body(new InputStreamResource(diagram.getInputStream(), diagram.toString()));
   }
 
   /**
@@ -92,7 +176,7 @@ public class DiagramResultController {
     model.addAttribute("diagramRequest", diagramRequest);
 
     if (diagramRequest.hasLogMessage()) {
-      throw new ExecutionRuntimeException(diagramRequest.toString());
+      throw new ExecutionRuntimeException(diagramRequest.toJson());
     }
 
     return "SchemaCrawlerDiagram";
@@ -108,10 +192,20 @@ public class DiagramResultController {
   @GetMapping(value = API_PREFIX + "/{key}", produces = MediaType.APPLICATION_JSON_VALUE)
   @ResponseBody
   public ResponseEntity<DiagramRequest> retrieveResultsApi(
-      @PathVariable @NotNull(message = "Key not provided") final DiagramKey key) throws Exception {
+      @PathVariable @NotNull(message = "Key not provided") final DiagramKey key,
+      final ServletWebRequest webRequest)
+      throws Exception {
 
     final DiagramRequest diagramRequest;
     try {
+      // Answer conditional requests from metadata, without reading the results
+      final Optional<StoredObjectMetadata> metadata = storageService.describe(key, JSON);
+      if (metadata.isEmpty()) {
+        return ResponseEntity.notFound().build();
+      }
+      if (checkNotModified(webRequest, metadata.get(), RESULTS_CACHE_CONTROL)) {
+        return null;
+      }
       diagramRequest = retrieveResults(key);
     } catch (final Exception e) {
       LOGGER.error(String.format("<%s>: %s", key, e.getMessage()));
@@ -122,24 +216,129 @@ public class DiagramResultController {
     return ResponseEntity.ok(diagramRequest);
   }
 
-  private Resource retrieveDiagramLocal(final DiagramKey key) throws Exception {
-    return storageService
-        .retrieveLocal(key, PNG)
-        .map(PathResource::new)
-        .orElseThrow(
-            () -> new ExecutionRuntimeException(String.format("Cannot find key <%s>", key)));
+  /**
+   * Retrieve the processing status of a request as a JSON object. If the status the client
+   * already knows about is provided, waits until the status changes, or until the wait time runs
+   * out, before responding. Processing status is kept in memory for recent requests, and is read
+   * from the stored request otherwise, such as when another instance processes the request.
+   *
+   * @param key Diagram key for the results.
+   * @param knownStatus Status that the client already knows about
+   * @param waitSeconds Maximum time to wait for a status change, in seconds
+   * @return Processing status, when it is available
+   */
+  @GetMapping(value = API_PREFIX + "/{key}/status", produces = MediaType.APPLICATION_JSON_VALUE)
+  @ResponseBody
+  public DeferredResult<ResponseEntity<DiagramJobStatus>> retrieveStatusApi(
+      @PathVariable @NotNull(message = "Key not provided") final DiagramKey key,
+      @RequestParam(value = "since", required = false) final JobStatus knownStatus,
+      @RequestParam(value = "wait", defaultValue = "0") final long waitSeconds) {
+
+    final Duration wait = Duration.ofSeconds(Math.max(0, waitSeconds));
+    final Duration timeout = wait.compareTo(maxStatusWait) > 0 ? maxStatusWait : wait;
+
+    final DeferredResult<ResponseEntity<DiagramJobStatus>> result =
+        new DeferredResult<>(timeout.plusSeconds(5).toMillis());
+    processingService
+        .awaitJobStatus(key, knownStatus, timeout)
+        .whenComplete(
+            (jobStatus, throwable) -> {
+              if (throwable != null) {
+                LOGGER.error(String.format("<%s>: %s", key, throwable.getMessage()));
+                LOGGER.trace(throwable.getMessage(), throwable);
+                result.setErrorResult(throwable);
+              } else if (jobStatus.isPresent()) {
+                result.setResult(ResponseEntity.ok(jobStatus.get()));
+              } else {
+                result.setResult(ResponseEntity.notFound().build());
+              }
+            });
+    return result;
+  }
+
+  /**
+   * Sets caching headers, and checks whether the client already has the current version of a
+   * stored file. If it does, the response is set up as 304 Not Modified.
+   *
+   * @param webRequest Current request
+   * @param metadata Metadata of the stored file
+   * @param cacheControl How long the client can cache the file
+   * @return True if the client has the current version
+   */
+  private boolean checkNotModified(
+      final ServletWebRequest webRequest,
+      final StoredObjectMetadata metadata,
+      final CacheControl cacheControl) {
+    final HttpServletResponse response = webRequest.getResponse();
+    if (response != null) {
+      response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+    }
+    final long lastModified = metadata.getLastModified().map(Instant::toEpochMilli).orElse(-1L);
+    return webRequest.checkNotModified(metadata.getETag(), lastModified);
+  }
+
+  /**
+   * Checks an If-Range header, which asks for a byte range only if the client has the current
+   * version of the file. Otherwise, the whole file needs to be returned.
+   *
+   * @param webRequest Current request
+   * @param metadata Metadata of the stored file
+   * @return True if a byte range can be returned
+   */
+  private boolean ifRangeMatches(
+      final ServletWebRequest webRequest, final StoredObjectMetadata metadata) {
+    final String ifRange = webRequest.getHeader(HttpHeaders.IF_RANGE);
+    if (ifRange == null) {
+      return true;
+    }
+    // Entity tags are compared with strong comparison, as required by RFC 9110
+    if (ifRange.startsWith("\"")) {
+      return ifRange.equals(metadata.getETag());
+    }
+    try {
+      final Instant date = RFC_1123_DATE_TIME.parse(ifRange, Instant::from);
+      return metadata
+          .getLastModified()
+          .map(lastModified -> lastModified.truncatedTo(ChronoUnit.SECONDS).equals(date))
+          .orElse(false);
+    } catch (final DateTimeParseException e) {
+      LOGGER.trace(e.getMessage(), e);
+      return false;
+    }
   }
 
   private DiagramRequest retrieveResults(final DiagramKey key) throws Exception {
-    final Path jsonFile =
-        storageService
-            .retrieveLocal(key, JSON)
-            .orElseThrow(
-                () ->
-                    new ExecutionRuntimeException(
-                        String.format("Cannot find request for <%s>", key)));
-    final DiagramRequest diagramRequest =
-        DiagramRequest.fromJson(newBufferedReader(jsonFile, UTF_8));
-    return diagramRequest;
+    try (final StoredObject jsonFile =
+            storageService
+                .retrieve(key, JSON, null)
+                .orElseThrow(
+                    () ->
+                        new ExecutionRuntimeException(
+                            String.format("Cannot find request for <%s>", key)));
+        final Reader reader = new InputStreamReader(jsonFile.getInputStream(), UTF_8)) {
+      return DiagramRequest.fromJson(reader);
+    }
+  }
+
+  /**
+   * Parses a Range header. Only a single byte range is supported, and the whole file is returned
+   * for anything else, as allowed by RFC 9110.
+   *
+   * @param rangeHeader Range header value
+   * @return Byte range, or null for the whole file
+   */
+  private HttpRange singleRange(final String rangeHeader) {
+    if (rangeHeader == null) {
+      return null;
+    }
+    try {
+      final List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+      if (ranges.size() == 1) {
+        return ranges.get(0);
+      }
+    } catch (final IllegalArgumentException e) {
+      LOGGER.trace(e.getMessage(), e);
+    }
+    return null;
   }
 }
@@ -0,0 +1,76 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.model;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Instant;
+
+/** Snapshot of the processing status of a diagram request, as returned by the API. */
+public final class DiagramJobStatus {
+
+  private final String key;
+  private final JobStatus status;
+  private final String error;
+  private final Instant timestamp;
+
+  public DiagramJobStatus(
+      final DiagramKey key, final JobStatus status, final String error, final Instant timestamp) {
+    this.key = requireNonNull(key, "No key provided").getKey();
+    this.status = requireNonNull(status, "No status provided");
+    this.error = error;
+    this.timestamp = requireNonNull(timestamp, "No timestamp provided");
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public JobStatus getStatus() {
+    return status;
+  }
+
+  /**
+   * Time of the last status change.
+   *
+   * @return Timestamp in UTC
+   */
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: %s", key, status);
+  }
+}
@@ -28,26 +28,97 @@ http://www.gnu.org/licenses/
 package us.fatehi.schemacrawler.webapp.model;
 
 import java.io.Serializable;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Objects;
 
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
 
-import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
 
+/**
+ * Unique key for a diagram request. New keys are time-ordered: the first characters are the hour
+ * the key was created, in base 36, and the rest are random. So keys sort by age, and keys older
+ * than a given time can be found with a range listing. The hour that a request was made is not
+ * secret, but the random part of over 80 bits keeps keys from being guessed. Shorter keys, created
+ * before keys were widened, and keys created before keys were time-ordered, are still valid.
+ */
 public class DiagramKey implements Serializable {
 
   private static final long serialVersionUID = 3453873731406876293L;
 
-  @Pattern(regexp = "[a-z0-9]{12}")
-  @Size(min = 12, max = 12, message = "Invalid key length")
+  private static final int KEY_LENGTH = 20;
+  private static final int LEGACY_KEY_LENGTH = 12;
+  private static final int TIME_LENGTH = 4;
+  // The random part is drawn in chunks that fit in a long
+  private static final int RANDOM_CHUNK_LENGTH = 8;
+  private static final int RADIX = 36;
+  private static final Instant EPOCH = Instant.parse("2024-01-01T00:00:00Z");
+  // 36^4 hours, which is over 190 years
+  private static final long TIME_BOUND = pow(RADIX, TIME_LENGTH);
+  // 36^8 for each chunk, so the random part of 16 characters is over 82 bits
+  private static final long RANDOM_CHUNK_BOUND = pow(RADIX, RANDOM_CHUNK_LENGTH);
+
+  // Each thread uses one of a few generators, so that threads creating keys do not contend on a
+  // single lock; DRBG instances, unlike the native generator, do not share state
+  private static final SecureRandom[] RANDOMS = newRandoms();
+
+  /**
+   * Returns the time prefix of keys created in the hour of the given time. Keys created earlier
+   * sort before this prefix, and keys created at the same time or later sort after it.
+   *
+   * @param time Time
+   * @return Time prefix of keys
+   */
+  public static String timePrefix(final Instant time) {
+    Objects.requireNonNull(time, "No time provided");
+    final long hours = Math.max(0, Duration.between(EPOCH, time).toHours());
+    return toBase36(Math.min(hours, TIME_BOUND - 1), TIME_LENGTH);
+  }
+
+  private static SecureRandom[] newRandoms() {
+    final SecureRandom[] randoms = new SecureRandom[Runtime.getRuntime().availableProcessors()];
+    try {
+      for (int i = 0; i < randoms.length; i++) {
+        randoms[i] = SecureRandom.getInstance("DRBG");
+      }
+    } catch (final NoSuchAlgorithmException e) {
+      throw new InternalRuntimeException("Cannot create random number generators for keys", e);
+    }
+    return randoms;
+  }
+
+  private static long pow(final int base, final int exponent) {
+    long result = 1;
+    for (int i = 0; i < exponent; i++) {
+      result = result * base;
+    }
+    return result;
+  }
+
+  private static String toBase36(final long value, final int length) {
+    return StringUtils.leftPad(Long.toString(value, RADIX), length, '0');
+  }
+
+  @Pattern(regexp = "[a-z0-9]{12}|[a-z0-9]{20}")
+  @Size(min = 12, max = 20, message = "Invalid key length")
   private final String key;
 
+  /** Creates a new time-ordered key. */
   public DiagramKey() {
-    key = RandomStringUtils.secure().nextAlphanumeric(12).toLowerCase();
+    final SecureRandom random =
+        RANDOMS[(int) (Thread.currentThread().threadId() % RANDOMS.length)];
+    final StringBuilder buffer = new StringBuilder(KEY_LENGTH).append(timePrefix(Instant.now()));
+    while (buffer.length() < KEY_LENGTH) {
+      final long randomChunk = Math.floorMod(random.nextLong(), RANDOM_CHUNK_BOUND);
+      buffer.append(toBase36(randomChunk, RANDOM_CHUNK_LENGTH));
+    }
+    key = buffer.toString();
   }
 
   public DiagramKey(final String key) {
@@ -84,6 +155,17 @@ public class DiagramKey implements Serializable {
     return result;
   }
 
+  /**
+   * Checks whether the key has the shorter length of keys that were created before keys were
+   * widened. Files of the oldest requests, which could be stored before files were stored under
+   * prefixes, have keys of this length.
+   *
+   * @return True for keys of the shorter length
+   */
+  public boolean hasLegacyLength() {
+    return key.length() == LEGACY_KEY_LENGTH;
+  }
+
   @Override
   public String toString() {
     return key;
@@ -96,7 +178,9 @@ public class DiagramKey implements Serializable {
    * @throws Exception On a badly constructed key.
    */
   private String validateKey(final String key) throws RuntimeException {
-    if (StringUtils.length(key) != 12 || !StringUtils.isAlphanumeric(key)) {
+    final int length = StringUtils.length(key);
+    if (length != KEY_LENGTH && length != LEGACY_KEY_LENGTH
+        || !StringUtils.isAlphanumeric(key)) {
       throw new InternalRuntimeException(String.format("Invalid key <%s>", key));
     }
     return key.toLowerCase();
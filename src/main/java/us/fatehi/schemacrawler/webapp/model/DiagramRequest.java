@@ -53,7 +53,7 @@ public class DiagramRequest implements Serializable {
    */
   public static DiagramRequest fromJson(final Reader jsonReader) {
     requireNonNull(jsonReader, "No reader provided");
-    return new DiagramRequestUtility().readDiagramRequest(jsonReader);
+    return DiagramRequestCodec.read(jsonReader);
   }
 
   private final DiagramKey key;
@@ -79,9 +79,17 @@ public class DiagramRequest implements Serializable {
   @Size(min = 0, max = 255, message = "Please enter a valid title")
   private String title;
 
+  @Pattern(regexp = "https?://\\S+", message = "Please enter a valid http or https callback URL")
+  @Size(max = 2048, message = "Please enter a valid http or https callback URL")
+  private String callbackUrl;
+
   @Size(min = 32, max = 32)
   private String fileHash;
 
+  private Long estimatedCost;
+  private SchemaSize schemaSize;
+  private DiagramTimeline timeline;
+
   /** Public constructor. Generates a random key, and sets the creation timestamp. */
   public DiagramRequest() {
     timestamp = Instant.now();
@@ -94,6 +102,15 @@ public class DiagramRequest implements Serializable {
     return EqualsBuilder.reflectionEquals(this, obj);
   }
 
+  /**
+   * Returns the URL that the request is posted to once it has been processed.
+   *
+   * @return Callback URL, or null if no callback was requested.
+   */
+  public String getCallbackUrl() {
+    return callbackUrl;
+  }
+
   /**
    * Returns the email address of the requester.
    *
@@ -112,6 +129,15 @@ public class DiagramRequest implements Serializable {
     return error;
   }
 
+  /**
+   * Returns the estimated cost of crawling the database and rendering a diagram.
+   *
+   * @return Estimated cost, or null if the database has not been analyzed.
+   */
+  public Long getEstimatedCost() {
+    return estimatedCost;
+  }
+
   /**
    * Returns the uploaded file name.
    *
@@ -143,6 +169,15 @@ public class DiagramRequest implements Serializable {
     return name;
   }
 
+  /**
+   * Returns the size class of the database schema, which decides how the request is processed.
+   *
+   * @return Size class, or null if the database has not been analyzed.
+   */
+  public SchemaSize getSchemaSize() {
+    return schemaSize;
+  }
+
   /**
    * Returns the request creation timestamp.
    *
@@ -152,6 +187,15 @@ public class DiagramRequest implements Serializable {
     return timestamp;
   }
 
+  /**
+   * Returns the breakdown of the time taken to process the request.
+   *
+   * @return Processing timeline, or null if processing has not completed.
+   */
+  public DiagramTimeline getTimeline() {
+    return timeline;
+  }
+
   public String getTitle() {
     return title;
   }
@@ -166,6 +210,10 @@ public class DiagramRequest implements Serializable {
     return !isBlank(error);
   }
 
+  public void setCallbackUrl(final String callbackUrl) {
+    this.callbackUrl = callbackUrl;
+  }
+
   public void setEmail(final String email) {
     this.email = email;
   }
@@ -179,6 +227,10 @@ public class DiagramRequest implements Serializable {
     this.error = error;
   }
 
+  public void setEstimatedCost(final Long estimatedCost) {
+    this.estimatedCost = estimatedCost;
+  }
+
   /**
    * Sets the uploaded file name.
    *
@@ -201,22 +253,44 @@ public class DiagramRequest implements Serializable {
     this.name = name;
   }
 
+  public void setSchemaSize(final SchemaSize schemaSize) {
+    this.schemaSize = schemaSize;
+  }
+
+  public void setTimeline(final DiagramTimeline timeline) {
+    this.timeline = timeline;
+  }
+
   public void setTitle(final String title) {
     this.title = title;
   }
 
   /**
-   * Converts this object to JSON.
+   * Converts this object to compact JSON.
    *
    * @return JSON string
    */
   public String toJson() {
-    return new DiagramRequestUtility().diagramRequestToJson(this);
+    return DiagramRequestCodec.write(this);
   }
 
-  /** {@inheritDoc} */
+  /**
+   * Converts this object to compact UTF-8 encoded JSON, for storage.
+   *
+   * @return JSON bytes
+   */
+  public byte[] toJsonBytes() {
+    return DiagramRequestCodec.writeBytes(this);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Only the key and name are shown, so that logging a request does not serialize it. Use
+   * {@link #toJson()} for the full request.
+   */
   @Override
   public String toString() {
-    return toJson();
+    return String.format("DiagramRequest[key=%s, name=%s]", key, name);
   }
 }
@@ -0,0 +1,109 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.model;
+
+import static com.fasterxml.jackson.databind.SerializationFeature.INDENT_OUTPUT;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import schemacrawler.schemacrawler.exceptions.ExecutionRuntimeException;
+
+/**
+ * Reads and writes diagram requests as JSON. The reader and writer are built once, and are
+ * immutable, so they are shared by all threads.
+ */
+public final class DiagramRequestCodec {
+
+  private static final ObjectReader READER;
+  private static final ObjectWriter WRITER;
+
+  static {
+    final ObjectMapper mapper = DiagramRequestUtility.newObjectMapper();
+    READER = mapper.readerFor(DiagramRequest.class);
+    // Stored requests are compact, without indentation
+    WRITER = mapper.writerFor(DiagramRequest.class).without(INDENT_OUTPUT);
+  }
+
+  /**
+   * Reads a diagram request from JSON.
+   *
+   * @param diagramRequestReader JSON serialized request reader.
+   * @return Deserialized Java request.
+   */
+  public static DiagramRequest read(final Reader diagramRequestReader) {
+    requireNonNull(diagramRequestReader, "No diagram request reader provided");
+    try {
+      return READER.readValue(diagramRequestReader);
+    } catch (final IOException e) {
+      throw new ExecutionRuntimeException("Cannot deserialize diagram request", e);
+    }
+  }
+
+  /**
+   * Writes a diagram request as compact JSON.
+   *
+   * @param diagramRequest Diagram request.
+   * @return JSON serialized request.
+   */
+  public static String write(final DiagramRequest diagramRequest) {
+    requireNonNull(diagramRequest, "No diagram request provided");
+    try {
+      return WRITER.writeValueAsString(diagramRequest);
+    } catch (final JsonProcessingException e) {
+      throw new ExecutionRuntimeException("Cannot serialize diagram request", e);
+    }
+  }
+
+  /**
+   * Writes a diagram request as compact UTF-8 encoded JSON, without creating an intermediate
+   * string.
+   *
+   * @param diagramRequest Diagram request.
+   * @return JSON serialized request.
+   */
+  public static byte[] writeBytes(final DiagramRequest diagramRequest) {
+    requireNonNull(diagramRequest, "No diagram request provided");
+    try {
+      return WRITER.writeValueAsBytes(diagramRequest);
+    } catch (final JsonProcessingException e) {
+      throw new ExecutionRuntimeException("Cannot serialize diagram request", e);
+    }
+  }
+
+  private DiagramRequestCodec() {
+    // Prevent instantiation
+  }
+}
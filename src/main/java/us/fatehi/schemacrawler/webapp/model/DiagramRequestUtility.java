@@ -32,10 +32,6 @@ import static com.fasterxml.jackson.databind.SerializationFeature.INDENT_OUTPUT;
 import static com.fasterxml.jackson.databind.SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS;
 import static com.fasterxml.jackson.databind.SerializationFeature.USE_EQUALITY_FOR_OBJECT_ID;
 import static com.fasterxml.jackson.databind.SerializationFeature.WRITE_ENUMS_USING_TO_STRING;
-import static java.util.Objects.requireNonNull;
-
-import java.io.IOException;
-import java.io.Reader;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -44,21 +40,22 @@ import org.springframework.context.annotation.Primary;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.annotation.JsonUnwrapped;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
-import schemacrawler.schemacrawler.exceptions.ExecutionRuntimeException;
-
 @Configuration
 public class DiagramRequestUtility {
 
-  @Bean
-  @Primary
-  public ObjectMapper objectMapper() {
+  /**
+   * Creates an object mapper configured for diagram requests. Mappers are expensive to create, so
+   * use the shared instances in {@link DiagramRequestCodec} to read and write diagram requests.
+   *
+   * @return New object mapper
+   */
+  static ObjectMapper newObjectMapper() {
 
     @JsonNaming(PropertyNamingStrategies.KebabCaseStrategy.class)
     @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -69,12 +66,30 @@ public class DiagramRequestUtility {
       "email",
       "file",
       "title",
+      "callback-url",
+      "schema-size",
+      "estimated-cost",
+      "timeline",
       "error",
     })
     abstract class JacksonAnnotationMixIn {
       @JsonUnwrapped public DiagramKey key;
     }
 
+    @JsonNaming(PropertyNamingStrategies.KebabCaseStrategy.class)
+    @JsonPropertyOrder({
+      "enqueued",
+      "queue-wait-millis",
+      "preflight-wait-millis",
+      "crawl-wait-millis",
+      "render-wait-millis",
+      "crawl-millis",
+      "render-millis",
+      "upload-millis",
+      "total-millis",
+    })
+    abstract class TimelineAnnotationMixIn {}
+
     final ObjectMapper mapper = new ObjectMapper();
     mapper.enable(
         ORDER_MAP_ENTRIES_BY_KEYS,
@@ -83,27 +98,15 @@ public class DiagramRequestUtility {
         WRITE_ENUMS_USING_TO_STRING);
     mapper.setSerializationInclusion(NON_NULL);
     mapper.addMixIn(DiagramRequest.class, JacksonAnnotationMixIn.class);
+    mapper.addMixIn(DiagramTimeline.class, TimelineAnnotationMixIn.class);
     mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
     mapper.registerModule(new JavaTimeModule());
     return mapper;
   }
 
-  String diagramRequestToJson(final DiagramRequest diagramRequest) {
-    requireNonNull(diagramRequest, "No diagram request provided");
-    try {
-      return objectMapper().writeValueAsString(diagramRequest);
-    } catch (final JsonProcessingException e) {
-      throw new ExecutionRuntimeException("Cannot serialize diagram request", e);
-    }
-  }
-
-  DiagramRequest readDiagramRequest(final Reader diagramRequestReader) {
-    requireNonNull(diagramRequestReader, "No diagram request reader provided");
-    try {
-      return objectMapper().readValue(diagramRequestReader, DiagramRequest.class);
-    } catch (final IOException e) {
-      throw new ExecutionRuntimeException(
-          String.format("Cannot deserialize diagram request%n%s", diagramRequestReader), e);
-    }
+  @Bean
+  @Primary
+  public ObjectMapper objectMapper() {
+    return newObjectMapper();
   }
 }
@@ -0,0 +1,184 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.model;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+/**
+ * Breakdown of the time taken to process a diagram request. Durations are in milliseconds, and
+ * are null for stages that did not run, for example when a previous diagram was reused.
+ */
+public class DiagramTimeline implements Serializable {
+
+  private static final long serialVersionUID = -3504950787715370851L;
+
+  private Instant enqueued;
+  private Long queueWaitMillis;
+  private Long preflightWaitMillis;
+  private Long crawlWaitMillis;
+  private Long renderWaitMillis;
+  private Long crawlMillis;
+  private Long renderMillis;
+  private Long uploadMillis;
+  private Long totalMillis;
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean equals(final Object obj) {
+    return EqualsBuilder.reflectionEquals(this, obj);
+  }
+
+  /**
+   * Returns the time spent crawling the database.
+   *
+   * @return Crawl time in milliseconds, or null if the database was not crawled.
+   */
+  public Long getCrawlMillis() {
+    return crawlMillis;
+  }
+
+  /**
+   * Returns the time the request waited in the queue of the crawl stage.
+   *
+   * @return Crawl queue wait in milliseconds, or null if the database was not crawled.
+   */
+  public Long getCrawlWaitMillis() {
+    return crawlWaitMillis;
+  }
+
+  /**
+   * Returns the time when the request was queued for processing.
+   *
+   * @return Enqueue timestamp.
+   */
+  public Instant getEnqueued() {
+    return enqueued;
+  }
+
+  /**
+   * Returns the time the request waited in the queue of the stage that checks the database.
+   *
+   * @return Preflight queue wait in milliseconds, or null if the database was checked as the
+   *     request was received.
+   */
+  public Long getPreflightWaitMillis() {
+    return preflightWaitMillis;
+  }
+
+  /**
+   * Returns the total time the request waited in the queues of the pipeline stages.
+   *
+   * @return Queue wait in milliseconds.
+   */
+  public Long getQueueWaitMillis() {
+    return queueWaitMillis;
+  }
+
+  /**
+   * Returns the time spent rendering the diagram.
+   *
+   * @return Render time in milliseconds, or null if the diagram was not rendered.
+   */
+  public Long getRenderMillis() {
+    return renderMillis;
+  }
+
+  /**
+   * Returns the time the request waited in the queue of the render stage.
+   *
+   * @return Render queue wait in milliseconds, or null if the diagram was not rendered.
+   */
+  public Long getRenderWaitMillis() {
+    return renderWaitMillis;
+  }
+
+  /**
+   * Returns the time from when the request was queued to when processing completed.
+   *
+   * @return Total time in milliseconds.
+   */
+  public Long getTotalMillis() {
+    return totalMillis;
+  }
+
+  /**
+   * Returns the time spent uploading the diagram to storage.
+   *
+   * @return Upload time in milliseconds.
+   */
+  public Long getUploadMillis() {
+    return uploadMillis;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int hashCode() {
+    return HashCodeBuilder.reflectionHashCode(this, false);
+  }
+
+  public void setCrawlMillis(final Long crawlMillis) {
+    this.crawlMillis = crawlMillis;
+  }
+
+  public void setCrawlWaitMillis(final Long crawlWaitMillis) {
+    this.crawlWaitMillis = crawlWaitMillis;
+  }
+
+  public void setEnqueued(final Instant enqueued) {
+    this.enqueued = enqueued;
+  }
+
+  public void setPreflightWaitMillis(final Long preflightWaitMillis) {
+    this.preflightWaitMillis = preflightWaitMillis;
+  }
+
+  public void setQueueWaitMillis(final Long queueWaitMillis) {
+    this.queueWaitMillis = queueWaitMillis;
+  }
+
+  public void setRenderMillis(final Long renderMillis) {
+    this.renderMillis = renderMillis;
+  }
+
+  public void setRenderWaitMillis(final Long renderWaitMillis) {
+    this.renderWaitMillis = renderWaitMillis;
+  }
+
+  public void setTotalMillis(final Long totalMillis) {
+    this.totalMillis = totalMillis;
+  }
+
+  public void setUploadMillis(final Long uploadMillis) {
+    this.uploadMillis = uploadMillis;
+  }
+}
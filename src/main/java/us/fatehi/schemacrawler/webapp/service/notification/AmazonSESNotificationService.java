@@ -31,8 +31,9 @@ package us.fatehi.schemacrawler.webapp.service.notification;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Properties;
+import java.util.stream.Collectors;
 
 import jakarta.mail.Message;
 import jakarta.mail.MessagingException;
@@ -49,7 +50,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Profile;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
 
+import schemacrawler.schemacrawler.exceptions.ExecutionRuntimeException;
 import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.services.ses.SesClient;
@@ -80,33 +83,67 @@ public class AmazonSESNotificationService implements NotificationService {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @throws ExecutionRuntimeException If the email could not be sent
+   */
   @Override
   public void notify(@NotNull final DiagramRequest diagramRequest) {
 
     final String recipient = diagramRequest.getEmail();
     final String subject = String.format("SchemaCrawler Diagram: %s", diagramRequest.getTitle());
-    final String key = diagramRequest.getKey().getKey();
-    final String resultsUrl = String.format("%s/schemacrawler/results/%s", webAppUri, key);
+    final String resultsUrl = resultsUrl(diagramRequest);
 
-    final String bodyText = String.format("Your SchemaCrawler diagram is ready at %s", resultsUrl);
+    final String bodyText =
+        String.format("Your SchemaCrawler diagram is %s at %s", status(diagramRequest), resultsUrl);
     final String bodyHTML =
-        String.format("<a href='%s'>Your SchemaCrawler diagram is ready</a>", resultsUrl);
+        String.format(
+            "<a href='%s'>Your SchemaCrawler diagram is %s</a>",
+            resultsUrl, status(diagramRequest));
 
-    try {
-      final MimeMessage message = createMessage(recipient, subject, bodyText, bodyHTML);
-      send(message);
-    } catch (MessagingException | IOException e) {
-      LOGGER.warn(
-          String.format("Error sending email for %s: %s", diagramRequest.getKey(), e.getMessage()));
-    } catch (final SesException e) {
-      final AwsErrorDetails awsErrorDetails = e.awsErrorDetails();
-      LOGGER.warn(
+    send(diagramRequest.getKey().getKey(), recipient, subject, bodyText, bodyHTML);
+  }
+
+  /**
+   * Sends one email, with a link to the results of each request.
+   *
+   * @throws ExecutionRuntimeException If the email could not be sent
+   */
+  @Override
+  public void notify(@NotNull final List<DiagramRequest> diagramRequests) {
+    if (diagramRequests.size() == 1) {
+      notify(diagramRequests.get(0));
+      return;
+    }
+    if (diagramRequests.isEmpty()) {
+      return;
+    }
+
+    final String recipient = diagramRequests.get(0).getEmail();
+    final String subject =
+        String.format("SchemaCrawler Diagrams: %d diagrams", diagramRequests.size());
+
+    final StringBuilder bodyText = new StringBuilder("Your SchemaCrawler diagrams:\n");
+    final StringBuilder bodyHTML = new StringBuilder("<p>Your SchemaCrawler diagrams:</p><ul>");
+    for (final DiagramRequest diagramRequest : diagramRequests) {
+      final String title = HtmlUtils.htmlEscape(String.valueOf(diagramRequest.getTitle()));
+      final String resultsUrl = resultsUrl(diagramRequest);
+      bodyText.append(
           String.format(
-              "Error sending email for %s: %s - %s",
-              diagramRequest.getKey(),
-              awsErrorDetails.errorCode(),
-              awsErrorDetails.errorMessage()));
+              "- %s is %s at %s\n",
+              diagramRequest.getTitle(), status(diagramRequest), resultsUrl));
+      bodyHTML.append(
+          String.format(
+              "<li><a href='%s'>%s</a> is %s</li>", resultsUrl, title, status(diagramRequest)));
     }
+    bodyHTML.append("</ul>");
+
+    final String keys =
+        diagramRequests.stream()
+            .map(diagramRequest -> diagramRequest.getKey().getKey())
+            .collect(Collectors.joining(", "));
+    send(keys, recipient, subject, bodyText.toString(), bodyHTML.toString());
   }
 
   private MimeMessage createMessage(
@@ -152,16 +189,18 @@ public class AmazonSESNotificationService implements NotificationService {
     return message;
   }
 
+  private String resultsUrl(final DiagramRequest diagramRequest) {
+    return String.format(
+        "%s/schemacrawler/results/%s", webAppUri, diagramRequest.getKey().getKey());
+  }
+
   private void send(final MimeMessage message) throws MessagingException, IOException {
 
     final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
     message.writeTo(outputStream);
-    final ByteBuffer buf = ByteBuffer.wrap(outputStream.toByteArray());
-
-    final byte[] arr = new byte[buf.remaining()];
-    buf.get(arr);
 
-    final SdkBytes data = SdkBytes.fromByteArray(arr);
+    // The array is not shared, so it does not need to be copied again
+    final SdkBytes data = SdkBytes.fromByteArrayUnsafe(outputStream.toByteArray());
     final RawMessage rawMessage = RawMessage.builder().data(data).build();
 
     final SendRawEmailRequest rawEmailRequest =
@@ -169,4 +208,30 @@ public class AmazonSESNotificationService implements NotificationService {
 
     sesClient.sendRawEmail(rawEmailRequest);
   }
+
+  private void send(
+      final String keys,
+      final String recipient,
+      final String subject,
+      final String bodyText,
+      final String bodyHTML) {
+    try {
+      final MimeMessage message = createMessage(recipient, subject, bodyText, bodyHTML);
+      send(message);
+    } catch (MessagingException | IOException e) {
+      LOGGER.warn(String.format("Error sending email for %s: %s", keys, e.getMessage()));
+      throw new ExecutionRuntimeException(String.format("Could not send email for %s", keys), e);
+    } catch (final SesException e) {
+      final AwsErrorDetails awsErrorDetails = e.awsErrorDetails();
+      LOGGER.warn(
+          String.format(
+              "Error sending email for %s: %s - %s",
+              keys, awsErrorDetails.errorCode(), awsErrorDetails.errorMessage()));
+      throw new ExecutionRuntimeException(String.format("Could not send email for %s", keys), e);
+    }
+  }
+
+  private String status(final DiagramRequest diagramRequest) {
+    return diagramRequest.hasLogMessage() ? "not available" : "ready";
+  }
 }
@@ -0,0 +1,388 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+
+package us.fatehi.schemacrawler.webapp.service.notification;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.CALLBACK;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.constraints.NotNull;
+import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
+import us.fatehi.schemacrawler.webapp.service.storage.StorageService;
+
+/**
+ * Posts the final diagram request to the callback URL of the request, once it has been processed,
+ * so that clients do not need to poll for the result. Payloads are signed with an HMAC-SHA256 of
+ * the timestamp and the body, keyed with a secret that is shared with clients, and callbacks are
+ * only sent when the secret is set.
+ *
+ * <p>Only a limited number of callbacks are posted at once. Callbacks that fail with a server
+ * error, a timeout or a network error are retried with exponential backoff. Callbacks that cannot
+ * be delivered are recorded in storage, next to the request.
+ *
+ * <p>Callbacks are not posted into the network that the application runs in. Host names are
+ * checked when a connection is made, by the resolver that supplies the addresses to connect to,
+ * so a host name cannot resolve to an allowed address when checked and to a private address when
+ * connected.
+ */
+@Component
+public class CallbackService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CallbackService.class);
+
+  public static final String KEY_HEADER = "X-SchemaCrawler-Key";
+  public static final String SIGNATURE_HEADER = "X-SchemaCrawler-Signature";
+  public static final String TIMESTAMP_HEADER = "X-SchemaCrawler-Timestamp";
+
+  private static final String HMAC_SHA256 = "HmacSHA256";
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  /** Result of one attempt to post a callback. */
+  private record Attempt(boolean delivered, boolean retryable, String error) {}
+
+  /** Thrown when a callback host resolves to an address that is not allowed. */
+  private static final class AddressNotAllowedException extends UnknownHostException {
+
+    private static final long serialVersionUID = 7719528463914839462L;
+
+    AddressNotAllowedException(final String host) {
+      super(String.format("Callback host <%s> is not allowed", host));
+    }
+  }
+
+  /** Resolves callback host names, and refuses addresses that are not allowed. */
+  private static final class CheckedDnsResolver extends SystemDefaultDnsResolver {
+
+    @Override
+    public InetAddress[] resolve(final String host) throws UnknownHostException {
+      final InetAddress[] addresses = super.resolve(host);
+      for (final InetAddress address : addresses) {
+        if (!isAllowed(address)) {
+          throw new AddressNotAllowedException(host);
+        }
+      }
+      return addresses;
+    }
+  }
+
+  private final StorageService storageService;
+  private final SecretKeySpec secret;
+  private final Semaphore permits;
+  private final int maxAttempts;
+  private final Duration retryBackoff;
+  private final CloseableHttpClient httpClient;
+  private final ExecutorService executor;
+  private final ScheduledExecutorService scheduler;
+
+  public CallbackService(
+      @NotNull(message = "StorageService not provided") final StorageService storageService,
+      @Value("${SC_WEBAPP_CALLBACK_SECRET:}") final String secret,
+      @Value("${SC_WEBAPP_CALLBACK_CONCURRENCY:16}") final int concurrency,
+      @Value("${SC_WEBAPP_CALLBACK_MAX_ATTEMPTS:5}") final int maxAttempts,
+      @Value("${SC_WEBAPP_CALLBACK_RETRY_BACKOFF_MILLIS:1000}") final long retryBackoffMillis,
+      @Value("${SC_WEBAPP_CALLBACK_ALLOW_PRIVATE_ADDRESSES:false}")
+          final boolean allowPrivateAddresses) {
+    if (concurrency <= 0 || maxAttempts <= 0) {
+      throw new IllegalArgumentException("Callback concurrency and attempts must be positive");
+    }
+    this.storageService = storageService;
+    if (StringUtils.isBlank(secret)) {
+      LOGGER.warn("Callbacks are not sent, since SC_WEBAPP_CALLBACK_SECRET is not set");
+      this.secret = null;
+    } else {
+      this.secret = new SecretKeySpec(secret.getBytes(UTF_8), HMAC_SHA256);
+    }
+    permits = new Semaphore(concurrency);
+    this.maxAttempts = maxAttempts;
+    retryBackoff = Duration.ofMillis(Math.max(0, retryBackoffMillis));
+    executor = Executors.newVirtualThreadPerTaskExecutor();
+    // No proxy is used, since a proxy would resolve host names without the checks
+    httpClient =
+        HttpClients.custom()
+            .setConnectionManager(
+                PoolingHttpClientConnectionManagerBuilder.create()
+                    .setDnsResolver(
+                        allowPrivateAddresses
+                            ? SystemDefaultDnsResolver.INSTANCE
+                            : new CheckedDnsResolver())
+                    .setMaxConnTotal(concurrency)
+                    .setMaxConnPerRoute(concurrency)
+                    .setDefaultConnectionConfig(
+                        ConnectionConfig.custom()
+                            .setConnectTimeout(Timeout.of(TIMEOUT))
+                            .setSocketTimeout(Timeout.of(TIMEOUT))
+                            .build())
+                    .build())
+            .setDefaultRequestConfig(
+                RequestConfig.custom().setResponseTimeout(Timeout.of(TIMEOUT)).build())
+            .disableRedirectHandling()
+            .disableAutomaticRetries()
+            .disableCookieManagement()
+            .build();
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("callback-retry").factory());
+  }
+
+  /**
+   * Signs a payload.
+   *
+   * @param timestamp Time of signing, in seconds since the epoch
+   * @param body Payload
+   * @return Signature, as "sha256=" followed by the hex HMAC
+   */
+  public String sign(final long timestamp, final byte[] body) {
+    if (secret == null) {
+      throw new InternalRuntimeException("No callback secret provided");
+    }
+    try {
+      final Mac mac = Mac.getInstance(HMAC_SHA256);
+      mac.init(secret);
+      mac.update(Long.toString(timestamp).getBytes(UTF_8));
+      mac.update((byte) '.');
+      return "sha256=" + HexFormat.of().formatHex(mac.doFinal(body));
+    } catch (final NoSuchAlgorithmException | InvalidKeyException e) {
+      throw new InternalRuntimeException("Could not sign callback", e);
+    }
+  }
+
+  /**
+   * Posts a processed request to its callback URL, if it has one. Posting, and any retries, happen
+   * in the background.
+   *
+   * @param diagramRequest Processed diagram request
+   * @return Future that completes when the callback is delivered, or recorded as undeliverable
+   */
+  public CompletableFuture<Void> send(
+      @NotNull(message = "Diagram request not provided") final DiagramRequest diagramRequest) {
+    final String callbackUrl = diagramRequest.getCallbackUrl();
+    if (StringUtils.isBlank(callbackUrl)) {
+      return CompletableFuture.completedFuture(null);
+    }
+    if (secret == null) {
+      LOGGER.warn(String.format("Callback not sent for <%s>", diagramRequest.getKey()));
+      return CompletableFuture.completedFuture(null);
+    }
+
+    final CompletableFuture<Void> delivered = new CompletableFuture<>();
+    // The body is fixed now, so every attempt posts the same request
+    attempt(diagramRequest.getKey(), callbackUrl, diagramRequest.toJsonBytes(), 1, delivered);
+    return delivered;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdownNow();
+    executor.shutdown();
+    httpClient.close(CloseMode.IMMEDIATE);
+  }
+
+  private void attempt(
+      final DiagramKey key,
+      final String callbackUrl,
+      final byte[] body,
+      final int attempts,
+      final CompletableFuture<Void> delivered) {
+    executor.execute(
+        () -> {
+          final Attempt attempt;
+          permits.acquireUninterruptibly();
+          try {
+            attempt = post(key, callbackUrl, body);
+          } finally {
+            permits.release();
+          }
+
+          if (attempt.delivered()) {
+            delivered.complete(null);
+          } else if (attempt.retryable() && attempts < maxAttempts) {
+            final Duration backoff = RetryBackoff.delay(retryBackoff, attempts);
+            LOGGER.warn(
+                String.format(
+                    "Could not post callback for <%s>, retrying in %s: %s",
+                    key, backoff, attempt.error()));
+            scheduler.schedule(
+                () -> attempt(key, callbackUrl, body, attempts + 1, delivered),
+                backoff.toMillis(),
+                TimeUnit.MILLISECONDS);
+          } else {
+            deadLetter(key, callbackUrl, attempts, attempt.error());
+            delivered.complete(null);
+          }
+        });
+  }
+
+  /** Records a callback that could not be delivered, next to the request in storage. */
+  private void deadLetter(
+      final DiagramKey key, final String callbackUrl, final int attempts, final String error) {
+    LOGGER.error(
+        String.format(
+            "Could not post callback for <%s> after %d attempts: %s", key, attempts, error));
+    try {
+      final Map<String, Object> record = new LinkedHashMap<>();
+      record.put("key", key.getKey());
+      record.put("callback-url", callbackUrl);
+      record.put("attempts", attempts);
+      record.put("error", error);
+      record.put("failed", Instant.now().toString());
+      final byte[] json = new ObjectMapper().writeValueAsBytes(record);
+      storageService.store(() -> new ByteArrayInputStream(json), key, CALLBACK);
+      storageService.seal(key);
+    } catch (final Exception e) {
+      LOGGER.error(
+          String.format("Could not record failed callback for <%s>: %s", key, e.getMessage()));
+    }
+  }
+
+  /** Checks that an address is not in the network that the application runs in. */
+  private static boolean isAllowed(final InetAddress address) {
+    if (address instanceof Inet6Address) {
+      final byte[] bytes = address.getAddress();
+      // Unique local addresses, fc00::/7, are the private addresses of IPv6
+      if ((bytes[0] & 0xfe) == 0xfc) {
+        return false;
+      }
+      // IPv4-mapped and IPv4-compatible addresses reach the embedded IPv4 address
+      if (isEmbeddedIPv4(bytes)) {
+        try {
+          return isAllowed(InetAddress.getByAddress(Arrays.copyOfRange(bytes, 12, 16)));
+        } catch (final UnknownHostException e) {
+          return false;
+        }
+      }
+    }
+    if (address instanceof Inet4Address) {
+      final byte[] bytes = address.getAddress();
+      // "This network", 0.0.0.0/8, and shared address space for carrier-grade NAT, 100.64.0.0/10
+      if (bytes[0] == 0 || bytes[0] == 100 && (bytes[1] & 0xc0) == 64) {
+        return false;
+      }
+    }
+    return !(address.isAnyLocalAddress()
+        || address.isLoopbackAddress()
+        || address.isLinkLocalAddress()
+        || address.isSiteLocalAddress()
+        || address.isMulticastAddress());
+  }
+
+  /** Checks for an IPv4-mapped, ::ffff:0:0/96, or IPv4-compatible, ::/96, IPv6 address. */
+  private static boolean isEmbeddedIPv4(final byte[] bytes) {
+    for (int i = 0; i < 10; i++) {
+      if (bytes[i] != 0) {
+        return false;
+      }
+    }
+    final boolean mapped = bytes[10] == (byte) 0xff && bytes[11] == (byte) 0xff;
+    final boolean compatible = bytes[10] == 0 && bytes[11] == 0;
+    return mapped || compatible;
+  }
+
+  private Attempt post(final DiagramKey key, final String callbackUrl, final byte[] body) {
+    final URI uri;
+    try {
+      uri = URI.create(callbackUrl);
+      if (uri.getHost() == null) {
+        return new Attempt(false, false, "Callback URL is not allowed");
+      }
+    } catch (final IllegalArgumentException e) {
+      // A malformed URL will never be delivered
+      return new Attempt(false, false, e.getMessage());
+    }
+
+    final long timestamp = Instant.now().getEpochSecond();
+    final HttpPost request = new HttpPost(uri);
+    request.setHeader(KEY_HEADER, key.getKey());
+    request.setHeader(TIMESTAMP_HEADER, Long.toString(timestamp));
+    request.setHeader(SIGNATURE_HEADER, sign(timestamp, body));
+    request.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+    try {
+      final int status = httpClient.execute(request, response -> response.getCode());
+      if (status >= 200 && status < 300) {
+        return new Attempt(true, false, null);
+      }
+      // Server errors, timeouts and rate limits might go away, but other client errors will not
+      final boolean retryable = status >= 500 || status == 408 || status == 429;
+      return new Attempt(false, retryable, String.format("HTTP status %d", status));
+    } catch (final AddressNotAllowedException e) {
+      return new Attempt(false, false, "Callback URL is not allowed");
+    } catch (final IOException e) {
+      if (Thread.currentThread().isInterrupted()) {
+        return new Attempt(false, false, "Interrupted");
+      }
+      return new Attempt(false, true, e.getMessage());
+    }
+  }
+}
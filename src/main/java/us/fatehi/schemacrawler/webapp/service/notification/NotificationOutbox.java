@@ -0,0 +1,345 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+
+package us.fatehi.schemacrawler.webapp.service.notification;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.DSYNC;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.constraints.NotNull;
+import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
+import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
+import us.fatehi.schemacrawler.webapp.service.processing.StageMetrics;
+
+/**
+ * Sends notifications for processed requests from a worker thread, so that requests are not held
+ * up by the mail service. Each notification is written to a directory before it is queued, and
+ * deleted once it is sent, so notifications that were not sent when the application stopped are
+ * sent when it starts again.
+ *
+ * <p>Notifications for the same recipient that are queued within the digest window are sent
+ * together, as one digest. Sends are limited to a rate that matches the mail service send quota.
+ * Failed sends are retried with exponential backoff, and notifications that still cannot be sent
+ * are moved to a "failed" directory.
+ *
+ * <p>The outbox directory is "sc-webapp-outbox" under the working directory, unless it is
+ * configured. If it is configured as blank, a temporary directory is used, and notifications are
+ * not kept across restarts.
+ */
+@Component
+public class NotificationOutbox implements MeterBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(NotificationOutbox.class);
+
+  private static final long POLL_MILLIS = 100;
+
+  /** Notifications for one recipient, which are sent together. */
+  private static final class Digest {
+
+    private final String recipient;
+    private final List<DiagramRequest> diagramRequests;
+    private Instant due;
+    private int attempts;
+
+    Digest(final String recipient, final Instant due) {
+      this.recipient = recipient;
+      this.due = due;
+      diagramRequests = new ArrayList<>();
+    }
+  }
+
+  private final NotificationService notificationService;
+  private final StageMetrics metrics;
+  private final Path directory;
+  private final Path failedDirectory;
+  private final TokenBucket sendRate;
+  private final Duration digestWindow;
+  private final Duration retryBackoff;
+  private final int maxAttempts;
+  private final Map<String, Digest> digests;
+  private final ScheduledExecutorService worker;
+
+  public NotificationOutbox(
+      @NotNull(message = "Notification service not provided")
+          final NotificationService notificationService,
+      @NotNull(message = "Stage metrics not provided") final StageMetrics metrics,
+      @Value("${SC_WEBAPP_NOTIFICATION_OUTBOX_DIRECTORY:sc-webapp-outbox}") final String directory,
+      @Value("${SC_WEBAPP_NOTIFICATION_SEND_RATE:1}") final double sendsPerSecond,
+      @Value("${SC_WEBAPP_NOTIFICATION_DIGEST_WINDOW_SECONDS:60}") final long digestWindowSeconds,
+      @Value("${SC_WEBAPP_NOTIFICATION_RETRY_BACKOFF_MILLIS:2000}") final long retryBackoffMillis,
+      @Value("${SC_WEBAPP_NOTIFICATION_MAX_ATTEMPTS:8}") final int maxAttempts) {
+    if (maxAttempts <= 0) {
+      throw new IllegalArgumentException("Notification attempts must be positive");
+    }
+    this.notificationService = notificationService;
+    this.metrics = metrics;
+    this.directory = createDirectory(directory);
+    failedDirectory = this.directory.resolve("failed");
+    // One second of sends can be saved up, as the mail service allows short bursts at the quota
+    sendRate =
+        new TokenBucket(sendsPerSecond, Math.max(1, Math.floor(sendsPerSecond)), System::nanoTime);
+    digestWindow = Duration.ofSeconds(Math.max(0, digestWindowSeconds));
+    retryBackoff = Duration.ofMillis(Math.max(0, retryBackoffMillis));
+    this.maxAttempts = maxAttempts;
+    digests = new HashMap<>();
+    worker =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("notification-outbox").factory());
+  }
+
+  /**
+   * Queues a notification for a processed request. Requests without an email address are ignored.
+   *
+   * @param diagramRequest Processed diagram request
+   */
+  public void add(
+      @NotNull(message = "Diagram request not provided") final DiagramRequest diagramRequest) {
+    if (StringUtils.isBlank(diagramRequest.getEmail())) {
+      return;
+    }
+    try {
+      write(diagramRequest);
+    } catch (final IOException e) {
+      // Still sent, unless the application stops first
+      LOGGER.warn(
+          String.format(
+              "Could not save notification for <%s>: %s", diagramRequest.getKey(), e.getMessage()));
+    }
+    queue(diagramRequest, Instant.now().plus(digestWindow));
+  }
+
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    Gauge.builder("notification.outbox.pending", this, NotificationOutbox::size)
+        .description("Notifications waiting to be sent")
+        .register(registry);
+  }
+
+  /** Sends every notification that is due, as far as the send rate allows. */
+  public void sendDue() {
+    final Instant now = Instant.now();
+    for (final Digest digest : takeDue(now)) {
+      if (!sendRate.tryAcquire()) {
+        // Wait for the next poll
+        restore(digest);
+        continue;
+      }
+      send(digest);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    worker.shutdown();
+  }
+
+  /**
+   * Number of notifications waiting to be sent.
+   *
+   * @return Number of notifications
+   */
+  public synchronized int size() {
+    return digests.values().stream().mapToInt(digest -> digest.diagramRequests.size()).sum();
+  }
+
+  /** Queues notifications that were saved before the application stopped, and starts sending. */
+  @PostConstruct
+  public void start() throws IOException {
+    try (final Stream<Path> files = Files.list(directory)) {
+      for (final Path file : files.filter(this::isNotificationFile).toList()) {
+        try (final Reader reader = Files.newBufferedReader(file)) {
+          queue(DiagramRequest.fromJson(reader), Instant.now());
+        } catch (final RuntimeException e) {
+          LOGGER.warn(String.format("Could not read notification <%s>: %s", file, e.getMessage()));
+          moveToFailed(file);
+        }
+      }
+    }
+    worker.scheduleWithFixedDelay(this::poll, POLL_MILLIS, POLL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  private Path createDirectory(final String outboxDirectory) {
+    try {
+      if (StringUtils.isBlank(outboxDirectory)) {
+        final Path path = Files.createTempDirectory("sc-webapp-outbox.");
+        LOGGER.warn(
+            String.format(
+                "No notification outbox directory is configured, so unsent notifications in <%s>"
+                    + " will not be sent after a restart",
+                path));
+        return path;
+      }
+      final Path path = Path.of(outboxDirectory).toAbsolutePath();
+      Files.createDirectories(path);
+      return path;
+    } catch (final IOException e) {
+      throw new InternalRuntimeException(
+          String.format("Could not create notification outbox directory <%s>", outboxDirectory),
+          e);
+    }
+  }
+
+  private void delete(final DiagramRequest diagramRequest) {
+    try {
+      Files.deleteIfExists(notificationFile(diagramRequest));
+    } catch (final IOException e) {
+      LOGGER.warn(
+          String.format(
+              "Could not delete notification for <%s>: %s",
+              diagramRequest.getKey(),
+              e.getMessage()));
+    }
+  }
+
+  private boolean isNotificationFile(final Path file) {
+    return Files.isRegularFile(file) && file.getFileName().toString().endsWith(".json");
+  }
+
+  private void moveToFailed(final Path file) {
+    try {
+      Files.createDirectories(failedDirectory);
+      Files.move(file, failedDirectory.resolve(file.getFileName()), REPLACE_EXISTING);
+    } catch (final IOException e) {
+      LOGGER.warn(String.format("Could not move notification <%s>: %s", file, e.getMessage()));
+    }
+  }
+
+  private Path notificationFile(final DiagramRequest diagramRequest) {
+    return directory.resolve(diagramRequest.getKey() + ".json");
+  }
+
+  private void poll() {
+    try {
+      sendDue();
+    } catch (final RuntimeException e) {
+      // Keep the worker running
+      LOGGER.warn(String.format("Could not send notifications: %s", e.getMessage()), e);
+    }
+  }
+
+  private synchronized void queue(final DiagramRequest diagramRequest, final Instant due) {
+    final String recipient = diagramRequest.getEmail().trim().toLowerCase(Locale.ENGLISH);
+    digests
+        .computeIfAbsent(recipient, key -> new Digest(recipient, due))
+        .diagramRequests
+        .add(diagramRequest);
+  }
+
+  /** Puts back a digest that was not sent, merging it with notifications queued in the meantime. */
+  private synchronized void restore(final Digest digest) {
+    final Digest queued = digests.putIfAbsent(digest.recipient, digest);
+    if (queued != null) {
+      queued.diagramRequests.addAll(0, digest.diagramRequests);
+      queued.due = digest.due.isBefore(queued.due) ? digest.due : queued.due;
+      queued.attempts = Math.max(queued.attempts, digest.attempts);
+    }
+  }
+
+  private void send(final Digest digest) {
+    try {
+      metrics.time(
+          StageMetrics.NOTIFICATION,
+          () -> notificationService.notify(List.copyOf(digest.diagramRequests)));
+    } catch (final RuntimeException e) {
+      digest.attempts = digest.attempts + 1;
+      if (digest.attempts >= maxAttempts) {
+        LOGGER.error(
+            String.format(
+                "Could not send notification to <%s> after %d attempts: %s",
+                digest.recipient,
+                digest.attempts,
+                e.getMessage()));
+        digest.diagramRequests.forEach(
+            diagramRequest -> moveToFailed(notificationFile(diagramRequest)));
+        return;
+      }
+      final Duration backoff = RetryBackoff.delay(retryBackoff, digest.attempts);
+      LOGGER.warn(
+          String.format(
+              "Could not send notification to <%s>, retrying in %s: %s",
+              digest.recipient,
+              backoff,
+              e.getMessage()));
+      digest.due = Instant.now().plus(backoff);
+      restore(digest);
+      return;
+    }
+    digest.diagramRequests.forEach(this::delete);
+  }
+
+  /** Removes the digests that are due, oldest first. */
+  private synchronized List<Digest> takeDue(final Instant now) {
+    final List<Digest> due =
+        digests.values().stream()
+            .filter(digest -> !digest.due.isAfter(now))
+            .sorted(Comparator.comparing(digest -> digest.due))
+            .toList();
+    due.forEach(digest -> digests.remove(digest.recipient));
+    return due;
+  }
+
+  private void write(final DiagramRequest diagramRequest) throws IOException {
+    final Path file = notificationFile(diagramRequest);
+    final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.write(tempFile, diagramRequest.toJsonBytes(), CREATE, TRUNCATE_EXISTING, WRITE, DSYNC);
+    Files.move(tempFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+  }
+}
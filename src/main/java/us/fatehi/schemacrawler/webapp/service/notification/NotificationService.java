@@ -1,8 +1,26 @@
 package us.fatehi.schemacrawler.webapp.service.notification;
 
+import java.util.List;
+
 import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
 
+/**
+ * Notifies the person who made a request that it has been processed. Notifications are sent from
+ * the {@link NotificationOutbox}, which retries them if sending throws an exception.
+ */
 public interface NotificationService {
 
   void notify(DiagramRequest diagramRequest);
+
+  /**
+   * Sends one notification for several requests from the same recipient. By default, a
+   * notification is sent for each request.
+   *
+   * @param diagramRequests Processed requests, all with the same email address
+   */
+  default void notify(final List<DiagramRequest> diagramRequests) {
+    for (final DiagramRequest diagramRequest : diagramRequests) {
+      notify(diagramRequest);
+    }
+  }
 }
@@ -0,0 +1,57 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+
+package us.fatehi.schemacrawler.webapp.service.notification;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Exponential backoff between retries, with jitter. */
+final class RetryBackoff {
+
+  private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+
+  /**
+   * Time to wait before the next attempt. The wait doubles with each failed attempt, up to an
+   * hour, and is jittered, so that sends that failed together are not retried together.
+   *
+   * @param base Wait after the first failed attempt
+   * @param attempts Number of failed attempts so far
+   * @return Time to wait
+   */
+  static Duration delay(final Duration base, final int attempts) {
+    final int doublings = Math.min(Math.max(attempts - 1, 0), 30);
+    final long millis = Math.min(MAX_BACKOFF.toMillis(), base.toMillis() << doublings);
+    return Duration.ofMillis(millis / 2 + ThreadLocalRandom.current().nextLong(millis / 2 + 1));
+  }
+
+  private RetryBackoff() {
+    // Prevent instantiation
+  }
+}
@@ -0,0 +1,83 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+
+package us.fatehi.schemacrawler.webapp.service.notification;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Limits how often something can be done. Tokens are added at a steady rate, up to a capacity, and
+ * each action takes a token. Callers that find no token wait for a later attempt instead of
+ * blocking.
+ */
+public final class TokenBucket {
+
+  private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+  private final double tokensPerNano;
+  private final double capacity;
+  private final LongSupplier nanoTime;
+  private double tokens;
+  private long refilledNanos;
+
+  /**
+   * Bucket that starts full.
+   *
+   * @param tokensPerSecond Rate at which tokens are added
+   * @param capacity Largest number of tokens that can be saved up, for bursts
+   * @param nanoTime Source of time, in nanoseconds, such as {@link System#nanoTime()}
+   */
+  public TokenBucket(
+      final double tokensPerSecond, final double capacity, final LongSupplier nanoTime) {
+    if (tokensPerSecond <= 0 || capacity < 1) {
+      throw new IllegalArgumentException("Token rate must be positive, and capacity at least one");
+    }
+    this.tokensPerNano = tokensPerSecond / NANOS_PER_SECOND;
+    this.capacity = capacity;
+    this.nanoTime = nanoTime;
+    tokens = capacity;
+    refilledNanos = nanoTime.getAsLong();
+  }
+
+  /**
+   * Takes a token, if one is available.
+   *
+   * @return Whether a token was taken
+   */
+  public synchronized boolean tryAcquire() {
+    final long now = nanoTime.getAsLong();
+    tokens = Math.min(capacity, tokens + (now - refilledNanos) * tokensPerNano);
+    refilledNanos = now;
+    if (tokens < 1) {
+      return false;
+    }
+    tokens = tokens - 1;
+    return true;
+  }
+}
@@ -0,0 +1,218 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.processing;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import schemacrawler.inclusionrule.InclusionRule;
+import schemacrawler.inclusionrule.ListExclusionRule;
+import schemacrawler.inclusionrule.RegularExpressionExclusionRule;
+import schemacrawler.schema.Catalog;
+import schemacrawler.schemacrawler.LimitOptionsBuilder;
+import schemacrawler.schemacrawler.SchemaCrawlerOptions;
+import schemacrawler.schemacrawler.SchemaCrawlerOptionsBuilder;
+import schemacrawler.schemacrawler.exceptions.ExecutionRuntimeException;
+import schemacrawler.tools.executable.SchemaCrawlerExecutable;
+import schemacrawler.tools.options.OutputFormat;
+import schemacrawler.tools.options.OutputOptions;
+import schemacrawler.tools.options.OutputOptionsBuilder;
+import schemacrawler.tools.sqlite.EmbeddedSQLiteWrapper;
+import schemacrawler.tools.utility.SchemaCrawlerUtility;
+import us.fatehi.utility.IOUtility;
+import us.fatehi.utility.datasource.DatabaseConnectionSource;
+
+/**
+ * Splits diagram generation into a crawl stage, which reads the schema of a SQLite database into a
+ * catalog, and a render stage, which creates a diagram from a catalog. Catalogs can be saved in a
+ * compressed form, so that they can be rendered again without opening the database.
+ */
+public final class DiagramUtility {
+
+  // Same tables that are excluded by SchemaCrawlerSQLiteUtility
+  private static final InclusionRule sqliteTableExclusionRule =
+      new InclusionRule() {
+        private static final long serialVersionUID = -6155419612045271236L;
+
+        private final InclusionRule listExclusionRule =
+            new ListExclusionRule(
+                Arrays.asList(
+                    "auth_group",
+                    "auth_group_permissions",
+                    "auth_permission",
+                    "auth_user",
+                    "auth_user_groups",
+                    "auth_user_user_permissions",
+                    "otp_totp_totpdevice",
+                    "DATABASECHANGELOG",
+                    "SCHEMA_VERSION",
+                    "_EFMigrationsHistory",
+                    "android_metadata"));
+        private final InclusionRule regularExpressionExclusionRule =
+            new RegularExpressionExclusionRule("django_.*");
+
+        @Override
+        public boolean test(final String text) {
+          return listExclusionRule.test(text) && regularExpressionExclusionRule.test(text);
+        }
+      };
+
+  // Only classes that make up a catalog can be read back
+  private static final ObjectInputFilter catalogFilter =
+      ObjectInputFilter.Config.createFilter("maxdepth=100;schemacrawler.**;us.fatehi.**;java.**;!*");
+
+  /**
+   * Crawls a SQLite database, and returns the catalog of its schema.
+   *
+   * @param databaseFile SQLite database file
+   * @return Schema catalog
+   */
+  public static Catalog crawl(final Path databaseFile) {
+    requireNonNull(databaseFile, "No database file provided");
+
+    final EmbeddedSQLiteWrapper sqliteWrapper = new EmbeddedSQLiteWrapper();
+    sqliteWrapper.setDatabasePath(databaseFile);
+    try (final DatabaseConnectionSource connectionSource =
+        sqliteWrapper.createDatabaseConnectionSource()) {
+      return SchemaCrawlerUtility.getCatalog(connectionSource, schemaCrawlerOptions());
+    } catch (final Exception e) {
+      throw new ExecutionRuntimeException("Could not run against SQLite database", e);
+    }
+  }
+
+  /**
+   * Reads a catalog that was saved with {@link #writeCatalog(Catalog, Path)}.
+   *
+   * @param catalogFile Compressed catalog file
+   * @return Schema catalog
+   */
+  public static Catalog readCatalog(final Path catalogFile) {
+    requireNonNull(catalogFile, "No catalog file provided");
+    try (final InputStream inputStream = Files.newInputStream(catalogFile)) {
+      return readCatalog(inputStream);
+    } catch (final IOException e) {
+      throw new ExecutionRuntimeException(
+          String.format("Could not read catalog <%s>", catalogFile), e);
+    }
+  }
+
+  /**
+   * Reads a catalog that was written with {@link #writeCatalog(Catalog, Path)} from a stream. The
+   * stream is not closed.
+   *
+   * @param inputStream Stream of a compressed, serialized catalog
+   * @return Catalog
+   */
+  public static Catalog readCatalog(final InputStream inputStream) {
+    requireNonNull(inputStream, "No catalog stream provided");
+    try {
+      final ObjectInputStream in =
+          new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(inputStream)));
+      in.setObjectInputFilter(catalogFilter);
+      return (Catalog) in.readObject();
+    } catch (final IOException | ClassNotFoundException | ClassCastException e) {
+      throw new ExecutionRuntimeException("Could not read catalog", e);
+    }
+  }
+
+  /**
+   * Renders a diagram from a catalog, without connecting to the database.
+   *
+   * @param catalog Schema catalog
+   * @param title Diagram title
+   * @param outputFormat Diagram output format
+   * @return Path to the generated diagram
+   */
+  public static Path render(
+      final Catalog catalog, final String title, final OutputFormat outputFormat) {
+    requireNonNull(catalog, "No catalog provided");
+    requireNonNull(outputFormat, "No output format provided");
+    try {
+      final Path outputFile = IOUtility.createTempFilePath("schemacrawler", outputFormat.getFormat());
+      final OutputOptions outputOptions =
+          OutputOptionsBuilder.builder()
+              .title(title)
+              .withOutputFormat(outputFormat)
+              .withOutputFile(outputFile)
+              .toOptions();
+
+      final SchemaCrawlerExecutable executable = new SchemaCrawlerExecutable("schema");
+      executable.setSchemaCrawlerOptions(schemaCrawlerOptions());
+      executable.setOutputOptions(outputOptions);
+      executable.setCatalog(catalog);
+      executable.execute();
+
+      return outputFile;
+    } catch (final Exception e) {
+      throw new ExecutionRuntimeException(
+          String.format("Could not create database schema diagram <%s>", title), e);
+    }
+  }
+
+  /**
+   * Saves a catalog in a compressed form.
+   *
+   * @param catalog Schema catalog
+   * @param catalogFile File to write the catalog to
+   */
+  public static void writeCatalog(final Catalog catalog, final Path catalogFile) {
+    requireNonNull(catalog, "No catalog provided");
+    requireNonNull(catalogFile, "No catalog file provided");
+    try (final ObjectOutputStream out =
+        new ObjectOutputStream(
+            new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(catalogFile))))) {
+      out.writeObject(catalog);
+    } catch (final IOException e) {
+      throw new ExecutionRuntimeException(
+          String.format("Could not write catalog <%s>", catalogFile), e);
+    }
+  }
+
+  private static SchemaCrawlerOptions schemaCrawlerOptions() {
+    return SchemaCrawlerOptionsBuilder.newSchemaCrawlerOptions()
+        .withLimitOptions(
+            LimitOptionsBuilder.builder().includeTables(sqliteTableExclusionRule).toOptions());
+  }
+
+  private DiagramUtility() {
+    // Prevent instantiation
+  }
+}
@@ -0,0 +1,440 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+
+package us.fatehi.schemacrawler.webapp.service.processing;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.SQLITE_DB;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.constraints.NotNull;
+import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
+
+/**
+ * Append-only journal of accepted jobs, so that jobs that were queued in memory when the
+ * application stopped are processed when it starts again. Each accepted job is journaled with the
+ * request, and the uploaded database file is linked into a spool directory next to the journal.
+ * Finished jobs are journaled too, and their spooled file is removed.
+ *
+ * <p>Records are appended by one writer thread, which syncs the journal once for all the records
+ * that were waiting, so that accepting many jobs at once does not cost a disk sync each. Once
+ * enough jobs have finished, the journal is compacted by rewriting it with only the unfinished
+ * jobs.
+ *
+ * <p>The journal directory is "sc-webapp-journal" under the temporary directory, where uploads are
+ * saved, so that the uploaded files can be linked instead of copied, unless it is configured. A
+ * configured directory on another file system works, but every uploaded file is copied. If it is
+ * configured as blank, a temporary directory is used, and jobs are not recovered after a restart.
+ */
+@Component
+public class JobJournal implements MeterBinder {
+
+  private static final Logger logger = Logger.getLogger(JobJournal.class.getName());
+
+  private static final String ACCEPTED = "ACCEPTED";
+  private static final String DONE = "DONE";
+  private static final String JOURNAL_FILE = "jobs.journal";
+
+  /** Job that was accepted, but had not finished when the application stopped. */
+  public record JournaledJob(DiagramRequest diagramRequest, Path localPath) {}
+
+  /** Record waiting to be written, with a future that completes once it is synced. */
+  private record Pending(String line, CompletableFuture<Void> synced) {}
+
+  private static final Pending STOP = new Pending(null, null);
+
+  private final Path directory;
+  private final Path spoolDirectory;
+  private final Path journalFile;
+  private final int compactAfter;
+  private final BlockingQueue<Pending> pending;
+  // Accepted records of unfinished jobs
+  private final Map<DiagramKey, String> unfinished;
+  // Accepted records of unfinished jobs that are in the journal file, which are kept when the
+  // journal is compacted. Records that are still waiting to be written are left out, so that
+  // they are not written twice. Only used by the writer thread, once it is started.
+  private final Map<DiagramKey, String> written;
+  private final List<JournaledJob> recovered;
+  private final Thread writer;
+  private FileChannel channel;
+  private int finishedSinceCompaction;
+  private volatile boolean copying;
+  private volatile boolean stopped;
+
+  public JobJournal(
+      @Value("${SC_WEBAPP_JOB_JOURNAL_DIRECTORY:${java.io.tmpdir}/sc-webapp-journal}")
+          final String directory,
+      @Value("${SC_WEBAPP_JOB_JOURNAL_COMPACT_AFTER:1000}") final int compactAfter) {
+    if (compactAfter <= 0) {
+      throw new IllegalArgumentException("Job journal compaction threshold must be positive");
+    }
+    this.directory = createDirectory(directory);
+    spoolDirectory = this.directory.resolve("spool");
+    journalFile = this.directory.resolve(JOURNAL_FILE);
+    this.compactAfter = compactAfter;
+    pending = new LinkedBlockingQueue<>();
+    unfinished = new LinkedHashMap<>();
+    written = new LinkedHashMap<>();
+    recovered = new ArrayList<>();
+    writer = Thread.ofVirtual().name("job-journal").unstarted(this::write);
+  }
+
+  /**
+   * Journals an accepted job. The uploaded database file is linked into the spool directory, or
+   * copied if it cannot be linked, so that it is kept if the application stops.
+   *
+   * @param diagramRequest Diagram request
+   * @param localPath Uploaded database file
+   * @return Future that completes once the job is synced to disk
+   */
+  public CompletableFuture<Void> accept(
+      @NotNull(message = "Diagram request not provided") final DiagramRequest diagramRequest,
+      @NotNull(message = "Local path not provided") final Path localPath) {
+    final DiagramKey key = diagramRequest.getKey();
+    try {
+      spool(key, localPath);
+    } catch (final IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    final String line =
+        String.join(
+            "\t", ACCEPTED, key.getKey(), new String(diagramRequest.toJsonBytes(), UTF_8));
+    synchronized (this) {
+      unfinished.put(key, line);
+    }
+    return append(line);
+  }
+
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    Gauge.builder("job.journal.unfinished", this, JobJournal::size)
+        .description("Journaled jobs that have not finished")
+        .register(registry);
+  }
+
+  /**
+   * Journals that a job has finished, whether or not it succeeded, so that it is not processed
+   * again. Jobs that were not journaled are ignored.
+   *
+   * @param key Diagram key
+   */
+  public void complete(@NotNull(message = "Key not provided") final DiagramKey key) {
+    synchronized (this) {
+      if (unfinished.remove(key) == null) {
+        return;
+      }
+    }
+    try {
+      Files.deleteIfExists(spoolFile(key));
+    } catch (final IOException e) {
+      logger.warning(
+          String.format("Could not delete spooled file for <%s>: %s", key, e.getMessage()));
+    }
+    // Not waited for, since at worst the job is processed again
+    append(String.join("\t", DONE, key.getKey()));
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    stopped = true;
+    pending.add(STOP);
+    writer.join();
+  }
+
+  /**
+   * Number of journaled jobs that have not finished.
+   *
+   * @return Number of jobs
+   */
+  public synchronized int size() {
+    return unfinished.size();
+  }
+
+  /**
+   * Reads the journal, compacts it, and starts the writer. Jobs that had not finished are kept for
+   * {@link #takeRecovered()}.
+   */
+  @PostConstruct
+  public void start() throws IOException {
+    Files.createDirectories(spoolDirectory);
+    if (Files.exists(journalFile)) {
+      replay(Files.readString(journalFile, UTF_8));
+    }
+    synchronized (this) {
+      written.putAll(unfinished);
+    }
+    compact();
+    writer.start();
+  }
+
+  /**
+   * Jobs that were in the journal when the application started, and had not finished. Each job is
+   * only returned once.
+   *
+   * @return Jobs to process again
+   */
+  public synchronized List<JournaledJob> takeRecovered() {
+    final List<JournaledJob> jobs = List.copyOf(recovered);
+    recovered.clear();
+    return jobs;
+  }
+
+  private CompletableFuture<Void> append(final String line) {
+    if (stopped) {
+      return CompletableFuture.failedFuture(new IllegalStateException("Job journal is closed"));
+    }
+    final CompletableFuture<Void> synced = new CompletableFuture<>();
+    pending.add(new Pending(line, synced));
+    return synced;
+  }
+
+  /** Rewrites the journal with only the unfinished jobs. */
+  private void compact() throws IOException {
+    final StringBuilder buffer = new StringBuilder();
+    written.values().forEach(line -> buffer.append(line).append('\n'));
+    finishedSinceCompaction = 0;
+
+    final Path tempFile = journalFile.resolveSibling(JOURNAL_FILE + ".tmp");
+    try (final FileChannel tempChannel =
+        FileChannel.open(tempFile, CREATE, TRUNCATE_EXISTING, WRITE)) {
+      writeFully(tempChannel, buffer.toString());
+      tempChannel.force(true);
+    }
+    if (channel != null) {
+      channel.close();
+    }
+    Files.move(tempFile, journalFile, ATOMIC_MOVE, REPLACE_EXISTING);
+    syncDirectory();
+    channel = FileChannel.open(journalFile, CREATE, WRITE, APPEND);
+  }
+
+  private Path createDirectory(final String journalDirectory) {
+    try {
+      if (StringUtils.isBlank(journalDirectory)) {
+        final Path path = Files.createTempDirectory("sc-webapp-journal.");
+        logger.warning(
+            String.format(
+                "No job journal directory is configured, so jobs journaled in <%s>"
+                    + " will not be recovered after a restart",
+                path));
+        return path;
+      }
+      final Path path = Path.of(journalDirectory).toAbsolutePath();
+      Files.createDirectories(path);
+      return path;
+    } catch (final IOException e) {
+      throw new InternalRuntimeException(
+          String.format("Could not create job journal directory <%s>", journalDirectory), e);
+    }
+  }
+
+  /** Reads journal records, keeping the jobs that had not finished. */
+  private synchronized void replay(final String journal) throws IOException {
+    final Map<DiagramKey, DiagramRequest> requests = new LinkedHashMap<>();
+    try (final BufferedReader reader = new BufferedReader(new StringReader(journal))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        final String[] fields = line.split("\t", 3);
+        try {
+          final DiagramKey key = new DiagramKey(fields[1]);
+          if (ACCEPTED.equals(fields[0])) {
+            requests.put(key, DiagramRequest.fromJson(new StringReader(fields[2])));
+            unfinished.put(key, line);
+          } else if (DONE.equals(fields[0])) {
+            requests.remove(key);
+            unfinished.remove(key);
+          }
+        } catch (final RuntimeException e) {
+          // A record that was only partly written when the application stopped
+          logger.warning(String.format("Skipping journal record: %s", e.getMessage()));
+        }
+      }
+    }
+
+    for (final Map.Entry<DiagramKey, DiagramRequest> entry : requests.entrySet()) {
+      final DiagramKey key = entry.getKey();
+      final Path spoolFile = spoolFile(key);
+      if (Files.isRegularFile(spoolFile)) {
+        recovered.add(new JournaledJob(entry.getValue(), spoolFile));
+      } else {
+        logger.warning(
+            String.format("Cannot process <%s> again, since its file is missing", key));
+        unfinished.remove(key);
+      }
+    }
+    logger.info(String.format("Recovered %d unfinished jobs from the journal", recovered.size()));
+  }
+
+  private void spool(final DiagramKey key, final Path localPath) throws IOException {
+    final Path spoolFile = spoolFile(key);
+    Files.deleteIfExists(spoolFile);
+    try {
+      // A link costs no copying, and the file is kept when the original is deleted
+      Files.createLink(spoolFile, localPath);
+    } catch (final IOException | UnsupportedOperationException e) {
+      if (!copying) {
+        copying = true;
+        logger.warning(
+            String.format(
+                "Uploaded files are copied into <%s>, since they cannot be linked: %s",
+                spoolDirectory, e.getMessage()));
+      }
+      Files.copy(localPath, spoolFile);
+    }
+  }
+
+  private Path spoolFile(final DiagramKey key) {
+    return spoolDirectory.resolve(key + "." + SQLITE_DB.getExtension());
+  }
+
+  /** Syncs the directory, so that a renamed journal is not lost. */
+  private void syncDirectory() {
+    try (final FileChannel directoryChannel = FileChannel.open(directory, READ)) {
+      directoryChannel.force(true);
+    } catch (final IOException e) {
+      // Not supported on every platform
+      logger.fine(String.format("Could not sync <%s>: %s", directory, e.getMessage()));
+    }
+  }
+
+  /** Writes records in batches, syncing once for each batch, until stopped. */
+  private void write() {
+    final List<Pending> batch = new ArrayList<>();
+    boolean stop = false;
+    while (!stop) {
+      try {
+        batch.add(pending.take());
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      // Records that arrived while the last batch was syncing are written together
+      pending.drainTo(batch);
+
+      final StringBuilder buffer = new StringBuilder();
+      for (final Pending record : batch) {
+        if (record == STOP) {
+          stop = true;
+        } else {
+          buffer.append(record.line()).append('\n');
+          if (record.line().startsWith(DONE)) {
+            finishedSinceCompaction++;
+          }
+        }
+      }
+
+      IOException failure = null;
+      try {
+        writeFully(channel, buffer.toString());
+        channel.force(false);
+        for (final Pending record : batch) {
+          if (record != STOP) {
+            track(record.line());
+          }
+        }
+        if (finishedSinceCompaction >= compactAfter) {
+          compact();
+        }
+      } catch (final IOException e) {
+        logger.log(
+            Level.SEVERE, String.format("Could not write job journal: %s", e.getMessage()), e);
+        failure = e;
+      }
+      for (final Pending record : batch) {
+        if (record == STOP) {
+          continue;
+        }
+        if (failure == null) {
+          record.synced().complete(null);
+        } else {
+          record.synced().completeExceptionally(failure);
+        }
+      }
+      batch.clear();
+    }
+
+    try {
+      channel.close();
+    } catch (final IOException e) {
+      logger.warning(String.format("Could not close job journal: %s", e.getMessage()));
+    }
+  }
+
+  /** Keeps track of the unfinished jobs in the journal file, once a record is written. */
+  private void track(final String line) {
+    final String[] fields = line.split("\t", 3);
+    final DiagramKey key = new DiagramKey(fields[1]);
+    if (ACCEPTED.equals(fields[0])) {
+      written.put(key, line);
+    } else {
+      written.remove(key);
+    }
+  }
+
+  private void writeFully(final FileChannel fileChannel, final String text) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(UTF_8));
+    while (buffer.hasRemaining()) {
+      fileChannel.write(buffer);
+    }
+  }
+}
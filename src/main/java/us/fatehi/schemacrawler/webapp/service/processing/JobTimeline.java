@@ -0,0 +1,109 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.processing;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramTimeline;
+
+/**
+ * Records how long the stages of a single request take, from when it is accepted. Stages run on
+ * different pipeline threads, so times may be recorded concurrently. The time that work waits in
+ * the queue of a pipeline stage is recorded each time it is handed to that stage.
+ */
+final class JobTimeline {
+
+  private final Instant enqueued;
+  private final long enqueuedNanos;
+  private final Map<String, Long> stageNanos;
+  private final Map<String, Long> waitNanos;
+
+  JobTimeline() {
+    enqueued = Instant.now();
+    enqueuedNanos = System.nanoTime();
+    stageNanos = new ConcurrentHashMap<>();
+    waitNanos = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Records a run of a stage. A stage that runs more than once adds up.
+   *
+   * @param stage Stage name, one of the {@link StageMetrics} stages
+   * @param startNanos Time the stage started, from {@link System#nanoTime()}
+   * @param endNanos Time the stage finished, from {@link System#nanoTime()}
+   */
+  void record(final String stage, final long startNanos, final long endNanos) {
+    stageNanos.merge(stage, endNanos - startNanos, Long::sum);
+  }
+
+  /**
+   * Records a wait in the queue of a pipeline stage. Waits for a stage add up.
+   *
+   * @param stage Stage name, one of the {@link StageMetrics} stages
+   * @param submittedNanos Time the work was handed to the stage, from {@link System#nanoTime()}
+   * @param startNanos Time the work started, from {@link System#nanoTime()}
+   */
+  void recordWait(final String stage, final long submittedNanos, final long startNanos) {
+    waitNanos.merge(stage, startNanos - submittedNanos, Long::sum);
+  }
+
+  /**
+   * Builds the timeline of the request, with the total time up to now.
+   *
+   * @return Timeline
+   */
+  DiagramTimeline toTimeline() {
+    final long nowNanos = System.nanoTime();
+    final long totalWaitNanos = waitNanos.values().stream().mapToLong(Long::longValue).sum();
+
+    final DiagramTimeline timeline = new DiagramTimeline();
+    timeline.setEnqueued(enqueued);
+    timeline.setQueueWaitMillis(NANOSECONDS.toMillis(totalWaitNanos));
+    timeline.setPreflightWaitMillis(millis(waitNanos, StageMetrics.PREFLIGHT));
+    timeline.setCrawlWaitMillis(millis(waitNanos, StageMetrics.CRAWL));
+    timeline.setRenderWaitMillis(millis(waitNanos, StageMetrics.RENDER));
+    timeline.setCrawlMillis(millis(stageNanos, StageMetrics.CRAWL));
+    timeline.setRenderMillis(millis(stageNanos, StageMetrics.RENDER));
+    timeline.setUploadMillis(millis(stageNanos, StageMetrics.PNG_STORE));
+    timeline.setTotalMillis(NANOSECONDS.toMillis(nowNanos - enqueuedNanos));
+    return timeline;
+  }
+
+  private Long millis(final Map<String, Long> timesNanos, final String stage) {
+    final Long nanos = timesNanos.get(stage);
+    if (nanos == null) {
+      return null;
+    }
+    return NANOSECONDS.toMillis(nanos);
+  }
+}
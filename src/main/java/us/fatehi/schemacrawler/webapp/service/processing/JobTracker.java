@@ -0,0 +1,217 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.processing;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramJobStatus;
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+import us.fatehi.schemacrawler.webapp.model.JobStatus;
+
+/**
+ * In-memory processing status of recent diagram requests. Status only moves forward, and clients
+ * can wait for a status change instead of polling storage for the finished diagram. The least
+ * recently used entries are dropped once the tracker is full.
+ */
+@Component
+public class JobTracker {
+
+  private final Map<DiagramKey, DiagramJobStatus> jobs;
+  private final Map<DiagramKey, List<CompletableFuture<Optional<DiagramJobStatus>>>> waiters;
+
+  public JobTracker(@Value("${SC_WEBAPP_JOB_TRACKER_SIZE:10000}") final int maxEntries) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("Job tracker size must be positive");
+    }
+    // Access-ordered, so the least recently used entry is evicted first
+    jobs =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          private static final long serialVersionUID = 6287473245587261453L;
+
+          @Override
+          protected boolean removeEldestEntry(
+              final Map.Entry<DiagramKey, DiagramJobStatus> eldest) {
+            return size() > maxEntries;
+          }
+        };
+    waiters = new LinkedHashMap<>();
+  }
+
+  /**
+   * Moves a request to a later status. Requests that are not tracked, that are already at the same
+   * or a later status, or that have finished, are not changed.
+   *
+   * @param key Diagram key
+   * @param status New status
+   */
+  public void advance(final DiagramKey key, final JobStatus status) {
+    requireNonNull(status, "No status provided");
+    update(key, status, null);
+  }
+
+  /**
+   * Waits for the status of a request to be different from a known status.
+   *
+   * @param key Diagram key
+   * @param knownStatus Status that the client already knows about, or null to return the current
+   *     status immediately
+   * @param timeout Maximum time to wait
+   * @return Future with the status, which completes with the current status on a timeout, and is
+   *     empty if the request is not tracked
+   */
+  public CompletableFuture<Optional<DiagramJobStatus>> awaitChange(
+      final DiagramKey key, final JobStatus knownStatus, final Duration timeout) {
+    requireNonNull(key, "No key provided");
+    requireNonNull(timeout, "No timeout provided");
+
+    final CompletableFuture<Optional<DiagramJobStatus>> waiter;
+    synchronized (this) {
+      final Optional<DiagramJobStatus> current = status(key);
+      if (current.isEmpty()
+          || knownStatus == null
+          || current.get().getStatus() != knownStatus
+          || knownStatus.isFinished()) {
+        return CompletableFuture.completedFuture(current);
+      }
+      waiter = new CompletableFuture<>();
+      waiters.computeIfAbsent(key, k -> new ArrayList<>()).add(waiter);
+    }
+
+    waiter.whenComplete((result, throwable) -> removeWaiter(key, waiter));
+    return waiter.completeOnTimeout(null, timeout.toMillis(), TimeUnit.MILLISECONDS)
+        .thenApply(result -> result != null ? result : status(key));
+  }
+
+  /**
+   * Marks a request as failed.
+   *
+   * @param key Diagram key
+   * @param error Error message
+   */
+  public void fail(final DiagramKey key, final String error) {
+    update(key, JobStatus.FAILED, error);
+  }
+
+  /**
+   * Stops tracking a request, once it is handed to another instance for processing. Clients that
+   * are waiting for a status change are woken up with an empty status.
+   *
+   * @param key Diagram key
+   */
+  public void forget(final DiagramKey key) {
+    requireNonNull(key, "No key provided");
+
+    final List<CompletableFuture<Optional<DiagramJobStatus>>> keyWaiters;
+    synchronized (this) {
+      jobs.remove(key);
+      keyWaiters = waiters.remove(key);
+    }
+
+    if (keyWaiters != null) {
+      for (final CompletableFuture<Optional<DiagramJobStatus>> waiter : keyWaiters) {
+        waiter.complete(Optional.empty());
+      }
+    }
+  }
+
+  /**
+   * Starts tracking a request, as queued for processing.
+   *
+   * @param key Diagram key
+   */
+  public void queue(final DiagramKey key) {
+    requireNonNull(key, "No key provided");
+    synchronized (this) {
+      jobs.put(key, new DiagramJobStatus(key, JobStatus.QUEUED, null, Instant.now()));
+    }
+  }
+
+  public synchronized int size() {
+    return jobs.size();
+  }
+
+  /**
+   * Current status of a request.
+   *
+   * @param key Diagram key
+   * @return Status, or empty if the request is not tracked
+   */
+  public synchronized Optional<DiagramJobStatus> status(final DiagramKey key) {
+    return Optional.ofNullable(jobs.get(key));
+  }
+
+  private synchronized void removeWaiter(
+      final DiagramKey key, final CompletableFuture<Optional<DiagramJobStatus>> waiter) {
+    final List<CompletableFuture<Optional<DiagramJobStatus>>> keyWaiters = waiters.get(key);
+    if (keyWaiters != null) {
+      keyWaiters.remove(waiter);
+      if (keyWaiters.isEmpty()) {
+        waiters.remove(key);
+      }
+    }
+  }
+
+  private void update(final DiagramKey key, final JobStatus status, final String error) {
+    requireNonNull(key, "No key provided");
+
+    final DiagramJobStatus jobStatus;
+    final List<CompletableFuture<Optional<DiagramJobStatus>>> keyWaiters;
+    synchronized (this) {
+      final DiagramJobStatus current = jobs.get(key);
+      if (current == null
+          || current.getStatus().isFinished()
+          || current.getStatus().compareTo(status) >= 0) {
+        return;
+      }
+      jobStatus = new DiagramJobStatus(key, status, error, Instant.now());
+      jobs.put(key, jobStatus);
+      keyWaiters = waiters.remove(key);
+    }
+
+    // Wake up waiting clients outside the lock
+    if (keyWaiters != null) {
+      for (final CompletableFuture<Optional<DiagramJobStatus>> waiter : keyWaiters) {
+        waiter.complete(Optional.of(jobStatus));
+      }
+    }
+  }
+}
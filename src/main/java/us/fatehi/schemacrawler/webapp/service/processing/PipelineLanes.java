@@ -0,0 +1,137 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.processing;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import us.fatehi.schemacrawler.webapp.model.SchemaSize;
+
+/**
+ * Separate crawl and render stages for each schema size class, so that a large schema only holds
+ * up other large schemas. Requests are assigned a size class from their estimated cost.
+ */
+public final class PipelineLanes implements MeterBinder {
+
+  private final long smallMaxCost;
+  private final long mediumMaxCost;
+  private final Map<SchemaSize, PipelineStage> crawlStages;
+  private final Map<SchemaSize, PipelineStage> renderStages;
+
+  /**
+   * Creates lanes, which share one budget of a thread per processor. Large schemas get a single
+   * thread, medium schemas a quarter of the processors, and small schemas the rest. The threads of
+   * each lane are split between crawling and rendering, and every stage has at least one thread,
+   * so there are at most as many threads as processors, plus one for each lane with a single
+   * thread.
+   *
+   * @param processors Number of processors
+   * @param queueCapacity Maximum number of waiting tasks for each stage
+   * @param smallMaxCost Largest estimated cost for a small schema
+   * @param mediumMaxCost Largest estimated cost for a medium schema
+   */
+  public PipelineLanes(
+      final int processors,
+      final int queueCapacity,
+      final long smallMaxCost,
+      final long mediumMaxCost) {
+    if (smallMaxCost <= 0 || mediumMaxCost < smallMaxCost) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Bad schema size limits, small <%d> and medium <%d>", smallMaxCost, mediumMaxCost));
+    }
+    this.smallMaxCost = smallMaxCost;
+    this.mediumMaxCost = mediumMaxCost;
+
+    final int largeThreads = 1;
+    final int mediumThreads = Math.max(1, processors / 4);
+    final int smallThreads = Math.max(1, processors - mediumThreads - largeThreads);
+
+    crawlStages = new EnumMap<>(SchemaSize.class);
+    renderStages = new EnumMap<>(SchemaSize.class);
+    for (final SchemaSize schemaSize : SchemaSize.values()) {
+      final int threads =
+          switch (schemaSize) {
+            case SMALL -> smallThreads;
+            case MEDIUM -> mediumThreads;
+            case LARGE -> largeThreads;
+          };
+      // Crawling gets the odd thread, since every request is crawled, but some reuse a render
+      final int crawlThreads = Math.max(1, (threads + 1) / 2);
+      final int renderThreads = Math.max(1, threads / 2);
+      final String lane = schemaSize.name().toLowerCase();
+      crawlStages.put(
+          schemaSize,
+          PipelineStage.platformThreads("crawl-" + lane, crawlThreads, queueCapacity));
+      renderStages.put(
+          schemaSize,
+          PipelineStage.platformThreads("render-" + lane, renderThreads, queueCapacity));
+    }
+  }
+
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    crawlStages.values().forEach(stage -> stage.bindTo(registry));
+    renderStages.values().forEach(stage -> stage.bindTo(registry));
+  }
+
+  public PipelineStage crawlStage(final SchemaSize schemaSize) {
+    return crawlStages.get(requireNonNull(schemaSize, "No schema size provided"));
+  }
+
+  public PipelineStage renderStage(final SchemaSize schemaSize) {
+    return renderStages.get(requireNonNull(schemaSize, "No schema size provided"));
+  }
+
+  /** Stops accepting work, and lets queued work finish. */
+  public void shutdown() {
+    crawlStages.values().forEach(PipelineStage::shutdown);
+    renderStages.values().forEach(PipelineStage::shutdown);
+  }
+
+  /**
+   * Assigns a size class from an estimated cost.
+   *
+   * @param estimatedCost Estimated cost of crawling and rendering
+   * @return Size class
+   */
+  public SchemaSize sizeClass(final long estimatedCost) {
+    if (estimatedCost <= smallMaxCost) {
+      return SchemaSize.SMALL;
+    }
+    if (estimatedCost <= mediumMaxCost) {
+      return SchemaSize.MEDIUM;
+    }
+    return SchemaSize.LARGE;
+  }
+}
@@ -0,0 +1,236 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.processing;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+/**
+ * A stage of the diagram processing pipeline, with its own threads and a bounded queue. Work
+ * handed off from one pipeline stage to another runs in the handing-off thread when the next stage
+ * is full, which slows the upstream stage down. Work submitted from outside the pipeline, such as
+ * from a request thread, is rejected when the stage is full. Work for an accepted request that is
+ * handed off from outside the pipeline, such as from a storage completion thread, waits for room
+ * in the queue instead, without holding up the handing-off thread.
+ */
+public final class PipelineStage implements MeterBinder {
+
+  private static final ThreadLocal<Boolean> isPipelineThread =
+      ThreadLocal.withInitial(() -> Boolean.FALSE);
+  private static final ThreadLocal<Boolean> isHandingOff =
+      ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+  /**
+   * Creates a stage for CPU-bound work, on platform threads.
+   *
+   * @param name Stage name
+   * @param threads Number of threads
+   * @param queueCapacity Maximum number of waiting tasks
+   * @return Pipeline stage
+   */
+  public static PipelineStage platformThreads(
+      final String name, final int threads, final int queueCapacity) {
+    return new PipelineStage(
+        name, threads, queueCapacity, Thread.ofPlatform().name(name + "-", 0).factory());
+  }
+
+  /**
+   * Creates a stage for I/O-bound work, on virtual threads.
+   *
+   * @param name Stage name
+   * @param concurrency Maximum number of tasks running at the same time
+   * @param queueCapacity Maximum number of waiting tasks
+   * @return Pipeline stage
+   */
+  public static PipelineStage virtualThreads(
+      final String name, final int concurrency, final int queueCapacity) {
+    return new PipelineStage(
+        name, concurrency, queueCapacity, Thread.ofVirtual().name(name + "-", 0).factory());
+  }
+
+  private final String name;
+  private final ThreadPoolExecutor executor;
+  private final AtomicLong rejections;
+  private final AtomicLong callerRuns;
+  private final AtomicLong deferrals;
+
+  private PipelineStage(
+      final String name,
+      final int threads,
+      final int queueCapacity,
+      final ThreadFactory threadFactory) {
+    this.name = requireNonNull(name, "No stage name provided");
+    rejections = new AtomicLong();
+    callerRuns = new AtomicLong();
+    deferrals = new AtomicLong();
+    if (threads <= 0 || queueCapacity <= 0) {
+      throw new IllegalArgumentException(
+          String.format("Stage <%s> needs threads and a queue", name));
+    }
+    executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60L,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable ->
+                threadFactory.newThread(
+                    () -> {
+                      isPipelineThread.set(Boolean.TRUE);
+                      runnable.run();
+                    }),
+            (runnable, rejectingExecutor) -> {
+              if (isPipelineThread.get() && !rejectingExecutor.isShutdown()) {
+                callerRuns.incrementAndGet();
+                runnable.run();
+              } else if (isHandingOff.get() && !rejectingExecutor.isShutdown()) {
+                deferrals.incrementAndGet();
+                Thread.ofVirtual().name(name + "-handoff").start(() -> enqueue(runnable));
+              } else {
+                rejections.incrementAndGet();
+                throw new RejectedExecutionException(
+                    String.format("Too many requests are waiting to be processed (%s)", name));
+              }
+            });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    final Tags tags = Tags.of("stage", name);
+    new ExecutorServiceMetrics(executor, "pipeline." + name, tags).bindTo(registry);
+    Gauge.builder("pipeline.stage.utilization", this, PipelineStage::getUtilization)
+        .tags(tags)
+        .description("Fraction of the stage threads that are busy")
+        .register(registry);
+    FunctionCounter.builder("pipeline.stage.rejections", rejections, AtomicLong::get)
+        .tags(tags)
+        .description("Work rejected because the stage queue was full")
+        .register(registry);
+    FunctionCounter.builder("pipeline.stage.caller.runs", callerRuns, AtomicLong::get)
+        .tags(tags)
+        .description("Work run by the upstream stage because the stage queue was full")
+        .register(registry);
+    FunctionCounter.builder("pipeline.stage.deferrals", deferrals, AtomicLong::get)
+        .tags(tags)
+        .description("Work handed off from outside the pipeline that waited for the stage queue")
+        .register(registry);
+  }
+
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  /**
+   * Executor to hand work to this stage with.
+   *
+   * @return Executor for the stage
+   */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Executor to hand off work for a request that was already accepted. Work from pipeline threads
+   * runs in the handing-off thread when the stage is full, as with {@link #getExecutor()}. Work
+   * from other threads, such as storage completion threads, waits for room in the queue, instead
+   * of being rejected.
+   *
+   * @return Executor for the stage
+   */
+  public Executor getHandOffExecutor() {
+    return runnable -> {
+      isHandingOff.set(Boolean.TRUE);
+      try {
+        executor.execute(runnable);
+      } finally {
+        isHandingOff.set(Boolean.FALSE);
+      }
+    };
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  public long getRejections() {
+    return rejections.get();
+  }
+
+  public int getThreads() {
+    return executor.getMaximumPoolSize();
+  }
+
+  public double getUtilization() {
+    return (double) executor.getActiveCount() / executor.getMaximumPoolSize();
+  }
+
+  /** Stops accepting work, and lets queued work finish. */
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s [active=%d, queued=%d]", name, executor.getActiveCount(), getQueueDepth());
+  }
+
+  /**
+   * Waits for room in the queue, and adds work to it. A thread is started if the stage has none,
+   * since the queue is used directly.
+   */
+  private void enqueue(final Runnable runnable) {
+    try {
+      executor.getQueue().put(runnable);
+      executor.prestartCoreThread();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
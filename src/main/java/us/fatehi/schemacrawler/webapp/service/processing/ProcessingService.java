@@ -25,57 +25,1060 @@ http://www.gnu.org/licenses/
 
 ========================================================================
 */
-
 package us.fatehi.schemacrawler.webapp.service.processing;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
 import static schemacrawler.tools.command.text.diagram.options.DiagramOutputFormat.png;
-import static schemacrawler.tools.sqlite.SchemaCrawlerSQLiteUtility.executeForOutput;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.CATALOG;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.JSON;
 import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.PNG;
 import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.SQLITE_DB;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import jakarta.validation.constraints.NotNull;
 
-import org.springframework.core.io.PathResource;
-import org.springframework.scheduling.annotation.Async;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import schemacrawler.schema.Catalog;
+import schemacrawler.schemacrawler.exceptions.ExecutionRuntimeException;
+import us.fatehi.schemacrawler.webapp.model.DiagramJobStatus;
 import us.fatehi.schemacrawler.webapp.model.DiagramKey;
 import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
+import us.fatehi.schemacrawler.webapp.model.JobStatus;
+import us.fatehi.schemacrawler.webapp.model.SchemaSize;
+import us.fatehi.schemacrawler.webapp.service.notification.CallbackService;
+import us.fatehi.schemacrawler.webapp.service.notification.NotificationOutbox;
+import us.fatehi.schemacrawler.webapp.service.queue.WorkLease;
+import us.fatehi.schemacrawler.webapp.service.queue.WorkQueue;
+import us.fatehi.schemacrawler.webapp.service.storage.AsyncStorageService;
+import us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType;
 import us.fatehi.schemacrawler.webapp.service.storage.StorageService;
 
+/**
+ * Generates diagrams in stages. Storage reads run on the I/O stage, crawling the database on a
+ * crawl stage, and generating the image on a render stage, so that slow storage does not hold up
+ * threads that could be rendering. Crawl and render stages are picked by the size of the schema.
+ * Files are stored with the asynchronous storage service, so several uploads can be in progress
+ * without holding a pipeline thread for each one. Queued jobs are journaled, and jobs that had not
+ * finished when the application stopped are processed again when it starts.
+ */
 @Service
 public class ProcessingService {
 
   private static final Logger logger = Logger.getLogger(ProcessingService.class.getName());
 
+  /**
+   * Request that was accepted for processing.
+   *
+   * @param journaled Completes once the request is journaled, or could not be journaled, after
+   *     which the request is not lost if the application stops
+   * @param queued Completes when the request is checked and queued, or completes exceptionally if
+   *     the checks fail
+   */
+  public record AcceptedJob(CompletableFuture<Void> journaled, CompletableFuture<Void> queued) {}
+
+  // How often the status of a stored request is read, while a client waits for it to change
+  private static final Duration STORED_STATUS_POLL = Duration.ofSeconds(1);
+
   private final StorageService storageService;
+  private final AsyncStorageService asyncStorageService;
+  private final RenderCache renderCache;
+  private final JobTracker jobTracker;
+  private final JobJournal jobJournal;
+  private final PipelineStage ioStage;
+  private final PipelineLanes lanes;
+  private final StageMetrics metrics;
+  private final CallbackService callbackService;
+  private final NotificationOutbox notificationOutbox;
+  private final WorkQueue workQueue;
+  private final boolean workQueueEnabled;
+  private final Duration preflightTimeout;
 
   public ProcessingService(
-      @NotNull(message = "StorageService not provided") final StorageService storageService) {
+      @NotNull(message = "StorageService not provided") final StorageService storageService,
+      @NotNull(message = "AsyncStorageService not provided")
+          final AsyncStorageService asyncStorageService,
+      @NotNull(message = "RenderCache not provided") final RenderCache renderCache,
+      @NotNull(message = "JobTracker not provided") final JobTracker jobTracker,
+      @NotNull(message = "JobJournal not provided") final JobJournal jobJournal,
+      @Qualifier("ioStage") @NotNull(message = "I/O stage not provided")
+          final PipelineStage ioStage,
+      @NotNull(message = "Pipeline lanes not provided") final PipelineLanes lanes,
+      @NotNull(message = "Stage metrics not provided") final StageMetrics metrics,
+      @NotNull(message = "Callback service not provided") final CallbackService callbackService,
+      @NotNull(message = "Notification outbox not provided")
+          final NotificationOutbox notificationOutbox,
+      @NotNull(message = "Work queue not provided") final WorkQueue workQueue,
+      @Value("${SC_WEBAPP_WORK_QUEUE_ENABLED:false}") final boolean workQueueEnabled,
+      @Value("${SC_WEBAPP_PREFLIGHT_TIMEOUT_SECONDS:10}") final long preflightTimeoutSeconds) {
     this.storageService = storageService;
+    this.asyncStorageService = asyncStorageService;
+    this.renderCache = renderCache;
+    this.jobTracker = jobTracker;
+    this.jobJournal = jobJournal;
+    this.ioStage = ioStage;
+    this.lanes = lanes;
+    this.metrics = metrics;
+    this.callbackService = callbackService;
+    this.notificationOutbox = notificationOutbox;
+    this.workQueue = workQueue;
+    this.workQueueEnabled = workQueueEnabled;
+    preflightTimeout = Duration.ofSeconds(preflightTimeoutSeconds);
+  }
+
+  /**
+   * Accepts a request for processing, without checking the database on the calling thread. The
+   * request is tracked as queued straight away. Then the uploaded file is inspected, and the
+   * database is checked on the I/O stage, before the diagram is generated as for {@link
+   * #generateSchemaCrawlerDiagram(DiagramRequest, Path)}, except that the requester is not
+   * notified.
+   *
+   * @param diagramRequest Diagram request
+   * @param localPath Uploaded database file
+   * @param inspection Check of the uploaded file, which throws an exception if the file cannot be
+   *     processed
+   * @return Futures that complete when the request is journaled, and when it is checked and queued
+   * @throws java.util.concurrent.RejectedExecutionException If too many requests are waiting to be
+   *     processed
+   */
+  public AcceptedJob acceptSchemaCrawlerDiagram(
+      @NotNull(message = "Diagram request not provided") final DiagramRequest diagramRequest,
+      @NotNull(message = "Local path not provided") final Path localPath,
+      @NotNull(message = "Inspection not provided") final Runnable inspection) {
+
+    final DiagramKey key = diagramRequest.getKey();
+    jobTracker.queue(key);
+    // Queue wait is counted from when the request was accepted
+    final JobTimeline timeline = new JobTimeline();
+    final CompletableFuture<Void> journaled = journal(diagramRequest, localPath);
+
+    try {
+      final CompletableFuture<Void> queued =
+          supplyOnStage(
+                  timeline,
+                  StageMetrics.PREFLIGHT,
+                  () -> {
+                    inspection.run();
+                    return preflight(diagramRequest, localPath);
+                  },
+                  ioStage.getExecutor())
+              .thenCompose(
+                  estimate ->
+                      // Continued on the I/O stage, since the request is then handed off or
+                      // queued with blocking calls, and answered, instead of on a storage
+                      // completion thread
+                      storeRequest(diagramRequest)
+                          .thenComposeAsync(
+                              stored -> {
+                                if (workQueueEnabled) {
+                                  return handOff(diagramRequest, localPath, false);
+                                }
+                                process(diagramRequest, localPath, estimate, timeline, true);
+                                return completedFuture(null);
+                              },
+                              ioStage.getHandOffExecutor()))
+              .whenComplete(
+                  (result, throwable) -> {
+                    if (throwable != null) {
+                      jobJournal.complete(key);
+                    }
+                  });
+      return new AcceptedJob(journaled, queued);
+    } catch (final RuntimeException e) {
+      jobJournal.complete(key);
+      throw e;
+    }
+  }
+
+  /**
+   * Waits for the processing status of a request to change. Requests that are not tracked by this
+   * instance, such as requests that were handed to the work queue, get their status from the
+   * stored request and the work queue, which are read again while the request is queued, until
+   * the status changes or the wait runs out.
+   *
+   * @param key Diagram key
+   * @param knownStatus Status that the client already knows about, or null to return the current
+   *     status immediately
+   * @param timeout Maximum time to wait
+   * @return Future with the status, which is empty if the request is not known
+   */
+  public CompletableFuture<Optional<DiagramJobStatus>> awaitJobStatus(
+      @NotNull(message = "Key not provided") final DiagramKey key,
+      final JobStatus knownStatus,
+      @NotNull(message = "Timeout not provided") final Duration timeout) {
+    final long deadlineNanos = System.nanoTime() + timeout.toNanos();
+    return jobTracker
+        .awaitChange(key, knownStatus, timeout)
+        .thenCompose(
+            status ->
+                status.isPresent()
+                    ? completedFuture(status)
+                    : awaitStoredStatus(key, knownStatus, deadlineNanos));
+  }
+
+  /**
+   * Records that a request could not be queued for processing.
+   *
+   * @param key Diagram key
+   * @param error Error message
+   */
+  public void failed(
+      @NotNull(message = "Key not provided") final DiagramKey key, final String error) {
+    jobTracker.queue(key);
+    jobTracker.fail(key, error);
+  }
+
+  /**
+   * Marks a request that was claimed from the work queue as failed, without processing it, once
+   * it has been claimed too many times. The requester is notified, if they asked to be.
+   *
+   * @param lease Lease on the request
+   * @param error Error message
+   * @return Future that completes when the failed request is stored
+   */
+  public CompletableFuture<Void> failQueued(
+      @NotNull(message = "Lease not provided") final WorkLease lease,
+      @NotNull(message = "Error not provided") final String error) {
+    final DiagramKey key = lease.getKey();
+    logger.log(Level.WARNING, String.format("Giving up on queued request <%s>: %s", key, error));
+    return retrieveRequest(key)
+        .thenCompose(
+            optionalRequest -> {
+              if (optionalRequest.isEmpty()) {
+                return completedFuture(null);
+              }
+              final DiagramRequest diagramRequest = optionalRequest.get();
+              diagramRequest.setError(error);
+              return storeRequest(diagramRequest)
+                  .thenRunAsync(
+                      () -> {
+                        seal(key);
+                        jobTracker.fail(key, error);
+                        if (lease.isNotificationRequested()) {
+                          notificationOutbox.add(diagramRequest);
+                        }
+                      },
+                      ioStage.getHandOffExecutor());
+            });
   }
 
-  @Async
-  public void generateSchemaCrawlerDiagram(
+  /**
+   * Starts generating a diagram for a request. The database is checked, and the size of its schema
+   * is estimated and recorded on the request, and the request is stored. Then the work is queued on
+   * the pipeline stages, and this method returns. When processing completes, the request is stored
+   * again, with a timeline of how long each stage took, and the requester is notified.
+   *
+   * <p>When the work queue is enabled, the uploaded file is stored, and the request is handed to
+   * the work queue, to be processed by whichever instance claims it.
+   *
+   * @param diagramRequest Diagram request
+   * @param localPath Uploaded database file
+   * @return Future that completes when the diagram is stored, or when the request is handed to the
+   *     work queue
+   * @throws ExecutionRuntimeException If the database file is corrupt
+   * @throws java.util.concurrent.RejectedExecutionException If too many requests are waiting to be
+   *     processed
+   */
+  public CompletableFuture<Void> generateSchemaCrawlerDiagram(
       @NotNull(message = "Diagram request not provided") final DiagramRequest diagramRequest,
-      @NotNull(message = "Local path not provided") final Path localPath)
-      throws Exception {
+      @NotNull(message = "Local path not provided") final Path localPath) {
+
+    // Queue wait is counted from when the request was accepted
+    final JobTimeline timeline = new JobTimeline();
+    // Check the database, and estimate the work, before it is queued
+    final SchemaEstimate estimate = preflight(diagramRequest, localPath);
+
+    // Wait for the request to be stored, so that it cannot overwrite the request that is stored
+    // when processing completes
+    storeRequest(diagramRequest).join();
+    jobTracker.queue(diagramRequest.getKey());
+    if (workQueueEnabled) {
+      return handOff(diagramRequest, localPath, true)
+          .handle(
+              (result, throwable) -> {
+                if (throwable == null) {
+                  return CompletableFuture.<Void>completedFuture(null);
+                }
+                // No instance will process the request, so notify that it failed
+                return abandon(diagramRequest, localPath, throwable)
+                    .thenRun(() -> notificationOutbox.add(diagramRequest));
+              })
+          .thenCompose(Function.identity());
+    }
+    // Not waited for, since the requester is only notified once the diagram is stored
+    journal(diagramRequest, localPath);
+    try {
+      return process(diagramRequest, localPath, estimate, timeline, true)
+          // Notify once the diagram is ready, or could not be generated
+          .thenRun(() -> notificationOutbox.add(diagramRequest));
+    } catch (final RuntimeException e) {
+      jobJournal.complete(diagramRequest.getKey());
+      throw e;
+    }
+  }
 
+  /**
+   * Processes a request that was claimed from the work queue. The request and its uploaded file
+   * are read from storage, and the database is checked again, before the diagram is generated.
+   *
+   * @param lease Lease on the request
+   * @return Future that completes when the diagram is stored, or could not be generated, and that
+   *     completes exceptionally if the request could not be read, or if too many requests are
+   *     waiting to be processed, so that it can be processed again
+   */
+  public CompletableFuture<Void> processQueued(
+      @NotNull(message = "Lease not provided") final WorkLease lease) {
+    final DiagramKey key = lease.getKey();
+    final JobTimeline timeline = new JobTimeline();
+    // The request and its upload are read without holding a pipeline thread
+    return retrieveRequest(key)
+        .thenCompose(
+            optionalRequest -> {
+              if (optionalRequest.isEmpty()) {
+                logger.log(
+                    Level.WARNING, String.format("Dropping queued request <%s>, not found", key));
+                return completedFuture(null);
+              }
+              return retrieveUpload(key)
+                  .thenCompose(
+                      localPath ->
+                          processRetrieved(lease, optionalRequest.get(), localPath, timeline));
+            });
+  }
+
+  /**
+   * Processes jobs that were journaled, but had not finished when the application stopped. Jobs
+   * are resubmitted in the background, waiting for room on the I/O stage.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void replayJournal() {
+    final List<JobJournal.JournaledJob> jobs = jobJournal.takeRecovered();
+    if (jobs.isEmpty()) {
+      return;
+    }
+    Thread.ofVirtual().name("job-journal-replay").start(() -> jobs.forEach(this::resume));
+  }
+
+  /**
+   * Gives up on a request that was checked when it was submitted, but could not be processed
+   * later, marking it as failed.
+   */
+  private CompletableFuture<Void> abandon(
+      final DiagramRequest diagramRequest, final Path localPath, final Throwable throwable) {
+    final DiagramKey key = diagramRequest.getKey();
+    diagramRequest.setError(ExceptionUtils.getRootCauseMessage(throwable));
+    deleteLocal(localPath);
+    return storeRequest(diagramRequest)
+        .thenRunAsync(
+            () -> {
+              finish(key, Optional.of(throwable));
+              jobJournal.complete(key);
+            },
+            ioStage.getHandOffExecutor());
+  }
+
+  /** Reads the status of a stored request, until it is different from a known status. */
+  private CompletableFuture<Optional<DiagramJobStatus>> awaitStoredStatus(
+      final DiagramKey key, final JobStatus knownStatus, final long deadlineNanos) {
+    return retrieveRequest(key)
+        .thenCompose(
+            request ->
+                request.isEmpty()
+                    ? completedFuture(Optional.<DiagramJobStatus>empty())
+                    // Storage and the work queue are checked without holding an SDK thread
+                    : CompletableFuture.supplyAsync(
+                        () -> storedStatus(request.get()),
+                        runnable -> Thread.ofVirtual().name("stored-status").start(runnable)))
+        .thenCompose(
+            status -> {
+              final long remainingNanos = deadlineNanos - System.nanoTime();
+              if (status.isEmpty()
+                  || knownStatus == null
+                  || status.get().getStatus() != knownStatus
+                  || knownStatus.isFinished()
+                  || remainingNanos <= 0) {
+                return completedFuture(status);
+              }
+              final long delayNanos = Math.min(STORED_STATUS_POLL.toNanos(), remainingNanos);
+              return CompletableFuture.runAsync(
+                      () -> {}, CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS))
+                  .thenCompose(ignored -> awaitStoredStatus(key, knownStatus, deadlineNanos));
+            });
+  }
+
+  /**
+   * Copies the diagram of a previous render to a new key.
+   *
+   * @param renderedKey Key of the request that was rendered
+   * @param key Key of the new request
+   * @return Future with whether the artifacts could be copied
+   */
+  private CompletableFuture<Boolean> copyRender(
+      final DiagramKey renderedKey, final DiagramKey key, final JobTimeline timeline) {
+    jobTracker.advance(key, JobStatus.STORING);
+    final long startNanos = System.nanoTime();
+    return asyncStorageService
+        .copy(renderedKey, key, PNG)
+        .handle(
+            (result, throwable) -> {
+              if (throwable != null) {
+                logger.log(
+                    Level.WARNING,
+                    String.format("Could not reuse diagram <%s> for <%s>", renderedKey, key),
+                    throwable);
+                return false;
+              }
+              // Counted as an upload on the timeline, but not in the stage metrics, since no
+              // image is uploaded
+              timeline.record(StageMetrics.PNG_STORE, startNanos, System.nanoTime());
+              return true;
+            });
+  }
+
+  private void deleteLocal(final Path localPath) {
+    try {
+      Files.deleteIfExists(localPath);
+    } catch (final IOException e) {
+      logger.log(Level.WARNING, String.format("Could not delete <%s>", localPath), e);
+    }
+  }
+
+  /** Marks a request as done, or as failed, once all of its files are stored. */
+  private void finish(final DiagramKey key, final Optional<Throwable> failure) {
+    seal(key);
+    if (failure.isEmpty()) {
+      jobTracker.advance(key, JobStatus.DONE);
+      return;
+    }
+    final Throwable throwable = failure.get();
+    logger.log(
+        Level.WARNING, String.format("Could not generate diagram for <%s>", key), throwable);
+    jobTracker.fail(key, ExceptionUtils.getRootCauseMessage(throwable));
+  }
+
+  /**
+   * Stores the uploaded file, and hands a checked request to the work queue, so that any instance
+   * can process it. The uploaded file is only deleted once the request is queued.
+   *
+   * @return Future that completes when the request is queued
+   */
+  private CompletableFuture<Void> handOff(
+      final DiagramRequest diagramRequest, final Path localPath, final boolean notify) {
+    final DiagramKey key = diagramRequest.getKey();
+    return metrics
+        .timeAsync(StageMetrics.SQLITE_STORE, () -> store(localPath, key, SQLITE_DB))
+        .thenRunAsync(
+            () -> {
+              // Bundled files can only be read by other instances once they are sealed. Sealing
+              // and queueing block, so they run on the I/O stage, not on the storage completion
+              // thread.
+              seal(key);
+              try {
+                workQueue.submit(key, notify);
+              } catch (final Exception e) {
+                throw new ExecutionRuntimeException(String.format("Could not queue <%s>", key), e);
+              }
+              // Any instance can process the request, so its status is read from storage and
+              // the work queue from now on
+              jobTracker.forget(key);
+              logger.info(String.format("Queued <%s> for any instance to process", key));
+              deleteLocal(localPath);
+            },
+            ioStage.getHandOffExecutor());
+  }
+
+  /**
+   * Journals a queued job, so that it is not lost if the application stops. Jobs are still
+   * processed if they cannot be journaled. The calling thread does not wait for the journal to be
+   * synced to disk.
+   *
+   * @return Future that completes on the I/O stage once the job is on disk, or could not be
+   *     journaled
+   */
+  private CompletableFuture<Void> journal(
+      final DiagramRequest diagramRequest, final Path localPath) {
+    if (workQueueEnabled) {
+      // Kept in the work queue instead
+      return completedFuture(null);
+    }
+    CompletableFuture<Void> journaled;
+    try {
+      journaled = jobJournal.accept(diagramRequest, localPath);
+    } catch (final RuntimeException e) {
+      journaled = CompletableFuture.failedFuture(e);
+    }
+    // Continued off the journal writer thread, so that it is not held up by what follows
+    return journaled.handleAsync(
+        (result, throwable) -> {
+          if (throwable != null) {
+            logger.log(
+                Level.WARNING,
+                String.format("Could not journal request <%s>", diagramRequest.getKey()),
+                throwable);
+          }
+          return null;
+        },
+        ioStage.getHandOffExecutor());
+  }
+
+  /** Checks the database, and estimates the size of its schema, recording it on the request. */
+  private SchemaEstimate preflight(final DiagramRequest diagramRequest, final Path localPath) {
+    // Formatted lazily, so the message is only built if it is logged
+    final String threadName = Thread.currentThread().getName();
+    logger.info(
+        () -> String.format("Processing in thread %s%n%s", threadName, diagramRequest));
+
+    final SchemaEstimate estimate =
+        metrics.time(
+            StageMetrics.PREFLIGHT, () -> SchemaAnalyzer.analyze(localPath, preflightTimeout));
+    final SchemaSize schemaSize = lanes.sizeClass(estimate.getEstimatedCost());
+    diagramRequest.setEstimatedCost(estimate.getEstimatedCost());
+    diagramRequest.setSchemaSize(schemaSize);
     logger.info(
         String.format(
-            "Processing in thread %s%n%s", Thread.currentThread().getName(), diagramRequest));
+            "Schema for <%s> is %s: %s", diagramRequest.getKey(), schemaSize, estimate));
+    return estimate;
+  }
+
+  /** Queues the work for a checked request on the pipeline stages. */
+  private CompletableFuture<Void> process(
+      final DiagramRequest diagramRequest,
+      final Path localPath,
+      final SchemaEstimate estimate,
+      final JobTimeline timeline,
+      final boolean storeUpload) {
 
     final DiagramKey key = diagramRequest.getKey();
 
-    // Store the uploaded database file
-    storageService.store(new PathResource(localPath), key, SQLITE_DB);
+    // Store the uploaded database file, while the diagram is being generated, unless it was
+    // stored before the request was queued
+    final CompletableFuture<Void> stored =
+        storeUpload
+            ? timeStageAsync(
+                timeline, StageMetrics.SQLITE_STORE, () -> store(localPath, key, SQLITE_DB))
+            : completedFuture(null);
+
+    // Diagrams depend only on the schema, not on table data, so they are cached by a schema
+    // fingerprint
+    final CompletableFuture<Void> rendered =
+        renderOrReuse(diagramRequest, localPath, estimate.getSchemaFingerprint(), timeline);
+
+    return CompletableFuture.allOf(stored, rendered)
+        .handle((result, throwable) -> Optional.ofNullable(throwable))
+        .thenCompose(
+            failure -> {
+              // Every stage is done with the uploaded file
+              deleteLocal(localPath);
+              // Store the timeline, and any error, before the status changes, so that they can
+              // be read once the request is done, on any instance
+              diagramRequest.setTimeline(timeline.toTimeline());
+              failure.ifPresent(
+                  throwable ->
+                      diagramRequest.setError(ExceptionUtils.getRootCauseMessage(throwable)));
+              // Sealing blocks, so it runs on the I/O stage, not on the storage completion thread
+              return storeRequest(diagramRequest)
+                  .thenRunAsync(
+                      () -> {
+                        finish(key, failure);
+                        jobJournal.complete(key);
+                        // Callbacks are retried in the background, and do not hold up the job
+                        callbackService.send(diagramRequest);
+                      },
+                      ioStage.getHandOffExecutor());
+            });
+  }
+
+  /** Processes a request from the work queue, once it has been read from storage. */
+  private CompletableFuture<Void> processRetrieved(
+      final WorkLease lease,
+      final DiagramRequest diagramRequest,
+      final Path localPath,
+      final JobTimeline timeline) {
+    jobTracker.queue(diagramRequest.getKey());
+    try {
+      return supplyOnStage(
+              timeline,
+              StageMetrics.PREFLIGHT,
+              () -> {
+                final SchemaEstimate estimate = preflight(diagramRequest, localPath);
+                return process(diagramRequest, localPath, estimate, timeline, false);
+              },
+              ioStage.getExecutor())
+          .thenCompose(Function.identity())
+          .exceptionally(
+              throwable -> {
+                abandon(diagramRequest, localPath, throwable);
+                return null;
+              })
+          .thenRun(
+              () -> {
+                if (lease.isNotificationRequested()) {
+                  notificationOutbox.add(diagramRequest);
+                }
+              });
+    } catch (final RuntimeException e) {
+      deleteLocal(localPath);
+      throw e;
+    }
+  }
 
+  /**
+   * Renders a diagram, unless an identical diagram was rendered before, or is being rendered now.
+   */
+  private CompletableFuture<Void> renderOrReuse(
+      final DiagramRequest diagramRequest,
+      final Path localPath,
+      final String schemaFingerprint,
+      final JobTimeline timeline) {
+
+    final DiagramKey key = diagramRequest.getKey();
+    final String cacheKey =
+        renderCache.cacheKey(schemaFingerprint, diagramRequest.getTitle(), png.getFormat());
+
+    // Reuse a previous render of the same file, with the same options
+    final Optional<DiagramKey> cachedKey = renderCache.lookup(cacheKey);
+    if (cachedKey.isPresent()) {
+      return copyRender(cachedKey.get(), key, timeline)
+          .thenCompose(
+              copied -> {
+                if (copied) {
+                  logger.info(String.format("Reused diagram <%s> for <%s>", cachedKey.get(), key));
+                  return completedFuture(null);
+                }
+                renderCache.remove(cacheKey, cachedKey.get());
+                return renderOnce(
+                    diagramRequest, localPath, schemaFingerprint, cacheKey, timeline);
+              });
+    }
+    return renderOnce(diagramRequest, localPath, schemaFingerprint, cacheKey, timeline);
+  }
+
+  /**
+   * Renders a diagram, or waits for an identical render that is already in progress, instead of
+   * starting another one.
+   */
+  private CompletableFuture<Void> renderOnce(
+      final DiagramRequest diagramRequest,
+      final Path localPath,
+      final String schemaFingerprint,
+      final String cacheKey,
+      final JobTimeline timeline) {
+
+    final DiagramKey key = diagramRequest.getKey();
+
+    final CompletableFuture<DiagramKey> render = new CompletableFuture<>();
+    final Optional<CompletableFuture<DiagramKey>> inFlightRender =
+        renderCache.joinOrLead(cacheKey, render);
+    if (inFlightRender.isPresent()) {
+      return inFlightRender
+          .get()
+          .handle((renderedKey, throwable) -> Optional.ofNullable(renderedKey))
+          .thenCompose(
+              renderedKey -> {
+                if (renderedKey.isEmpty()) {
+                  return render(diagramRequest, localPath, schemaFingerprint, timeline);
+                }
+                return copyRender(renderedKey.get(), key, timeline)
+                    .thenCompose(
+                        copied -> {
+                          if (copied) {
+                            logger.info(
+                                String.format(
+                                    "Shared diagram <%s> with <%s>", renderedKey.get(), key));
+                            return completedFuture(null);
+                          }
+                          return render(diagramRequest, localPath, schemaFingerprint, timeline);
+                        });
+              });
+    }
+
+    final CompletableFuture<Void> leaderRender;
+    try {
+      leaderRender = render(diagramRequest, localPath, schemaFingerprint, timeline);
+    } catch (final RuntimeException e) {
+      // Let waiting requests render for themselves
+      render.completeExceptionally(e);
+      renderCache.finish(cacheKey, render);
+      throw e;
+    }
+    return leaderRender.whenComplete(
+            (result, throwable) -> {
+              if (throwable == null) {
+                renderCache.put(cacheKey, key);
+                render.complete(key);
+              } else {
+                render.completeExceptionally(throwable);
+              }
+              renderCache.finish(cacheKey, render);
+            });
+  }
+
+  private CompletableFuture<Void> render(
+      final DiagramRequest diagramRequest,
+      final Path localPath,
+      final String schemaFingerprint,
+      final JobTimeline timeline) {
+
+    final DiagramKey key = diagramRequest.getKey();
+    final SchemaSize schemaSize = diagramRequest.getSchemaSize();
+
+    // Crawl the database, unless the same schema was crawled before, and store the catalog so
+    // that the diagram can be rendered again without crawling. The request was accepted, and the
+    // work may continue from a storage completion thread, so it waits when a stage is full.
+    final CompletableFuture<Optional<Catalog>> reusedCatalog = reuseCatalog(schemaFingerprint, key);
+    final CompletableFuture<Catalog> catalog =
+        reusedCatalog.thenCompose(
+            optionalCatalog -> {
+              if (optionalCatalog.isPresent()) {
+                return completedFuture(optionalCatalog.get());
+              }
+              return supplyOnStage(
+                  timeline,
+                  StageMetrics.CRAWL,
+                  () -> {
+                    jobTracker.advance(key, JobStatus.CRAWLING);
+                    return timeStage(
+                        timeline, StageMetrics.CRAWL, () -> DiagramUtility.crawl(localPath));
+                  },
+                  lanes.crawlStage(schemaSize).getHandOffExecutor());
+            });
+    final CompletableFuture<Void> catalogStored =
+        reusedCatalog
+            .thenCombineAsync(
+                catalog,
+                (optionalCatalog, crawledCatalog) -> {
+                  if (optionalCatalog.isPresent()) {
+                    return CompletableFuture.<Void>completedFuture(null);
+                  }
+                  return storeCatalog(crawledCatalog, key)
+                      .thenRun(() -> renderCache.putCatalog(schemaFingerprint, key));
+                },
+                ioStage.getHandOffExecutor())
+            .thenCompose(Function.identity());
+
+    // Render a diagram from the catalog, and store the generated image
     final String title = diagramRequest.getTitle();
-    // Generate a database integration, and store the generated image
-    final Path schemaCrawlerDiagram = executeForOutput(localPath, title, png);
-    storageService.store(new PathResource(schemaCrawlerDiagram), key, PNG);
+    final CompletableFuture<Void> diagramStored =
+        catalog
+            .thenCompose(
+                crawledCatalog ->
+                    supplyOnStage(
+                        timeline,
+                        StageMetrics.RENDER,
+                        () -> {
+                          jobTracker.advance(key, JobStatus.RENDERING);
+                          return timeStage(
+                              timeline,
+                              StageMetrics.RENDER,
+                              () -> DiagramUtility.render(crawledCatalog, title, png));
+                        },
+                        lanes.renderStage(schemaSize).getHandOffExecutor()))
+            .thenCompose(
+                schemaCrawlerDiagram -> {
+                  jobTracker.advance(key, JobStatus.STORING);
+                  return timeStageAsync(
+                      timeline,
+                      StageMetrics.PNG_STORE,
+                      () -> storeDiagram(schemaCrawlerDiagram, key));
+                });
+
+    return CompletableFuture.allOf(catalogStored, diagramStored);
+  }
+
+  /**
+   * Processes a journaled job again, from its spooled file. Jobs are submitted again after a
+   * pause while the I/O stage is full.
+   */
+  private void resume(final JobJournal.JournaledJob job) {
+    final DiagramRequest diagramRequest = job.diagramRequest();
+    final DiagramKey key = diagramRequest.getKey();
+    final Path localPath = job.localPath();
+    logger.info(String.format("Processing <%s> again, from the job journal", key));
+    jobTracker.queue(key);
+    final JobTimeline timeline = new JobTimeline();
+
+    while (true) {
+      try {
+        supplyOnStage(
+                timeline,
+                StageMetrics.PREFLIGHT,
+                () -> preflight(diagramRequest, localPath),
+                ioStage.getExecutor())
+            .thenCompose(
+                estimate ->
+                    storeRequest(diagramRequest)
+                        .thenRun(
+                            () -> process(diagramRequest, localPath, estimate, timeline, true)))
+            .exceptionally(
+                throwable -> {
+                  abandon(diagramRequest, localPath, throwable);
+                  return null;
+                });
+        return;
+      } catch (final RejectedExecutionException e) {
+        try {
+          TimeUnit.SECONDS.sleep(1);
+        } catch (final InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /** Reads a stored request. */
+  private CompletableFuture<Optional<DiagramRequest>> retrieveRequest(final DiagramKey key) {
+    return asyncStorageService
+        .retrieve(key, JSON)
+        .thenApply(
+            json ->
+                json.map(
+                    bytes ->
+                        DiagramRequest.fromJson(
+                            new InputStreamReader(new ByteArrayInputStream(bytes), UTF_8))));
+  }
+
+  /**
+   * Downloads a stored upload to a temporary file, which belongs to the request, and is deleted
+   * once the request is processed.
+   */
+  private CompletableFuture<Path> retrieveUpload(final DiagramKey key) {
+    final Path localPath;
+    try {
+      localPath = Files.createTempFile("sc-webapp.", "." + SQLITE_DB.getExtension());
+    } catch (final IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    return asyncStorageService
+        .retrieveLocal(key, SQLITE_DB, localPath)
+        .whenComplete(
+            (downloaded, throwable) -> {
+              if (throwable != null || downloaded.isEmpty()) {
+                deleteLocal(localPath);
+              }
+            })
+        .thenApply(
+            downloaded ->
+                downloaded.orElseThrow(
+                    () ->
+                        new ExecutionRuntimeException(
+                            String.format("No uploaded file for <%s>", key))));
+  }
+
+  /**
+   * Loads the catalog for a schema that was previously crawled, and stores a copy for the new key.
+   *
+   * @param schemaFingerprint Fingerprint of the database schema
+   * @param key Key of the new request
+   * @return Catalog, if one was stored for the schema
+   */
+  private CompletableFuture<Optional<Catalog>> reuseCatalog(
+      final String schemaFingerprint, final DiagramKey key) {
+    jobTracker.advance(key, JobStatus.CRAWLING);
+    final Optional<DiagramKey> catalogKey = renderCache.lookupCatalog(schemaFingerprint);
+    if (catalogKey.isEmpty()) {
+      return completedFuture(Optional.empty());
+    }
+    // The catalog is read without holding a pipeline thread, and is then loaded on the I/O stage
+    return asyncStorageService
+        .retrieve(catalogKey.get(), CATALOG)
+        .thenApplyAsync(
+            catalogBytes ->
+                catalogBytes.map(
+                    bytes -> DiagramUtility.readCatalog(new ByteArrayInputStream(bytes))),
+            ioStage.getHandOffExecutor())
+        .thenCompose(
+            catalog -> {
+              if (catalog.isEmpty()) {
+                return completedFuture(catalog);
+              }
+              return asyncStorageService
+                  .copy(catalogKey.get(), key, CATALOG)
+                  .thenApply(
+                      copied -> {
+                        logger.info(
+                            String.format("Reused catalog <%s> for <%s>", catalogKey.get(), key));
+                        return catalog;
+                      });
+            })
+        .exceptionally(
+            throwable -> {
+              logger.log(
+                  Level.WARNING,
+                  String.format("Could not reuse catalog <%s> for <%s>", catalogKey.get(), key),
+                  throwable);
+              return Optional.empty();
+            })
+        .thenApply(
+            catalog -> {
+              if (catalog.isEmpty()) {
+                renderCache.removeCatalog(schemaFingerprint, catalogKey.get());
+              }
+              return catalog;
+            });
+  }
+
+  /** Marks that all files for a request have been stored. */
+  private void seal(final DiagramKey key) {
+    try {
+      storageService.seal(key);
+    } catch (final Exception e) {
+      logger.log(Level.WARNING, String.format("Could not seal files for <%s>", key), e);
+    }
+  }
+
+  private CompletableFuture<Void> store(
+      final Path file, final DiagramKey key, final FileExtensionType extension) {
+    return asyncStorageService
+        .store(file, key, extension)
+        .handle(
+            (result, throwable) -> {
+              if (throwable != null) {
+                throw new ExecutionRuntimeException(
+                    String.format("Could not store <%s.%s>", key, extension.getExtension()),
+                    throwable);
+              }
+              return null;
+            });
+  }
+
+  /**
+   * Writes the catalog to a temporary file on the calling thread, and stores it. The temporary
+   * file is deleted once it is stored.
+   */
+  private CompletableFuture<Void> storeCatalog(final Catalog catalog, final DiagramKey key) {
+    Path catalogFile = null;
+    try {
+      catalogFile = Files.createTempFile("sc-webapp.", "." + CATALOG.getExtension());
+      DiagramUtility.writeCatalog(catalog, catalogFile);
+    } catch (final IOException e) {
+      if (catalogFile != null) {
+        catalogFile.toFile().delete();
+      }
+      throw new ExecutionRuntimeException(
+          String.format("Could not store catalog for <%s>", key), e);
+    }
+    final Path storedFile = catalogFile;
+    return store(storedFile, key, CATALOG)
+        .whenComplete((result, throwable) -> storedFile.toFile().delete());
+  }
+
+  private CompletableFuture<Void> storeDiagram(final Path diagramFile, final DiagramKey key) {
+    try {
+      metrics.recordDiagramSize(Files.size(diagramFile));
+    } catch (final IOException e) {
+      logger.log(Level.FINE, String.format("Could not get size of <%s>", diagramFile), e);
+    }
+    return store(diagramFile, key, PNG);
+  }
+
+  /**
+   * Status of a stored request. Requests are stored with an error if they failed, and with a
+   * timeline once they are processed, and requests that were stored before timelines were kept
+   * are done if their diagram is stored. Other requests are only queued while they are in the
+   * work queue, and otherwise their status is not known.
+   */
+  private Optional<DiagramJobStatus> storedStatus(final DiagramRequest diagramRequest) {
+    final DiagramKey key = diagramRequest.getKey();
+    final JobStatus status;
+    try {
+      if (diagramRequest.getError() != null) {
+        status = JobStatus.FAILED;
+      } else if (diagramRequest.getTimeline() != null
+          || storageService.describe(key, PNG).isPresent()) {
+        status = JobStatus.DONE;
+      } else if (workQueueEnabled && workQueue.isQueued(key)) {
+        status = JobStatus.QUEUED;
+      } else {
+        return Optional.empty();
+      }
+    } catch (final Exception e) {
+      logger.log(Level.WARNING, String.format("Could not read status of <%s>", key), e);
+      return Optional.empty();
+    }
+    return Optional.of(new DiagramJobStatus(key, status, diagramRequest.getError(), Instant.now()));
+  }
+
+  /**
+   * Stores a request. Failures are logged, and the returned future always completes normally.
+   */
+  private CompletableFuture<Void> storeRequest(final DiagramRequest diagramRequest) {
+    final DiagramKey key = diagramRequest.getKey();
+    CompletableFuture<Void> stored;
+    try {
+      stored = asyncStorageService.store(diagramRequest.toJsonBytes(), key, JSON);
+    } catch (final RuntimeException e) {
+      stored = CompletableFuture.failedFuture(e);
+    }
+    return stored.exceptionally(
+        throwable -> {
+          logger.log(
+              Level.WARNING, String.format("Could not store request <%s>", key), throwable);
+          return null;
+        });
+  }
+
+  /**
+   * Hands work to a pipeline stage, and records how long it waits in the queue of the stage, for
+   * the timeline of the request.
+   */
+  private <T> CompletableFuture<T> supplyOnStage(
+      final JobTimeline timeline,
+      final String stage,
+      final Supplier<T> work,
+      final Executor executor) {
+    final long submittedNanos = System.nanoTime();
+    return supplyAsync(
+        () -> {
+          timeline.recordWait(stage, submittedNanos, System.nanoTime());
+          return work.get();
+        },
+        executor);
+  }
+
+  /** Times a stage, for the stage metrics and for the timeline of the request. */
+  private <T> T timeStage(final JobTimeline timeline, final String stage, final Supplier<T> work) {
+    final long startNanos = System.nanoTime();
+    try {
+      return metrics.time(stage, work);
+    } finally {
+      timeline.record(stage, startNanos, System.nanoTime());
+    }
+  }
+
+  /** Times a stage that completes asynchronously, until the returned future completes. */
+  private <T> CompletableFuture<T> timeStageAsync(
+      final JobTimeline timeline,
+      final String stage,
+      final Supplier<CompletableFuture<T>> work) {
+    final long startNanos = System.nanoTime();
+    return metrics
+        .timeAsync(stage, work)
+        .whenComplete(
+            (result, throwable) -> timeline.record(stage, startNanos, System.nanoTime()));
   }
 }
@@ -0,0 +1,197 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.processing;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+
+/**
+ * Content-addressed index of rendered diagrams. Maps the schema fingerprint of an uploaded
+ * database, together with the options that affect rendering, to the key of a request that has
+ * already been rendered, and maps schema fingerprints to requests with a stored catalog. Also
+ * tracks renders that are in progress, so that concurrent identical requests can share a single
+ * render.
+ */
+@Component
+public class RenderCache {
+
+  private final Map<String, DiagramKey> index;
+  private final Map<String, DiagramKey> catalogs;
+  private final ConcurrentMap<String, CompletableFuture<DiagramKey>> inFlight;
+
+  public RenderCache(@Value("${SC_WEBAPP_RENDER_CACHE_SIZE:10000}") final int maxEntries) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("Render cache size must be positive");
+    }
+    index = newIndex(maxEntries);
+    catalogs = newIndex(maxEntries);
+    inFlight = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Builds the cache key for a diagram, from the schema fingerprint and the rendering options.
+   *
+   * @param schemaFingerprint Fingerprint of the database schema
+   * @param title Diagram title
+   * @param outputFormat Diagram output format
+   * @return Cache key
+   */
+  public String cacheKey(
+      final String schemaFingerprint, final String title, final String outputFormat) {
+    requireNonNull(schemaFingerprint, "No schema fingerprint provided");
+    requireNonNull(outputFormat, "No output format provided");
+    return String.join("\n", schemaFingerprint, Objects.toString(title, ""), outputFormat);
+  }
+
+  /**
+   * Marks the end of an in-flight render, and removes it from the in-flight table.
+   *
+   * @param cacheKey Cache key
+   * @param render Render that was registered with {@link #joinOrLead(String, CompletableFuture)}
+   */
+  public void finish(final String cacheKey, final CompletableFuture<DiagramKey> render) {
+    inFlight.remove(cacheKey, render);
+  }
+
+  /**
+   * Registers a render as in-flight for a cache key, unless another render is already in
+   * progress.
+   *
+   * @param cacheKey Cache key
+   * @param render Render to register
+   * @return The render that is already in progress, or empty if the provided render is now the
+   *     leader and needs to be carried out
+   */
+  public Optional<CompletableFuture<DiagramKey>> joinOrLead(
+      final String cacheKey, final CompletableFuture<DiagramKey> render) {
+    return Optional.ofNullable(inFlight.putIfAbsent(cacheKey, render));
+  }
+
+  /**
+   * Looks up the key of a request that has a stored catalog for a schema.
+   *
+   * @param schemaFingerprint Fingerprint of the database schema
+   * @return Key of the request with the stored catalog, if one is known
+   */
+  public Optional<DiagramKey> lookupCatalog(final String schemaFingerprint) {
+    synchronized (catalogs) {
+      return Optional.ofNullable(catalogs.get(schemaFingerprint));
+    }
+  }
+
+  /**
+   * Looks up the key of a request that has already been rendered with the same cache key.
+   *
+   * @param cacheKey Cache key
+   * @return Key of the rendered request, if one is known
+   */
+  public Optional<DiagramKey> lookup(final String cacheKey) {
+    synchronized (index) {
+      return Optional.ofNullable(index.get(cacheKey));
+    }
+  }
+
+  /**
+   * Records a completed render.
+   *
+   * @param cacheKey Cache key
+   * @param key Key of the request that holds the rendered artifacts
+   */
+  public void put(final String cacheKey, final DiagramKey key) {
+    synchronized (index) {
+      index.put(cacheKey, key);
+    }
+  }
+
+  /**
+   * Records a stored catalog.
+   *
+   * @param schemaFingerprint Fingerprint of the database schema
+   * @param key Key of the request that holds the stored catalog
+   */
+  public void putCatalog(final String schemaFingerprint, final DiagramKey key) {
+    synchronized (catalogs) {
+      catalogs.put(schemaFingerprint, key);
+    }
+  }
+
+  /**
+   * Forgets a cached render, for example when its artifacts can no longer be found.
+   *
+   * @param cacheKey Cache key
+   * @param key Key of the request that was cached
+   */
+  public void remove(final String cacheKey, final DiagramKey key) {
+    synchronized (index) {
+      index.remove(cacheKey, key);
+    }
+  }
+
+  /**
+   * Forgets a stored catalog, for example when it can no longer be found.
+   *
+   * @param schemaFingerprint Fingerprint of the database schema
+   * @param key Key of the request that was cached
+   */
+  public void removeCatalog(final String schemaFingerprint, final DiagramKey key) {
+    synchronized (catalogs) {
+      catalogs.remove(schemaFingerprint, key);
+    }
+  }
+
+  public int size() {
+    synchronized (index) {
+      return index.size();
+    }
+  }
+
+  private static Map<String, DiagramKey> newIndex(final int maxEntries) {
+    // Access-ordered, so the least recently used entry is evicted first
+    return new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = -2491307264013465741L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, DiagramKey> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+}
@@ -0,0 +1,160 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.processing;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import org.sqlite.SQLiteConfig;
+
+import schemacrawler.schemacrawler.exceptions.ExecutionRuntimeException;
+
+/**
+ * Cheap checks of an uploaded SQLite database, run before it is queued for processing. Reads the
+ * database header and <code>sqlite_master</code>, and runs a time-limited integrity check, so that
+ * corrupt files fail straight away.
+ */
+public final class SchemaAnalyzer {
+
+  private static final int HEADER_SIZE = 100;
+
+  private static final String COUNTS_SQL =
+      "SELECT "
+          + "(SELECT COUNT(*) FROM sqlite_master WHERE type = 'table'), "
+          + "(SELECT COUNT(*) FROM sqlite_master WHERE type = 'view'), "
+          + "(SELECT COUNT(*) FROM sqlite_master WHERE type = 'index'), "
+          + "(SELECT COUNT(*) FROM sqlite_master m, pragma_table_info(m.name) "
+          + "WHERE m.type IN ('table', 'view')), "
+          + "(SELECT COUNT(*) FROM sqlite_master m, pragma_foreign_key_list(m.name) "
+          + "WHERE m.type = 'table')";
+
+  /**
+   * Analyzes a SQLite database file.
+   *
+   * @param databaseFile SQLite database file
+   * @param checkTimeout Maximum time for the integrity check
+   * @return Measurements and cost estimate
+   * @throws ExecutionRuntimeException If the file is not a readable, intact SQLite database
+   */
+  public static SchemaEstimate analyze(final Path databaseFile, final Duration checkTimeout) {
+    requireNonNull(databaseFile, "No database file provided");
+    requireNonNull(checkTimeout, "No check timeout provided");
+
+    // Read the page size and page count from the database header, and check that the file is as
+    // long as the header says, which catches truncated uploads
+    final ByteBuffer header = readHeader(databaseFile);
+    final int rawPageSize = Short.toUnsignedInt(header.getShort(16));
+    final int pageSize = rawPageSize == 1 ? 65536 : rawPageSize;
+    final long fileSize = size(databaseFile);
+    final long pageCount;
+    // The page count is only valid if the "version valid for" number matches the change counter
+    if (header.getInt(92) == header.getInt(24) && header.getInt(28) != 0) {
+      pageCount = Integer.toUnsignedLong(header.getInt(28));
+    } else {
+      pageCount = fileSize / pageSize;
+    }
+    if (pageSize < 512 || pageCount * pageSize > fileSize) {
+      throw new ExecutionRuntimeException(
+          String.format("SQLite database file is corrupt or incomplete <%s>", databaseFile));
+    }
+
+    final SQLiteConfig config = new SQLiteConfig();
+    config.setReadOnly(true);
+    final String url = "jdbc:sqlite:" + databaseFile.toAbsolutePath();
+    try (final Connection connection = DriverManager.getConnection(url, config.toProperties());
+        final Statement statement = connection.createStatement()) {
+
+      // Stop at the first problem, and give up on very large files after the timeout
+      statement.setQueryTimeout((int) Math.max(1, checkTimeout.toSeconds()));
+      try (final ResultSet results = statement.executeQuery("PRAGMA quick_check(1)")) {
+        final String result = results.next() ? results.getString(1) : null;
+        if (!"ok".equalsIgnoreCase(result)) {
+          throw new ExecutionRuntimeException(
+              String.format("SQLite database file is corrupt: %s", result));
+        }
+      }
+      statement.setQueryTimeout(0);
+
+      try (final ResultSet results = statement.executeQuery(COUNTS_SQL)) {
+        results.next();
+        return new SchemaEstimate(
+            pageSize,
+            pageCount,
+            results.getInt(1),
+            results.getInt(2),
+            results.getInt(3),
+            results.getInt(4),
+            results.getInt(5),
+            SchemaFingerprint.fingerprint(connection));
+      }
+    } catch (final SQLException e) {
+      throw new ExecutionRuntimeException(
+          String.format("Could not analyze SQLite database <%s>", databaseFile), e);
+    }
+  }
+
+  private static ByteBuffer readHeader(final Path databaseFile) {
+    try (final InputStream inputStream = Files.newInputStream(databaseFile)) {
+      final byte[] header = inputStream.readNBytes(HEADER_SIZE);
+      if (header.length < HEADER_SIZE) {
+        throw new ExecutionRuntimeException(
+            String.format("SQLite database file is too short <%s>", databaseFile));
+      }
+      // SQLite stores numbers in the header in big-endian order, which is the default
+      return ByteBuffer.wrap(header);
+    } catch (final IOException e) {
+      throw new ExecutionRuntimeException(
+          String.format("Could not read SQLite database header <%s>", databaseFile), e);
+    }
+  }
+
+  private static long size(final Path databaseFile) {
+    try {
+      return Files.size(databaseFile);
+    } catch (final IOException e) {
+      throw new ExecutionRuntimeException(
+          String.format("Could not read SQLite database file <%s>", databaseFile), e);
+    }
+  }
+
+  private SchemaAnalyzer() {
+    // Prevent instantiation
+  }
+}
@@ -0,0 +1,122 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.processing;
+
+/**
+ * Pre-flight measurements of a SQLite database, and an estimate of how much work it is to crawl
+ * the database and render a diagram.
+ */
+public final class SchemaEstimate {
+
+  private final int pageSize;
+  private final long pageCount;
+  private final int tables;
+  private final int views;
+  private final int indexes;
+  private final int columns;
+  private final int foreignKeys;
+  private final String schemaFingerprint;
+
+  SchemaEstimate(
+      final int pageSize,
+      final long pageCount,
+      final int tables,
+      final int views,
+      final int indexes,
+      final int columns,
+      final int foreignKeys,
+      final String schemaFingerprint) {
+    this.pageSize = pageSize;
+    this.pageCount = pageCount;
+    this.tables = tables;
+    this.views = views;
+    this.indexes = indexes;
+    this.columns = columns;
+    this.foreignKeys = foreignKeys;
+    this.schemaFingerprint = schemaFingerprint;
+  }
+
+  public int getColumns() {
+    return columns;
+  }
+
+  /**
+   * Estimated cost of crawling the database and rendering a diagram, in arbitrary units. Tables and
+   * views become nodes in the diagram, and foreign keys become edges, which make the most work for
+   * graph layout. Columns and indexes each add a little to crawling and to the size of each node.
+   *
+   * @return Estimated cost
+   */
+  public long getEstimatedCost() {
+    return 10L * (tables + views) + 5L * foreignKeys + columns + indexes;
+  }
+
+  public int getForeignKeys() {
+    return foreignKeys;
+  }
+
+  public int getIndexes() {
+    return indexes;
+  }
+
+  public long getPageCount() {
+    return pageCount;
+  }
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public String getSchemaFingerprint() {
+    return schemaFingerprint;
+  }
+
+  public int getTables() {
+    return tables;
+  }
+
+  public int getViews() {
+    return views;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%d pages of %d bytes, %d tables, %d views, %d columns, %d indexes, %d foreign keys, cost"
+            + " %d",
+        pageCount,
+        pageSize,
+        tables,
+        views,
+        columns,
+        indexes,
+        foreignKeys,
+        getEstimatedCost());
+  }
+}
@@ -0,0 +1,144 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.processing;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HexFormat;
+
+import org.sqlite.SQLiteConfig;
+
+import schemacrawler.schemacrawler.exceptions.ExecutionRuntimeException;
+
+/**
+ * Computes a canonical fingerprint of the schema of a SQLite database. The fingerprint depends only
+ * on the DDL in <code>sqlite_master</code>, so it does not change when table data changes.
+ */
+public final class SchemaFingerprint {
+
+  // Sort so that the fingerprint does not depend on the order in which objects were created
+  private static final String SCHEMA_SQL =
+      "SELECT type, name, tbl_name, sql FROM sqlite_master "
+          + "WHERE sql IS NOT NULL ORDER BY type, name";
+
+  /**
+   * Computes a SHA-256 fingerprint of the schema of a SQLite database.
+   *
+   * @param databaseFile SQLite database file
+   * @return Hex encoded fingerprint
+   */
+  public static String fingerprint(final Path databaseFile) {
+    requireNonNull(databaseFile, "No database file provided");
+
+    final SQLiteConfig config = new SQLiteConfig();
+    config.setReadOnly(true);
+    final String url = "jdbc:sqlite:" + databaseFile.toAbsolutePath();
+    try (final Connection connection = DriverManager.getConnection(url, config.toProperties())) {
+      return fingerprint(connection);
+    } catch (final SQLException e) {
+      throw new ExecutionRuntimeException(
+          String.format("Could not read schema of <%s>", databaseFile), e);
+    }
+  }
+
+  /**
+   * Computes a SHA-256 fingerprint of the schema of an open SQLite database.
+   *
+   * @param connection Connection to the SQLite database
+   * @return Hex encoded fingerprint
+   * @throws SQLException On an exception reading the schema
+   */
+  static String fingerprint(final Connection connection) throws SQLException {
+    requireNonNull(connection, "No connection provided");
+
+    try (final Statement statement = connection.createStatement();
+        final ResultSet results = statement.executeQuery(SCHEMA_SQL)) {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      while (results.next()) {
+        for (int i = 1; i <= 4; i++) {
+          digest.update(normalize(results.getString(i)).getBytes(UTF_8));
+          digest.update((byte) 0);
+        }
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (final NoSuchAlgorithmException e) {
+      throw new ExecutionRuntimeException("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * Collapses runs of whitespace, so that formatting changes do not change the fingerprint.
+   * Whitespace in quoted literals and identifiers is kept, since it changes the schema.
+   */
+  private static String normalize(final String value) {
+    if (value == null) {
+      return "";
+    }
+    final StringBuilder normalized = new StringBuilder(value.length());
+    char closingQuote = 0;
+    boolean pendingSpace = false;
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (closingQuote != 0) {
+        // A doubled quote closes and reopens the literal, so it needs no special handling
+        normalized.append(c);
+        if (c == closingQuote) {
+          closingQuote = 0;
+        }
+      } else if (Character.isWhitespace(c)) {
+        pendingSpace = normalized.length() > 0;
+      } else {
+        if (pendingSpace) {
+          normalized.append(' ');
+          pendingSpace = false;
+        }
+        normalized.append(c);
+        if (c == '\'' || c == '"' || c == '`') {
+          closingQuote = c;
+        } else if (c == '[') {
+          closingQuote = ']';
+        }
+      }
+    }
+    return normalized.toString();
+  }
+
+  private SchemaFingerprint() {
+    // Prevent instantiation
+  }
+}
@@ -0,0 +1,172 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.processing;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Times the stages of handling a diagram request, with each timing tagged by whether the stage
+ * succeeded or failed, and records the sizes of uploads and diagrams.
+ */
+@Component
+public class StageMetrics {
+
+  public static final String SPOOL = "spool";
+  public static final String MIME_CHECK = "mime.check";
+  public static final String PREFLIGHT = "preflight";
+  public static final String SQLITE_STORE = "sqlite.store";
+  public static final String CRAWL = "crawl";
+  public static final String RENDER = "render";
+  public static final String PNG_STORE = "png.store";
+  public static final String NOTIFICATION = "notification";
+
+  private final MeterRegistry registry;
+  private final DistributionSummary uploadSizes;
+  private final DistributionSummary diagramSizes;
+
+  public StageMetrics(
+      @NotNull(message = "MeterRegistry not provided") final MeterRegistry registry) {
+    this.registry = registry;
+    uploadSizes =
+        DistributionSummary.builder("diagram.upload.size")
+            .baseUnit("bytes")
+            .description("Size of uploaded database files")
+            .register(registry);
+    diagramSizes =
+        DistributionSummary.builder("diagram.png.size")
+            .baseUnit("bytes")
+            .description("Size of generated diagrams")
+            .register(registry);
+  }
+
+  public void recordDiagramSize(final long bytes) {
+    diagramSizes.record(bytes);
+  }
+
+  public void recordUploadSize(final long bytes) {
+    uploadSizes.record(bytes);
+  }
+
+  /**
+   * Times a stage.
+   *
+   * @param stage Stage name
+   * @param work Work to do in the stage
+   */
+  public void time(final String stage, final Runnable work) {
+    time(
+        stage,
+        () -> {
+          work.run();
+          return null;
+        });
+  }
+
+  /**
+   * Times a stage.
+   *
+   * @param stage Stage name
+   * @param work Work to do in the stage
+   * @return Result of the work
+   */
+  public <T> T time(final String stage, final Supplier<T> work) {
+    final Timer.Sample sample = Timer.start(registry);
+    try {
+      final T result = work.get();
+      sample.stop(timer(stage, "success"));
+      return result;
+    } catch (final RuntimeException | Error e) {
+      sample.stop(timer(stage, "failure"));
+      throw e;
+    }
+  }
+
+  /**
+   * Times a stage that completes asynchronously. The stage is timed until the returned future
+   * completes.
+   *
+   * @param stage Stage name
+   * @param work Work that starts the stage
+   * @return Future of the result of the work
+   */
+  public <T> CompletableFuture<T> timeAsync(
+      final String stage, final Supplier<CompletableFuture<T>> work) {
+    final Timer.Sample sample = Timer.start(registry);
+    final CompletableFuture<T> future;
+    try {
+      future = work.get();
+    } catch (final RuntimeException | Error e) {
+      sample.stop(timer(stage, "failure"));
+      throw e;
+    }
+    return future.whenComplete(
+        (result, throwable) ->
+            sample.stop(timer(stage, throwable == null ? "success" : "failure")));
+  }
+
+  /**
+   * Times a stage that can throw checked exceptions.
+   *
+   * @param stage Stage name
+   * @param work Work to do in the stage
+   * @return Result of the work
+   * @throws Exception Exception from the work, after it has been recorded as a failure
+   */
+  public <T> T timeChecked(final String stage, final Callable<T> work) throws Exception {
+    final Timer.Sample sample = Timer.start(registry);
+    try {
+      final T result = work.call();
+      sample.stop(timer(stage, "success"));
+      return result;
+    } catch (final Exception e) {
+      sample.stop(timer(stage, "failure"));
+      throw e;
+    }
+  }
+
+  private Timer timer(final String stage, final String outcome) {
+    requireNonNull(stage, "No stage provided");
+    return Timer.builder("diagram.stage")
+        .description("Time taken by each stage of handling a diagram request")
+        .tag("stage", stage)
+        .tag("outcome", outcome)
+        .register(registry);
+  }
+}
@@ -0,0 +1,259 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+
+package us.fatehi.schemacrawler.webapp.service.processing;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.constraints.NotNull;
+import us.fatehi.schemacrawler.webapp.service.queue.WorkLease;
+import us.fatehi.schemacrawler.webapp.service.queue.WorkQueue;
+
+/**
+ * Claims requests from the work queue, and processes them, so that every instance shares the work
+ * of generating diagrams, whichever instance received the request. Only a limited number of
+ * requests are claimed at once, so that an instance does not claim more than it can process.
+ * Leases are renewed while a request is processed, so that another instance only takes over a
+ * request if this instance stops.
+ *
+ * <p>Requests that have been claimed too many times without being processed, such as requests
+ * whose uploaded file is missing, are marked as failed and removed from the queue.
+ */
+@Component
+public class WorkQueueWorker {
+
+  private static final Logger logger = Logger.getLogger(WorkQueueWorker.class.getName());
+
+  private final WorkQueue workQueue;
+  private final ProcessingService processingService;
+  private final boolean enabled;
+  private final Semaphore permits;
+  private final Duration leaseTime;
+  private final int maxAttempts;
+  private final long pollMillis;
+  private final String owner;
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService executor;
+
+  public WorkQueueWorker(
+      @NotNull(message = "Work queue not provided") final WorkQueue workQueue,
+      @NotNull(message = "Processing service not provided")
+          final ProcessingService processingService,
+      @Value("${SC_WEBAPP_WORK_QUEUE_ENABLED:false}") final boolean enabled,
+      @Value("${SC_WEBAPP_WORK_QUEUE_WORKERS:4}") final int workers,
+      @Value("${SC_WEBAPP_WORK_QUEUE_LEASE_SECONDS:60}") final long leaseSeconds,
+      @Value("${SC_WEBAPP_WORK_QUEUE_POLL_MILLIS:1000}") final long pollMillis,
+      @Value("${SC_WEBAPP_WORK_QUEUE_MAX_ATTEMPTS:5}") final int maxAttempts) {
+    if (workers < 0 || leaseSeconds <= 0 || pollMillis <= 0 || maxAttempts <= 0) {
+      throw new IllegalArgumentException("Work queue settings must be positive");
+    }
+    this.workQueue = workQueue;
+    this.processingService = processingService;
+    // Instances that only receive requests can set the number of workers to zero
+    this.enabled = enabled && workers > 0;
+    permits = new Semaphore(workers);
+    leaseTime = Duration.ofSeconds(leaseSeconds);
+    this.maxAttempts = maxAttempts;
+    this.pollMillis = pollMillis;
+    owner = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("work-queue-worker").factory());
+    executor = Executors.newVirtualThreadPerTaskExecutor();
+  }
+
+  /** Claims as many requests as there are free workers. */
+  public void poll() {
+    while (permits.tryAcquire()) {
+      final Optional<WorkLease> lease;
+      try {
+        lease = workQueue.claim(owner, leaseTime);
+      } catch (final Exception e) {
+        permits.release();
+        logger.log(
+            Level.WARNING,
+            String.format("Could not claim from the work queue: %s", e.getMessage()),
+            e);
+        return;
+      }
+      if (lease.isEmpty()) {
+        permits.release();
+        return;
+      }
+      process(lease.get());
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    // Requests that are being processed are taken over by another instance once their leases
+    // expire
+    scheduler.shutdownNow();
+    executor.shutdown();
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    logger.info(String.format("Processing requests from the work queue as %s", owner));
+    scheduler.scheduleWithFixedDelay(
+        this::pollSafely, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private String hostName() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (final UnknownHostException e) {
+      return "worker";
+    }
+  }
+
+  private void pollSafely() {
+    try {
+      poll();
+    } catch (final RuntimeException e) {
+      // Keep the worker running
+      logger.log(
+          Level.WARNING, String.format("Could not poll the work queue: %s", e.getMessage()), e);
+    }
+  }
+
+  private void process(final WorkLease lease) {
+    final AtomicReference<WorkLease> current = new AtomicReference<>(lease);
+    // Held while a lease is renewed, so that the lease is not renewed once it is done with
+    final Lock renewing = new ReentrantLock();
+    final long renewMillis = Math.max(1, leaseTime.toMillis() / 3);
+    final ScheduledFuture<?> renewal =
+        scheduler.scheduleWithFixedDelay(
+            () -> executor.execute(() -> renew(current, renewing)),
+            renewMillis,
+            renewMillis,
+            TimeUnit.MILLISECONDS);
+
+    CompletableFuture<Void> processed;
+    try {
+      if (lease.getAttempts() > maxAttempts) {
+        // Completed once it is marked as failed, so that it is not claimed again
+        processed =
+            processingService.failQueued(
+                lease,
+                String.format("Could not be processed after %d attempts", lease.getAttempts() - 1));
+      } else {
+        processed = processingService.processQueued(lease);
+      }
+    } catch (final RejectedExecutionException e) {
+      // Left for an instance that has room
+      processed = CompletableFuture.failedFuture(e);
+    }
+    processed.whenCompleteAsync(
+        (result, throwable) -> {
+          renewal.cancel(false);
+          // Waits for any renewal that is already running, so that the lease is completed or
+          // released with its latest token, and stops later renewals
+          final WorkLease finalLease;
+          renewing.lock();
+          try {
+            finalLease = current.getAndSet(null);
+          } finally {
+            renewing.unlock();
+          }
+          try {
+            if (throwable == null) {
+              workQueue.complete(finalLease);
+            } else {
+              logger.warning(
+                  String.format(
+                      "Could not process <%s>, releasing it: %s",
+                      lease.getKey(),
+                      throwable.getMessage()));
+              workQueue.release(finalLease);
+            }
+          } catch (final Exception e) {
+            logger.log(
+                Level.WARNING,
+                String.format(
+                    "Could not update the work queue for <%s>: %s",
+                    lease.getKey(),
+                    e.getMessage()),
+                e);
+          } finally {
+            permits.release();
+          }
+        },
+        executor);
+  }
+
+  private void renew(final AtomicReference<WorkLease> current, final Lock renewing) {
+    renewing.lock();
+    try {
+      final WorkLease lease = current.get();
+      if (lease == null) {
+        return;
+      }
+      try {
+        final Optional<WorkLease> renewed = workQueue.renew(lease, leaseTime);
+        if (renewed.isPresent()) {
+          current.compareAndSet(lease, renewed.get());
+        } else {
+          logger.warning(String.format("Lost the lease on <%s>", lease.getKey()));
+        }
+      } catch (final Exception e) {
+        logger.warning(
+            String.format(
+                "Could not renew the lease on <%s>: %s", lease.getKey(), e.getMessage()));
+      }
+    } finally {
+      renewing.unlock();
+    }
+  }
+}
@@ -0,0 +1,363 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+
+package us.fatehi.schemacrawler.webapp.service.queue;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+
+/**
+ * Work queue in the S3 bucket that files are stored in. Each queued request is an object under
+ * "queue/pending/", and each lease is an object under "queue/leases/", holding the owner and the
+ * expiry of the lease. Leases are created with a conditional write that fails if the lease object
+ * exists, and are renewed or taken over with a conditional write on the entity tag of the lease
+ * object, so only one instance can hold a lease at a time, without any other coordination.
+ * Released leases are kept, but expired, so that the lease object keeps count of the attempts to
+ * process the request.
+ *
+ * <p>Leases are listed before pending requests, so that requests that are leased are not written
+ * to on every poll. Leases that were read and had not expired are remembered by their entity tag,
+ * so they are not read again until they change or expire.
+ *
+ * <p>Lease expiry is compared with the clock of the instance that claims a request, so instance
+ * clocks need to be kept in sync to well within the lease time.
+ */
+public class AmazonS3WorkQueue implements WorkQueue {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AmazonS3WorkQueue.class);
+
+  private static final String PENDING_PREFIX = "queue/pending/";
+  private static final String LEASES_PREFIX = "queue/leases/";
+  private static final String SUFFIX = ".json";
+
+  private static final String ATTEMPTS = "attempts";
+  private static final String EXPIRES = "expires";
+  private static final String NOTIFICATION_REQUESTED = "notification-requested";
+  private static final String OWNER = "owner";
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+  /** Lease that was taken, with the number of attempts that it counts. */
+  private record Claimed(String token, int attempts, Instant expires) {}
+
+  /** Lease that was read, and that had not expired. */
+  private record KnownLease(String eTag, Instant expires) {}
+
+  private final S3Client s3Client;
+  private final String s3Bucket;
+  private final Map<DiagramKey, KnownLease> knownLeases;
+
+  public AmazonS3WorkQueue(@NonNull final S3Client s3Client, @NonNull final String s3Bucket) {
+    this.s3Client = requireNonNull(s3Client, "No S3 client provided");
+    this.s3Bucket = requireNonNull(s3Bucket, "No S3 bucket provided");
+    knownLeases = new ConcurrentHashMap<>();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Optional<WorkLease> claim(@NonNull final String owner, @NonNull final Duration leaseTime)
+      throws Exception {
+    requireNonNull(owner, "No owner provided");
+    requireNonNull(leaseTime, "No lease time provided");
+
+    // Listed before pending requests, so that a request that is listed as pending, but not as
+    // leased, was not leased when it was listed
+    final Map<DiagramKey, String> leases = new HashMap<>();
+    for (final S3Object lease : list(LEASES_PREFIX)) {
+      leases.put(diagramKey(lease.key(), LEASES_PREFIX), lease.eTag());
+    }
+    knownLeases.keySet().retainAll(leases.keySet());
+
+    // Keys start with the time they were created, so pending requests are listed oldest first
+    for (final S3Object pending : list(PENDING_PREFIX)) {
+      final String name = pending.key();
+      final DiagramKey key = diagramKey(name, PENDING_PREFIX);
+      final Optional<Claimed> claimed = tryLease(key, owner, leaseTime, leases.get(key));
+      if (claimed.isEmpty()) {
+        continue;
+      }
+
+      final Map<String, Object> request;
+      try {
+        request = read(name).getValue();
+      } catch (final NoSuchKeyException e) {
+        // Completed by another instance since it was listed
+        deleteLease(key, claimed.get().token());
+        continue;
+      }
+      return Optional.of(
+          new WorkLease(
+              key,
+              owner,
+              claimed.get().expires(),
+              claimed.get().token(),
+              claimed.get().attempts(),
+              Boolean.TRUE.equals(request.get(NOTIFICATION_REQUESTED))));
+    }
+    return Optional.empty();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void complete(@NonNull final WorkLease lease) throws Exception {
+    requireNonNull(lease, "No lease provided");
+    // Removed before the lease, so that the request cannot be claimed again
+    s3Client.deleteObject(b -> b.bucket(s3Bucket).key(pendingObjectKey(lease.getKey())));
+    deleteLease(lease.getKey(), lease.getToken());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean isQueued(@NonNull final DiagramKey key) throws Exception {
+    requireNonNull(key, "No key provided");
+    try {
+      s3Client.headObject(b -> b.bucket(s3Bucket).key(pendingObjectKey(key)));
+      return true;
+    } catch (final NoSuchKeyException e) {
+      return false;
+    } catch (final S3Exception e) {
+      if (e.statusCode() == 404) {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void release(@NonNull final WorkLease lease) throws Exception {
+    requireNonNull(lease, "No lease provided");
+    // Expired, rather than deleted, so that the attempts are still counted
+    try {
+      s3Client.putObject(
+          b -> b.bucket(s3Bucket).key(leaseObjectKey(lease.getKey())).ifMatch(lease.getToken()),
+          leaseBody(lease.getOwner(), Instant.EPOCH, lease.getAttempts()));
+    } catch (final S3Exception e) {
+      if (!isConflict(e) && e.statusCode() != 404) {
+        throw e;
+      }
+      // Taken over by another instance, which now holds the lease
+      LOGGER.debug(String.format("Lease on <%s> was taken over", lease.getKey()));
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Optional<WorkLease> renew(
+      @NonNull final WorkLease lease, @NonNull final Duration leaseTime) throws Exception {
+    requireNonNull(lease, "No lease provided");
+    requireNonNull(leaseTime, "No lease time provided");
+    final Instant expires = Instant.now().plus(leaseTime);
+    try {
+      final PutObjectResponse response =
+          s3Client.putObject(
+              b ->
+                  b.bucket(s3Bucket)
+                      .key(leaseObjectKey(lease.getKey()))
+                      .ifMatch(lease.getToken()),
+              leaseBody(lease.getOwner(), expires, lease.getAttempts()));
+      return Optional.of(
+          new WorkLease(
+              lease.getKey(),
+              lease.getOwner(),
+              expires,
+              response.eTag(),
+              lease.getAttempts(),
+              lease.isNotificationRequested()));
+    } catch (final S3Exception e) {
+      if (isConflict(e) || e.statusCode() == 404) {
+        return Optional.empty();
+      }
+      throw e;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void submit(@NonNull final DiagramKey key, final boolean notificationRequested)
+      throws Exception {
+    requireNonNull(key, "No key provided");
+    final byte[] body =
+        MAPPER.writeValueAsBytes(Map.of(NOTIFICATION_REQUESTED, notificationRequested));
+    s3Client.putObject(
+        b -> b.bucket(s3Bucket).key(pendingObjectKey(key)).contentType("application/json"),
+        RequestBody.fromBytes(body));
+  }
+
+  /** Number of attempts counted by a lease object. */
+  private int attempts(final Map<String, Object> lease) {
+    return lease.get(ATTEMPTS) instanceof Number attempts ? attempts.intValue() : 1;
+  }
+
+  private void deleteLease(final DiagramKey key, final String token) {
+    try {
+      s3Client.deleteObject(b -> b.bucket(s3Bucket).key(leaseObjectKey(key)).ifMatch(token));
+    } catch (final S3Exception e) {
+      if (!isConflict(e) && e.statusCode() != 404) {
+        throw e;
+      }
+      // Taken over by another instance, which now holds the lease
+      LOGGER.debug(String.format("Lease on <%s> was taken over", key));
+    }
+  }
+
+  private DiagramKey diagramKey(final String objectKey, final String prefix) {
+    return new DiagramKey(
+        objectKey.substring(prefix.length(), objectKey.length() - SUFFIX.length()));
+  }
+
+  /**
+   * Checks whether a conditional write failed. S3 responds with 412 Precondition Failed, or with
+   * 409 Conflict if another conditional write to the same object was in progress.
+   */
+  private boolean isConflict(final S3Exception e) {
+    return e.statusCode() == 412 || e.statusCode() == 409;
+  }
+
+  private RequestBody leaseBody(final String owner, final Instant expires, final int attempts)
+      throws Exception {
+    return RequestBody.fromBytes(
+        MAPPER.writeValueAsBytes(
+            Map.of(OWNER, owner, EXPIRES, expires.toString(), ATTEMPTS, attempts)));
+  }
+
+  private String leaseObjectKey(final DiagramKey key) {
+    return LEASES_PREFIX + key + SUFFIX;
+  }
+
+  private Iterable<S3Object> list(final String prefix) {
+    return s3Client.listObjectsV2Paginator(b -> b.bucket(s3Bucket).prefix(prefix)).contents();
+  }
+
+  private String pendingObjectKey(final DiagramKey key) {
+    return PENDING_PREFIX + key + SUFFIX;
+  }
+
+  /** Reads a small JSON object, with its entity tag. */
+  private Map.Entry<String, Map<String, Object>> read(final String objectKey) throws Exception {
+    final ResponseBytes<GetObjectResponse> object =
+        s3Client.getObjectAsBytes(b -> b.bucket(s3Bucket).key(objectKey));
+    return Map.entry(object.response().eTag(), MAPPER.readValue(object.asByteArray(), MAP_TYPE));
+  }
+
+  /**
+   * Takes a lease on a request, if it is not leased, or if its lease has expired.
+   *
+   * @param listedETag Entity tag of the lease object when leases were listed, or null if the
+   *     request was not leased
+   * @return Lease that was taken, or empty if the request is leased by another instance
+   */
+  private Optional<Claimed> tryLease(
+      final DiagramKey key, final String owner, final Duration leaseTime, final String listedETag)
+      throws Exception {
+    final String leaseObjectKey = leaseObjectKey(key);
+    final Instant expires = Instant.now().plus(leaseTime);
+    if (listedETag == null) {
+      try {
+        final String token =
+            s3Client
+                .putObject(
+                    b -> b.bucket(s3Bucket).key(leaseObjectKey).ifNoneMatch("*"),
+                    leaseBody(owner, expires, 1))
+                .eTag();
+        return Optional.of(new Claimed(token, 1, expires));
+      } catch (final S3Exception e) {
+        if (!isConflict(e)) {
+          throw e;
+        }
+      }
+    } else {
+      final KnownLease knownLease = knownLeases.get(key);
+      if (knownLease != null
+          && knownLease.eTag().equals(listedETag)
+          && knownLease.expires().isAfter(Instant.now())) {
+        return Optional.empty();
+      }
+    }
+
+    // Leased before, so check whether the lease has expired
+    final Map.Entry<String, Map<String, Object>> lease;
+    try {
+      lease = read(leaseObjectKey);
+    } catch (final NoSuchKeyException e) {
+      // Deleted since, so it can be claimed on the next poll, if it is still pending
+      return Optional.empty();
+    }
+    final Instant leaseExpires = Instant.parse(String.valueOf(lease.getValue().get(EXPIRES)));
+    if (leaseExpires.isAfter(Instant.now())) {
+      knownLeases.put(key, new KnownLease(lease.getKey(), leaseExpires));
+      return Optional.empty();
+    }
+    final int attempts = attempts(lease.getValue()) + 1;
+    try {
+      final String token =
+          s3Client
+              .putObject(
+                  b -> b.bucket(s3Bucket).key(leaseObjectKey).ifMatch(lease.getKey()),
+                  leaseBody(owner, expires, attempts))
+              .eTag();
+      knownLeases.remove(key);
+      LOGGER.info(
+          String.format(
+              "Took over lease on <%s> from %s, for attempt %d",
+              key, lease.getValue().get(OWNER), attempts));
+      return Optional.of(new Claimed(token, attempts, expires));
+    } catch (final S3Exception e) {
+      if (isConflict(e)) {
+        // Taken over by another instance first
+        return Optional.empty();
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+
+package us.fatehi.schemacrawler.webapp.service.queue;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.lang.NonNull;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+
+/**
+ * Work queue that is only shared within one instance of the application, for running without
+ * shared storage, and for tests.
+ */
+public class InMemoryWorkQueue implements WorkQueue {
+
+  /** Queued request, with its current lease, if it has one. */
+  private static final class Entry {
+
+    private final boolean notificationRequested;
+    private int attempts;
+    private WorkLease lease;
+
+    Entry(final boolean notificationRequested) {
+      this.notificationRequested = notificationRequested;
+    }
+  }
+
+  // Insertion-ordered, so requests are claimed in the order that they were submitted
+  private final Map<DiagramKey, Entry> entries = new LinkedHashMap<>();
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized Optional<WorkLease> claim(
+      @NonNull final String owner, @NonNull final Duration leaseTime) {
+    requireNonNull(owner, "No owner provided");
+    requireNonNull(leaseTime, "No lease time provided");
+    final Instant now = Instant.now();
+    for (final Map.Entry<DiagramKey, Entry> mapEntry : entries.entrySet()) {
+      final Entry entry = mapEntry.getValue();
+      if (entry.lease == null || !entry.lease.getExpires().isAfter(now)) {
+        entry.attempts++;
+        entry.lease = newLease(mapEntry.getKey(), owner, now.plus(leaseTime), entry);
+        return Optional.of(entry.lease);
+      }
+    }
+    return Optional.empty();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized void complete(@NonNull final WorkLease lease) {
+    requireNonNull(lease, "No lease provided");
+    entries.remove(lease.getKey());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized boolean isQueued(@NonNull final DiagramKey key) {
+    requireNonNull(key, "No key provided");
+    return entries.containsKey(key);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized void release(@NonNull final WorkLease lease) {
+    requireNonNull(lease, "No lease provided");
+    final Entry entry = entries.get(lease.getKey());
+    if (entry != null && isCurrent(entry, lease)) {
+      entry.lease = null;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized Optional<WorkLease> renew(
+      @NonNull final WorkLease lease, @NonNull final Duration leaseTime) {
+    requireNonNull(lease, "No lease provided");
+    requireNonNull(leaseTime, "No lease time provided");
+    final Entry entry = entries.get(lease.getKey());
+    if (entry == null || !isCurrent(entry, lease)) {
+      return Optional.empty();
+    }
+    entry.lease =
+        newLease(lease.getKey(), lease.getOwner(), Instant.now().plus(leaseTime), entry);
+    return Optional.of(entry.lease);
+  }
+
+  /**
+   * Number of requests in the queue, whether or not they are leased.
+   *
+   * @return Number of requests
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized void submit(
+      @NonNull final DiagramKey key, final boolean notificationRequested) {
+    requireNonNull(key, "No key provided");
+    entries.putIfAbsent(key, new Entry(notificationRequested));
+  }
+
+  private boolean isCurrent(final Entry entry, final WorkLease lease) {
+    return entry.lease != null && entry.lease.getToken().equals(lease.getToken());
+  }
+
+  private WorkLease newLease(
+      final DiagramKey key, final String owner, final Instant expires, final Entry entry) {
+    return new WorkLease(
+        key,
+        owner,
+        expires,
+        UUID.randomUUID().toString(),
+        entry.attempts,
+        entry.notificationRequested);
+  }
+}
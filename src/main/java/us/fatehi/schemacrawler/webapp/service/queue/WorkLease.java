@@ -0,0 +1,105 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+
+package us.fatehi.schemacrawler.webapp.service.queue;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Instant;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+
+/** Lease on a request in the work queue, held by the instance that processes the request. */
+public final class WorkLease {
+
+  private final DiagramKey key;
+  private final String owner;
+  private final Instant expires;
+  private final String token;
+  private final int attempts;
+  private final boolean notificationRequested;
+
+  /**
+   * Lease on a request.
+   *
+   * @param key Key of the request
+   * @param owner Name of the instance that holds the lease
+   * @param expires When the lease expires, unless it is renewed
+   * @param token Version of the lease, which changes whenever the lease is renewed or taken over
+   * @param attempts Number of times the request has been claimed, including this lease
+   * @param notificationRequested Whether to notify the requester once the request is processed
+   */
+  public WorkLease(
+      final DiagramKey key,
+      final String owner,
+      final Instant expires,
+      final String token,
+      final int attempts,
+      final boolean notificationRequested) {
+    this.key = requireNonNull(key, "No key provided");
+    this.owner = requireNonNull(owner, "No owner provided");
+    this.expires = requireNonNull(expires, "No expiry provided");
+    this.token = requireNonNull(token, "No token provided");
+    if (attempts <= 0) {
+      throw new IllegalArgumentException("Attempts must be positive");
+    }
+    this.attempts = attempts;
+    this.notificationRequested = notificationRequested;
+  }
+
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public Instant getExpires() {
+    return expires;
+  }
+
+  public DiagramKey getKey() {
+    return key;
+  }
+
+  public String getOwner() {
+    return owner;
+  }
+
+  public String getToken() {
+    return token;
+  }
+
+  public boolean isNotificationRequested() {
+    return notificationRequested;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "<%s> leased by %s until %s, attempt %d", key, owner, expires, attempts);
+  }
+}
@@ -0,0 +1,103 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+
+package us.fatehi.schemacrawler.webapp.service.queue;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+
+/**
+ * Queue of requests that are waiting to be processed, which is shared by every instance of the
+ * application. A request is claimed with a lease, and other instances can only claim it once the
+ * lease expires, so a request that was being processed by an instance that stopped is processed
+ * again by another one. The request and its uploaded file are kept in storage, and the queue only
+ * holds the key.
+ *
+ * <p>Leases count the number of times that a request has been claimed, so that a request that
+ * cannot be processed is not claimed forever.
+ */
+public interface WorkQueue {
+
+  /**
+   * Claims the oldest request that is not leased, or whose lease has expired.
+   *
+   * @param owner Name of the instance that claims the request.
+   * @param leaseTime How long the lease lasts, unless it is renewed.
+   * @return Lease on the claimed request, or empty if no request is waiting.
+   * @throws Exception Exception reading or updating the queue.
+   */
+  Optional<WorkLease> claim(String owner, Duration leaseTime) throws Exception;
+
+  /**
+   * Removes a processed request from the queue, and ends its lease.
+   *
+   * @param lease Lease on the request.
+   * @throws Exception Exception updating the queue.
+   */
+  void complete(WorkLease lease) throws Exception;
+
+  /**
+   * Checks whether a request is in the queue, whether or not it is leased.
+   *
+   * @param key Key of the request.
+   * @return Whether the request is waiting to be processed, or is being processed.
+   * @throws Exception Exception reading the queue.
+   */
+  boolean isQueued(DiagramKey key) throws Exception;
+
+  /**
+   * Ends a lease without removing the request, so that another instance can claim it straight
+   * away. The number of attempts is kept. Leases that have been taken over are not changed.
+   *
+   * @param lease Lease on the request.
+   * @throws Exception Exception updating the queue.
+   */
+  void release(WorkLease lease) throws Exception;
+
+  /**
+   * Extends a lease.
+   *
+   * @param lease Current lease on the request.
+   * @param leaseTime How long the lease lasts from now.
+   * @return Renewed lease, or empty if the lease was taken over by another instance.
+   * @throws Exception Exception updating the queue.
+   */
+  Optional<WorkLease> renew(WorkLease lease, Duration leaseTime) throws Exception;
+
+  /**
+   * Adds a request to the queue. The request and its uploaded file need to be stored first.
+   *
+   * @param key Key of the request.
+   * @param notificationRequested Whether to notify the requester once the request is processed.
+   * @throws Exception Exception updating the queue.
+   */
+  void submit(DiagramKey key, boolean notificationRequested) throws Exception;
+}
@@ -0,0 +1,56 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+
+package us.fatehi.schemacrawler.webapp.service.queue;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import software.amazon.awssdk.services.s3.S3Client;
+
+@Configuration
+public class WorkQueueConfig {
+
+  /**
+   * Shares the work queue through the S3 bucket, when files are stored in S3. Otherwise, the work
+   * queue is only shared within this instance.
+   */
+  @Bean
+  public WorkQueue workQueue(
+      final ObjectProvider<S3Client> s3Client,
+      @Qualifier("s3Bucket") final ObjectProvider<String> s3Bucket) {
+    final S3Client client = s3Client.getIfAvailable();
+    if (client == null) {
+      return new InMemoryWorkQueue();
+    }
+    return new AmazonS3WorkQueue(client, s3Bucket.getObject());
+  }
+}
@@ -0,0 +1,212 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.storage;
+
+import static java.util.Objects.requireNonNull;
+import static us.fatehi.schemacrawler.webapp.service.storage.S3ObjectKeys.isNotFound;
+import static us.fatehi.schemacrawler.webapp.service.storage.S3ObjectKeys.legacyObjectKey;
+import static us.fatehi.schemacrawler.webapp.service.storage.S3ObjectKeys.objectKey;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import org.springframework.lang.NonNull;
+
+import software.amazon.awssdk.core.FileTransformerConfiguration;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+
+/**
+ * Stores files in Amazon S3 with the asynchronous client, laid out as described in {@link
+ * S3ObjectKeys}. Transfers run on the client's event loop, so no thread is held while they are in
+ * progress. Large files are uploaded in parts, in parallel, since the client is built with
+ * multipart uploads enabled. Files that do not change are read from the local disk cache, if they
+ * were cached by {@link AmazonS3StorageService}.
+ */
+public class AmazonS3AsyncStorageService implements AsyncStorageService {
+
+  private final S3AsyncClient s3AsyncClient;
+  private final String s3Bucket;
+  private final DiskCache diskCache;
+  private final boolean legacyFallback;
+
+  public AmazonS3AsyncStorageService(
+      @NonNull final S3AsyncClient s3AsyncClient,
+      @NonNull final String s3Bucket,
+      @NonNull final DiskCache diskCache,
+      final boolean legacyFallback) {
+    this.s3AsyncClient = requireNonNull(s3AsyncClient, "No S3 client provided");
+    this.s3Bucket = requireNonNull(s3Bucket, "No S3 bucket provided");
+    this.diskCache = requireNonNull(diskCache, "No disk cache provided");
+    this.legacyFallback = legacyFallback;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public CompletableFuture<Void> copy(
+      @NonNull final DiagramKey sourceKey,
+      @NonNull final DiagramKey targetKey,
+      @NonNull final FileExtensionType extension) {
+    // Server-side copy, so no data is transferred through this application
+    return withLegacyFallback(
+            sourceKey,
+            extension,
+            sourceObjectKey ->
+                s3AsyncClient.copyObject(
+                    b ->
+                        b.sourceBucket(s3Bucket)
+                            .sourceKey(sourceObjectKey)
+                            .destinationBucket(s3Bucket)
+                            .destinationKey(objectKey(targetKey, extension))))
+        .thenAccept(response -> diskCache.remove(legacyObjectKey(targetKey, extension)));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public CompletableFuture<Optional<byte[]>> retrieve(
+      @NonNull final DiagramKey key, @NonNull final FileExtensionType extension) {
+    final Optional<Path> cachedFile = cachedFile(key, extension);
+    if (cachedFile.isPresent()) {
+      try {
+        return CompletableFuture.completedFuture(Optional.of(Files.readAllBytes(cachedFile.get())));
+      } catch (final NoSuchFileException e) {
+        // Evicted in the meantime, so read it from S3
+      } catch (final IOException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    }
+    return ifFound(
+        withLegacyFallback(
+                key,
+                extension,
+                objectKey ->
+                    s3AsyncClient.getObject(
+                        b -> b.bucket(s3Bucket).key(objectKey), AsyncResponseTransformer.toBytes()))
+            .thenApply(response -> response.asByteArray()));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public CompletableFuture<Optional<Path>> retrieveLocal(
+      @NonNull final DiagramKey key,
+      @NonNull final FileExtensionType extension,
+      @NonNull final Path file) {
+    return ifFound(
+        withLegacyFallback(
+                key,
+                extension,
+                objectKey ->
+                    s3AsyncClient.getObject(
+                        b -> b.bucket(s3Bucket).key(objectKey),
+                        AsyncResponseTransformer.toFile(
+                            file, FileTransformerConfiguration.defaultCreateOrReplaceExisting())))
+            .thenApply(response -> file));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public CompletableFuture<Void> store(
+      @NonNull final byte[] data,
+      @NonNull final DiagramKey key,
+      @NonNull final FileExtensionType extension) {
+    return s3AsyncClient
+        .putObject(
+            b -> b.bucket(s3Bucket).key(objectKey(key, extension)),
+            AsyncRequestBody.fromBytes(data))
+        .thenAccept(response -> diskCache.remove(legacyObjectKey(key, extension)));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public CompletableFuture<Void> store(
+      @NonNull final Path file,
+      @NonNull final DiagramKey key,
+      @NonNull final FileExtensionType extension) {
+    return s3AsyncClient
+        .putObject(b -> b.bucket(s3Bucket).key(objectKey(key, extension)), file)
+        .thenAccept(response -> diskCache.remove(legacyObjectKey(key, extension)));
+  }
+
+  /** Cached copy of a file that does not change, if there is one. */
+  private Optional<Path> cachedFile(final DiagramKey key, final FileExtensionType extension) {
+    if (!extension.isImmutable()) {
+      return Optional.empty();
+    }
+    return diskCache.get(legacyObjectKey(key, extension)).map(DiskCache.Entry::getPath);
+  }
+
+  /** Completes with an empty result if the file is not found. */
+  private <T> CompletableFuture<Optional<T>> ifFound(final CompletableFuture<T> request) {
+    return request.handle(
+        (result, throwable) -> {
+          if (throwable == null) {
+            return Optional.of(result);
+          }
+          final Throwable cause =
+              throwable instanceof CompletionException ? throwable.getCause() : throwable;
+          if (isNotFound(cause)) {
+            return Optional.empty();
+          }
+          throw new CompletionException(cause);
+        });
+  }
+
+  /**
+   * Makes a request for a file, and if the file is not found under the prefix for its key, makes
+   * the request again for the file in the root of the bucket.
+   */
+  private <T> CompletableFuture<T> withLegacyFallback(
+      final DiagramKey key,
+      final FileExtensionType extension,
+      final Function<String, CompletableFuture<T>> request) {
+    return request
+        .apply(objectKey(key, extension))
+        .handle(
+            (response, throwable) -> {
+              if (throwable == null) {
+                return CompletableFuture.completedFuture(response);
+              }
+              final Throwable cause =
+                  throwable instanceof CompletionException ? throwable.getCause() : throwable;
+              if (legacyFallback && isNotFound(cause)) {
+                return request.apply(legacyObjectKey(key, extension));
+              }
+              return CompletableFuture.<T>failedFuture(cause);
+            })
+        .thenCompose(Function.identity());
+  }
+}
@@ -37,7 +37,9 @@ import org.springframework.context.annotation.Profile;
 
 import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 
 @Configuration
@@ -62,4 +64,27 @@ public class AmazonS3StorageConfig {
         S3Client.builder().credentialsProvider(awsCredentials).region(awsRegion).build();
     return s3Client;
   }
+
+  /**
+   * Client for transfers that do not block a thread. Files larger than the threshold are uploaded
+   * and copied in parts, in parallel. The Netty transport is set explicitly, so that the client
+   * does not depend on which HTTP client happens to be on the classpath, and its connection pool
+   * is sized for the number of transfers that can run at once.
+   */
+  @Bean(name = "s3AsyncClient")
+  public S3AsyncClient s3AsyncClient(
+      final AwsCredentialsProvider awsCredentials,
+      final Region awsRegion,
+      @Value("${SC_WEBAPP_S3_MULTIPART_THRESHOLD_BYTES:16777216}") final long multipartThreshold,
+      @Value("${SC_WEBAPP_S3_MULTIPART_PART_SIZE_BYTES:8388608}") final long partSize,
+      @Value("${SC_WEBAPP_S3_MAX_CONCURRENCY:64}") final int maxConcurrency) {
+    return S3AsyncClient.builder()
+        .credentialsProvider(awsCredentials)
+        .region(awsRegion)
+        .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(maxConcurrency))
+        .multipartEnabled(true)
+        .multipartConfiguration(
+            b -> b.thresholdInBytes(multipartThreshold).minimumPartSizeInBytes(partSize))
+        .build();
+  }
 }
@@ -28,42 +28,135 @@ http://www.gnu.org/licenses/
 
 package us.fatehi.schemacrawler.webapp.service.storage;
 
-import static java.nio.file.Files.copy;
 import static java.nio.file.Files.createTempFile;
 import static java.nio.file.Files.delete;
 import static java.nio.file.Files.size;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
-import static org.apache.commons.io.IOUtils.copy;
+import static us.fatehi.schemacrawler.webapp.service.storage.S3ObjectKeys.isNotFound;
+import static us.fatehi.schemacrawler.webapp.service.storage.S3ObjectKeys.legacyObjectKey;
+import static us.fatehi.schemacrawler.webapp.service.storage.S3ObjectKeys.objectKey;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpRange;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 import jakarta.annotation.PostConstruct;
 import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import us.fatehi.schemacrawler.webapp.model.DiagramKey;
 
+/**
+ * Stores files in Amazon S3, laid out as described in {@link S3ObjectKeys}. Files stored before
+ * they were stored under prefixes are found in the root of the bucket.
+ */
 @Service("amazonS3StorageService")
 @Profile("production")
 public class AmazonS3StorageService implements StorageService {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AmazonS3StorageService.class);
 
+  private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-\\d+/(\\d+)");
+
   private final String s3Bucket;
   private final S3Client s3Client;
+  private final DiskCache diskCache;
+  private final boolean legacyFallback;
 
-  public AmazonS3StorageService(@NonNull final S3Client s3Client, @NonNull final String s3Bucket) {
+  public AmazonS3StorageService(
+      @NonNull final S3Client s3Client,
+      @NonNull final String s3Bucket,
+      @NonNull final DiskCache diskCache,
+      @Value("${SC_WEBAPP_S3_LEGACY_FALLBACK:true}") final boolean legacyFallback) {
     this.s3Client = s3Client;
     this.s3Bucket = s3Bucket;
+    this.diskCache = diskCache;
+    this.legacyFallback = legacyFallback;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void copy(
+      @NonNull final DiagramKey sourceKey,
+      @NonNull final DiagramKey targetKey,
+      @NonNull final FileExtensionType extension)
+      throws Exception {
+    final String targetFilename = targetKey + "." + extension.getExtension();
+    // Server-side copy, so no data is transferred through this application
+    withLegacyFallback(
+        sourceKey,
+        extension,
+        sourceObjectKey ->
+            s3Client.copyObject(
+                b ->
+                    b.sourceBucket(s3Bucket)
+                        .sourceKey(sourceObjectKey)
+                        .destinationBucket(s3Bucket)
+                        .destinationKey(objectKey(targetKey, extension))));
+    diskCache.remove(targetFilename);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Optional<StoredObjectMetadata> describe(
+      @NonNull final DiagramKey key, @NonNull final FileExtensionType extension) {
+
+    // Files that do not change are described from the local disk cache without contacting S3
+    if (extension.isImmutable()) {
+      final Optional<DiskCache.Entry> cachedFile =
+          diskCache.get(key + "." + extension.getExtension());
+      if (cachedFile.isPresent() && cachedFile.get().getLastModified().isPresent()) {
+        return Optional.of(
+            new StoredObjectMetadata(
+                extension.getMimeType(),
+                cachedFile.get().getSize(),
+                StringUtils.strip(cachedFile.get().getETag(), "\""),
+                cachedFile.get().getLastModified().get()));
+      }
+    }
+
+    final HeadObjectResponse response;
+    try {
+      response =
+          withLegacyFallback(
+              key,
+              extension,
+              objectKey -> s3Client.headObject(b -> b.bucket(s3Bucket).key(objectKey)));
+    } catch (final S3Exception e) {
+      if (isNotFound(e)) {
+        LOGGER.warn(String.format("No file <%s.%s>", key, extension));
+        return Optional.empty();
+      }
+      throw e;
+    }
+    return Optional.of(
+        new StoredObjectMetadata(
+            extension.getMimeType(),
+            response.contentLength(),
+            StringUtils.strip(response.eTag(), "\""),
+            response.lastModified()));
   }
 
   @Override
@@ -79,6 +172,80 @@ public class AmazonS3StorageService implements StorageService {
 
   /** {@inheritDoc} */
   @Override
+  public Optional<StoredObject> retrieve(
+      @NonNull final DiagramKey key,
+      @NonNull final FileExtensionType extension,
+      final HttpRange range)
+      throws Exception {
+
+    final String filename = key + "." + extension.getExtension();
+
+    // Files that do not change are served from the local disk cache without contacting S3
+    Optional<DiskCache.Entry> cachedFile = diskCache.get(filename);
+    if (cachedFile.isPresent() && extension.isImmutable()) {
+      final Optional<StoredObject> storedObject = fromCache(cachedFile.get(), extension, range);
+      if (storedObject.isPresent()) {
+        return storedObject;
+      }
+      cachedFile = Optional.empty();
+    }
+
+    // A single request, which is conditional if there is a cached copy, so an unchanged file is
+    // not downloaded again. A byte range is read from S3, so only the requested bytes are
+    // transferred.
+    final ResponseInputStream<GetObjectResponse> objectStream;
+    try {
+      objectStream = getObject(key, extension, range, cachedFile);
+    } catch (final NoSuchKeyException e) {
+      diskCache.remove(filename);
+      LOGGER.warn(String.format("No file <%s.%s>", key, extension));
+      return Optional.empty();
+    } catch (final S3Exception e) {
+      if (e.statusCode() == 304 && cachedFile.isPresent()) {
+        final Optional<StoredObject> storedObject = fromCache(cachedFile.get(), extension, range);
+        if (storedObject.isPresent()) {
+          return storedObject;
+        }
+        // Evicted since it was revalidated, so read it from S3
+        return Optional.of(stream(getObject(key, extension, range, Optional.empty()), extension));
+      }
+      if (e.statusCode() == 416) {
+        throw new IllegalArgumentException(
+            String.format("Range <%s> not satisfiable for <%s.%s>", range, key, extension), e);
+      }
+      LOGGER.warn(String.format("Could not retrieve file <%s.%s>", key, extension), e);
+      return Optional.empty();
+    }
+
+    // Whole files that fit in the disk cache are cached, and larger files are streamed
+    final GetObjectResponse response = objectStream.response();
+    if (range == null && diskCache.fits(response.contentLength())) {
+      final Optional<DiskCache.Entry> downloadedFile = cache(filename, objectStream);
+      if (downloadedFile.isPresent()) {
+        final Optional<StoredObject> storedObject =
+            fromCache(downloadedFile.get(), extension, null);
+        if (storedObject.isPresent()) {
+          return storedObject;
+        }
+      }
+      // Evicted as soon as it was cached, so read it from S3
+      return Optional.of(stream(getObject(key, extension, null, Optional.empty()), extension));
+    }
+    if (cachedFile.isPresent()) {
+      // The cached copy is out of date
+      diskCache.remove(filename);
+    }
+    return Optional.of(stream(objectStream, extension));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Files are read through the local disk cache, and the path belongs to the cache. Files that
+   * are too large to cache are not copied to local disk, and need to be read with {@link
+   * #retrieve(DiagramKey, FileExtensionType, HttpRange)}.
+   */
+  @Override
   public Optional<Path> retrieveLocal(final DiagramKey key, final FileExtensionType extension)
       throws Exception {
 
@@ -87,26 +254,16 @@ public class AmazonS3StorageService implements StorageService {
     }
 
     try {
-      final String filename = key + "." + extension.getExtension();
-      final Path tempFilePath =
-          Paths.get(
-              System.getProperty("java.io.tmpdir"),
-              String.format(
-                  "sc-webapp-%s-%s.%s", key, UUID.randomUUID(), extension.getExtension()));
-
-      // Download file from S3 to a local temporary file
-      // IMPORTANT: Temporary file should not exist
-      s3Client.getObject(b -> b.bucket(s3Bucket).key(filename), tempFilePath);
-
-      // Check that the file is not empty
-      if (size(tempFilePath) == 0) {
-        delete(tempFilePath);
+      final Optional<DiskCache.Entry> cachedFile = readThrough(key, extension);
+      if (cachedFile.isEmpty()) {
+        LOGGER.warn(String.format("File <%s.%s> is too large to cache locally", key, extension));
+        return Optional.empty();
+      }
+      if (cachedFile.get().getSize() == 0) {
         LOGGER.warn(String.format("No data for file <%s.%s>", key, extension));
         return Optional.empty();
       }
-
-      return Optional.of(tempFilePath);
-
+      return Optional.of(cachedFile.get().getPath());
     } catch (final Exception e) {
       LOGGER.warn(String.format("Could not retrieve file <%s.%s>", key, extension), e);
       return Optional.empty();
@@ -123,17 +280,31 @@ public class AmazonS3StorageService implements StorageService {
 
     try {
 
+      final String filename = key + "." + extension.getExtension();
+      final String objectKey = objectKey(key, extension);
+
+      // Upload files directly, since they are already on disk
+      if (streamSource instanceof final Resource resource && resource.isFile()) {
+        s3Client.putObject(b -> b.bucket(s3Bucket).key(objectKey), resource.getFile().toPath());
+        diskCache.remove(filename);
+        return;
+      }
+
       // Save stream to a temporary file, so the Amazon S3 API can get length of data and MD5
       // checksum, and avoid ResetException
-      final String filename = key + "." + extension.getExtension();
       final Path tempFilePath = createTempFile(null, filename).toAbsolutePath();
-      try (final InputStream inputStream = streamSource.getInputStream();
-          final OutputStream outputStream = Files.newOutputStream(tempFilePath); ) {
-        copy(inputStream, outputStream);
-      }
+      try {
+        try (final InputStream inputStream = streamSource.getInputStream();
+            final OutputStream outputStream = Files.newOutputStream(tempFilePath); ) {
+          IOUtils.copy(inputStream, outputStream);
+        }
 
-      // Upload local temporary file to S3
-      s3Client.putObject(b -> b.bucket(s3Bucket).key(filename), tempFilePath);
+        // Upload local temporary file to S3
+        s3Client.putObject(b -> b.bucket(s3Bucket).key(objectKey), tempFilePath);
+      } finally {
+        Files.deleteIfExists(tempFilePath);
+        diskCache.remove(filename);
+      }
 
     } catch (final Exception e) {
       LOGGER.warn(String.format("Could not store <%s.%s>", key, extension), e);
@@ -148,16 +319,182 @@ public class AmazonS3StorageService implements StorageService {
       @NonNull final FileExtensionType extension)
       throws Exception {
 
-    // Save stream to a local temporary file
+    // Save stream to a local temporary file, which the caller deletes once it is processed
     final Path tempFilePath = createTempFile("sc-webapp.", "." + extension.getExtension());
-    copy(streamSource.getInputStream(), tempFilePath, REPLACE_EXISTING);
+    try (final InputStream inputStream = streamSource.getInputStream()) {
+      Files.copy(inputStream, tempFilePath, REPLACE_EXISTING);
 
-    // Check that the file is not empty
-    if (size(tempFilePath) == 0) {
+      // Check that the file is not empty
+      if (size(tempFilePath) == 0) {
+        throw new Exception(String.format("No data for file <%s.%s>", key, extension));
+      }
+    } catch (final Exception e) {
       delete(tempFilePath);
-      throw new Exception(String.format("No data for file <%s.%s>", key, extension));
+      throw e;
     }
 
     return tempFilePath;
   }
+
+  /**
+   * Downloads a file into the local disk cache.
+   *
+   * @param filename Name of the stored file
+   * @param objectStream Stream of the whole file, which is closed
+   * @return Cached file, or empty if the file is too large to cache
+   * @throws IOException On an exception downloading the file
+   */
+  private Optional<DiskCache.Entry> cache(
+      final String filename, final ResponseInputStream<GetObjectResponse> objectStream)
+      throws IOException {
+    final Path downloadFile = diskCache.newDownloadFile();
+    try (objectStream) {
+      Files.copy(objectStream, downloadFile);
+      return diskCache.put(
+          filename,
+          downloadFile,
+          objectStream.response().eTag(),
+          objectStream.response().lastModified());
+    } finally {
+      Files.deleteIfExists(downloadFile);
+    }
+  }
+
+  /**
+   * Opens a cached file, or a byte range of it.
+   *
+   * @return Stream of the file, or empty if the file was evicted from the cache
+   */
+  private Optional<StoredObject> fromCache(
+      final DiskCache.Entry cachedFile, final FileExtensionType extension, final HttpRange range)
+      throws IOException {
+    try {
+      return Optional.of(
+          StoredObject.fromFile(cachedFile.getPath(), extension.getMimeType(), range)
+              .withETag(cachedFile.getETag()));
+    } catch (final NoSuchFileException e) {
+      LOGGER.debug(e.getMessage(), e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Opens a stream of a file, or of a byte range of it, in S3.
+   *
+   * @param key Diagram key
+   * @param extension Filename extension
+   * @param range Byte range to read, or null to read the whole file
+   * @param cachedFile Cached copy of the file, which makes the request conditional on its entity
+   *     tag
+   * @return Stream of the file
+   * @throws S3Exception With status 304 if the cached copy is current
+   */
+  private ResponseInputStream<GetObjectResponse> getObject(
+      final DiagramKey key,
+      final FileExtensionType extension,
+      final HttpRange range,
+      final Optional<DiskCache.Entry> cachedFile) {
+    return withLegacyFallback(
+        key,
+        extension,
+        objectKey ->
+            s3Client.getObject(
+                b -> {
+                  b.bucket(s3Bucket).key(objectKey);
+                  if (range != null) {
+                    b.range(HttpRange.toString(List.of(range)));
+                  }
+                  cachedFile.ifPresent(file -> b.ifNoneMatch(file.getETag()));
+                }));
+  }
+
+  /**
+   * Reads a file through the local disk cache. Files that do not change are served from the cache
+   * without contacting S3. Other files are revalidated with their entity tag, so they are only
+   * downloaded again if they have changed. Files that are too large to cache are not downloaded.
+   *
+   * @param key Diagram key
+   * @param extension Filename extension
+   * @return Cached file, or empty if the file is too large to cache
+   * @throws NoSuchKeyException If the file is not in S3
+   */
+  private Optional<DiskCache.Entry> readThrough(
+      final DiagramKey key, final FileExtensionType extension) throws IOException {
+
+    final String filename = key + "." + extension.getExtension();
+    final Optional<DiskCache.Entry> cachedFile = diskCache.get(filename);
+    if (cachedFile.isPresent() && extension.isImmutable()) {
+      return cachedFile;
+    }
+
+    final ResponseInputStream<GetObjectResponse> objectStream;
+    try {
+      objectStream = getObject(key, extension, null, cachedFile);
+    } catch (final S3Exception e) {
+      if (e.statusCode() == 304 && cachedFile.isPresent()) {
+        return cachedFile;
+      }
+      if (e instanceof NoSuchKeyException) {
+        diskCache.remove(filename);
+      }
+      throw e;
+    }
+    if (!diskCache.fits(objectStream.response().contentLength())) {
+      // Stop the download, instead of reading the rest of the file
+      objectStream.abort();
+      objectStream.close();
+      diskCache.remove(filename);
+      return Optional.empty();
+    }
+    return cache(filename, objectStream);
+  }
+
+  /** Wraps a stream from S3, with the byte range and entity tag from the response. */
+  private StoredObject stream(
+      final ResponseInputStream<GetObjectResponse> objectStream,
+      final FileExtensionType extension) {
+    // Content-Range looks like "bytes 0-99/9216" for a range request
+    final GetObjectResponse response = objectStream.response();
+    final long contentLength = response.contentLength();
+    long rangeStart = 0;
+    long totalLength = contentLength;
+    final String contentRange = response.contentRange();
+    if (contentRange != null) {
+      final Matcher matcher = CONTENT_RANGE.matcher(contentRange);
+      if (matcher.matches()) {
+        rangeStart = Long.parseLong(matcher.group(1));
+        totalLength = Long.parseLong(matcher.group(2));
+      }
+    }
+    return new StoredObject(
+        objectStream,
+        extension.getMimeType(),
+        rangeStart,
+        contentLength,
+        totalLength,
+        response.eTag());
+  }
+
+  /**
+   * Makes a request for a file, and if the file is not found under the prefix for its key, makes
+   * the request again for the file in the root of the bucket, where it was stored before files
+   * were stored under prefixes. Only keys of the shorter, legacy length can have files in the
+   * root of the bucket, so files for longer keys are not requested again.
+   *
+   * @param key Diagram key
+   * @param extension Filename extension
+   * @param request Request for a file, given the name of the file in S3
+   * @return Response
+   */
+  private <T> T withLegacyFallback(
+      final DiagramKey key, final FileExtensionType extension, final Function<String, T> request) {
+    try {
+      return request.apply(objectKey(key, extension));
+    } catch (final S3Exception e) {
+      if (!legacyFallback || !key.hasLegacyLength() || !isNotFound(e)) {
+        throw e;
+      }
+      return request.apply(legacyObjectKey(key, extension));
+    }
+  }
 }
@@ -0,0 +1,62 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.storage;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import jakarta.validation.constraints.NotNull;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+
+@Configuration
+public class AsyncStorageConfig {
+
+  /**
+   * Stores files with the asynchronous S3 client, when files are stored in S3. Otherwise, calls to
+   * the blocking storage service are adapted. Bundles are written by the blocking storage service,
+   * so it is also used when files are bundled.
+   */
+  @Bean
+  public AsyncStorageService asyncStorageService(
+      @NotNull(message = "StorageService not provided") final StorageService storageService,
+      @NotNull(message = "DiskCache not provided") final DiskCache diskCache,
+      final ObjectProvider<S3AsyncClient> s3AsyncClient,
+      @Qualifier("s3Bucket") final ObjectProvider<String> s3Bucket,
+      @Value("${SC_WEBAPP_S3_LEGACY_FALLBACK:true}") final boolean legacyFallback) {
+    final S3AsyncClient client = s3AsyncClient.getIfAvailable();
+    if (client == null || storageService instanceof BundlingStorageService) {
+      return new BlockingAsyncStorageService(storageService);
+    }
+    return new AmazonS3AsyncStorageService(
+        client, s3Bucket.getObject(), diskCache, legacyFallback);
+  }
+}
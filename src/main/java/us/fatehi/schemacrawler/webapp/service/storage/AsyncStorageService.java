@@ -0,0 +1,97 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.storage;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+
+/**
+ * Service to store and read files, without blocking the calling thread while the files are
+ * transferred. Files are written to the same storage as {@link StorageService}.
+ */
+public interface AsyncStorageService {
+
+  /**
+   * Copies a stored file from one key to another, without downloading it.
+   *
+   * @param sourceKey Key of the stored file.
+   * @param targetKey Key to copy the file to.
+   * @param extension Filename extension.
+   * @return Future that completes when the file is copied, or completes exceptionally if the source
+   *     file does not exist.
+   */
+  CompletableFuture<Void> copy(
+      DiagramKey sourceKey, DiagramKey targetKey, FileExtensionType extension);
+
+  /**
+   * Reads a whole stored file into memory, so it is only meant for small files, such as requests
+   * and catalogs.
+   *
+   * @param key Key.
+   * @param extension Filename extension.
+   * @return Future with the contents of the file, which is empty if the file does not exist.
+   */
+  CompletableFuture<Optional<byte[]>> retrieve(DiagramKey key, FileExtensionType extension);
+
+  /**
+   * Downloads a stored file to a local file, which belongs to the caller. The local file is
+   * replaced if it exists.
+   *
+   * @param key Key.
+   * @param extension Filename extension.
+   * @param file Local file to download to.
+   * @return Future with the local file, which is empty if the stored file does not exist.
+   */
+  CompletableFuture<Optional<Path>> retrieveLocal(
+      DiagramKey key, FileExtensionType extension, Path file);
+
+  /**
+   * Stores data given a key and extension.
+   *
+   * @param data Data to store.
+   * @param key Key.
+   * @param extension Filename extension.
+   * @return Future that completes when the data is stored.
+   */
+  CompletableFuture<Void> store(byte[] data, DiagramKey key, FileExtensionType extension);
+
+  /**
+   * Stores a local file given a key and extension. The file needs to be kept until the returned
+   * future completes.
+   *
+   * @param file Local file.
+   * @param key Key.
+   * @param extension Filename extension.
+   * @return Future that completes when the file is stored.
+   */
+  CompletableFuture<Void> store(Path file, DiagramKey key, FileExtensionType extension);
+}
@@ -0,0 +1,166 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.storage;
+
+import static java.util.Objects.requireNonNull;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.core.io.PathResource;
+import org.springframework.lang.NonNull;
+
+import jakarta.annotation.PreDestroy;
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+
+/**
+ * Adapts a blocking storage service to the asynchronous interface. Each call runs on its own
+ * virtual thread, so a blocked transfer does not hold a platform thread.
+ */
+public class BlockingAsyncStorageService implements AsyncStorageService {
+
+  private final StorageService storageService;
+  private final ExecutorService executor;
+
+  public BlockingAsyncStorageService(@NonNull final StorageService storageService) {
+    this.storageService = requireNonNull(storageService, "No storage service provided");
+    executor = Executors.newVirtualThreadPerTaskExecutor();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public CompletableFuture<Void> copy(
+      @NonNull final DiagramKey sourceKey,
+      @NonNull final DiagramKey targetKey,
+      @NonNull final FileExtensionType extension) {
+    return CompletableFuture.runAsync(
+        () -> {
+          try {
+            storageService.copy(sourceKey, targetKey, extension);
+          } catch (final Exception e) {
+            throw new CompletionException(e);
+          }
+        },
+        executor);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public CompletableFuture<Optional<byte[]>> retrieve(
+      @NonNull final DiagramKey key, @NonNull final FileExtensionType extension) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            final Optional<StoredObject> storedObject =
+                storageService.retrieve(key, extension, null);
+            if (storedObject.isEmpty()) {
+              return Optional.empty();
+            }
+            try (final StoredObject stored = storedObject.get()) {
+              return Optional.of(stored.getInputStream().readAllBytes());
+            }
+          } catch (final Exception e) {
+            throw new CompletionException(e);
+          }
+        },
+        executor);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public CompletableFuture<Optional<Path>> retrieveLocal(
+      @NonNull final DiagramKey key,
+      @NonNull final FileExtensionType extension,
+      @NonNull final Path file) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            final Optional<StoredObject> storedObject =
+                storageService.retrieve(key, extension, null);
+            if (storedObject.isEmpty()) {
+              return Optional.empty();
+            }
+            try (final StoredObject stored = storedObject.get()) {
+              Files.copy(stored.getInputStream(), file, REPLACE_EXISTING);
+            }
+            return Optional.of(file);
+          } catch (final Exception e) {
+            throw new CompletionException(e);
+          }
+        },
+        executor);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public CompletableFuture<Void> store(
+      @NonNull final byte[] data,
+      @NonNull final DiagramKey key,
+      @NonNull final FileExtensionType extension) {
+    return CompletableFuture.runAsync(
+        () -> {
+          try {
+            storageService.store(() -> new ByteArrayInputStream(data), key, extension);
+          } catch (final Exception e) {
+            throw new CompletionException(e);
+          }
+        },
+        executor);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public CompletableFuture<Void> store(
+      @NonNull final Path file,
+      @NonNull final DiagramKey key,
+      @NonNull final FileExtensionType extension) {
+    return CompletableFuture.runAsync(
+        () -> {
+          try {
+            storageService.store(new PathResource(file), key, extension);
+          } catch (final Exception e) {
+            throw new CompletionException(e);
+          }
+        },
+        executor);
+  }
+}
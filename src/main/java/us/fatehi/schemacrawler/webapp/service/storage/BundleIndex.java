@@ -0,0 +1,242 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.storage;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
+
+/**
+ * Index at the start of a bundle, which is a single stored object with all the files for a key.
+ * The index lists the files in the bundle, with the offset and length of each, so that a file can
+ * be read from the bundle with a byte range request. The index is followed by the files, in the
+ * order that they are listed.
+ *
+ * <p>The index starts with a magic number and the length of the index, so that the index can be
+ * read with a single request for the first few bytes of the bundle.
+ */
+public final class BundleIndex {
+
+  /** A file in a bundle. */
+  public static final class Member {
+
+    private final FileExtensionType extension;
+    private final long offset;
+    private final long length;
+    private final String md5;
+
+    Member(
+        final FileExtensionType extension, final long offset, final long length, final String md5) {
+      this.extension = requireNonNull(extension, "No extension provided");
+      this.offset = offset;
+      this.length = length;
+      this.md5 = requireNonNull(md5, "No MD5 hash provided");
+    }
+
+    public FileExtensionType getExtension() {
+      return extension;
+    }
+
+    public long getLength() {
+      return length;
+    }
+
+    /**
+     * MD5 hash of the file, in hex, used as its entity tag.
+     *
+     * @return MD5 hash
+     */
+    public String getMd5() {
+      return md5;
+    }
+
+    /**
+     * Offset of the first byte of the file in the bundle.
+     *
+     * @return Offset in the bundle
+     */
+    public long getOffset() {
+      return offset;
+    }
+  }
+
+  /** Number of bytes to read to get the index of most bundles in one request. */
+  public static final int PREFIX_LENGTH = 1024;
+
+  private static final int MAGIC = 0x53435742; // "SCWB"
+  private static final short VERSION = 1;
+
+  /**
+   * Creates an index for files that are written one after another, following the index.
+   *
+   * @param sealed Time when the bundle was written
+   * @param extensions Extensions of the files
+   * @param lengths Lengths of the files, in the same order
+   * @param md5s MD5 hashes of the files, in the same order
+   * @return Index
+   */
+  public static BundleIndex layout(
+      final Instant sealed,
+      final List<FileExtensionType> extensions,
+      final List<Long> lengths,
+      final List<String> md5s) {
+    requireNonNull(sealed, "No timestamp provided");
+    if (extensions.size() != lengths.size() || extensions.size() != md5s.size()) {
+      throw new IllegalArgumentException("Bundle members are not fully described");
+    }
+
+    // Offsets have a fixed width, so the length of the index does not depend on them
+    final List<Member> unplaced = new ArrayList<>();
+    for (int i = 0; i < extensions.size(); i++) {
+      unplaced.add(new Member(extensions.get(i), 0, lengths.get(i), md5s.get(i)));
+    }
+    long offset = new BundleIndex(sealed, unplaced).toBytes().length;
+
+    final List<Member> members = new ArrayList<>();
+    for (final Member member : unplaced) {
+      members.add(new Member(member.getExtension(), offset, member.getLength(), member.getMd5()));
+      offset = offset + member.getLength();
+    }
+    return new BundleIndex(sealed, members);
+  }
+
+  /**
+   * Reads the length of an index from the first bytes of a bundle.
+   *
+   * @param prefix Stream of the first bytes of a bundle, at least 8 bytes long
+   * @return Length of the index in bytes
+   * @throws IOException If the stream is not the start of a bundle
+   */
+  public static int readLength(final InputStream prefix) throws IOException {
+    final DataInputStream in = new DataInputStream(prefix);
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a bundle");
+    }
+    return in.readInt();
+  }
+
+  /**
+   * Reads an index from the start of a bundle.
+   *
+   * @param prefix Stream of the start of a bundle, which has at least the whole index
+   * @return Index
+   * @throws IOException If the stream is not the start of a bundle
+   */
+  public static BundleIndex read(final InputStream prefix) throws IOException {
+    final DataInputStream in = new DataInputStream(prefix);
+    readLength(in);
+    final short version = in.readShort();
+    if (version != VERSION) {
+      throw new IOException(String.format("Unsupported bundle version <%d>", version));
+    }
+    final Instant sealed = Instant.ofEpochMilli(in.readLong());
+    final int count = in.readShort();
+    final List<Member> members = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      final FileExtensionType extension = FileExtensionType.valueOf(in.readUTF());
+      members.add(new Member(extension, in.readLong(), in.readLong(), in.readUTF()));
+    }
+    return new BundleIndex(sealed, members);
+  }
+
+  private final Instant sealed;
+  private final List<Member> members;
+
+  private BundleIndex(final Instant sealed, final List<Member> members) {
+    this.sealed = sealed;
+    this.members = Collections.unmodifiableList(members);
+  }
+
+  /**
+   * Looks up a file in the bundle.
+   *
+   * @param extension Filename extension
+   * @return File in the bundle, if there is one
+   */
+  public Optional<Member> getMember(final FileExtensionType extension) {
+    return members.stream().filter(member -> member.getExtension() == extension).findFirst();
+  }
+
+  public List<Member> getMembers() {
+    return members;
+  }
+
+  /**
+   * Time when the bundle was written, used as the last modified time of the files in it.
+   *
+   * @return Time when the bundle was written
+   */
+  public Instant getSealed() {
+    return sealed;
+  }
+
+  /**
+   * Serializes the index.
+   *
+   * @return Index bytes, to be written at the start of the bundle
+   */
+  public byte[] toBytes() {
+    try {
+      final ByteArrayOutputStream body = new ByteArrayOutputStream();
+      final DataOutputStream out = new DataOutputStream(body);
+      out.writeShort(VERSION);
+      out.writeLong(sealed.toEpochMilli());
+      out.writeShort(members.size());
+      for (final Member member : members) {
+        out.writeUTF(member.getExtension().name());
+        out.writeLong(member.getOffset());
+        out.writeLong(member.getLength());
+        out.writeUTF(member.getMd5());
+      }
+      out.flush();
+
+      final ByteArrayOutputStream index = new ByteArrayOutputStream();
+      final DataOutputStream header = new DataOutputStream(index);
+      header.writeInt(MAGIC);
+      header.writeInt(Integer.BYTES * 2 + body.size());
+      body.writeTo(header);
+      header.flush();
+      return index.toByteArray();
+    } catch (final IOException e) {
+      // Not thrown for in-memory streams
+      throw new InternalRuntimeException("Could not write bundle index", e);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.storage;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
+
+/**
+ * Stores the files for each request as a single bundle, when SC_WEBAPP_STORAGE_BUNDLE is true. The
+ * storage service for the active profile is wrapped, so that it stores bundles.
+ */
+@Configuration
+@ConditionalOnProperty(name = "SC_WEBAPP_STORAGE_BUNDLE", havingValue = "true")
+public class BundleStorageConfig {
+
+  @Bean
+  public static BeanPostProcessor bundlingStorageServicePostProcessor(
+      final ObjectProvider<DiskCache> diskCache,
+      @Value("${SC_WEBAPP_BUNDLE_STAGING_DIRECTORY:}") final String stagingDirectory) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(final Object bean, final String beanName)
+          throws BeansException {
+        if (!(bean instanceof final StorageService storageService)
+            || bean instanceof BundlingStorageService) {
+          return bean;
+        }
+        final BundlingStorageService bundlingStorageService =
+            new BundlingStorageService(storageService, diskCache.getObject(), stagingDirectory);
+        try {
+          bundlingStorageService.init();
+        } catch (final Exception e) {
+          throw new InternalRuntimeException("Could not seal staged files", e);
+        }
+        return bundlingStorageService;
+      }
+    };
+  }
+}
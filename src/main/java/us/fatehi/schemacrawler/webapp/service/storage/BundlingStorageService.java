@@ -0,0 +1,739 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.storage;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.BUNDLE;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.CALLBACK;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.IDEMPOTENCY;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.PathResource;
+import org.springframework.http.HttpRange;
+import org.springframework.lang.NonNull;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+
+/**
+ * Stores all the files for a key as a single bundle, to cut the number of requests to storage.
+ * While a request is processed, its files are staged on local disk. When the request is sealed,
+ * the staged files are written as one bundle, with an index at the start. Files are read from a
+ * bundle with byte range requests, so only the file that is needed is read. Files that were stored
+ * on their own, before bundles were turned on, can still be read.
+ *
+ * <p>The index that was read last for each key is kept in memory, so a file is usually read with
+ * a single request. Each read checks that the bundle has not been written again since its index
+ * was read. Files that do not change, and files that are read locally, are extracted into the
+ * local disk cache, so they are read from the bundle once. Files that are written again after a
+ * request is sealed, such as the state of callbacks, are stored on their own, so that the bundle
+ * is not written again each time.
+ *
+ * <p>Staged files can only be read on the instance that is processing the request, until the
+ * request is sealed. Files staged when the application stopped are sealed when it starts again.
+ */
+public class BundlingStorageService implements StorageService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BundlingStorageService.class);
+
+  private static final int LOCK_STRIPES = 64;
+  private static final int MAX_CACHED_INDEXES = 1024;
+  private static final int MAX_INDEX_READS = 3;
+  private static final Set<FileExtensionType> UNBUNDLED = EnumSet.of(BUNDLE, CALLBACK, IDEMPOTENCY);
+
+  /** Index of a bundle, and the entity tag of the version of the bundle it was read from. */
+  private record IndexedBundle(BundleIndex index, String eTag) {}
+
+  /**
+   * Reads files that are kept from an earlier bundle, in order, with a single request for all of
+   * them.
+   */
+  private final class PreviousMembers implements AutoCloseable {
+
+    private final DiagramKey key;
+    private final List<BundleIndex.Member> members;
+    private StoredObject storedObject;
+    private InputStream memberStream;
+    private long position;
+
+    PreviousMembers(final DiagramKey key, final List<BundleIndex.Member> members) {
+      this.key = key;
+      this.members = members;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (storedObject != null) {
+        storedObject.close();
+      }
+    }
+
+    /** Opens the next file, which needs to come after the file that was opened last. */
+    InputStream open(final BundleIndex.Member member) throws IOException {
+      if (storedObject == null) {
+        final BundleIndex.Member first = members.get(0);
+        final BundleIndex.Member last = members.get(members.size() - 1);
+        final Optional<StoredObject> bundleRange;
+        try {
+          bundleRange =
+              delegate.retrieve(
+                  key,
+                  BUNDLE,
+                  HttpRange.createByteRange(
+                      first.getOffset(), last.getOffset() + last.getLength() - 1));
+        } catch (final IOException e) {
+          throw e;
+        } catch (final Exception e) {
+          throw new IOException(e.getMessage(), e);
+        }
+        if (bundleRange.isEmpty()) {
+          throw new NoSuchFileException(String.format("%s.%s", key, BUNDLE));
+        }
+        storedObject = bundleRange.get();
+        position = first.getOffset();
+      }
+      if (memberStream != null) {
+        // Skip any part of the previous file that was not read
+        memberStream.transferTo(OutputStream.nullOutputStream());
+      }
+      storedObject.getInputStream().skipNBytes(member.getOffset() - position);
+      position = member.getOffset() + member.getLength();
+      memberStream =
+          BoundedInputStream.builder()
+              .setInputStream(storedObject.getInputStream())
+              .setMaxCount(member.getLength())
+              .setPropagateClose(false)
+              .get();
+      return memberStream;
+    }
+  }
+
+  private final StorageService delegate;
+  private final Path stagingDirectory;
+  private final DiskCache diskCache;
+  private final Map<DiagramKey, IndexedBundle> indexes;
+  // Digests of staged files, computed as they are staged
+  private final Map<Path, String> stagedMd5s;
+  private final Object[] locks;
+
+  public BundlingStorageService(
+      @NonNull final StorageService delegate,
+      @NonNull final DiskCache diskCache,
+      final String stagingDirectory) {
+    this.delegate = delegate;
+    // Files extracted from bundles are kept in the local disk cache, by bundle member
+    this.diskCache = diskCache;
+    this.stagingDirectory = createDirectory(stagingDirectory);
+    stagedMd5s = new ConcurrentHashMap<>();
+    // Access-ordered, so the least recently used index is dropped first
+    indexes =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(final Map.Entry<DiagramKey, IndexedBundle> eldest) {
+            return size() > MAX_CACHED_INDEXES;
+          }
+        };
+    // Files for one key are staged and sealed one at a time
+    locks = new Object[LOCK_STRIPES];
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The file is read, and staged for the target key, since files in a bundle cannot be copied
+   * on their own.
+   */
+  @Override
+  public void copy(
+      @NonNull final DiagramKey sourceKey,
+      @NonNull final DiagramKey targetKey,
+      @NonNull final FileExtensionType extension)
+      throws Exception {
+    if (UNBUNDLED.contains(extension)) {
+      delegate.copy(sourceKey, targetKey, extension);
+      return;
+    }
+    final Optional<StoredObject> source = retrieve(sourceKey, extension, null);
+    if (source.isEmpty()) {
+      throw new NoSuchFileException(String.format("%s.%s", sourceKey, extension));
+    }
+    try (final StoredObject storedObject = source.get()) {
+      store(storedObject::getInputStream, targetKey, extension);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Optional<StoredObjectMetadata> describe(
+      @NonNull final DiagramKey key, @NonNull final FileExtensionType extension)
+      throws Exception {
+    if (UNBUNDLED.contains(extension)) {
+      return delegate.describe(key, extension);
+    }
+
+    final Path stagedFile = stagedFile(key, extension);
+    try {
+      // Described in one step, so that the file is not staged again in between
+      synchronized (lock(key)) {
+        return Optional.of(
+            new StoredObjectMetadata(
+                extension.getMimeType(),
+                Files.size(stagedFile),
+                stagedMd5(stagedFile),
+                Files.getLastModifiedTime(stagedFile).toInstant()));
+      }
+    } catch (final NoSuchFileException e) {
+      // Not staged, or sealed in the meantime
+    }
+
+    final Optional<BundleIndex> index = findIndex(key, extension);
+    final Optional<BundleIndex.Member> member =
+        index.flatMap(bundleIndex -> bundleIndex.getMember(extension));
+    if (member.isEmpty()) {
+      return delegate.describe(key, extension);
+    }
+    return Optional.of(
+        new StoredObjectMetadata(
+            extension.getMimeType(),
+            member.get().getLength(),
+            member.get().getMd5(),
+            index.get().getSealed()));
+  }
+
+  /** Seals requests that were staged when the application last stopped. */
+  @Override
+  public void init() throws Exception {
+    try (final Stream<Path> keyDirectories = Files.list(stagingDirectory)) {
+      for (final Path keyDirectory : (Iterable<Path>) keyDirectories::iterator) {
+        try {
+          seal(new DiagramKey(keyDirectory.getFileName().toString()));
+        } catch (final Exception e) {
+          LOGGER.warn(String.format("Could not seal staged files in <%s>", keyDirectory), e);
+        }
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Optional<StoredObject> retrieve(
+      @NonNull final DiagramKey key,
+      @NonNull final FileExtensionType extension,
+      final HttpRange range)
+      throws Exception {
+    if (UNBUNDLED.contains(extension)) {
+      return delegate.retrieve(key, extension, range);
+    }
+
+    try {
+      return Optional.of(
+          StoredObject.fromFile(stagedFile(key, extension), extension.getMimeType(), range));
+    } catch (final NoSuchFileException e) {
+      // Not staged, or sealed in the meantime
+    }
+
+    // Files that do not change are read from the bundle once, and then from the disk cache
+    if (extension.isImmutable()) {
+      final Optional<StoredObject> extractedFile = retrieveExtracted(key, extension, range);
+      if (extractedFile.isPresent()) {
+        return extractedFile;
+      }
+    }
+
+    // Read with the index that was read last, unless the bundle has been written again since
+    final Optional<IndexedBundle> cachedIndex = cachedIndex(key);
+    final Optional<BundleIndex.Member> cachedMember =
+        cachedIndex.flatMap(indexed -> indexed.index().getMember(extension));
+    if (cachedMember.isPresent()) {
+      try {
+        final Optional<StoredObject> storedObject = retrieveMember(key, cachedMember.get(), range);
+        if (storedObject.isPresent()
+            && Objects.equals(storedObject.get().getETag(), cachedIndex.get().eTag())) {
+          return storedObject;
+        }
+        if (storedObject.isPresent()) {
+          storedObject.get().close();
+        }
+      } catch (final IllegalArgumentException e) {
+        // The bundle is shorter than it was, so read the index again
+        LOGGER.debug(e.getMessage(), e);
+      }
+    }
+    forgetIndex(key);
+
+    final Optional<BundleIndex.Member> member =
+        readIndex(key).flatMap(indexed -> indexed.index().getMember(extension));
+    if (member.isEmpty()) {
+      return delegate.retrieve(key, extension, range);
+    }
+    return retrieveMember(key, member.get(), range);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Optional<Path> retrieveLocal(final DiagramKey key, final FileExtensionType extension)
+      throws Exception {
+    if (extension == null || UNBUNDLED.contains(extension)) {
+      return delegate.retrieveLocal(key, extension);
+    }
+
+    final Path stagedFile = stagedFile(key, extension);
+    if (Files.isRegularFile(stagedFile)) {
+      return Optional.of(stagedFile);
+    }
+
+    // Extracted with a fresh index if the bundle was written again since its index was read
+    for (int attempt = 1; ; attempt++) {
+      final Optional<BundleIndex.Member> member =
+          findIndex(key, extension).flatMap(index -> index.getMember(extension));
+      if (member.isEmpty()) {
+        return delegate.retrieveLocal(key, extension);
+      }
+      final Optional<DiskCache.Entry> extractedFile = extract(key, member.get());
+      if (extractedFile.isPresent()
+          || !diskCache.fits(member.get().getLength())
+          || attempt == MAX_INDEX_READS) {
+        return extractedFile.map(DiskCache.Entry::getPath);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Staged files are written as a bundle, together with files from an earlier bundle for the
+   * key that were not staged again.
+   */
+  @Override
+  public void seal(@NonNull final DiagramKey key) throws Exception {
+    synchronized (lock(key)) {
+      final Path keyDirectory = stagingDirectory.resolve(key.getKey());
+      if (!Files.isDirectory(keyDirectory)) {
+        return;
+      }
+
+      final List<FileExtensionType> extensions = new ArrayList<>();
+      final List<Long> lengths = new ArrayList<>();
+      final List<String> md5s = new ArrayList<>();
+      final List<InputStreamSource> sources = new ArrayList<>();
+      for (final FileExtensionType extension : FileExtensionType.values()) {
+        final Path stagedFile = stagedFile(key, extension);
+        if (extension != BUNDLE && Files.isRegularFile(stagedFile)) {
+          extensions.add(extension);
+          lengths.add(Files.size(stagedFile));
+          md5s.add(stagedMd5(stagedFile));
+          sources.add(new PathResource(stagedFile));
+        }
+      }
+      // Files from an earlier bundle are kept in the order they were in, so they can all be read
+      // with one request
+      forgetIndex(key);
+      final List<BundleIndex.Member> keptMembers = new ArrayList<>();
+      final Optional<IndexedBundle> previousIndex = readIndex(key);
+      if (previousIndex.isPresent()) {
+        for (final BundleIndex.Member member : previousIndex.get().index().getMembers()) {
+          if (!extensions.contains(member.getExtension())) {
+            keptMembers.add(member);
+          }
+        }
+      }
+
+      try (final PreviousMembers previousMembers = new PreviousMembers(key, keptMembers)) {
+        for (final BundleIndex.Member member : keptMembers) {
+          extensions.add(member.getExtension());
+          lengths.add(member.getLength());
+          md5s.add(member.getMd5());
+          sources.add(() -> previousMembers.open(member));
+        }
+        if (!extensions.isEmpty()) {
+          writeBundle(key, BundleIndex.layout(Instant.now(), extensions, lengths, md5s), sources);
+        }
+      } finally {
+        forgetIndex(key);
+      }
+      FileSystemUtils.deleteRecursively(keyDirectory);
+      for (final FileExtensionType extension : FileExtensionType.values()) {
+        stagedMd5s.remove(stagedFile(key, extension));
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Files are staged on local disk until the key is sealed.
+   */
+  @Override
+  public void store(
+      @NonNull final InputStreamSource streamSource,
+      @NonNull final DiagramKey key,
+      @NonNull final FileExtensionType extension)
+      throws Exception {
+    if (UNBUNDLED.contains(extension)) {
+      delegate.store(streamSource, key, extension);
+      return;
+    }
+
+    synchronized (lock(key)) {
+      final Path stagedFile = stagedFile(key, extension);
+      Files.createDirectories(stagedFile.getParent());
+      // Staged files are replaced in one step, so readers never see part of a file
+      final Path tempFile =
+          Files.createTempFile(stagedFile.getParent(), extension.getExtension() + ".", ".tmp");
+      try {
+        // Hashed while it is staged, so that it is not read again to describe or seal it
+        final MessageDigest md5 = MessageDigest.getInstance("MD5");
+        try (final InputStream inputStream =
+            new DigestInputStream(streamSource.getInputStream(), md5)) {
+          Files.copy(inputStream, tempFile, REPLACE_EXISTING);
+        }
+        if (Files.size(tempFile) == 0) {
+          throw new IOException(String.format("No data for file <%s.%s>", key, extension));
+        }
+        Files.move(tempFile, stagedFile, REPLACE_EXISTING, ATOMIC_MOVE);
+        stagedMd5s.put(stagedFile, HexFormat.of().formatHex(md5.digest()));
+      } finally {
+        Files.deleteIfExists(tempFile);
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Path storeLocal(
+      @NonNull final InputStreamSource streamSource,
+      @NonNull final DiagramKey key,
+      @NonNull final FileExtensionType extension)
+      throws Exception {
+    return delegate.storeLocal(streamSource, key, extension);
+  }
+
+  private Optional<IndexedBundle> cachedIndex(final DiagramKey key) {
+    synchronized (indexes) {
+      return Optional.ofNullable(indexes.get(key));
+    }
+  }
+
+  private Path createDirectory(final String directory) {
+    try {
+      if (StringUtils.isBlank(directory)) {
+        return Files.createTempDirectory("sc-webapp-bundles.");
+      }
+      final Path bundleDirectory = Path.of(directory).toAbsolutePath();
+      Files.createDirectories(bundleDirectory);
+      return bundleDirectory;
+    } catch (final IOException e) {
+      throw new InternalRuntimeException(
+          String.format("Could not create bundle staging directory <%s>", directory), e);
+    }
+  }
+
+  /**
+   * Finds the index of the bundle for a key. Files that do not change have the same length and
+   * hash in every bundle, so they are looked up in the index that was read last, if there is one.
+   */
+  /**
+   * Extracts a file from a bundle into the disk cache, unless it is there already. The file is
+   * checked against the digest in the index, so that a file is not extracted from a bundle that
+   * was written again since its index was read.
+   *
+   * @param key Diagram key
+   * @param member File in the bundle
+   * @return Extracted file, or empty if the file is too large to cache, or the index is out of
+   *     date
+   */
+  private Optional<DiskCache.Entry> extract(final DiagramKey key, final BundleIndex.Member member)
+      throws Exception {
+    final String name = memberName(key, member.getExtension());
+    final Optional<DiskCache.Entry> extractedFile = diskCache.get(name);
+    if (extractedFile.isPresent()
+        && StringUtils.equals(extractedFile.get().getETag(), member.getMd5())
+        && Files.isRegularFile(extractedFile.get().getPath())) {
+      return extractedFile;
+    }
+    if (!diskCache.fits(member.getLength())) {
+      return Optional.empty();
+    }
+
+    // Download only this file from the bundle
+    final Optional<StoredObject> storedObject;
+    try {
+      storedObject = retrieveMember(key, member, null);
+    } catch (final IllegalArgumentException e) {
+      // The bundle is shorter than it was
+      LOGGER.debug(e.getMessage(), e);
+      forgetIndex(key);
+      return Optional.empty();
+    }
+    if (storedObject.isEmpty()) {
+      return Optional.empty();
+    }
+    final Path downloadFile = diskCache.newDownloadFile();
+    try (final StoredObject memberObject = storedObject.get()) {
+      final MessageDigest md5 = MessageDigest.getInstance("MD5");
+      Files.copy(
+          new DigestInputStream(memberObject.getInputStream(), md5),
+          downloadFile,
+          REPLACE_EXISTING);
+      if (!HexFormat.of().formatHex(md5.digest()).equals(member.getMd5())) {
+        forgetIndex(key);
+        return Optional.empty();
+      }
+      return diskCache.put(name, downloadFile, member.getMd5());
+    } finally {
+      Files.deleteIfExists(downloadFile);
+    }
+  }
+
+  private Optional<BundleIndex> findIndex(final DiagramKey key, final FileExtensionType extension)
+      throws Exception {
+    if (extension.isImmutable()) {
+      final Optional<BundleIndex> cachedIndex = cachedIndex(key).map(IndexedBundle::index);
+      if (cachedIndex.flatMap(index -> index.getMember(extension)).isPresent()) {
+        return cachedIndex;
+      }
+    }
+    return readIndex(key).map(IndexedBundle::index);
+  }
+
+  private void forgetIndex(final DiagramKey key) {
+    synchronized (indexes) {
+      indexes.remove(key);
+    }
+  }
+
+  private Object lock(final DiagramKey key) {
+    return locks[Math.floorMod(key.hashCode(), locks.length)];
+  }
+
+  /** Name of a bundle member in the disk cache, which is apart from files stored on their own. */
+  private String memberName(final DiagramKey key, final FileExtensionType extension) {
+    return String.format("%s.%s.%s", key, BUNDLE.getExtension(), extension.getExtension());
+  }
+
+  /**
+   * Reads the index of the bundle for a key, with a request for the first bytes of the bundle.
+   * Large indexes need a second request, which is made again if the bundle was written in between.
+   * The index is kept for later reads.
+   */
+  private Optional<IndexedBundle> readIndex(final DiagramKey key) throws Exception {
+    for (int attempt = 1; ; attempt++) {
+      final Optional<StoredObject> prefix =
+          delegate.retrieve(
+              key, BUNDLE, HttpRange.createByteRange(0, BundleIndex.PREFIX_LENGTH - 1));
+      if (prefix.isEmpty()) {
+        return Optional.empty();
+      }
+      final byte[] prefixBytes;
+      final String eTag;
+      try (final StoredObject prefixObject = prefix.get()) {
+        prefixBytes = prefixObject.getInputStream().readAllBytes();
+        eTag = prefixObject.getETag();
+      }
+
+      final int indexLength = BundleIndex.readLength(new ByteArrayInputStream(prefixBytes));
+      if (indexLength <= prefixBytes.length) {
+        return Optional.of(
+            rememberIndex(key, BundleIndex.read(new ByteArrayInputStream(prefixBytes)), eTag));
+      }
+      final Optional<StoredObject> index =
+          delegate.retrieve(key, BUNDLE, HttpRange.createByteRange(0, indexLength - 1));
+      if (index.isEmpty()) {
+        return Optional.empty();
+      }
+      try (final StoredObject indexObject = index.get()) {
+        if (Objects.equals(indexObject.getETag(), eTag) || attempt == MAX_INDEX_READS) {
+          return Optional.of(
+              rememberIndex(key, BundleIndex.read(indexObject.getInputStream()), eTag));
+        }
+      }
+    }
+  }
+
+  /**
+   * Keeps the index of a bundle for later reads, if the version of the bundle can be checked.
+   */
+  private IndexedBundle rememberIndex(
+      final DiagramKey key, final BundleIndex index, final String eTag) {
+    final IndexedBundle indexedBundle = new IndexedBundle(index, eTag);
+    if (eTag != null) {
+      synchronized (indexes) {
+        indexes.put(key, indexedBundle);
+      }
+    }
+    return indexedBundle;
+  }
+
+  /**
+   * Reads a file, or a byte range of it, from the disk cache, extracting it from the bundle if it
+   * is not in the cache.
+   *
+   * @return File, or empty if it is not in a bundle, or could not be cached
+   */
+  private Optional<StoredObject> retrieveExtracted(
+      final DiagramKey key, final FileExtensionType extension, final HttpRange range)
+      throws Exception {
+    Optional<DiskCache.Entry> extractedFile = diskCache.get(memberName(key, extension));
+    if (extractedFile.isEmpty()) {
+      final Optional<BundleIndex.Member> member =
+          findIndex(key, extension).flatMap(index -> index.getMember(extension));
+      if (member.isEmpty()) {
+        return Optional.empty();
+      }
+      extractedFile = extract(key, member.get());
+    }
+    if (extractedFile.isEmpty()) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(
+          StoredObject.fromFile(extractedFile.get().getPath(), extension.getMimeType(), range)
+              .withETag(extractedFile.get().getETag()));
+    } catch (final NoSuchFileException e) {
+      // Evicted from the cache, so read it from the bundle
+      LOGGER.debug(e.getMessage(), e);
+      return Optional.empty();
+    }
+  }
+
+  /** Reads a file, or a byte range of it, from a bundle. */
+  private Optional<StoredObject> retrieveMember(
+      final DiagramKey key, final BundleIndex.Member member, final HttpRange range)
+      throws Exception {
+    final long length = member.getLength();
+    long rangeStart = 0;
+    long rangeEnd = length - 1;
+    if (range != null) {
+      rangeStart = range.getRangeStart(length);
+      if (rangeStart >= length) {
+        throw new IllegalArgumentException(
+            String.format(
+                "Range <%s> not satisfiable for <%s.%s>", range, key, member.getExtension()));
+      }
+      rangeEnd = range.getRangeEnd(length);
+    }
+
+    final long offset = member.getOffset();
+    final Optional<StoredObject> bundleRange =
+        delegate.retrieve(
+            key, BUNDLE, HttpRange.createByteRange(offset + rangeStart, offset + rangeEnd));
+    if (bundleRange.isEmpty()) {
+      return Optional.empty();
+    }
+    // The entity tag is the one of the bundle, so that reads can check which bundle they are from
+    return Optional.of(
+        new StoredObject(
+            bundleRange.get().getInputStream(),
+            member.getExtension().getMimeType(),
+            rangeStart,
+            rangeEnd - rangeStart + 1,
+            length,
+            bundleRange.get().getETag()));
+  }
+
+  private Path stagedFile(final DiagramKey key, final FileExtensionType extension) {
+    return stagingDirectory.resolve(key.getKey()).resolve(extension.getExtension());
+  }
+
+  /**
+   * Digest of a staged file, which was computed when the file was staged, or which is computed now
+   * for files that were staged when the application last stopped.
+   */
+  private String stagedMd5(final Path stagedFile) throws IOException {
+    final String md5 = stagedMd5s.get(stagedFile);
+    if (md5 != null) {
+      return md5;
+    }
+    try (final InputStream inputStream = Files.newInputStream(stagedFile)) {
+      final String computedMd5 = DigestUtils.md5DigestAsHex(inputStream);
+      stagedMd5s.put(stagedFile, computedMd5);
+      return computedMd5;
+    }
+  }
+
+  private void writeBundle(
+      final DiagramKey key, final BundleIndex index, final List<InputStreamSource> sources)
+      throws Exception {
+    final Path bundleFile = Files.createTempFile("sc-webapp.", "." + BUNDLE.getExtension());
+    try {
+      try (final OutputStream outputStream = Files.newOutputStream(bundleFile)) {
+        outputStream.write(index.toBytes());
+        for (final InputStreamSource source : sources) {
+          try (final InputStream inputStream = source.getInputStream()) {
+            inputStream.transferTo(outputStream);
+          }
+        }
+      }
+      final long bundleLength = Files.size(bundleFile);
+      delegate.store(new PathResource(bundleFile), key, BUNDLE);
+
+      // Some storage logs failures instead of throwing, so check before staged files are deleted
+      final Optional<StoredObjectMetadata> stored = delegate.describe(key, BUNDLE);
+      if (stored.isEmpty() || stored.get().getContentLength() != bundleLength) {
+        throw new IOException(String.format("Could not store bundle <%s>", key));
+      }
+    } finally {
+      Files.deleteIfExists(bundleFile);
+    }
+  }
+}
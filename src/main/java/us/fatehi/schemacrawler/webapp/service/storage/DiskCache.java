@@ -0,0 +1,336 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.storage;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
+
+/**
+ * Local disk cache of stored files, with a byte budget. The least recently used files are evicted
+ * first. The index is kept in memory, so the cache directory is emptied on startup. A configured
+ * directory is not used directly, but gets a dedicated subdirectory for the cache.
+ *
+ * <p>Cached files belong to the cache, and can be deleted when they are evicted. Open streams can
+ * still be read to the end after a file is deleted.
+ */
+@Component
+public class DiskCache implements MeterBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DiskCache.class);
+  private static final String CACHE_SUBDIRECTORY = "sc-webapp-cache";
+
+  /**
+   * A cached file, and the entity tag and modification time of the stored file it is a copy of.
+   */
+  public static final class Entry {
+
+    private final Path path;
+    private final long size;
+    private final String eTag;
+    private final Instant lastModified;
+
+    Entry(final Path path, final long size, final String eTag, final Instant lastModified) {
+      this.path = path;
+      this.size = size;
+      this.eTag = eTag;
+      this.lastModified = lastModified;
+    }
+
+    public String getETag() {
+      return eTag;
+    }
+
+    public Optional<Instant> getLastModified() {
+      return Optional.ofNullable(lastModified);
+    }
+
+    public Path getPath() {
+      return path;
+    }
+
+    public long getSize() {
+      return size;
+    }
+  }
+
+  private final Path directory;
+  private final long maxBytes;
+  private final Map<String, Entry> entries;
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+  private final AtomicLong evictions;
+  private long totalBytes;
+
+  public DiskCache(
+      @Value("${SC_WEBAPP_DISK_CACHE_DIRECTORY:}") final String directory,
+      @Value("${SC_WEBAPP_DISK_CACHE_MAX_BYTES:268435456}") final long maxBytes) {
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Disk cache size cannot be negative");
+    }
+    this.maxBytes = maxBytes;
+    this.directory = createDirectory(directory);
+
+    // Access-ordered, so the least recently used entry is first
+    entries = new LinkedHashMap<>(16, 0.75f, true);
+    hits = new AtomicLong();
+    misses = new AtomicLong();
+    evictions = new AtomicLong();
+  }
+
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    FunctionCounter.builder("storage.cache.requests", hits, AtomicLong::get)
+        .tag("result", "hit")
+        .description("Reads served from the local disk cache")
+        .register(registry);
+    FunctionCounter.builder("storage.cache.requests", misses, AtomicLong::get)
+        .tag("result", "miss")
+        .description("Reads that were not in the local disk cache")
+        .register(registry);
+    FunctionCounter.builder("storage.cache.evictions", evictions, AtomicLong::get)
+        .description("Files evicted from the local disk cache")
+        .register(registry);
+    Gauge.builder("storage.cache.size", this, DiskCache::size)
+        .baseUnit("bytes")
+        .description("Bytes in the local disk cache")
+        .register(registry);
+    Gauge.builder("storage.cache.entries", this, DiskCache::entryCount)
+        .description("Files in the local disk cache")
+        .register(registry);
+  }
+
+  /**
+   * Checks whether a file of a given size can be cached at all.
+   *
+   * @param size File size in bytes
+   * @return True if the file fits within the byte budget
+   */
+  public boolean fits(final long size) {
+    return size >= 0 && size <= maxBytes;
+  }
+
+  /**
+   * Looks up a cached file, and counts a hit or a miss.
+   *
+   * @param name Name of the stored file
+   * @return Cached file, if there is one
+   */
+  public Optional<Entry> get(final String name) {
+    requireNonNull(name, "No name provided");
+    final Entry entry;
+    synchronized (this) {
+      entry = entries.get(name);
+    }
+    if (entry == null) {
+      misses.incrementAndGet();
+    } else {
+      hits.incrementAndGet();
+    }
+    return Optional.ofNullable(entry);
+  }
+
+  /**
+   * Path in the cache directory to download a stored file to, before it is added with {@link
+   * #put(String, Path, String)}. The file does not exist yet.
+   *
+   * @return Path for a new file
+   */
+  public Path newDownloadFile() {
+    return directory.resolve(String.format("download.%s.tmp", UUID.randomUUID()));
+  }
+
+  /**
+   * Adds a downloaded file to the cache, and evicts the least recently used files to stay within
+   * the byte budget. The downloaded file is moved into the cache, or deleted if it is too large
+   * to cache.
+   *
+   * @param name Name of the stored file
+   * @param downloadedFile File to add
+   * @param eTag Entity tag of the stored file
+   * @return Cached file, if it fits in the cache
+   * @throws IOException On an exception moving the file
+   */
+  public Optional<Entry> put(final String name, final Path downloadedFile, final String eTag)
+      throws IOException {
+    return put(name, downloadedFile, eTag, null);
+  }
+
+  /**
+   * Adds a downloaded file to the cache, with the time the stored file was last modified, so that
+   * conditional requests can be answered from the cache.
+   *
+   * @param name Name of the stored file
+   * @param downloadedFile File to add
+   * @param eTag Entity tag of the stored file
+   * @param lastModified When the stored file was last modified, or null if not known
+   * @return Cached file, if it fits in the cache
+   * @throws IOException On an exception moving the file
+   * @see #put(String, Path, String)
+   */
+  public Optional<Entry> put(
+      final String name, final Path downloadedFile, final String eTag, final Instant lastModified)
+      throws IOException {
+    requireNonNull(name, "No name provided");
+    requireNonNull(downloadedFile, "No file provided");
+
+    final long size = Files.size(downloadedFile);
+    if (!fits(size)) {
+      Files.deleteIfExists(downloadedFile);
+      return Optional.empty();
+    }
+
+    // Each version gets its own file, so that open streams on an older version are not disturbed
+    final Path cachedFile = Files.createTempFile(directory, "cached.", ".bin");
+    Files.move(downloadedFile, cachedFile, StandardCopyOption.REPLACE_EXISTING);
+    final Entry entry = new Entry(cachedFile, size, eTag, lastModified);
+
+    final List<Entry> evicted = new ArrayList<>();
+    synchronized (this) {
+      final Entry replaced = entries.put(name, entry);
+      if (replaced != null) {
+        totalBytes -= replaced.getSize();
+        evicted.add(replaced);
+      }
+      totalBytes += size;
+      final Iterator<Entry> iterator = entries.values().iterator();
+      while (totalBytes > maxBytes && iterator.hasNext()) {
+        final Entry eldest = iterator.next();
+        iterator.remove();
+        totalBytes -= eldest.getSize();
+        evicted.add(eldest);
+        evictions.incrementAndGet();
+      }
+    }
+    evicted.forEach(this::delete);
+
+    synchronized (this) {
+      return Optional.ofNullable(entries.get(name));
+    }
+  }
+
+  /**
+   * Removes a file from the cache, for example, when the stored file is written again.
+   *
+   * @param name Name of the stored file
+   */
+  public void remove(final String name) {
+    requireNonNull(name, "No name provided");
+    final Entry removed;
+    synchronized (this) {
+      removed = entries.remove(name);
+      if (removed != null) {
+        totalBytes -= removed.getSize();
+      }
+    }
+    if (removed != null) {
+      delete(removed);
+    }
+  }
+
+  /** Deletes all cached files. */
+  @PreDestroy
+  public void clear() {
+    final List<Entry> removed;
+    synchronized (this) {
+      removed = new ArrayList<>(entries.values());
+      entries.clear();
+      totalBytes = 0;
+    }
+    removed.forEach(this::delete);
+  }
+
+  public synchronized int entryCount() {
+    return entries.size();
+  }
+
+  public synchronized long size() {
+    return totalBytes;
+  }
+
+  private Path createDirectory(final String directory) {
+    try {
+      if (StringUtils.isBlank(directory)) {
+        return Files.createTempDirectory("sc-webapp-cache.");
+      }
+      // Only a dedicated subdirectory is used and cleared, so that other files in a shared
+      // directory are never deleted
+      final Path cacheDirectory =
+          Path.of(directory).toAbsolutePath().resolve(CACHE_SUBDIRECTORY);
+      Files.createDirectories(cacheDirectory);
+      // The index does not survive a restart, so files left over are not used
+      try (final Stream<Path> files = Files.list(cacheDirectory)) {
+        for (final Path file : (Iterable<Path>) files::iterator) {
+          if (Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+            Files.deleteIfExists(file);
+          }
+        }
+      }
+      return cacheDirectory;
+    } catch (final IOException e) {
+      throw new InternalRuntimeException(
+          String.format("Could not create disk cache directory <%s>", directory), e);
+    }
+  }
+
+  private void delete(final Entry entry) {
+    try {
+      Files.deleteIfExists(entry.getPath());
+    } catch (final IOException e) {
+      LOGGER.warn(String.format("Could not delete cached file <%s>", entry.getPath()), e);
+    }
+  }
+}
@@ -28,18 +28,24 @@ http://www.gnu.org/licenses/
 package us.fatehi.schemacrawler.webapp.service.storage;
 
 public enum FileExtensionType {
-  SQLITE_DB("db", "application/x-sqlite3"),
-  PNG("png", "image/png"),
-  JSON("json", "application/json"),
-  LOG("log", "text/plain"),
-  DATA("data", "application/octet-stream");
+  SQLITE_DB("db", "application/x-sqlite3", true),
+  PNG("png", "image/png", true),
+  JSON("json", "application/json", false),
+  LOG("log", "text/plain", false),
+  DATA("data", "application/octet-stream", true),
+  CATALOG("catalog", "application/gzip", true),
+  BUNDLE("bundle", "application/octet-stream", false),
+  CALLBACK("callback", "application/json", false),
+  IDEMPOTENCY("idempotency", "application/json", false);
 
   private final String extension;
   private final String mimeType;
+  private final boolean immutable;
 
-  FileExtensionType(final String extension, final String mimeType) {
+  FileExtensionType(final String extension, final String mimeType, final boolean immutable) {
     this.extension = extension;
     this.mimeType = mimeType;
+    this.immutable = immutable;
   }
 
   public String getExtension() {
@@ -50,6 +56,15 @@ public enum FileExtensionType {
     return mimeType;
   }
 
+  /**
+   * Whether files of this type are written only once for a key, so that a copy never goes stale.
+   *
+   * @return True if files of this type do not change once they are stored
+   */
+  public boolean isImmutable() {
+    return immutable;
+  }
+
   @Override
   public String toString() {
     return getExtension();
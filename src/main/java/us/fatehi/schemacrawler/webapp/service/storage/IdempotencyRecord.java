@@ -0,0 +1,122 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+
+package us.fatehi.schemacrawler.webapp.service.storage;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Instant;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+
+/**
+ * Response sent to a request that was made with an idempotency key, so that it can be sent again
+ * to a retry of the same request. A record without a status is for a request that is still being
+ * handled.
+ */
+public final class IdempotencyRecord {
+
+  private final String idempotencyKey;
+  private final String fingerprint;
+  private final DiagramKey key;
+  private final int status;
+  private final String location;
+  private final String body;
+  private final Instant created;
+
+  public IdempotencyRecord(
+      final String idempotencyKey,
+      final String fingerprint,
+      final DiagramKey key,
+      final int status,
+      final String location,
+      final String body,
+      final Instant created) {
+    this.idempotencyKey = requireNonNull(idempotencyKey, "No idempotency key provided");
+    this.fingerprint = requireNonNull(fingerprint, "No fingerprint provided");
+    this.key = requireNonNull(key, "No key provided");
+    this.status = status;
+    this.location = location;
+    this.body = body;
+    this.created = requireNonNull(created, "No created time provided");
+  }
+
+  /**
+   * Response body, which is the diagram request as JSON.
+   *
+   * @return Response body, or null if the request is still being handled
+   */
+  public String getBody() {
+    return body;
+  }
+
+  public Instant getCreated() {
+    return created;
+  }
+
+  /**
+   * Hash of the request parameters and upload, so that reuse of an idempotency key for a different
+   * request can be detected.
+   *
+   * @return Hex encoded fingerprint
+   */
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  public String getIdempotencyKey() {
+    return idempotencyKey;
+  }
+
+  public DiagramKey getKey() {
+    return key;
+  }
+
+  public String getLocation() {
+    return location;
+  }
+
+  /**
+   * HTTP status of the response.
+   *
+   * @return Status, or 0 if the request is still being handled
+   */
+  public int getStatus() {
+    return status;
+  }
+
+  public boolean isInProgress() {
+    return status == 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("<%s> %s %d", idempotencyKey, key, status);
+  }
+}
@@ -0,0 +1,297 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+
+package us.fatehi.schemacrawler.webapp.service.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.IDEMPOTENCY;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.validation.constraints.NotNull;
+import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+
+/**
+ * Remembers the response to each request that was made with an idempotency key, so that a retry
+ * of the request gets the same response instead of creating another diagram request. Responses are
+ * stored, so that a retry that reaches another instance is also answered from the record, and the
+ * most recently used records are kept in memory. Records expire, after which the idempotency key
+ * can be used for a new request.
+ */
+@Component
+public class IdempotencyStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IdempotencyStore.class);
+
+  // 36^12, the number of distinct diagram keys of the shorter, legacy length
+  private static final long RECORD_KEY_BOUND = 4_738_381_338_321_616_896L;
+
+  /**
+   * Hashes the parts of a request, so that requests can be compared without keeping them.
+   *
+   * @param parts Request parameters, where null is the same as an empty string
+   * @return Hex encoded fingerprint
+   */
+  public static String fingerprint(final String... parts) {
+    final MessageDigest digest = sha256();
+    for (final String part : parts) {
+      if (part != null) {
+        digest.update(part.getBytes(UTF_8));
+      }
+      digest.update((byte) 0);
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Derives the key that a record is stored under from the idempotency key, so that any instance
+   * can find the record. The idempotency key is hashed, since it is chosen by the client.
+   */
+  static DiagramKey recordKey(final String idempotencyKey) {
+    final byte[] hash = sha256().digest(idempotencyKey.getBytes(UTF_8));
+    final long value = Math.floorMod(ByteBuffer.wrap(hash).getLong(), RECORD_KEY_BOUND);
+    return new DiagramKey(StringUtils.leftPad(Long.toString(value, 36), 12, '0'));
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new InternalRuntimeException("SHA-256 is not available", e);
+    }
+  }
+
+  private final StorageService storageService;
+  private final Duration expiry;
+  private final Map<String, IdempotencyRecord> records;
+  private final ObjectMapper mapper;
+
+  public IdempotencyStore(
+      @NotNull(message = "Storage service not provided") final StorageService storageService,
+      @Value("${SC_WEBAPP_IDEMPOTENCY_CACHE_SIZE:10000}") final int maxEntries,
+      @Value("${SC_WEBAPP_IDEMPOTENCY_EXPIRY_HOURS:24}") final long expiryHours) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("Idempotency cache size must be positive");
+    }
+    this.storageService = storageService;
+    expiry = Duration.ofHours(expiryHours);
+    // Access-ordered, so the least recently used record is evicted first
+    records =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          private static final long serialVersionUID = -3360942915853447329L;
+
+          @Override
+          protected boolean removeEldestEntry(
+              final Map.Entry<String, IdempotencyRecord> eldest) {
+            return size() > maxEntries;
+          }
+        };
+    mapper = new ObjectMapper();
+  }
+
+  /**
+   * Records the response to a request, and stores it for retries that reach other instances.
+   *
+   * @param idempotencyKey Idempotency key sent by the client
+   * @param fingerprint Fingerprint of the request
+   * @param key Diagram key that was created for the request
+   * @param status HTTP status of the response
+   * @param location Location header of the response
+   * @param body Response body
+   */
+  public void record(
+      final String idempotencyKey,
+      final String fingerprint,
+      final DiagramKey key,
+      final int status,
+      final String location,
+      final byte[] body) {
+    requireNonNull(body, "No response body provided");
+    final IdempotencyRecord record =
+        new IdempotencyRecord(
+            idempotencyKey,
+            fingerprint,
+            key,
+            status,
+            location,
+            new String(body, UTF_8),
+            Instant.now());
+    synchronized (this) {
+      records.put(idempotencyKey, record);
+    }
+
+    final DiagramKey recordKey = recordKey(idempotencyKey);
+    try {
+      final Map<String, Object> json = new LinkedHashMap<>();
+      json.put("idempotency-key", record.getIdempotencyKey());
+      json.put("fingerprint", record.getFingerprint());
+      json.put("key", record.getKey().getKey());
+      json.put("status", record.getStatus());
+      json.put("location", record.getLocation());
+      json.put("body", record.getBody());
+      json.put("created", record.getCreated().toString());
+      final byte[] bytes = mapper.writeValueAsBytes(json);
+      storageService.store(() -> new ByteArrayInputStream(bytes), recordKey, IDEMPOTENCY);
+      storageService.seal(recordKey);
+    } catch (final Exception e) {
+      // Retries that reach this instance are still answered from memory
+      LOGGER.error(
+          String.format(
+              "Could not store idempotent response for <%s>: %s", key, e.getMessage()));
+    }
+  }
+
+  /**
+   * Forgets a request that could not be handled, so that a retry is handled as a new request.
+   * Requests that already have a response are not forgotten.
+   *
+   * @param idempotencyKey Idempotency key sent by the client
+   */
+  public synchronized void release(final String idempotencyKey) {
+    final IdempotencyRecord record = records.get(idempotencyKey);
+    if (record != null && record.isInProgress()) {
+      records.remove(idempotencyKey);
+    }
+  }
+
+  /**
+   * Reserves an idempotency key for a new request, unless it was already used.
+   *
+   * @param idempotencyKey Idempotency key sent by the client
+   * @param fingerprint Fingerprint of the request
+   * @param key Diagram key created for the request
+   * @return Empty if the key is reserved for this request, or the record of the earlier request
+   *     with the same idempotency key, which may still be in progress
+   */
+  public Optional<IdempotencyRecord> reserve(
+      final String idempotencyKey, final String fingerprint, final DiagramKey key) {
+    requireNonNull(idempotencyKey, "No idempotency key provided");
+    requireNonNull(fingerprint, "No fingerprint provided");
+    requireNonNull(key, "No key provided");
+
+    final Optional<IdempotencyRecord> local = current(idempotencyKey);
+    if (local.isPresent()) {
+      return local;
+    }
+    // Look in storage outside the lock, since the lookup may go over the network
+    final Optional<IdempotencyRecord> stored = retrieve(idempotencyKey);
+    synchronized (this) {
+      final Optional<IdempotencyRecord> current = current(idempotencyKey);
+      if (current.isPresent()) {
+        return current;
+      }
+      if (stored.isPresent()) {
+        records.put(idempotencyKey, stored.get());
+        return stored;
+      }
+      final IdempotencyRecord reservation =
+          new IdempotencyRecord(idempotencyKey, fingerprint, key, 0, null, null, Instant.now());
+      records.put(idempotencyKey, reservation);
+      return Optional.empty();
+    }
+  }
+
+  public synchronized int size() {
+    return records.size();
+  }
+
+  private synchronized Optional<IdempotencyRecord> current(final String idempotencyKey) {
+    final IdempotencyRecord record = records.get(idempotencyKey);
+    if (record == null) {
+      return Optional.empty();
+    }
+    if (isExpired(record)) {
+      records.remove(idempotencyKey);
+      return Optional.empty();
+    }
+    return Optional.of(record);
+  }
+
+  private boolean isExpired(final IdempotencyRecord record) {
+    return record.getCreated().plus(expiry).isBefore(Instant.now());
+  }
+
+  /** Reads a stored record, ignoring records that have expired, or are for another key. */
+  private Optional<IdempotencyRecord> retrieve(final String idempotencyKey) {
+    final DiagramKey recordKey = recordKey(idempotencyKey);
+    try {
+      final Optional<StoredObject> storedObject =
+          storageService.retrieve(recordKey, IDEMPOTENCY, null);
+      if (storedObject.isEmpty()) {
+        return Optional.empty();
+      }
+      final Map<String, Object> json;
+      try (final StoredObject object = storedObject.get();
+          final InputStream inputStream = object.getInputStream()) {
+        json = mapper.readValue(inputStream, new TypeReference<Map<String, Object>>() {});
+      }
+      final IdempotencyRecord record =
+          new IdempotencyRecord(
+              (String) json.get("idempotency-key"),
+              (String) json.get("fingerprint"),
+              new DiagramKey((String) json.get("key")),
+              ((Number) json.get("status")).intValue(),
+              (String) json.get("location"),
+              (String) json.get("body"),
+              Instant.parse((String) json.get("created")));
+      if (!idempotencyKey.equals(record.getIdempotencyKey()) || isExpired(record)) {
+        return Optional.empty();
+      }
+      return Optional.of(record);
+    } catch (final Exception e) {
+      // Handled as a new request, which is what would happen without the record
+      LOGGER.warn(
+          String.format(
+              "Could not read response for idempotency key <%s>: %s",
+              recordKey, e.getMessage()));
+      return Optional.empty();
+    }
+  }
+}
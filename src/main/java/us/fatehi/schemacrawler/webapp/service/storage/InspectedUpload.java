@@ -0,0 +1,140 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.storage;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Objects.requireNonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import org.springframework.core.io.InputStreamSource;
+
+import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
+
+/**
+ * Upload that computes an MD5 digest and captures the file header as it is read. An upload can be
+ * hashed and checked while it is being spooled to disk, without reading the spooled file again.
+ * The upload can only be read once.
+ */
+public final class InspectedUpload implements InputStreamSource {
+
+  private static final byte[] SQLITE_HEADER = "SQLite format 3\0".getBytes(US_ASCII);
+
+  private final InputStreamSource source;
+  private final MessageDigest digest;
+  private final byte[] header;
+  private int headerLength;
+  private long size;
+  private boolean opened;
+  private String md5Hex;
+
+  public InspectedUpload(final InputStreamSource source) {
+    this.source = requireNonNull(source, "No upload provided");
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new InternalRuntimeException("MD5 is not available", e);
+    }
+    header = new byte[SQLITE_HEADER.length];
+  }
+
+  @Override
+  public synchronized InputStream getInputStream() throws IOException {
+    if (opened) {
+      throw new IllegalStateException("Upload has already been read");
+    }
+    opened = true;
+    return new FilterInputStream(source.getInputStream()) {
+
+      @Override
+      public int read() throws IOException {
+        final int b = super.read();
+        if (b != -1) {
+          inspect(new byte[] {(byte) b}, 0, 1);
+        }
+        return b;
+      }
+
+      @Override
+      public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int count = super.read(b, off, len);
+        if (count > 0) {
+          inspect(b, off, count);
+        }
+        return count;
+      }
+
+      @Override
+      public long skip(final long n) throws IOException {
+        throw new IOException("Upload cannot be skipped, since it is being inspected");
+      }
+    };
+  }
+
+  /**
+   * MD5 digest of the upload, once it has been read completely.
+   *
+   * @return Lower-case hexadecimal MD5 digest
+   */
+  public synchronized String getMd5Hex() {
+    if (md5Hex == null) {
+      md5Hex = HexFormat.of().formatHex(digest.digest());
+    }
+    return md5Hex;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Checks the upload for the header that all SQLite database files start with.
+   *
+   * @return Whether the upload looks like a SQLite database
+   */
+  public boolean isSQLiteDatabase() {
+    return headerLength == SQLITE_HEADER.length && Arrays.equals(header, SQLITE_HEADER);
+  }
+
+  private void inspect(final byte[] b, final int off, final int len) {
+    digest.update(b, off, len);
+    if (headerLength < header.length) {
+      final int headerBytes = Math.min(len, header.length - headerLength);
+      System.arraycopy(b, off, header, headerLength, headerBytes);
+      headerLength += headerBytes;
+    }
+    size += len;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.storage;
+
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+
+/**
+ * Layout of files in the S3 bucket. Files are spread over 36 prefixes, picked by the last character
+ * of the key, which is random, so that load is spread over S3 partitions. Keys start with the hour
+ * they were created, so files under each prefix are listed oldest first, and files older than a
+ * given time are a range listing of each prefix, up to {@link DiagramKey#timePrefix}. Files stored
+ * before this layout are in the root of the bucket.
+ */
+final class S3ObjectKeys {
+
+  /**
+   * Checks whether a file is not in S3. A HEAD response has no body, so a missing file may only be
+   * known by its status code.
+   *
+   * @param e Exception from S3
+   * @return True if the file was not found
+   */
+  static boolean isNotFound(final Throwable e) {
+    return e instanceof NoSuchKeyException
+        || e instanceof final S3Exception s3Exception && s3Exception.statusCode() == 404;
+  }
+
+  /**
+   * Returns the name of a file in the root of the bucket, where files were stored before they were
+   * stored under prefixes.
+   *
+   * @param key Diagram key
+   * @param extension Filename extension
+   * @return Name of the file in S3
+   */
+  static String legacyObjectKey(final DiagramKey key, final FileExtensionType extension) {
+    return key + "." + extension.getExtension();
+  }
+
+  /**
+   * Returns the name of a file in S3, under the prefix for the key.
+   *
+   * @param key Diagram key
+   * @param extension Filename extension
+   * @return Name of the file in S3
+   */
+  static String objectKey(final DiagramKey key, final FileExtensionType extension) {
+    final String keyString = key.getKey();
+    return String.format(
+        "%s/%s.%s", keyString.charAt(keyString.length() - 1), keyString, extension.getExtension());
+  }
+
+  private S3ObjectKeys() {
+    // Prevent instantiation
+  }
+}
@@ -31,12 +31,35 @@ import java.nio.file.Path;
 import java.util.Optional;
 
 import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpRange;
 
 import us.fatehi.schemacrawler.webapp.model.DiagramKey;
 
 /** Service to store files. */
 public interface StorageService {
 
+  /**
+   * Copies a stored file from one key to another, without downloading it.
+   *
+   * @param sourceKey Key of the stored file.
+   * @param targetKey Key to copy the file to.
+   * @param extension Filename extension.
+   * @throws Exception Exception copying a file, including if the source file does not exist.
+   */
+  void copy(DiagramKey sourceKey, DiagramKey targetKey, FileExtensionType extension)
+      throws Exception;
+
+  /**
+   * Looks up the metadata of a stored file, without reading the file.
+   *
+   * @param key Key.
+   * @param extension Filename extension.
+   * @return Metadata of the file, if one is found.
+   * @throws Exception Exception looking up a file.
+   */
+  Optional<StoredObjectMetadata> describe(DiagramKey key, FileExtensionType extension)
+      throws Exception;
+
   /**
    * Initializes the service. Called via a Spring @PostConstruct.
    *
@@ -45,7 +68,23 @@ public interface StorageService {
   void init() throws Exception;
 
   /**
-   * Resolves a filename key and extension into a local default file-system path to a file.
+   * Opens a stored file for reading, without copying it to local disk first. The caller needs to
+   * close the returned object.
+   *
+   * @param key Key.
+   * @param extension Filename extension.
+   * @param range Byte range to read, or null to read the whole file.
+   * @return Stream of the file, if one is found.
+   * @throws IllegalArgumentException If the range starts after the end of the file.
+   * @throws Exception Exception reading a file.
+   */
+  Optional<StoredObject> retrieve(DiagramKey key, FileExtensionType extension, HttpRange range)
+      throws Exception;
+
+  /**
+   * Resolves a filename key and extension into a local default file-system path to a file. The
+   * file belongs to the storage service, and is not deleted by the caller. Storage that keeps
+   * files remotely only returns files that it has a local copy of, or can cache locally.
    *
    * @param key Key.
    * @param extension Filename extension.
@@ -54,6 +93,17 @@ public interface StorageService {
    */
   Optional<Path> retrieveLocal(DiagramKey key, FileExtensionType extension) throws Exception;
 
+  /**
+   * Marks that all files for a key have been stored. Storage that writes the files for a key
+   * together can write them now. Files stored for the key later are still kept.
+   *
+   * @param key Key.
+   * @throws Exception Exception storing the files.
+   */
+  default void seal(final DiagramKey key) throws Exception {
+    // Files are stored as soon as they are received
+  }
+
   /**
    * Stores a stream given a key and extension.
    *
@@ -66,7 +116,8 @@ public interface StorageService {
       throws Exception;
 
   /**
-   * Stores a stream given a filename key and extension locally in a temporary file.
+   * Stores a stream given a filename key and extension locally in a temporary file. The file
+   * belongs to the caller, which deletes it once it is processed.
    *
    * @param stream Input stream
    * @param key Key.
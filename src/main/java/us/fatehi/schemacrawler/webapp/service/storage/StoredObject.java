@@ -0,0 +1,213 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.storage;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.http.HttpRange;
+
+/**
+ * Stream of a stored file, or of a byte range of it, with the lengths needed for an HTTP response.
+ * The stream reads directly from storage, so it needs to be closed.
+ */
+public final class StoredObject implements Closeable {
+
+  /**
+   * Opens a local file, or a byte range of it.
+   *
+   * @param file Local file
+   * @param contentType MIME type of the file
+   * @param range Byte range to read, or null to read the whole file
+   * @return Stream of the file
+   * @throws IllegalArgumentException If the range starts after the end of the file
+   * @throws IOException On an exception opening the file
+   */
+  public static StoredObject fromFile(
+      final Path file, final String contentType, final HttpRange range) throws IOException {
+    requireNonNull(file, "No file provided");
+
+    final long totalLength = Files.size(file);
+    long rangeStart = 0;
+    long contentLength = totalLength;
+    if (range != null) {
+      rangeStart = range.getRangeStart(totalLength);
+      if (rangeStart >= totalLength) {
+        throw new IllegalArgumentException(
+            String.format("Range <%s> not satisfiable for <%s>", range, file.getFileName()));
+      }
+      contentLength = range.getRangeEnd(totalLength) - rangeStart + 1;
+    }
+
+    final InputStream inputStream = Files.newInputStream(file);
+    try {
+      inputStream.skipNBytes(rangeStart);
+      return new StoredObject(
+          BoundedInputStream.builder().setInputStream(inputStream).setMaxCount(contentLength).get(),
+          contentType,
+          rangeStart,
+          contentLength,
+          totalLength);
+    } catch (final IOException | RuntimeException e) {
+      inputStream.close();
+      throw e;
+    }
+  }
+
+  private final InputStream inputStream;
+  private final String contentType;
+  private final long rangeStart;
+  private final long contentLength;
+  private final long totalLength;
+  private final String eTag;
+
+  /**
+   * Stream of a stored file, or of part of it.
+   *
+   * @param inputStream Stream of the bytes that were read
+   * @param contentType MIME type of the file
+   * @param rangeStart Offset of the first byte of the stream in the file
+   * @param contentLength Number of bytes in the stream
+   * @param totalLength Length of the whole file
+   */
+  public StoredObject(
+      final InputStream inputStream,
+      final String contentType,
+      final long rangeStart,
+      final long contentLength,
+      final long totalLength) {
+    this(inputStream, contentType, rangeStart, contentLength, totalLength, null);
+  }
+
+  /**
+   * Stream of a stored file, or of part of it, with the entity tag of the version of the file
+   * that was read.
+   *
+   * @param inputStream Stream of the bytes that were read
+   * @param contentType MIME type of the file
+   * @param rangeStart Offset of the first byte of the stream in the file
+   * @param contentLength Number of bytes in the stream
+   * @param totalLength Length of the whole file
+   * @param eTag Entity tag of the whole file, or null if storage does not provide one
+   */
+  public StoredObject(
+      final InputStream inputStream,
+      final String contentType,
+      final long rangeStart,
+      final long contentLength,
+      final long totalLength,
+      final String eTag) {
+    this.inputStream = requireNonNull(inputStream, "No input stream provided");
+    this.contentType = requireNonNull(contentType, "No content type provided");
+    if (rangeStart < 0 || contentLength < 0 || rangeStart + contentLength > totalLength) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Bad range, %d bytes from %d of %d", contentLength, rangeStart, totalLength));
+    }
+    this.rangeStart = rangeStart;
+    this.contentLength = contentLength;
+    this.totalLength = totalLength;
+    this.eTag = eTag;
+  }
+
+  @Override
+  public void close() throws IOException {
+    inputStream.close();
+  }
+
+  public long getContentLength() {
+    return contentLength;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  /**
+   * Entity tag of the version of the whole file that was read, so that reads of different byte
+   * ranges can be checked to be from the same version.
+   *
+   * @return Entity tag, or null if storage does not provide one
+   */
+  public String getETag() {
+    return eTag;
+  }
+
+  public InputStream getInputStream() {
+    return inputStream;
+  }
+
+  /**
+   * Offset of the last byte of the stream in the file.
+   *
+   * @return Offset of the last byte
+   */
+  public long getRangeEnd() {
+    return rangeStart + contentLength - 1;
+  }
+
+  public long getRangeStart() {
+    return rangeStart;
+  }
+
+  public long getTotalLength() {
+    return totalLength;
+  }
+
+  /**
+   * Whether the stream has only part of the file.
+   *
+   * @return True for a byte range
+   */
+  public boolean isPartial() {
+    return contentLength < totalLength;
+  }
+
+  /**
+   * Stream of the same bytes, with the entity tag of the file that was read.
+   *
+   * @param eTag Entity tag of the whole file
+   * @return Stream of the file
+   */
+  public StoredObject withETag(final String eTag) {
+    return new StoredObject(inputStream, contentType, rangeStart, contentLength, totalLength, eTag);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s bytes %d-%d/%d", contentType, rangeStart, getRangeEnd(), totalLength);
+  }
+}
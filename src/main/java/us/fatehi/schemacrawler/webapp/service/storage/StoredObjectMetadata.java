@@ -0,0 +1,91 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.service.storage;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Metadata of a stored file, which can be looked up without reading the file. Used to answer
+ * conditional HTTP requests.
+ */
+public final class StoredObjectMetadata {
+
+  private final String contentType;
+  private final long contentLength;
+  private final String eTag;
+  private final Instant lastModified;
+
+  /**
+   * Metadata of a stored file.
+   *
+   * @param contentType MIME type of the file
+   * @param contentLength Length of the file
+   * @param eTag Hash of the file contents, without quotes
+   * @param lastModified When the file was stored, or null if not known
+   */
+  public StoredObjectMetadata(
+      final String contentType,
+      final long contentLength,
+      final String eTag,
+      final Instant lastModified) {
+    this.contentType = requireNonNull(contentType, "No content type provided");
+    this.eTag = requireNonNull(eTag, "No entity tag provided");
+    this.contentLength = contentLength;
+    this.lastModified = lastModified;
+  }
+
+  public long getContentLength() {
+    return contentLength;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  /**
+   * Strong entity tag of the file, in quotes as used in HTTP headers.
+   *
+   * @return Quoted entity tag
+   */
+  public String getETag() {
+    return "\"" + eTag + "\"";
+  }
+
+  public Optional<Instant> getLastModified() {
+    return Optional.ofNullable(lastModified);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s %d bytes %s", contentType, contentLength, getETag());
+  }
+}
@@ -0,0 +1,255 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.testcontainers.containers.localstack.LocalStackContainer.Service.S3;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.JSON;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.LOG;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.PNG;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpRange;
+import org.testcontainers.containers.localstack.LocalStackContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+import us.fatehi.schemacrawler.webapp.service.storage.AmazonS3StorageService;
+import us.fatehi.schemacrawler.webapp.service.storage.BundlingStorageService;
+import us.fatehi.schemacrawler.webapp.service.storage.DiskCache;
+import us.fatehi.schemacrawler.webapp.service.storage.StorageService;
+import us.fatehi.schemacrawler.webapp.service.storage.StoredObject;
+import us.fatehi.schemacrawler.webapp.service.storage.StoredObjectMetadata;
+
+@Testcontainers(disabledWithoutDocker = true)
+public class AmazonS3StorageServiceTest {
+
+  @Container
+  private static final LocalStackContainer localstack =
+      new LocalStackContainer(DockerImageName.parse("localstack/localstack").withTag("4.0.3"))
+          .withServices(S3);
+
+  @TempDir private Path cacheDirectory;
+  @TempDir private Path stagingDirectory;
+
+  private final AtomicInteger gets = new AtomicInteger();
+  private final AtomicInteger heads = new AtomicInteger();
+  private S3Client s3Client;
+  private String s3Bucket;
+
+  @BeforeEach
+  public void createBucket() {
+    s3Client =
+        S3Client.builder()
+            .endpointOverride(localstack.getEndpointOverride(S3))
+            .credentialsProvider(
+                StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(
+                        localstack.getAccessKey(), localstack.getSecretKey())))
+            .region(Region.of(localstack.getRegion()))
+            .overrideConfiguration(
+                c ->
+                    c.addExecutionInterceptor(
+                        new ExecutionInterceptor() {
+                          @Override
+                          public void beforeExecution(
+                              final Context.BeforeExecution context,
+                              final ExecutionAttributes executionAttributes) {
+                            if (context.request() instanceof GetObjectRequest) {
+                              gets.incrementAndGet();
+                            }
+                            if (context.request() instanceof HeadObjectRequest) {
+                              heads.incrementAndGet();
+                            }
+                          }
+                        }))
+            .build();
+    s3Bucket = "test-" + UUID.randomUUID();
+    s3Client.createBucket(b -> b.bucket(s3Bucket));
+  }
+
+  @Test
+  public void cacheSmallFile() throws Exception {
+    final DiskCache diskCache = new DiskCache(cacheDirectory.toString(), 1024 * 1024);
+    final AmazonS3StorageService storageService = newStorageService(diskCache);
+    final DiagramKey key = new DiagramKey();
+    final byte[] data = store(storageService, key, 4096);
+
+    assertThat(read(storageService, key, null), is(data));
+    assertThat(read(storageService, key, null), is(data));
+
+    // Images do not change, so the cached copy is used without contacting S3
+    assertThat(gets.get(), is(1));
+    assertThat(diskCache.entryCount(), is(1));
+  }
+
+  @Test
+  public void describeCachedFile() throws Exception {
+    final DiskCache diskCache = new DiskCache(cacheDirectory.toString(), 1024 * 1024);
+    final AmazonS3StorageService storageService = newStorageService(diskCache);
+    final DiagramKey key = new DiagramKey();
+    store(storageService, key, 4096);
+
+    final StoredObjectMetadata metadata = storageService.describe(key, PNG).get();
+    assertThat(heads.get(), is(1));
+    read(storageService, key, null);
+
+    // Images do not change, so the cached copy is described without contacting S3
+    final StoredObjectMetadata cachedMetadata = storageService.describe(key, PNG).get();
+    assertThat(heads.get(), is(1));
+    assertThat(cachedMetadata.getETag(), is(metadata.getETag()));
+    assertThat(cachedMetadata.getContentLength(), is(4096L));
+    assertThat(cachedMetadata.getLastModified(), is(metadata.getLastModified()));
+  }
+
+  @Test
+  public void readBundledFile() throws Exception {
+    final DiskCache diskCache = new DiskCache(cacheDirectory.toString(), 1024 * 1024);
+    final BundlingStorageService storageService =
+        new BundlingStorageService(
+            newStorageService(diskCache), diskCache, stagingDirectory.toString());
+    final DiagramKey key = new DiagramKey();
+    final byte[] data = store(storageService, key, 4096);
+    storageService.store(() -> new ByteArrayInputStream(new byte[] {'{', '}'}), key, JSON);
+    storageService.seal(key);
+    gets.set(0);
+
+    // The index and the image are read with a range request each, and the image is cached
+    assertThat(read(storageService, key, null), is(data));
+    assertThat(gets.get(), is(2));
+    assertThat(read(storageService, key, null), is(data));
+    assertThat(
+        read(storageService, key, HttpRange.createByteRange(10, 19)),
+        is(Arrays.copyOfRange(data, 10, 20)));
+    assertThat(gets.get(), is(2));
+
+    // Files kept from the earlier bundle are read with a single request
+    storageService.store(() -> new ByteArrayInputStream(new byte[] {'x'}), key, LOG);
+    storageService.seal(key);
+    assertThat(gets.get(), is(4));
+
+    // Images do not change, so the cached image is read even though the bundle was written again
+    assertThat(read(storageService, key, null), is(data));
+    assertThat(gets.get(), is(4));
+
+    // The bundle was written again, so its index is read again
+    try (final StoredObject storedObject = storageService.retrieve(key, JSON, null).get()) {
+      assertThat(storedObject.getInputStream().readAllBytes(), is(new byte[] {'{', '}'}));
+    }
+    assertThat(gets.get(), is(6));
+
+    // Only the image is kept in the cache, and not ranges of the bundle
+    assertThat(diskCache.entryCount(), is(1));
+  }
+
+  @Test
+  public void readRangeFromS3() throws Exception {
+    final DiskCache diskCache = new DiskCache(cacheDirectory.toString(), 1024 * 1024);
+    final AmazonS3StorageService storageService = newStorageService(diskCache);
+    final DiagramKey key = new DiagramKey();
+    final byte[] data = store(storageService, key, 4096);
+
+    try (final StoredObject storedObject =
+        storageService.retrieve(key, PNG, HttpRange.createByteRange(10, 19)).get()) {
+      assertThat(storedObject.isPartial(), is(true));
+      assertThat(storedObject.getRangeStart(), is(10L));
+      assertThat(storedObject.getTotalLength(), is(4096L));
+      assertThat(
+          storedObject.getInputStream().readAllBytes(), is(Arrays.copyOfRange(data, 10, 20)));
+    }
+
+    // Only the range is read, and the file is not downloaded into the cache
+    assertThat(gets.get(), is(1));
+    assertThat(diskCache.entryCount(), is(0));
+  }
+
+  @Test
+  public void streamLargeFile() throws Exception {
+    final DiskCache diskCache = new DiskCache(cacheDirectory.toString(), 1024);
+    final AmazonS3StorageService storageService = newStorageService(diskCache);
+    final DiagramKey key = new DiagramKey();
+    final byte[] data = store(storageService, key, 4096);
+
+    assertThat(read(storageService, key, null), is(data));
+
+    // Too large to cache, so the file is streamed with a single request
+    assertThat(gets.get(), is(1));
+    assertThat(diskCache.entryCount(), is(0));
+
+    // Not copied to a local file that is never deleted
+    assertThat(storageService.retrieveLocal(key, PNG).isPresent(), is(false));
+    try (final Stream<Path> files = Files.list(cacheDirectory.resolve("sc-webapp-cache"))) {
+      assertThat(files.count(), is(0L));
+    }
+  }
+
+  private AmazonS3StorageService newStorageService(final DiskCache diskCache) {
+    return new AmazonS3StorageService(s3Client, s3Bucket, diskCache, false);
+  }
+
+  private byte[] read(
+      final StorageService storageService, final DiagramKey key, final HttpRange range)
+      throws Exception {
+    try (final StoredObject storedObject = storageService.retrieve(key, PNG, range).get()) {
+      return storedObject.getInputStream().readAllBytes();
+    }
+  }
+
+  private byte[] store(final StorageService storageService, final DiagramKey key, final int size)
+      throws Exception {
+    final byte[] data = new byte[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = (byte) i;
+    }
+    storageService.store(() -> new ByteArrayInputStream(data), key, PNG);
+    return data;
+  }
+}
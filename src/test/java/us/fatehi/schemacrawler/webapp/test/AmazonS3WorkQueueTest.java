@@ -0,0 +1,180 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.testcontainers.containers.localstack.LocalStackContainer.Service.S3;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.localstack.LocalStackContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+import us.fatehi.schemacrawler.webapp.service.queue.AmazonS3WorkQueue;
+import us.fatehi.schemacrawler.webapp.service.queue.WorkLease;
+
+@Testcontainers(disabledWithoutDocker = true)
+public class AmazonS3WorkQueueTest {
+
+  @Container
+  private static final LocalStackContainer localstack =
+      new LocalStackContainer(DockerImageName.parse("localstack/localstack").withTag("4.0.3"))
+          .withServices(S3);
+
+  private static final Duration LEASE_TIME = Duration.ofMinutes(1);
+
+  private final AtomicInteger puts = new AtomicInteger();
+  private S3Client s3Client;
+  private String s3Bucket;
+
+  @Test
+  public void claim() throws Exception {
+    // Each instance has its own work queue, on the same bucket
+    final AmazonS3WorkQueue one = new AmazonS3WorkQueue(s3Client, s3Bucket);
+    final AmazonS3WorkQueue two = new AmazonS3WorkQueue(s3Client, s3Bucket);
+    final DiagramKey first = new DiagramKey();
+    final DiagramKey second = new DiagramKey();
+    one.submit(first, true);
+    one.submit(second, false);
+
+    // Leases are created only if there is no lease, so each request is claimed once
+    final WorkLease firstLease = one.claim("one", LEASE_TIME).get();
+    final WorkLease secondLease = two.claim("two", LEASE_TIME).get();
+    assertThat(Set.of(firstLease.getKey(), secondLease.getKey()), is(Set.of(first, second)));
+    assertThat(firstLease.isNotificationRequested(), is(firstLease.getKey().equals(first)));
+    assertThat(firstLease.getAttempts(), is(1));
+    assertThat(secondLease.getAttempts(), is(1));
+
+    // Leased requests are not written to when polling
+    puts.set(0);
+    assertThat(one.claim("one", LEASE_TIME).isEmpty(), is(true));
+    assertThat(two.claim("two", LEASE_TIME).isEmpty(), is(true));
+    assertThat(two.claim("two", LEASE_TIME).isEmpty(), is(true));
+    assertThat(puts.get(), is(0));
+  }
+
+  @Test
+  public void completeAndRelease() throws Exception {
+    final AmazonS3WorkQueue workQueue = new AmazonS3WorkQueue(s3Client, s3Bucket);
+    final DiagramKey key = new DiagramKey();
+    workQueue.submit(key, false);
+
+    // Released requests can be claimed straight away, and count another attempt
+    final WorkLease lease = workQueue.claim("one", LEASE_TIME).get();
+    workQueue.release(lease);
+    final WorkLease nextLease =
+        new AmazonS3WorkQueue(s3Client, s3Bucket).claim("two", LEASE_TIME).get();
+    assertThat(nextLease.getKey(), is(key));
+    assertThat(nextLease.getAttempts(), is(2));
+
+    // Completing removes both the request and its lease
+    assertThat(workQueue.isQueued(key), is(true));
+    workQueue.complete(nextLease);
+    assertThat(workQueue.isQueued(key), is(false));
+    assertThat(queueObjectCount(), is(0));
+    assertThat(workQueue.claim("three", LEASE_TIME).isEmpty(), is(true));
+  }
+
+  @BeforeEach
+  public void createBucket() {
+    s3Client =
+        S3Client.builder()
+            .endpointOverride(localstack.getEndpointOverride(S3))
+            .credentialsProvider(
+                StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(
+                        localstack.getAccessKey(), localstack.getSecretKey())))
+            .region(Region.of(localstack.getRegion()))
+            .overrideConfiguration(
+                c ->
+                    c.addExecutionInterceptor(
+                        new ExecutionInterceptor() {
+                          @Override
+                          public void beforeExecution(
+                              final Context.BeforeExecution context,
+                              final ExecutionAttributes executionAttributes) {
+                            if (context.request() instanceof PutObjectRequest) {
+                              puts.incrementAndGet();
+                            }
+                          }
+                        }))
+            .build();
+    s3Bucket = "test-" + UUID.randomUUID();
+    s3Client.createBucket(b -> b.bucket(s3Bucket));
+  }
+
+  @Test
+  public void renewAndTakeOver() throws Exception {
+    final AmazonS3WorkQueue one = new AmazonS3WorkQueue(s3Client, s3Bucket);
+    final AmazonS3WorkQueue two = new AmazonS3WorkQueue(s3Client, s3Bucket);
+    final DiagramKey key = new DiagramKey();
+    one.submit(key, false);
+
+    // Expired leases are taken over with a write on the entity tag of the lease
+    final WorkLease expiredLease = one.claim("one", Duration.ZERO).get();
+    final WorkLease lease = two.claim("two", LEASE_TIME).get();
+    assertThat(lease.getKey(), is(key));
+    assertThat(lease.getOwner(), is("two"));
+    assertThat(lease.getAttempts(), is(2));
+
+    // The instance whose lease expired cannot renew or release it
+    assertThat(one.renew(expiredLease, LEASE_TIME).isEmpty(), is(true));
+    one.release(expiredLease);
+    assertThat(one.claim("one", LEASE_TIME).isEmpty(), is(true));
+
+    // Renewing changes the entity tag, so only the latest lease can be renewed
+    final WorkLease renewedLease = two.renew(lease, LEASE_TIME).get();
+    assertThat(renewedLease.getToken().equals(lease.getToken()), is(false));
+    assertThat(renewedLease.getAttempts(), is(2));
+    assertThat(two.renew(lease, LEASE_TIME).isEmpty(), is(true));
+
+    two.complete(renewedLease);
+    assertThat(queueObjectCount(), is(0));
+  }
+
+  private int queueObjectCount() {
+    return s3Client.listObjectsV2(b -> b.bucket(s3Bucket).prefix("queue/")).keyCount();
+  }
+}
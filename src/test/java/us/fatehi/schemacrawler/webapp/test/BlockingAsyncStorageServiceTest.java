@@ -0,0 +1,106 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.JSON;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.PNG;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+import us.fatehi.schemacrawler.webapp.service.storage.BlockingAsyncStorageService;
+import us.fatehi.schemacrawler.webapp.test.service.storage.FileSystemStorageConfig;
+import us.fatehi.schemacrawler.webapp.test.service.storage.FileSystemStorageService;
+
+public class BlockingAsyncStorageServiceTest {
+
+  @TempDir private Path storageRoot;
+  @TempDir private Path localDirectory;
+
+  private BlockingAsyncStorageService asyncStorageService;
+
+  @BeforeEach
+  public void createStorage() throws Exception {
+    final FileSystemStorageService fileSystemStorageService =
+        new FileSystemStorageService(
+            new FileSystemStorageConfig() {
+              @Override
+              public Path fileSystemStorageRootPath() {
+                return storageRoot;
+              }
+            });
+    fileSystemStorageService.init();
+    asyncStorageService = new BlockingAsyncStorageService(fileSystemStorageService);
+  }
+
+  @AfterEach
+  public void shutdown() {
+    asyncStorageService.shutdown();
+  }
+
+  @Test
+  public void copyMissing() {
+    final CompletableFuture<Void> copied =
+        asyncStorageService.copy(new DiagramKey(), new DiagramKey(), PNG);
+
+    final CompletionException exception = assertThrows(CompletionException.class, copied::join);
+    assertThat(exception.getCause(), is(instanceOf(NoSuchFileException.class)));
+  }
+
+  @Test
+  public void storeAndCopy() throws Exception {
+    final DiagramKey key = new DiagramKey();
+    final Path diagramFile = localDirectory.resolve("diagram.png");
+    Files.writeString(diagramFile, "diagram");
+
+    // Several transfers are in progress at once
+    final DiagramKey targetKey = new DiagramKey();
+    CompletableFuture.allOf(
+            asyncStorageService.store(diagramFile, key, PNG),
+            asyncStorageService.store("{}".getBytes(UTF_8), key, JSON))
+        .thenCompose(stored -> asyncStorageService.copy(key, targetKey, PNG))
+        .join();
+
+    assertThat(Files.readString(storageRoot.resolve(key + ".json")), is("{}"));
+    assertThat(Files.readString(storageRoot.resolve(targetKey + ".png")), is("diagram"));
+  }
+}
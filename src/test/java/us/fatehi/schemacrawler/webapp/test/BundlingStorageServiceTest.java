@@ -0,0 +1,167 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.io.IOUtils.toInputStream;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.BUNDLE;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.CALLBACK;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.JSON;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.LOG;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.PNG;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpRange;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+import us.fatehi.schemacrawler.webapp.service.storage.BundlingStorageService;
+import us.fatehi.schemacrawler.webapp.service.storage.DiskCache;
+import us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType;
+import us.fatehi.schemacrawler.webapp.service.storage.StorageService;
+import us.fatehi.schemacrawler.webapp.service.storage.StoredObject;
+import us.fatehi.schemacrawler.webapp.test.service.storage.FileSystemStorageConfig;
+import us.fatehi.schemacrawler.webapp.test.service.storage.FileSystemStorageService;
+
+public class BundlingStorageServiceTest {
+
+  @TempDir private Path storageRoot;
+  @TempDir private Path stagingDirectory;
+  @TempDir private Path cacheDirectory;
+
+  private DiskCache diskCache;
+  private StorageService storageService;
+
+  @BeforeEach
+  public void createStorage() throws Exception {
+    final FileSystemStorageService fileSystemStorageService =
+        new FileSystemStorageService(
+            new FileSystemStorageConfig() {
+              @Override
+              public Path fileSystemStorageRootPath() {
+                return storageRoot;
+              }
+            });
+    fileSystemStorageService.init();
+    diskCache = new DiskCache(cacheDirectory.toString(), 1024 * 1024);
+    storageService =
+        new BundlingStorageService(
+            fileSystemStorageService, diskCache, stagingDirectory.toString());
+  }
+
+  @Test
+  public void bundle() throws Exception {
+    final DiagramKey key = new DiagramKey();
+
+    store(key, JSON, "{\"name\": \"first\"}");
+    store(key, PNG, "diagram");
+    store(key, JSON, "{\"name\": \"second\"}");
+
+    // Staged files are read before they are sealed
+    assertThat(read(key, JSON, null), is("{\"name\": \"second\"}"));
+    assertThat(storedFiles(), is(List.of()));
+    // Staged files have the same entity tag as once they are in the bundle
+    final String stagedETag = storageService.describe(key, JSON).get().getETag();
+
+    storageService.seal(key);
+
+    assertThat(storedFiles(), is(List.of(key + ".bundle")));
+    assertThat(storageService.describe(key, JSON).get().getETag(), is(stagedETag));
+    assertThat(read(key, JSON, null), is("{\"name\": \"second\"}"));
+    assertThat(read(key, PNG, null), is("diagram"));
+    assertThat(read(key, PNG, HttpRange.createByteRange(2, 4)), is("agr"));
+    assertThat(storageService.describe(key, PNG).get().getContentLength(), is(7L));
+    // Images, and files that are read locally, are extracted into the disk cache
+    assertThat(diskCache.entryCount(), is(1));
+    assertThat(
+        Files.readString(storageService.retrieveLocal(key, JSON).get()),
+        is("{\"name\": \"second\"}"));
+    assertThat(diskCache.entryCount(), is(2));
+    assertThat(storageService.retrieve(key, LOG, null).isPresent(), is(false));
+
+    // Files stored later are added to the bundle
+    store(key, LOG, "log");
+    storageService.seal(key);
+
+    assertThat(storedFiles(), is(List.of(key + ".bundle")));
+    assertThat(read(key, LOG, null), is("log"));
+    assertThat(read(key, PNG, null), is("diagram"));
+    assertThat(read(key, JSON, null), is("{\"name\": \"second\"}"));
+
+    // Callback state is written again after a request is sealed, so it is stored on its own
+    store(key, CALLBACK, "{}");
+    assertThat(storedFiles(), is(List.of(key + ".bundle", key + ".callback")));
+    assertThat(read(key, CALLBACK, null), is("{}"));
+  }
+
+  @Test
+  public void copyAndUnbundled() throws Exception {
+    final DiagramKey sourceKey = new DiagramKey();
+    store(sourceKey, PNG, "diagram");
+    storageService.seal(sourceKey);
+
+    final DiagramKey targetKey = new DiagramKey();
+    storageService.copy(sourceKey, targetKey, PNG);
+    storageService.seal(targetKey);
+    assertThat(read(targetKey, PNG, null), is("diagram"));
+
+    // Files stored before bundles were used are still read
+    final DiagramKey unbundledKey = new DiagramKey();
+    Files.writeString(storageRoot.resolve(unbundledKey + ".json"), "{}");
+    assertThat(read(unbundledKey, JSON, null), is("{}"));
+    assertThat(storageService.retrieve(unbundledKey, BUNDLE, null).isPresent(), is(false));
+  }
+
+  private String read(
+      final DiagramKey key, final FileExtensionType extension, final HttpRange range)
+      throws Exception {
+    try (final StoredObject storedObject = storageService.retrieve(key, extension, range).get()) {
+      return new String(storedObject.getInputStream().readAllBytes(), UTF_8);
+    }
+  }
+
+  private void store(final DiagramKey key, final FileExtensionType extension, final String data)
+      throws Exception {
+    storageService.store(() -> toInputStream(data, UTF_8), key, extension);
+  }
+
+  private List<String> storedFiles() throws IOException {
+    try (final Stream<Path> files = Files.list(storageRoot)) {
+      return files.map(file -> file.getFileName().toString()).sorted().toList();
+    }
+  }
+}
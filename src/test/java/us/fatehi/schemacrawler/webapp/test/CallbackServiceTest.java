@@ -0,0 +1,232 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.CALLBACK;
+
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpServer;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
+import us.fatehi.schemacrawler.webapp.service.notification.CallbackService;
+import us.fatehi.schemacrawler.webapp.test.service.storage.FileSystemStorageConfig;
+import us.fatehi.schemacrawler.webapp.test.service.storage.FileSystemStorageService;
+
+public class CallbackServiceTest {
+
+  /** Request received by the callback server. */
+  private record Received(String key, String timestamp, String signature, byte[] body) {}
+
+  @TempDir private Path storageRoot;
+
+  private final List<Received> received = new CopyOnWriteArrayList<>();
+  private final AtomicInteger failuresLeft = new AtomicInteger();
+  private HttpServer server;
+  private FileSystemStorageService storageService;
+  private CallbackService callbackService;
+
+  @Test
+  public void blockPrivateAddress() throws Exception {
+    callbackService = newCallbackService(false, 3);
+    final DiagramRequest diagramRequest = newDiagramRequest();
+
+    callbackService.send(diagramRequest).get(10, TimeUnit.SECONDS);
+
+    // Callbacks into the local network are not posted, or retried
+    assertThat(received.isEmpty(), is(true));
+    assertThat(deadLetter(diagramRequest), containsString("\"attempts\":1"));
+  }
+
+  @Test
+  public void blockPrivateAddressLiterals() throws Exception {
+    callbackService = newCallbackService(false, 3);
+
+    // Carrier-grade NAT, IPv6 unique local (the EC2 metadata service), IPv4-mapped IPv6, and
+    // link-local addresses
+    for (final String callbackUrl :
+        List.of(
+            "http://100.64.0.1/callback",
+            "http://[fd00:ec2::254]/callback",
+            "http://[::ffff:10.0.0.1]/callback",
+            "http://169.254.169.254/callback")) {
+      final DiagramRequest diagramRequest = newDiagramRequest();
+      diagramRequest.setCallbackUrl(callbackUrl);
+
+      callbackService.send(diagramRequest).get(10, TimeUnit.SECONDS);
+
+      final String deadLetter = deadLetter(diagramRequest);
+      assertThat(deadLetter, containsString("\"attempts\":1"));
+      assertThat(deadLetter, containsString("not allowed"));
+    }
+  }
+
+  @Test
+  public void deadLetter() throws Exception {
+    failuresLeft.set(Integer.MAX_VALUE);
+    callbackService = newCallbackService(true, 3);
+    final DiagramRequest diagramRequest = newDiagramRequest();
+
+    callbackService.send(diagramRequest).get(10, TimeUnit.SECONDS);
+
+    assertThat(received.size(), is(3));
+    final String deadLetter = deadLetter(diagramRequest);
+    assertThat(deadLetter, containsString("\"attempts\":3"));
+    assertThat(deadLetter, containsString("HTTP status 500"));
+  }
+
+  @Test
+  public void malformedCallbackUrl() throws Exception {
+    callbackService = newCallbackService(true, 3);
+    final DiagramRequest diagramRequest = newDiagramRequest();
+    diagramRequest.setCallbackUrl("http://local host/callback");
+
+    callbackService.send(diagramRequest).get(10, TimeUnit.SECONDS);
+
+    // Not retried, since it can never succeed
+    assertThat(received.isEmpty(), is(true));
+    assertThat(deadLetter(diagramRequest), containsString("\"attempts\":1"));
+  }
+
+  @Test
+  public void noCallbackUrl() throws Exception {
+    callbackService = newCallbackService(true, 3);
+    final DiagramRequest diagramRequest = newDiagramRequest();
+    diagramRequest.setCallbackUrl(null);
+
+    callbackService.send(diagramRequest).get(10, TimeUnit.SECONDS);
+
+    assertThat(received.isEmpty(), is(true));
+    assertThat(storageService.retrieveLocal(diagramRequest.getKey(), CALLBACK).isEmpty(), is(true));
+  }
+
+  @Test
+  public void retry() throws Exception {
+    failuresLeft.set(2);
+    callbackService = newCallbackService(true, 3);
+    final DiagramRequest diagramRequest = newDiagramRequest();
+
+    callbackService.send(diagramRequest).get(10, TimeUnit.SECONDS);
+
+    assertThat(received.size(), is(3));
+    assertThat(storageService.retrieveLocal(diagramRequest.getKey(), CALLBACK).isEmpty(), is(true));
+  }
+
+  @Test
+  public void signature() throws Exception {
+    callbackService = newCallbackService(true, 3);
+    final DiagramRequest diagramRequest = newDiagramRequest();
+
+    callbackService.send(diagramRequest).get(10, TimeUnit.SECONDS);
+
+    assertThat(received.size(), is(1));
+    final Received callback = received.get(0);
+    assertThat(callback.key(), is(diagramRequest.getKey().getKey()));
+    assertThat(
+        DiagramRequest.fromJson(new StringReader(new String(callback.body(), UTF_8))).getKey(),
+        is(diagramRequest.getKey()));
+    // Receivers check the signature by signing the timestamp and body themselves
+    assertThat(
+        callback.signature(),
+        is(callbackService.sign(Long.parseLong(callback.timestamp()), callback.body())));
+  }
+
+  @AfterEach
+  public void shutdown() {
+    if (callbackService != null) {
+      callbackService.shutdown();
+    }
+    server.stop(0);
+  }
+
+  @BeforeEach
+  public void startServer() throws Exception {
+    storageService =
+        new FileSystemStorageService(
+            new FileSystemStorageConfig() {
+              @Override
+              public Path fileSystemStorageRootPath() {
+                return storageRoot;
+              }
+            });
+    storageService.init();
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/callback",
+        exchange -> {
+          received.add(
+              new Received(
+                  exchange.getRequestHeaders().getFirst(CallbackService.KEY_HEADER),
+                  exchange.getRequestHeaders().getFirst(CallbackService.TIMESTAMP_HEADER),
+                  exchange.getRequestHeaders().getFirst(CallbackService.SIGNATURE_HEADER),
+                  exchange.getRequestBody().readAllBytes()));
+          final int status = failuresLeft.getAndDecrement() > 0 ? 500 : 204;
+          exchange.sendResponseHeaders(status, -1);
+          exchange.close();
+        });
+    server.start();
+  }
+
+  private String deadLetter(final DiagramRequest diagramRequest) throws Exception {
+    final Path path = storageService.retrieveLocal(diagramRequest.getKey(), CALLBACK).get();
+    return Files.readString(path);
+  }
+
+  private CallbackService newCallbackService(
+      final boolean allowPrivateAddresses, final int maxAttempts) {
+    return new CallbackService(
+        storageService, "callback-secret", 2, maxAttempts, 10, allowPrivateAddresses);
+  }
+
+  private DiagramRequest newDiagramRequest() {
+    final DiagramRequest diagramRequest = new DiagramRequest();
+    diagramRequest.setName("Sualeh Fatehi");
+    diagramRequest.setEmail("sualeh@hotmail.com");
+    diagramRequest.setCallbackUrl(
+        String.format("http://localhost:%d/callback", server.getAddress().getPort()));
+    return diagramRequest;
+  }
+}
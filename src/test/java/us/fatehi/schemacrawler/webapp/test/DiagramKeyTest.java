@@ -0,0 +1,89 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+
+public class DiagramKeyTest {
+
+  @Test
+  public void legacyKey() {
+    final DiagramKey key = new DiagramKey("AbCdEf123456");
+    assertThat(key.getKey(), is("abcdef123456"));
+    assertThat(key.hasLegacyLength(), is(true));
+    assertThat(new DiagramKey().hasLegacyLength(), is(false));
+
+    assertThrows(InternalRuntimeException.class, () -> new DiagramKey("abcdef12345"));
+    assertThrows(InternalRuntimeException.class, () -> new DiagramKey("abcdef12345/"));
+    assertThrows(InternalRuntimeException.class, () -> new DiagramKey("abcdef1234567890"));
+  }
+
+  @Test
+  public void newKey() {
+    final Set<String> keys = new HashSet<>();
+    for (int i = 0; i < 10_000; i++) {
+      final DiagramKey key = new DiagramKey();
+      assertThat(key.getKey(), matchesPattern("[a-z0-9]{20}"));
+      assertThat(new DiagramKey(key.getKey()), is(key));
+      keys.add(key.getKey());
+    }
+    assertThat(keys.size(), is(10_000));
+  }
+
+  @Test
+  public void timeOrdered() {
+    final Instant before = Instant.now();
+    final String key = new DiagramKey().getKey();
+    final Instant after = Instant.now();
+
+    assertThat(key.compareTo(DiagramKey.timePrefix(before)), is(greaterThan(0)));
+    assertThat(
+        key.compareTo(DiagramKey.timePrefix(after.plus(1, ChronoUnit.HOURS))), is(lessThan(0)));
+    assertThat(
+        DiagramKey.timePrefix(before.minus(1, ChronoUnit.HOURS)).compareTo(key), is(lessThan(0)));
+
+    assertThat(DiagramKey.timePrefix(Instant.parse("2024-01-01T00:59:59Z")), is("0000"));
+    assertThat(DiagramKey.timePrefix(Instant.parse("2024-01-02T00:00:00Z")), is("000o"));
+    assertThat(DiagramKey.timePrefix(Instant.EPOCH), is("0000"));
+  }
+}
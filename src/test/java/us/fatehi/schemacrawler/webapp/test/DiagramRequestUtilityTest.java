@@ -32,11 +32,13 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.nullValue;
 
 import java.io.StringReader;
+import java.time.Instant;
 
 import org.junit.jupiter.api.Test;
 
 import nl.jqno.equalsverifier.EqualsVerifier;
 import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
+import us.fatehi.schemacrawler.webapp.model.DiagramTimeline;
 
 public class DiagramRequestUtilityTest {
 
@@ -66,4 +68,33 @@ public class DiagramRequestUtilityTest {
     assertThat(diagramRequestMarshalled.getFile(), is(nullValue()));
     assertThat(diagramRequestMarshalled.getTitle(), is(nullValue()));
   }
+
+  @Test
+  public void roundtripTimeline() throws Exception {
+
+    final DiagramTimeline timeline = new DiagramTimeline();
+    timeline.setEnqueued(Instant.parse("2024-01-01T10:15:30.123Z"));
+    timeline.setQueueWaitMillis(5L);
+    timeline.setCrawlMillis(120L);
+    timeline.setRenderMillis(800L);
+    timeline.setTotalMillis(1000L);
+
+    final DiagramRequest diagramRequestSource = new DiagramRequest();
+    diagramRequestSource.setName("Sualeh Fatehi");
+    diagramRequestSource.setEmail("sualeh@hotmail.com");
+    diagramRequestSource.setTimeline(timeline);
+
+    final String diagramRequestJson = diagramRequestSource.toJson();
+    assertThat(
+        diagramRequestJson.contains(
+            "\"timeline\":{\"enqueued\":\"2024-01-01T10:15:30.123Z\",\"queue-wait-millis\":5,"
+                + "\"crawl-millis\":120,\"render-millis\":800,\"total-millis\":1000}"),
+        is(true));
+
+    final DiagramRequest diagramRequestMarshalled =
+        DiagramRequest.fromJson(new StringReader(diagramRequestJson));
+
+    assertThat(diagramRequestMarshalled.getTimeline(), is(timeline));
+    assertThat(diagramRequestMarshalled.getTimeline().getUploadMillis(), is(nullValue()));
+  }
 }
@@ -0,0 +1,72 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static schemacrawler.tools.command.text.diagram.options.DiagramOutputFormat.scdot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+
+import schemacrawler.schema.Catalog;
+import us.fatehi.schemacrawler.webapp.service.processing.DiagramUtility;
+
+public class DiagramUtilityTest {
+
+  @TempDir private Path tempDir;
+
+  @Test
+  public void crawlAndRenderFromStoredCatalog() throws Exception {
+    final Path databaseFile = tempDir.resolve("test.db");
+    Files.copy(new ClassPathResource("/test.db").getInputStream(), databaseFile);
+
+    final Catalog catalog = DiagramUtility.crawl(databaseFile);
+    assertThat(catalog.getTables().size(), is(5));
+
+    final Path catalogFile = tempDir.resolve("test.catalog");
+    DiagramUtility.writeCatalog(catalog, catalogFile);
+    assertThat(Files.size(catalogFile), is(greaterThan(0L)));
+
+    // Render without the database
+    Files.delete(databaseFile);
+    final Catalog storedCatalog = DiagramUtility.readCatalog(catalogFile);
+    assertThat(storedCatalog.getTables().size(), is(5));
+
+    final Path diagram = DiagramUtility.render(storedCatalog, "Stored Catalog", scdot);
+    final String dot = Files.readString(diagram);
+    assertThat(dot, containsString("Stored Catalog"));
+    assertThat(dot, containsString("TABLE5_FK"));
+  }
+}
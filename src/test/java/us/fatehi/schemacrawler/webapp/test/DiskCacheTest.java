@@ -0,0 +1,119 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import us.fatehi.schemacrawler.webapp.service.storage.DiskCache;
+
+public class DiskCacheTest {
+
+  @TempDir private Path directory;
+
+  @Test
+  public void eviction() throws IOException {
+    final DiskCache diskCache = new DiskCache(directory.toString(), 100);
+
+    diskCache.put("1", download(diskCache, 40), "etag-1");
+    diskCache.put("2", download(diskCache, 40), "etag-2");
+    // Access makes the first entry the most recently used one
+    assertThat(diskCache.get("1").isPresent(), is(true));
+    diskCache.put("3", download(diskCache, 40), "etag-3");
+
+    assertThat(diskCache.entryCount(), is(2));
+    assertThat(diskCache.size(), is(80L));
+    assertThat(diskCache.get("1").map(DiskCache.Entry::getETag), is(Optional.of("etag-1")));
+    assertThat(diskCache.get("2").isPresent(), is(false));
+    assertThat(diskCache.get("3").map(DiskCache.Entry::getETag), is(Optional.of("etag-3")));
+
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    diskCache.bindTo(registry);
+    assertThat(
+        registry.get("storage.cache.requests").tag("result", "hit").functionCounter().count(),
+        is(3.0));
+    assertThat(
+        registry.get("storage.cache.requests").tag("result", "miss").functionCounter().count(),
+        is(1.0));
+    assertThat(registry.get("storage.cache.evictions").functionCounter().count(), is(1.0));
+  }
+
+  @Test
+  public void otherFilesAreKept() throws IOException {
+    final Path otherFile = Files.writeString(directory.resolve("other.txt"), "other");
+    final DiskCache previousDiskCache = new DiskCache(directory.toString(), 100);
+    final Path leftoverFile =
+        previousDiskCache.put("1", download(previousDiskCache, 10), "etag-1").get().getPath();
+
+    final DiskCache diskCache = new DiskCache(directory.toString(), 100);
+
+    assertThat(Files.readString(otherFile), is("other"));
+    assertThat(Files.exists(leftoverFile), is(false));
+    assertThat(diskCache.newDownloadFile().getParent().equals(directory), is(false));
+  }
+
+  @Test
+  public void replaceAndRemove() throws IOException {
+    final DiskCache diskCache = new DiskCache(directory.toString(), 100);
+
+    final Path oldFile = diskCache.put("1", download(diskCache, 10), "etag-1").get().getPath();
+    final Path newFile = diskCache.put("1", download(diskCache, 20), "etag-2").get().getPath();
+    assertThat(Files.exists(oldFile), is(false));
+    assertThat(diskCache.size(), is(20L));
+
+    diskCache.remove("1");
+    assertThat(Files.exists(newFile), is(false));
+    assertThat(diskCache.entryCount(), is(0));
+    assertThat(diskCache.size(), is(0L));
+  }
+
+  @Test
+  public void tooLarge() throws IOException {
+    final DiskCache diskCache = new DiskCache(directory.toString(), 100);
+
+    final Path downloadedFile = download(diskCache, 101);
+    assertThat(diskCache.put("1", downloadedFile, "etag-1").isPresent(), is(false));
+    assertThat(Files.exists(downloadedFile), is(false));
+    assertThat(diskCache.entryCount(), is(0));
+  }
+
+  private Path download(final DiskCache diskCache, final int size) throws IOException {
+    final Path downloadFile = diskCache.newDownloadFile();
+    Files.write(downloadFile, new byte[size]);
+    return downloadFile;
+  }
+}
@@ -0,0 +1,119 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+import us.fatehi.schemacrawler.webapp.service.storage.IdempotencyRecord;
+import us.fatehi.schemacrawler.webapp.service.storage.IdempotencyStore;
+import us.fatehi.schemacrawler.webapp.test.service.storage.FileSystemStorageConfig;
+import us.fatehi.schemacrawler.webapp.test.service.storage.FileSystemStorageService;
+
+public class IdempotencyStoreTest {
+
+  @TempDir private Path storageRoot;
+
+  private FileSystemStorageService storageService;
+
+  @Test
+  public void expired() throws Exception {
+    final IdempotencyStore idempotencyStore = new IdempotencyStore(storageService, 10, 0);
+    final DiagramKey key = new DiagramKey();
+
+    idempotencyStore.record("retry-1", "fingerprint", key, 201, "./" + key, "{}".getBytes(UTF_8));
+    Thread.sleep(10);
+
+    // An expired key can be used for a new request
+    assertThat(reserved(idempotencyStore, "retry-1"), is(true));
+    assertThat(reserved(new IdempotencyStore(storageService, 10, 0), "retry-1"), is(true));
+  }
+
+  @Test
+  public void release() throws Exception {
+    final IdempotencyStore idempotencyStore = new IdempotencyStore(storageService, 10, 24);
+
+    assertThat(reserved(idempotencyStore, "retry-1"), is(true));
+    final Optional<IdempotencyRecord> inProgress =
+        idempotencyStore.reserve("retry-1", "fingerprint", new DiagramKey());
+    assertThat(inProgress.get().isInProgress(), is(true));
+
+    // A request that failed is forgotten, so that the retry is handled
+    idempotencyStore.release("retry-1");
+    assertThat(reserved(idempotencyStore, "retry-1"), is(true));
+  }
+
+  @Test
+  public void sharedThroughStorage() throws Exception {
+    final IdempotencyStore idempotencyStore = new IdempotencyStore(storageService, 10, 24);
+    final DiagramKey key = new DiagramKey();
+
+    assertThat(idempotencyStore.reserve("retry-1", "fingerprint", key).isEmpty(), is(true));
+    idempotencyStore.record("retry-1", "fingerprint", key, 201, "./" + key, "{}".getBytes(UTF_8));
+
+    // Another instance answers the retry from storage
+    final IdempotencyStore otherStore = new IdempotencyStore(storageService, 10, 24);
+    final IdempotencyRecord record =
+        otherStore.reserve("retry-1", "other fingerprint", new DiagramKey()).get();
+    assertThat(record.isInProgress(), is(false));
+    assertThat(record.getKey(), is(key));
+    assertThat(record.getFingerprint(), is("fingerprint"));
+    assertThat(record.getStatus(), is(201));
+    assertThat(record.getLocation(), is("./" + key));
+    assertThat(record.getBody(), is("{}"));
+
+    assertThat(reserved(otherStore, "retry-2"), is(true));
+  }
+
+  @BeforeEach
+  public void storageService() throws Exception {
+    storageService =
+        new FileSystemStorageService(
+            new FileSystemStorageConfig() {
+              @Override
+              public Path fileSystemStorageRootPath() {
+                return storageRoot;
+              }
+            });
+    storageService.init();
+  }
+
+  private boolean reserved(final IdempotencyStore idempotencyStore, final String idempotencyKey) {
+    return idempotencyStore.reserve(idempotencyKey, "fingerprint", new DiagramKey()).isEmpty();
+  }
+}
@@ -0,0 +1,97 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+import us.fatehi.schemacrawler.webapp.service.queue.InMemoryWorkQueue;
+import us.fatehi.schemacrawler.webapp.service.queue.WorkLease;
+
+public class InMemoryWorkQueueTest {
+
+  private static final Duration LEASE_TIME = Duration.ofMinutes(1);
+
+  @Test
+  public void claim() throws Exception {
+    final InMemoryWorkQueue workQueue = new InMemoryWorkQueue();
+    final DiagramKey first = new DiagramKey();
+    final DiagramKey second = new DiagramKey();
+    workQueue.submit(first, true);
+    workQueue.submit(second, false);
+
+    // Requests are claimed in order, and only by one instance at a time
+    final WorkLease firstLease = workQueue.claim("one", LEASE_TIME).get();
+    assertThat(firstLease.getKey(), is(first));
+    assertThat(firstLease.isNotificationRequested(), is(true));
+    final WorkLease secondLease = workQueue.claim("two", LEASE_TIME).get();
+    assertThat(secondLease.getKey(), is(second));
+    assertThat(secondLease.isNotificationRequested(), is(false));
+    assertThat(workQueue.claim("three", LEASE_TIME).isEmpty(), is(true));
+
+    workQueue.complete(firstLease);
+    assertThat(workQueue.size(), is(1));
+    assertThat(workQueue.isQueued(first), is(false));
+    assertThat(workQueue.isQueued(second), is(true));
+
+    // Released requests can be claimed straight away, and count another attempt
+    assertThat(secondLease.getAttempts(), is(1));
+    workQueue.release(secondLease);
+    final WorkLease thirdLease = workQueue.claim("three", LEASE_TIME).get();
+    assertThat(thirdLease.getKey(), is(second));
+    assertThat(thirdLease.getAttempts(), is(2));
+    assertThat(workQueue.renew(thirdLease, LEASE_TIME).get().getAttempts(), is(2));
+  }
+
+  @Test
+  public void expiredLease() throws Exception {
+    final InMemoryWorkQueue workQueue = new InMemoryWorkQueue();
+    final DiagramKey key = new DiagramKey();
+    workQueue.submit(key, false);
+
+    final WorkLease expiredLease = workQueue.claim("one", Duration.ZERO).get();
+    final WorkLease lease = workQueue.claim("two", LEASE_TIME).get();
+    assertThat(lease.getKey(), is(key));
+    assertThat(lease.getOwner(), is("two"));
+
+    // The instance whose lease expired cannot renew or release it
+    assertThat(workQueue.renew(expiredLease, LEASE_TIME).isEmpty(), is(true));
+    workQueue.release(expiredLease);
+    assertThat(workQueue.claim("three", LEASE_TIME).isEmpty(), is(true));
+
+    final WorkLease renewedLease = workQueue.renew(lease, LEASE_TIME).get();
+    assertThat(renewedLease.getToken().equals(lease.getToken()), is(false));
+    assertThat(workQueue.renew(lease, LEASE_TIME).isEmpty(), is(true));
+  }
+}
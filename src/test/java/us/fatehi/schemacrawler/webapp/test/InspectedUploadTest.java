@@ -0,0 +1,83 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static us.fatehi.schemacrawler.webapp.test.utility.TestUtility.mockMultipartFile;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.DigestUtils;
+
+import us.fatehi.schemacrawler.webapp.service.storage.InspectedUpload;
+
+public class InspectedUploadTest {
+
+  @Test
+  public void notADatabase() throws Exception {
+    final MockMultipartFile file =
+        new MockMultipartFile(
+            "file", "test.db", "application/octet-stream", RandomUtils.secure().randomBytes(5));
+    final InspectedUpload upload = new InspectedUpload(file);
+    read(upload);
+
+    assertThat(upload.isSQLiteDatabase(), is(false));
+    assertThat(upload.getSize(), is(5L));
+    assertThat(upload.getMd5Hex(), is(DigestUtils.md5DigestAsHex(file.getBytes())));
+  }
+
+  @Test
+  public void sqliteDatabase() throws Exception {
+    final MockMultipartFile file = mockMultipartFile();
+    final InspectedUpload upload = new InspectedUpload(file);
+    read(upload);
+
+    assertThat(upload.isSQLiteDatabase(), is(true));
+    assertThat(upload.getSize(), is(file.getSize()));
+    assertThat(upload.getMd5Hex(), is(DigestUtils.md5DigestAsHex(file.getBytes())));
+    // Digest is stable across calls
+    assertThat(upload.getMd5Hex(), is(DigestUtils.md5DigestAsHex(file.getBytes())));
+
+    assertThrows(IllegalStateException.class, upload::getInputStream);
+  }
+
+  private void read(final InspectedUpload upload) throws Exception {
+    try (final InputStream inputStream = upload.getInputStream();
+        final OutputStream outputStream = NullOutputStream.INSTANCE) {
+      IOUtils.copy(inputStream, outputStream);
+    }
+  }
+}
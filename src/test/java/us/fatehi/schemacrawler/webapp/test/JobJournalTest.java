@@ -0,0 +1,142 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
+import us.fatehi.schemacrawler.webapp.service.processing.JobJournal;
+
+public class JobJournalTest {
+
+  @TempDir private Path journalDirectory;
+  @TempDir private Path uploadDirectory;
+
+  private JobJournal journal;
+
+  @Test
+  public void compact() throws Exception {
+    journal = newJournal(2);
+    final List<DiagramRequest> diagramRequests = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      final DiagramRequest diagramRequest = newDiagramRequest();
+      journal.accept(diagramRequest, newUpload(diagramRequest)).join();
+      diagramRequests.add(diagramRequest);
+    }
+    for (int i = 0; i < 4; i++) {
+      journal.complete(diagramRequests.get(i).getKey());
+    }
+    // Records are synced in order, so the last one being synced means that all of them are
+    final DiagramRequest last = newDiagramRequest();
+    journal.accept(last, newUpload(last)).join();
+    journal.shutdown();
+
+    // Only unfinished jobs are kept once the journal is compacted
+    final List<String> lines = Files.readAllLines(journalDirectory.resolve("jobs.journal"));
+    assertThat(lines.size(), is(2));
+    assertThat(lines.get(0).contains(diagramRequests.get(4).getKey().getKey()), is(true));
+    assertThat(lines.get(1).contains(last.getKey().getKey()), is(true));
+  }
+
+  @Test
+  public void replay() throws Exception {
+    journal = newJournal(1000);
+    final DiagramRequest finished = newDiagramRequest();
+    final DiagramRequest unfinished = newDiagramRequest();
+    final Path finishedUpload = newUpload(finished);
+    final Path unfinishedUpload = newUpload(unfinished);
+    CompletableFuture.allOf(
+            journal.accept(finished, finishedUpload), journal.accept(unfinished, unfinishedUpload))
+        .join();
+    journal.complete(finished.getKey());
+    // The spooled file is kept when the original is deleted, as it is once processing completes
+    Files.delete(unfinishedUpload);
+    journal.shutdown();
+
+    // A record that was only partly written when the application stopped
+    Files.writeString(
+        journalDirectory.resolve("jobs.journal"),
+        "ACCEPTED\tpartial",
+        UTF_8,
+        StandardOpenOption.APPEND);
+
+    journal = newJournal(1000);
+    final List<JobJournal.JournaledJob> recovered = journal.takeRecovered();
+    assertThat(recovered.size(), is(1));
+    final JobJournal.JournaledJob job = recovered.get(0);
+    assertThat(job.diagramRequest().getKey(), is(unfinished.getKey()));
+    assertThat(job.diagramRequest().getEmail(), is(unfinished.getEmail()));
+    assertThat(Files.readString(job.localPath()), is(unfinished.getKey().getKey()));
+    assertThat(journal.size(), is(1));
+    assertThat(journal.takeRecovered().isEmpty(), is(true));
+
+    journal.complete(unfinished.getKey());
+    assertThat(Files.exists(job.localPath()), is(false));
+    assertThat(journal.size(), is(0));
+  }
+
+  @AfterEach
+  public void shutdown() throws Exception {
+    if (journal != null) {
+      journal.shutdown();
+    }
+  }
+
+  private DiagramRequest newDiagramRequest() {
+    final DiagramRequest diagramRequest = new DiagramRequest();
+    diagramRequest.setName("Sualeh Fatehi");
+    diagramRequest.setEmail("sualeh@hotmail.com");
+    return diagramRequest;
+  }
+
+  private JobJournal newJournal(final int compactAfter) throws Exception {
+    final JobJournal jobJournal = new JobJournal(journalDirectory.toString(), compactAfter);
+    jobJournal.start();
+    return jobJournal;
+  }
+
+  private Path newUpload(final DiagramRequest diagramRequest) throws Exception {
+    final Path upload = uploadDirectory.resolve(diagramRequest.getKey() + ".db");
+    Files.writeString(upload, diagramRequest.getKey().getKey());
+    return upload;
+  }
+}
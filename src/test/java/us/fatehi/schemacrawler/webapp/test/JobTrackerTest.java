@@ -0,0 +1,105 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramJobStatus;
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+import us.fatehi.schemacrawler.webapp.model.JobStatus;
+import us.fatehi.schemacrawler.webapp.service.processing.JobTracker;
+
+public class JobTrackerTest {
+
+  @Test
+  public void awaitChange() throws Exception {
+    final JobTracker jobTracker = new JobTracker(10);
+    final DiagramKey key = new DiagramKey();
+    jobTracker.queue(key);
+
+    final CompletableFuture<Optional<DiagramJobStatus>> waiter =
+        jobTracker.awaitChange(key, JobStatus.QUEUED, Duration.ofSeconds(10));
+    assertThat(waiter.isDone(), is(false));
+
+    jobTracker.advance(key, JobStatus.CRAWLING);
+    assertThat(waiter.get(1, TimeUnit.SECONDS).get().getStatus(), is(JobStatus.CRAWLING));
+
+    // Times out with the current status
+    final CompletableFuture<Optional<DiagramJobStatus>> timedOut =
+        jobTracker.awaitChange(key, JobStatus.CRAWLING, Duration.ofMillis(50));
+    assertThat(timedOut.get(1, TimeUnit.SECONDS).get().getStatus(), is(JobStatus.CRAWLING));
+
+    // Untracked requests
+    final Optional<DiagramJobStatus> missing =
+        jobTracker.awaitChange(new DiagramKey(), JobStatus.QUEUED, Duration.ofSeconds(10)).get();
+    assertThat(missing.isPresent(), is(false));
+  }
+
+  @Test
+  public void forget() throws Exception {
+    final JobTracker jobTracker = new JobTracker(10);
+    final DiagramKey key = new DiagramKey();
+    jobTracker.queue(key);
+
+    final CompletableFuture<Optional<DiagramJobStatus>> waiter =
+        jobTracker.awaitChange(key, JobStatus.QUEUED, Duration.ofSeconds(10));
+
+    // Waiting clients are woken up, since the status will not change on this instance
+    jobTracker.forget(key);
+    assertThat(waiter.get(1, TimeUnit.SECONDS).isPresent(), is(false));
+    assertThat(jobTracker.status(key).isPresent(), is(false));
+    assertThat(jobTracker.size(), is(0));
+  }
+
+  @Test
+  public void statusOnlyMovesForward() {
+    final JobTracker jobTracker = new JobTracker(10);
+    final DiagramKey key = new DiagramKey();
+
+    jobTracker.advance(key, JobStatus.CRAWLING);
+    assertThat(jobTracker.status(key).isPresent(), is(false));
+
+    jobTracker.queue(key);
+    jobTracker.advance(key, JobStatus.RENDERING);
+    jobTracker.advance(key, JobStatus.CRAWLING);
+    assertThat(jobTracker.status(key).get().getStatus(), is(JobStatus.RENDERING));
+
+    jobTracker.advance(key, JobStatus.DONE);
+    jobTracker.fail(key, "Too late");
+    assertThat(jobTracker.status(key).get().getStatus(), is(JobStatus.DONE));
+    assertThat(jobTracker.status(key).get().getError(), is((String) null));
+  }
+}
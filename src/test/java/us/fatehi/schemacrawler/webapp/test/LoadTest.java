@@ -0,0 +1,109 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static us.fatehi.schemacrawler.webapp.test.utility.LoadGenerator.UPLOAD;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import us.fatehi.schemacrawler.webapp.test.utility.LoadGenerator;
+import us.fatehi.schemacrawler.webapp.test.utility.LoadGenerator.LoadReport;
+import us.fatehi.schemacrawler.webapp.test.utility.TestUtility;
+
+/**
+ * Runs a mixed workload of uploads and retrievals at increasing numbers of clients, and reports
+ * latencies, throughput and error rates for each endpoint. Reports are logged, and appended to
+ * <code>target/loadtest-report.txt</code>. The step where uploads start to fail
+ * shows when the processing queues are full. Only runs when asked for, with
+ *
+ * <pre>
+ * mvn test -Dtest=LoadTest -Dloadtest=true
+ * </pre>
+ *
+ * <p>Options are <code>loadtest.clients</code> (such as "1,4,16,64") for closed-loop steps,
+ * <code>loadtest.rates</code> in requests per second (such as "5,20,80") for open-loop steps,
+ * which give honest high percentiles once the server falls behind, <code>loadtest.seconds
+ * </code> for each step, <code>loadtest.tables</code> in the uploaded database, and <code>
+ * loadtest.url</code> to run against an application that is already running, instead of the one
+ * started for the test. Queue sizes can be set with the usual environment variables or system
+ * properties, such as <code>SC_WEBAPP_STAGE_QUEUE_CAPACITY</code>.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("local")
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+public class LoadTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadTest.class);
+  private static final Path REPORT_FILE = Path.of("target", "loadtest-report.txt");
+
+  @LocalServerPort private int port;
+
+  @TempDir private Path tempDir;
+
+  @Test
+  public void load() throws Exception {
+    final URI baseUri = URI.create(System.getProperty("loadtest.url", "http://localhost:" + port));
+    final Duration duration = Duration.ofSeconds(Long.getLong("loadtest.seconds", 30));
+    final Path databaseFile =
+        TestUtility.syntheticDatabase(tempDir, Integer.getInteger("loadtest.tables", 20));
+
+    final LoadGenerator loadGenerator = new LoadGenerator(baseUri, databaseFile);
+    for (final String clients : System.getProperty("loadtest.clients", "1,4,16,64").split(",")) {
+      final LoadReport report = loadGenerator.run(Integer.parseInt(clients.trim()), duration);
+      LOGGER.info(String.format("Load test report%n%s", report));
+      Files.writeString(REPORT_FILE, report + System.lineSeparator(), UTF_8, CREATE, APPEND);
+      assertThat(report.getEndpoint(UPLOAD).getCount(), greaterThan(0L));
+    }
+    for (final String rate : System.getProperty("loadtest.rates", "").split(",")) {
+      if (rate.isBlank()) {
+        continue;
+      }
+      final LoadReport report = loadGenerator.runAtRate(Double.parseDouble(rate.trim()), duration);
+      LOGGER.info(String.format("Load test report%n%s", report));
+      Files.writeString(REPORT_FILE, report + System.lineSeparator(), UTF_8, CREATE, APPEND);
+      assertThat(report.getEndpoint(UPLOAD).getCount(), greaterThan(0L));
+    }
+  }
+}
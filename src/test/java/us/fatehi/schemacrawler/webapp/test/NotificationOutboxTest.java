@@ -0,0 +1,207 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static java.time.Duration.ofSeconds;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import schemacrawler.schemacrawler.exceptions.ExecutionRuntimeException;
+import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
+import us.fatehi.schemacrawler.webapp.service.notification.NotificationOutbox;
+import us.fatehi.schemacrawler.webapp.service.notification.NotificationService;
+import us.fatehi.schemacrawler.webapp.service.notification.TokenBucket;
+import us.fatehi.schemacrawler.webapp.service.processing.StageMetrics;
+import us.fatehi.schemacrawler.webapp.test.service.notification.LogNotificationService;
+
+public class NotificationOutboxTest {
+
+  @TempDir private Path outboxDirectory;
+
+  private final LogNotificationService notificationService = new LogNotificationService();
+  private NotificationOutbox outbox;
+
+  @AfterEach
+  public void shutdown() {
+    if (outbox != null) {
+      outbox.shutdown();
+    }
+  }
+
+  @Test
+  public void digest() throws Exception {
+    outbox = newOutbox(notificationService, 1, 3);
+    outbox.start();
+
+    final DiagramRequest first = newDiagramRequest("sualeh@hotmail.com");
+    final DiagramRequest second = newDiagramRequest("Sualeh@Hotmail.com");
+    final DiagramRequest other = newDiagramRequest("other@schemacrawler.com");
+    outbox.add(first);
+    outbox.add(second);
+    outbox.add(other);
+    outbox.add(newDiagramRequest(null));
+    assertThat(outbox.size(), is(3));
+    assertThat(outboxFiles(), is(3L));
+
+    awaitUntil(() -> notificationService.getNotifications().size() == 2);
+
+    // Notifications for the same recipient are sent as one digest
+    assertThat(
+        notificationService.getNotifications(),
+        containsInAnyOrder(List.of(first, second), List.of(other)));
+    awaitUntil(() -> outboxFiles() == 0);
+    assertThat(outbox.size(), is(0));
+  }
+
+  @Test
+  public void recover() throws Exception {
+    final NotificationOutbox stoppedOutbox = newOutbox(notificationService, 60, 3);
+    stoppedOutbox.start();
+    final DiagramRequest diagramRequest = newDiagramRequest("sualeh@hotmail.com");
+    stoppedOutbox.add(diagramRequest);
+    stoppedOutbox.shutdown();
+    assertThat(notificationService.getNotifications().isEmpty(), is(true));
+
+    // Notifications that were not sent are sent when the application starts again
+    outbox = newOutbox(notificationService, 60, 3);
+    outbox.start();
+
+    awaitUntil(() -> notificationService.getNotifications().size() == 1);
+    assertThat(
+        notificationService.getNotifications().get(0).get(0).getKey(),
+        is(diagramRequest.getKey()));
+  }
+
+  @Test
+  public void retry() throws Exception {
+    final AtomicInteger attempts = new AtomicInteger();
+    final NotificationService flakyNotificationService =
+        diagramRequest -> {
+          if (attempts.incrementAndGet() < 3) {
+            throw new ExecutionRuntimeException("Throttling");
+          }
+          notificationService.notify(diagramRequest);
+        };
+    outbox = newOutbox(flakyNotificationService, 0, 3);
+    outbox.start();
+
+    outbox.add(newDiagramRequest("sualeh@hotmail.com"));
+
+    awaitUntil(() -> notificationService.getNotifications().size() == 1);
+    assertThat(attempts.get(), is(3));
+
+    // Notifications that cannot be sent are kept, in the failed directory
+    final NotificationService failingNotificationService =
+        diagramRequest -> {
+          throw new ExecutionRuntimeException("Message rejected");
+        };
+    outbox.shutdown();
+    outbox = newOutbox(failingNotificationService, 0, 2);
+    outbox.start();
+    final DiagramRequest failed = newDiagramRequest("sualeh@hotmail.com");
+    outbox.add(failed);
+
+    awaitUntil(() -> Files.exists(outboxDirectory.resolve("failed/" + failed.getKey() + ".json")));
+    assertThat(outbox.size(), is(0));
+    assertThat(outboxFiles(), is(0L));
+  }
+
+  @Test
+  public void tokenBucket() {
+    final AtomicLong nanoTime = new AtomicLong();
+    final TokenBucket tokenBucket = new TokenBucket(2, 2, nanoTime::get);
+
+    assertThat(tokenBucket.tryAcquire(), is(true));
+    assertThat(tokenBucket.tryAcquire(), is(true));
+    assertThat(tokenBucket.tryAcquire(), is(false));
+
+    nanoTime.addAndGet(500_000_000L);
+    assertThat(tokenBucket.tryAcquire(), is(true));
+    assertThat(tokenBucket.tryAcquire(), is(false));
+
+    // Tokens are not saved up beyond the capacity
+    nanoTime.addAndGet(10_000_000_000L);
+    assertThat(tokenBucket.tryAcquire(), is(true));
+    assertThat(tokenBucket.tryAcquire(), is(true));
+    assertThat(tokenBucket.tryAcquire(), is(false));
+  }
+
+  private void awaitUntil(final BooleanSupplier condition) {
+    assertTimeoutPreemptively(
+        ofSeconds(10),
+        () -> {
+          while (!condition.getAsBoolean()) {
+            Thread.sleep(50);
+          }
+        });
+  }
+
+  private DiagramRequest newDiagramRequest(final String email) {
+    final DiagramRequest diagramRequest = new DiagramRequest();
+    diagramRequest.setName("Sualeh Fatehi");
+    diagramRequest.setEmail(email);
+    return diagramRequest;
+  }
+
+  private NotificationOutbox newOutbox(
+      final NotificationService notificationService,
+      final long digestWindowSeconds,
+      final int maxAttempts) {
+    return new NotificationOutbox(
+        notificationService,
+        new StageMetrics(new SimpleMeterRegistry()),
+        outboxDirectory.toString(),
+        100,
+        digestWindowSeconds,
+        10,
+        maxAttempts);
+  }
+
+  private long outboxFiles() {
+    try (final Stream<Path> files = Files.list(outboxDirectory)) {
+      return files.filter(Files::isRegularFile).count();
+    } catch (final Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
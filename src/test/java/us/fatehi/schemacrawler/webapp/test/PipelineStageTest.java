@@ -0,0 +1,107 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import us.fatehi.schemacrawler.webapp.service.processing.PipelineStage;
+
+public class PipelineStageTest {
+
+  @Test
+  public void backpressure() throws Exception {
+    final PipelineStage upstream = PipelineStage.virtualThreads("upstream", 1, 1);
+    final PipelineStage downstream = PipelineStage.platformThreads("downstream", 1, 1);
+    final CountDownLatch blocked = new CountDownLatch(1);
+    try {
+      // Fill the downstream stage, with one running task and one queued task
+      downstream.getExecutor().execute(() -> await(blocked));
+      downstream.getExecutor().execute(() -> {});
+
+      // Work from outside the pipeline is rejected when the stage is full
+      assertThrows(
+          RejectedExecutionException.class, () -> downstream.getExecutor().execute(() -> {}));
+
+      // Work handed off from another stage runs in the handing-off thread
+      final String threadName =
+          CompletableFuture.supplyAsync(
+                  () ->
+                      CompletableFuture.supplyAsync(
+                              () -> Thread.currentThread().getName(), downstream.getExecutor())
+                          .join(),
+                  upstream.getExecutor())
+              .get(5, TimeUnit.SECONDS);
+      assertThat(threadName.startsWith("upstream-"), is(true));
+      assertThat(downstream.getRejections(), is(1L));
+    } finally {
+      blocked.countDown();
+      upstream.shutdown();
+      downstream.shutdown();
+    }
+  }
+
+  @Test
+  public void handOff() throws Exception {
+    final PipelineStage stage = PipelineStage.platformThreads("stage", 1, 1);
+    final CountDownLatch blocked = new CountDownLatch(1);
+    try {
+      // Fill the stage, with one running task and one queued task
+      stage.getExecutor().execute(() -> await(blocked));
+      stage.getExecutor().execute(() -> {});
+
+      // Work handed off from outside the pipeline waits for room, without holding up the caller
+      final CompletableFuture<String> handedOff =
+          CompletableFuture.supplyAsync(
+              () -> Thread.currentThread().getName(), stage.getHandOffExecutor());
+      assertThat(handedOff.isDone(), is(false));
+      blocked.countDown();
+      assertThat(handedOff.get(5, TimeUnit.SECONDS).startsWith("stage-"), is(true));
+      assertThat(stage.getRejections(), is(0L));
+    } finally {
+      blocked.countDown();
+      stage.shutdown();
+    }
+  }
+
+  private void await(final CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+import us.fatehi.schemacrawler.webapp.service.processing.RenderCache;
+
+public class RenderCacheTest {
+
+  @Test
+  public void cacheKey() {
+    final RenderCache renderCache = new RenderCache(10);
+
+    final String cacheKey = renderCache.cacheKey("fingerprint", null, "png");
+    assertThat(renderCache.cacheKey("fingerprint", "", "png"), is(cacheKey));
+    assertThat(renderCache.cacheKey("fingerprint", "Title", "png"), is(not(cacheKey)));
+    assertThat(renderCache.cacheKey("fingerprint", null, "svg"), is(not(cacheKey)));
+  }
+
+  @Test
+  public void eviction() {
+    final RenderCache renderCache = new RenderCache(2);
+
+    final DiagramKey key1 = new DiagramKey();
+    final DiagramKey key2 = new DiagramKey();
+    final DiagramKey key3 = new DiagramKey();
+
+    renderCache.put("1", key1);
+    renderCache.put("2", key2);
+    // Access makes the first entry the most recently used one
+    assertThat(renderCache.lookup("1"), is(Optional.of(key1)));
+    renderCache.put("3", key3);
+
+    assertThat(renderCache.size(), is(2));
+    assertThat(renderCache.lookup("1"), is(Optional.of(key1)));
+    assertThat(renderCache.lookup("2").isPresent(), is(false));
+    assertThat(renderCache.lookup("3"), is(Optional.of(key3)));
+  }
+
+  @Test
+  public void singleFlight() {
+    final RenderCache renderCache = new RenderCache(10);
+
+    final CompletableFuture<DiagramKey> leader = new CompletableFuture<>();
+    assertThat(renderCache.joinOrLead("hash", leader).isPresent(), is(false));
+
+    final CompletableFuture<DiagramKey> follower = new CompletableFuture<>();
+    assertThat(renderCache.joinOrLead("hash", follower), is(Optional.of(leader)));
+
+    renderCache.finish("hash", leader);
+    assertThat(renderCache.joinOrLead("hash", follower).isPresent(), is(false));
+  }
+}
@@ -28,21 +28,29 @@ http://www.gnu.org/licenses/
 package us.fatehi.schemacrawler.webapp.test;
 
 import static com.atlassian.oai.validator.mockmvc.OpenApiValidationMatchers.openApi;
+import static java.time.Duration.ofSeconds;
 import static org.hamcrest.CoreMatchers.endsWith;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.matchesPattern;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static us.fatehi.schemacrawler.webapp.controller.URIConstants.API_PREFIX;
 import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.SQLITE_DB;
+import static us.fatehi.schemacrawler.webapp.test.utility.TestUtility.awaitFinished;
 import static us.fatehi.schemacrawler.webapp.test.utility.TestUtility.mockMultipartFile;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.util.UUID;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.RandomUtils;
 import org.junit.jupiter.api.Test;
@@ -52,7 +60,6 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
@@ -60,6 +67,7 @@ import org.springframework.test.web.servlet.MvcResult;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+import us.fatehi.schemacrawler.webapp.service.processing.ProcessingService;
 import us.fatehi.schemacrawler.webapp.service.storage.StorageService;
 
 @RunWith(SpringRunner.class)
@@ -69,19 +77,94 @@ import us.fatehi.schemacrawler.webapp.service.storage.StorageService;
 public class RequestControllerAPITest {
 
   @Autowired private MockMvc mvc;
-  @Autowired private ThreadPoolTaskExecutor pool;
+  @Autowired private ProcessingService processingService;
 
   @Autowired private StorageService storageService;
 
   @Test
-  public void apiWithNoParameters() throws Exception {
+  public void apiWithBadCallbackUrl() throws Exception {
+
+    final MvcResult asyncResult =
+        mvc.perform(
+                multipart(API_PREFIX)
+                    .file(mockMultipartFile())
+                    .param("name", "Sualeh")
+                    .param("email", "sualeh@hotmail.com")
+                    .param("callback-url", "file:///etc/passwd")
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .accept(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    // Not checked against the OpenAPI specification, since the request does not match it
+    final MvcResult result =
+        mvc.perform(asyncDispatch(asyncResult)).andExpect(status().isBadRequest()).andReturn();
+
+    final JsonNode jsonNode =
+        new ObjectMapper().readTree(result.getResponse().getContentAsString());
+    assertThat(
+        jsonNode.get("error").asText(),
+        is("callbackUrl: Please enter a valid http or https callback URL"));
+  }
+
+  @Test
+  public void apiWithIdempotencyKey() throws Exception {
+    final String idempotencyKey = UUID.randomUUID().toString();
+
+    final MvcResult first =
+        mvc.perform(asyncDispatch(postWithIdempotencyKey("Sualeh", idempotencyKey)))
+            .andExpect(status().isCreated())
+            .andExpect(header().doesNotExist("Idempotent-Replayed"))
+            .andReturn();
+    final MvcResult retry =
+        mvc.perform(asyncDispatch(postWithIdempotencyKey("Sualeh", idempotencyKey)))
+            .andExpect(status().isCreated())
+            .andExpect(header().string("Idempotent-Replayed", "true"))
+            .andExpect(openApi().isValid("api/schemacrawler-web-application.yaml"))
+            .andReturn();
+
+    // The retry gets the same diagram request, instead of creating another one
+    final ObjectMapper objectMapper = new ObjectMapper();
+    final JsonNode firstJson = objectMapper.readTree(first.getResponse().getContentAsString());
+    final JsonNode retryJson = objectMapper.readTree(retry.getResponse().getContentAsString());
+    assertThat(retryJson.get("key"), is(firstJson.get("key")));
+    assertThat(
+        retry.getResponse().getHeader("Location"), is(first.getResponse().getHeader("Location")));
+  }
+
+  @Test
+  public void apiWithIdempotencyKeyReused() throws Exception {
+    final String idempotencyKey = UUID.randomUUID().toString();
 
+    mvc.perform(asyncDispatch(postWithIdempotencyKey("Sualeh", idempotencyKey)))
+        .andExpect(status().isCreated());
     final MvcResult result =
+        mvc.perform(asyncDispatch(postWithIdempotencyKey("Someone Else", idempotencyKey)))
+            .andExpect(status().isUnprocessableEntity())
+            .andExpect(openApi().isValid("api/schemacrawler-web-application.yaml"))
+            .andReturn();
+
+    final JsonNode jsonNode =
+        new ObjectMapper().readTree(result.getResponse().getContentAsString());
+    assertThat(
+        jsonNode.get("error").asText(),
+        is("Idempotency-Key was already used for a different request"));
+  }
+
+  @Test
+  public void apiWithNoParameters() throws Exception {
+
+    final MvcResult asyncResult =
         mvc.perform(
                 multipart(API_PREFIX)
                     .file(mockMultipartFile())
                     .contentType(MediaType.MULTIPART_FORM_DATA)
                     .accept(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    final MvcResult result =
+        mvc.perform(asyncDispatch(asyncResult))
             .andExpect(status().isBadRequest())
             .andExpect(openApi().isValid("api/schemacrawler-web-application.yaml"))
             .andReturn();
@@ -99,7 +182,7 @@ public class RequestControllerAPITest {
   @Test
   public void apiWithUpload() throws Exception {
 
-    final MvcResult result =
+    final MvcResult asyncResult =
         mvc.perform(
                 multipart(API_PREFIX)
                     .file(mockMultipartFile())
@@ -107,6 +190,11 @@ public class RequestControllerAPITest {
                     .param("email", "sualeh@hotmail.com")
                     .contentType(MediaType.MULTIPART_FORM_DATA)
                     .accept(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    final MvcResult result =
+        mvc.perform(asyncDispatch(asyncResult))
             .andExpect(status().isCreated())
             .andExpect(openApi().isValid("api/schemacrawler-web-application.yaml"))
             .andReturn();
@@ -126,7 +214,7 @@ public class RequestControllerAPITest {
     final String locationHeaderValue = result.getResponse().getHeaderValue("Location").toString();
     assertThat(locationHeaderValue, endsWith(key.getKey()));
 
-    pool.getThreadPoolExecutor().awaitTermination(3, TimeUnit.SECONDS);
+    awaitFinished(processingService, key);
 
     final Optional<Path> localDatabaseFile = storageService.retrieveLocal(key, SQLITE_DB);
     assertThat(localDatabaseFile.isPresent(), is(true));
@@ -140,7 +228,7 @@ public class RequestControllerAPITest {
         new MockMultipartFile(
             "file", "test.db", "application/octet-stream", RandomUtils.secure().randomBytes(5));
 
-    final MvcResult result =
+    final MvcResult asyncResult =
         mvc.perform(
                 multipart(API_PREFIX)
                     .file(multipartFile)
@@ -148,6 +236,11 @@ public class RequestControllerAPITest {
                     .param("email", "sualeh@hotmail.com")
                     .contentType(MediaType.MULTIPART_FORM_DATA)
                     .accept(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    final MvcResult result =
+        mvc.perform(asyncDispatch(asyncResult))
             .andExpect(status().isInternalServerError())
             .andExpect(openApi().isValid("api/schemacrawler-web-application.yaml"))
             .andReturn();
@@ -165,4 +258,160 @@ public class RequestControllerAPITest {
             Pattern.compile(
                 ".*Expected a SQLite database file, but got a file of type.*", Pattern.DOTALL)));
   }
+
+  @Test
+  public void apiWithUploadNotADatabaseRespondAsync() throws Exception {
+
+    final MockMultipartFile multipartFile =
+        new MockMultipartFile(
+            "file", "test.db", "application/octet-stream", RandomUtils.secure().randomBytes(5));
+
+    // The upload is accepted before it is checked
+    final MvcResult asyncResult =
+        mvc.perform(
+                multipart(API_PREFIX)
+                    .file(multipartFile)
+                    .param("name", "Sualeh")
+                    .param("email", "sualeh@hotmail.com")
+                    .header("Prefer", "respond-async")
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .accept(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    final MvcResult result =
+        mvc.perform(asyncDispatch(asyncResult)).andExpect(status().isAccepted()).andReturn();
+
+    final ObjectMapper objectMapper = new ObjectMapper();
+    final String key =
+        objectMapper.readTree(result.getResponse().getContentAsString()).get("key").asText();
+
+    // The error is reported in the processing status
+    final JsonNode jobStatus =
+        assertTimeoutPreemptively(
+            ofSeconds(10),
+            () -> {
+              while (true) {
+                final MvcResult statusAsyncResult =
+                    mvc.perform(
+                            get(API_PREFIX + "/" + key + "/status")
+                                .accept(MediaType.APPLICATION_JSON))
+                        .andExpect(request().asyncStarted())
+                        .andReturn();
+                final MvcResult statusResult =
+                    mvc.perform(asyncDispatch(statusAsyncResult))
+                        .andExpect(status().isOk())
+                        .andReturn();
+                final JsonNode jsonNode =
+                    objectMapper.readTree(statusResult.getResponse().getContentAsString());
+                if ("FAILED".equals(jsonNode.get("status").asText())) {
+                  return jsonNode;
+                }
+                Thread.sleep(100);
+              }
+            });
+
+    assertThat(
+        jobStatus.get("error").asText(),
+        matchesPattern(
+            Pattern.compile(
+                ".*Expected a SQLite database file, but got a file of type.*", Pattern.DOTALL)));
+  }
+
+  @Test
+  public void apiWithUploadRespondAsync() throws Exception {
+
+    final MvcResult asyncResult =
+        mvc.perform(
+                multipart(API_PREFIX)
+                    .file(mockMultipartFile())
+                    .param("name", "Sualeh")
+                    .param("email", "sualeh@hotmail.com")
+                    .header("Prefer", "wait=5, respond-async")
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .accept(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    final MvcResult result =
+        mvc.perform(asyncDispatch(asyncResult))
+            .andExpect(status().isAccepted())
+            .andExpect(header().string("Preference-Applied", "respond-async"))
+            .andExpect(openApi().isValid("api/schemacrawler-web-application.yaml"))
+            .andReturn();
+
+    final JsonNode jsonNode = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+    assertThat(jsonNode.get("error"), is(nullValue()));
+    assertThat(jsonNode.get("file-hash"), is(notNullValue()));
+
+    final String key = jsonNode.get("key").asText();
+    assertThat(
+        result.getResponse().getHeaderValue("Location").toString(), endsWith(key + "/status"));
+  }
+
+  @Test
+  public void apiWithUploadTimeline() throws Exception {
+
+    final MvcResult asyncResult =
+        mvc.perform(
+                multipart(API_PREFIX)
+                    .file(mockMultipartFile())
+                    .param("name", "Sualeh")
+                    .param("email", "sualeh@hotmail.com")
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .accept(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    final MvcResult result =
+        mvc.perform(asyncDispatch(asyncResult)).andExpect(status().isCreated()).andReturn();
+
+    final ObjectMapper objectMapper = new ObjectMapper();
+    final String key =
+        objectMapper.readTree(result.getResponse().getContentAsString()).get("key").asText();
+
+    // The timeline is stored once processing completes, whether or not a diagram was rendered
+    final JsonNode timeline =
+        assertTimeoutPreemptively(
+            ofSeconds(10),
+            () -> {
+              while (true) {
+                final MvcResult resultsResult =
+                    mvc.perform(get(API_PREFIX + "/" + key).accept(MediaType.APPLICATION_JSON))
+                        .andExpect(status().isOk())
+                        .andExpect(openApi().isValid("api/schemacrawler-web-application.yaml"))
+                        .andReturn();
+                final JsonNode jsonNode =
+                    objectMapper.readTree(resultsResult.getResponse().getContentAsString());
+                if (jsonNode.has("timeline")) {
+                  return jsonNode.get("timeline");
+                }
+                Thread.sleep(100);
+              }
+            });
+
+    assertThat(timeline.get("enqueued"), is(notNullValue()));
+    assertThat(timeline.get("queue-wait-millis").asLong(), is(greaterThanOrEqualTo(0L)));
+    // Accepted requests wait for the database to be checked on a pipeline stage
+    assertThat(
+        timeline.get("queue-wait-millis").asLong(),
+        is(greaterThanOrEqualTo(timeline.get("preflight-wait-millis").asLong())));
+    assertThat(
+        timeline.get("total-millis").asLong(),
+        is(greaterThanOrEqualTo(timeline.get("queue-wait-millis").asLong())));
+  }
+
+  private MvcResult postWithIdempotencyKey(final String name, final String idempotencyKey)
+      throws Exception {
+    return mvc.perform(
+            multipart(API_PREFIX)
+                .file(mockMultipartFile())
+                .param("name", name)
+                .param("email", "sualeh@hotmail.com")
+                .header("Idempotency-Key", idempotencyKey)
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .accept(MediaType.APPLICATION_JSON))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+  }
 }
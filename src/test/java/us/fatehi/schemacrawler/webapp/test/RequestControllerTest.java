@@ -27,10 +27,14 @@ http://www.gnu.org/licenses/
 */
 package us.fatehi.schemacrawler.webapp.test;
 
+import static java.time.Duration.ofSeconds;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
@@ -38,11 +42,12 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
 import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.SQLITE_DB;
+import static us.fatehi.schemacrawler.webapp.test.utility.TestUtility.awaitFinished;
 import static us.fatehi.schemacrawler.webapp.test.utility.TestUtility.mockMultipartFile;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.RandomUtils;
 import org.junit.jupiter.api.Test;
@@ -51,23 +56,28 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.mock.web.MockMultipartFile;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import io.micrometer.core.instrument.MeterRegistry;
 import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
+import us.fatehi.schemacrawler.webapp.service.processing.ProcessingService;
+import us.fatehi.schemacrawler.webapp.service.processing.StageMetrics;
 import us.fatehi.schemacrawler.webapp.service.storage.StorageService;
+import us.fatehi.schemacrawler.webapp.test.service.notification.LogNotificationService;
 
 @RunWith(SpringRunner.class)
 @AutoConfigureMockMvc
-@SpringBootTest
+@SpringBootTest(properties = "SC_WEBAPP_NOTIFICATION_DIGEST_WINDOW_SECONDS=0")
 @ActiveProfiles("local")
 public class RequestControllerTest {
 
   @Autowired private MockMvc mvc;
-  @Autowired private ThreadPoolTaskExecutor pool;
+  @Autowired private ProcessingService processingService;
   @Autowired private StorageService storageService;
+  @Autowired private MeterRegistry meterRegistry;
+  @Autowired private LogNotificationService notificationService;
 
   @Test
   public void formWithNoParameters() throws Exception {
@@ -93,13 +103,41 @@ public class RequestControllerTest {
 
     final DiagramRequest diagramRequest =
         (DiagramRequest) mvcResult.getModelAndView().getModel().get("diagramRequest");
-    /* final boolean awaitTermination = */ pool.getThreadPoolExecutor()
-        .awaitTermination(3, TimeUnit.SECONDS);
+    awaitFinished(processingService, diagramRequest.getKey());
 
     final Optional<Path> localDatabaseFile =
         storageService.retrieveLocal(diagramRequest.getKey(), SQLITE_DB);
     assertThat(localDatabaseFile.isPresent(), is(true));
     assertThat(Files.size(localDatabaseFile.get()), is(9216L));
+
+    // Notifications are sent from the outbox, once the request has been processed
+    assertTimeoutPreemptively(
+        ofSeconds(10),
+        () -> {
+          while (notificationService.getNotifications().stream()
+              .flatMap(List::stream)
+              .noneMatch(notified -> notified.getKey().equals(diagramRequest.getKey()))) {
+            Thread.sleep(100);
+          }
+        });
+
+    // Stages are timed, and tagged by outcome
+    assertThat(
+        meterRegistry
+            .get("diagram.stage")
+            .tags("stage", StageMetrics.SPOOL, "outcome", "success")
+            .timer()
+            .count(),
+        greaterThan(0L));
+    assertThat(
+        meterRegistry
+            .get("diagram.stage")
+            .tags("stage", StageMetrics.NOTIFICATION, "outcome", "success")
+            .timer()
+            .count(),
+        greaterThan(0L));
+    assertThat(
+        meterRegistry.get("diagram.upload.size").summary().max(), greaterThanOrEqualTo(9216.0));
   }
 
   @Test
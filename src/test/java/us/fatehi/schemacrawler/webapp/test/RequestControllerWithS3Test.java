@@ -36,17 +36,16 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
 import static org.testcontainers.containers.localstack.LocalStackContainer.Service.S3;
 import static us.fatehi.schemacrawler.webapp.test.utility.S3ServiceControllerTestConfig.TEST_SC_WEB_APP_BUCKET;
+import static us.fatehi.schemacrawler.webapp.test.utility.TestUtility.awaitFinished;
 import static us.fatehi.schemacrawler.webapp.test.utility.TestUtility.mockMultipartFile;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -58,6 +57,7 @@ import org.testcontainers.utility.DockerImageName;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.S3Object;
 import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
+import us.fatehi.schemacrawler.webapp.service.processing.ProcessingService;
 import us.fatehi.schemacrawler.webapp.test.utility.S3ServiceControllerTestConfig;
 
 @RunWith(SpringRunner.class)
@@ -91,7 +91,7 @@ public class RequestControllerWithS3Test {
     s3Client.waiter().waitUntilBucketExists(b -> b.bucket(TEST_SC_WEB_APP_BUCKET));
   }
 
-  @Autowired private ThreadPoolTaskExecutor pool;
+  @Autowired private ProcessingService processingService;
   @Autowired private MockMvc mvc;
 
   @Test
@@ -109,8 +109,7 @@ public class RequestControllerWithS3Test {
 
     final DiagramRequest diagramRequest =
         (DiagramRequest) mvcResult.getModelAndView().getModel().get("diagramRequest");
-    /* final boolean awaitTermination = */ pool.getThreadPoolExecutor()
-        .awaitTermination(3, TimeUnit.SECONDS);
+    awaitFinished(processingService, diagramRequest.getKey());
 
     // Verify contents of S3 bucket
     final S3Client s3Client = new S3ServiceControllerTestConfig().s3Client();
@@ -121,7 +120,9 @@ public class RequestControllerWithS3Test {
 
     assertThat(contents.size(), is(greaterThan(0)));
 
-    assertThat(contents.get(0).key(), is(diagramRequest.getKey() + ".db"));
+    // Files are stored under a prefix, which is the last character of the key
+    final String key = diagramRequest.getKey().getKey();
+    assertThat(contents.get(0).key(), is(key.charAt(key.length() - 1) + "/" + key + ".db"));
     assertThat(contents.get(0).size(), is(greaterThan(9_200L)));
   }
 }
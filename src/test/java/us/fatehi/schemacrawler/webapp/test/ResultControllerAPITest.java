@@ -35,7 +35,9 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static us.fatehi.schemacrawler.webapp.controller.URIConstants.API_PREFIX;
 import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.JSON;
@@ -58,6 +60,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
 import us.fatehi.schemacrawler.webapp.model.DiagramKey;
 import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
+import us.fatehi.schemacrawler.webapp.service.processing.ProcessingService;
 import us.fatehi.schemacrawler.webapp.service.storage.StorageService;
 
 @RunWith(SpringRunner.class)
@@ -68,6 +71,7 @@ public class ResultControllerAPITest {
 
   @Autowired private StorageService storageService;
   @Autowired private MockMvc mvc;
+  @Autowired private ProcessingService processingService;
 
   @Test
   public void getBadKey() throws Exception {
@@ -137,6 +141,50 @@ public class ResultControllerAPITest {
     assertThat(result, is(notNullValue()));
   }
 
+  @Test
+  public void getMissingStatus() throws Exception {
+
+    final String statusUrlPath = API_PREFIX + "/missingkey01/status";
+
+    final MvcResult asyncResult =
+        mvc.perform(get(statusUrlPath).accept(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mvc.perform(asyncDispatch(asyncResult))
+        .andExpect(status().isNotFound())
+        .andExpect(openApi().isValid("api/schemacrawler-web-application.yaml"));
+  }
+
+  @Test
+  public void getStatus() throws Exception {
+
+    final DiagramKey key = new DiagramKey();
+    processingService.failed(key, "Bad error");
+
+    final String statusUrlPath = API_PREFIX + "/" + key + "/status";
+
+    final MvcResult asyncResult =
+        mvc.perform(
+                get(statusUrlPath)
+                    .param("since", "QUEUED")
+                    .param("wait", "5")
+                    .accept(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    final MvcResult result =
+        mvc.perform(asyncDispatch(asyncResult))
+            .andExpect(status().isOk())
+            .andExpect(openApi().isValid("api/schemacrawler-web-application.yaml"))
+            .andReturn();
+
+    final JsonNode jsonNode = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+    assertThat(jsonNode.get("key").asText(), is(key.getKey()));
+    assertThat(jsonNode.get("status").asText(), is("FAILED"));
+    assertThat(jsonNode.get("error").asText(), is("Bad error"));
+  }
+
   @Test
   public void getResults() throws Exception {
 
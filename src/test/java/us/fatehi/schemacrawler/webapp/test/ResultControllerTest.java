@@ -34,19 +34,26 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
 import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.JSON;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.PNG;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import org.apache.commons.lang3.RandomUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.util.DigestUtils;
 import schemacrawler.schemacrawler.exceptions.ExecutionRuntimeException;
 import schemacrawler.schemacrawler.exceptions.InternalRuntimeException;
 import us.fatehi.schemacrawler.webapp.model.DiagramKey;
@@ -117,6 +124,105 @@ public class ResultControllerTest {
     assertThat(exception.getMessage(), is("Cannot find request for <missingkey01>"));
   }
 
+  @Test
+  public void getDiagramRange() throws Exception {
+
+    final DiagramKey key = new DiagramKey();
+    final byte[] diagram = RandomUtils.secure().randomBytes(100);
+    storageService.store(() -> new ByteArrayInputStream(diagram), key, PNG);
+
+    final String diagramUrlPath = "/schemacrawler/results/" + key + "/diagram";
+
+    final MvcResult result =
+        mvc.perform(get(diagramUrlPath))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/png"))
+            .andReturn();
+    assertThat(result.getResponse().getContentAsByteArray(), is(diagram));
+
+    final MvcResult rangeResult =
+        mvc.perform(get(diagramUrlPath).header(HttpHeaders.RANGE, "bytes=10-19"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-19/100"))
+            .andReturn();
+    assertThat(
+        rangeResult.getResponse().getContentAsByteArray(), is(Arrays.copyOfRange(diagram, 10, 20)));
+
+    mvc.perform(get(diagramUrlPath).header(HttpHeaders.RANGE, "bytes=-5"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 95-99/100"));
+
+    mvc.perform(get(diagramUrlPath).header(HttpHeaders.RANGE, "bytes=200-"))
+        .andExpect(status().isRequestedRangeNotSatisfiable());
+  }
+
+  @Test
+  public void getDiagramConditional() throws Exception {
+
+    final DiagramKey key = new DiagramKey();
+    final byte[] diagram = RandomUtils.secure().randomBytes(100);
+    storageService.store(() -> new ByteArrayInputStream(diagram), key, PNG);
+
+    final String diagramUrlPath = "/schemacrawler/results/" + key + "/diagram";
+
+    final MvcResult result =
+        mvc.perform(get(diagramUrlPath))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+            .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+            .andReturn();
+    final String eTag = result.getResponse().getHeader(HttpHeaders.ETAG);
+    assertThat(eTag, is("\"" + DigestUtils.md5DigestAsHex(diagram) + "\""));
+
+    final MvcResult notModifiedResult =
+        mvc.perform(get(diagramUrlPath).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, eTag))
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+            .andReturn();
+    assertThat(notModifiedResult.getResponse().getContentLength(), is(0));
+
+    mvc.perform(get(diagramUrlPath).header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+        .andExpect(status().isOk());
+
+    // A byte range is only returned if the client has the current version
+    mvc.perform(
+            get(diagramUrlPath)
+                .header(HttpHeaders.RANGE, "bytes=10-19")
+                .header(HttpHeaders.IF_RANGE, eTag))
+        .andExpect(status().isPartialContent());
+    mvc.perform(
+            get(diagramUrlPath)
+                .header(HttpHeaders.RANGE, "bytes=10-19")
+                .header(HttpHeaders.IF_RANGE, "\"other\""))
+        .andExpect(status().isOk())
+        .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 100));
+  }
+
+  @Test
+  public void getResultsConditional() throws Exception {
+
+    final DiagramRequest diagramRequest = new DiagramRequest();
+    diagramRequest.setName("Sualeh Fatehi");
+    diagramRequest.setEmail("sualeh@hotmail.com");
+
+    final DiagramKey key = diagramRequest.getKey();
+    storageService.store(() -> toInputStream(diagramRequest.toJson(), UTF_8), key, JSON);
+
+    final String resultsUrlPath = "/diagrams/" + key;
+
+    final MvcResult result =
+        mvc.perform(get(resultsUrlPath))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+            .andReturn();
+    final String eTag = result.getResponse().getHeader(HttpHeaders.ETAG);
+
+    mvc.perform(get(resultsUrlPath).header(HttpHeaders.IF_NONE_MATCH, eTag))
+        .andExpect(status().isNotModified());
+  }
+
   @Test
   public void getResults() throws Exception {
 
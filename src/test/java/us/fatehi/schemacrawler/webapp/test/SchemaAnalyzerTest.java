@@ -0,0 +1,135 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+
+import schemacrawler.schemacrawler.exceptions.ExecutionRuntimeException;
+import us.fatehi.schemacrawler.webapp.model.SchemaSize;
+import us.fatehi.schemacrawler.webapp.service.processing.PipelineLanes;
+import us.fatehi.schemacrawler.webapp.service.processing.SchemaAnalyzer;
+import us.fatehi.schemacrawler.webapp.service.processing.SchemaEstimate;
+import us.fatehi.schemacrawler.webapp.service.processing.SchemaFingerprint;
+
+public class SchemaAnalyzerTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+  @TempDir private Path tempDir;
+
+  @Test
+  public void analyze() throws Exception {
+    final Path databaseFile = copyTestDatabase();
+    final SchemaEstimate estimate = SchemaAnalyzer.analyze(databaseFile, TIMEOUT);
+
+    assertThat(estimate.getPageSize(), is(1024));
+    assertThat(estimate.getPageCount(), is(9L));
+    assertThat(estimate.getTables(), is(5));
+    assertThat(estimate.getViews(), is(0));
+    assertThat(estimate.getIndexes(), is(1));
+    assertThat(estimate.getColumns(), is(27));
+    assertThat(estimate.getForeignKeys(), is(2));
+    assertThat(estimate.getEstimatedCost(), is(88L));
+    assertThat(
+        estimate.getSchemaFingerprint(), is(SchemaFingerprint.fingerprint(databaseFile)));
+  }
+
+  @Test
+  public void corruptDatabase() throws Exception {
+    final Path databaseFile = copyTestDatabase();
+    final byte[] garbage = new byte[512];
+    Arrays.fill(garbage, (byte) 0x5A);
+    try (final FileChannel channel = FileChannel.open(databaseFile, StandardOpenOption.WRITE)) {
+      // Overwrite the start of the second page
+      channel.write(ByteBuffer.wrap(garbage), 1024);
+    }
+    assertThrows(
+        ExecutionRuntimeException.class, () -> SchemaAnalyzer.analyze(databaseFile, TIMEOUT));
+  }
+
+  @Test
+  public void laneThreads() {
+    for (final int processors : new int[] {1, 2, 4, 8, 16, 64}) {
+      final PipelineLanes lanes = new PipelineLanes(processors, 10, 100, 1000);
+      try {
+        int threads = 0;
+        for (final SchemaSize schemaSize : SchemaSize.values()) {
+          threads += lanes.crawlStage(schemaSize).getThreads();
+          threads += lanes.renderStage(schemaSize).getThreads();
+        }
+        // The lanes share the processors, with an extra thread for lanes with a single thread
+        assertThat(threads <= Math.max(processors, 3) + 3, is(true));
+        assertThat(lanes.crawlStage(SchemaSize.LARGE).getThreads(), is(1));
+      } finally {
+        lanes.shutdown();
+      }
+    }
+  }
+
+  @Test
+  public void sizeClass() {
+    final PipelineLanes lanes = new PipelineLanes(4, 10, 100, 1000);
+    try {
+      assertThat(lanes.sizeClass(88), is(SchemaSize.SMALL));
+      assertThat(lanes.sizeClass(101), is(SchemaSize.MEDIUM));
+      assertThat(lanes.sizeClass(1001), is(SchemaSize.LARGE));
+    } finally {
+      lanes.shutdown();
+    }
+  }
+
+  @Test
+  public void truncatedDatabase() throws Exception {
+    final Path databaseFile = copyTestDatabase();
+    try (final FileChannel channel = FileChannel.open(databaseFile, StandardOpenOption.WRITE)) {
+      channel.truncate(4 * 1024);
+    }
+    assertThrows(
+        ExecutionRuntimeException.class, () -> SchemaAnalyzer.analyze(databaseFile, TIMEOUT));
+  }
+
+  private Path copyTestDatabase() throws Exception {
+    final Path databaseFile = tempDir.resolve("test.db");
+    Files.copy(new ClassPathResource("/test.db").getInputStream(), databaseFile);
+    return databaseFile;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+
+import schemacrawler.schemacrawler.exceptions.ExecutionRuntimeException;
+import us.fatehi.schemacrawler.webapp.service.processing.SchemaFingerprint;
+
+public class SchemaFingerprintTest {
+
+  @TempDir private Path tempDir;
+
+  @Test
+  public void dataDoesNotChangeFingerprint() throws Exception {
+    final Path databaseFile = copyTestDatabase();
+    final String fingerprint = SchemaFingerprint.fingerprint(databaseFile);
+
+    execute(databaseFile, "CREATE TABLE EXTRA (ID INTEGER PRIMARY KEY, NAME VARCHAR(20))");
+    final String schemaChangedFingerprint = SchemaFingerprint.fingerprint(databaseFile);
+    assertThat(schemaChangedFingerprint, is(not(fingerprint)));
+
+    execute(databaseFile, "INSERT INTO EXTRA (NAME) VALUES ('row')");
+    assertThat(SchemaFingerprint.fingerprint(databaseFile), is(schemaChangedFingerprint));
+  }
+
+  @Test
+  public void formattingDoesNotChangeFingerprint() throws Exception {
+    final Path databaseFile =
+        newDatabase("a.db", "CREATE TABLE T (NAME VARCHAR(20) DEFAULT 'a  b')");
+    final Path reformattedFile =
+        newDatabase("b.db", "CREATE  TABLE T\n  (NAME\tVARCHAR(20)   DEFAULT 'a  b')");
+    assertThat(
+        SchemaFingerprint.fingerprint(reformattedFile),
+        is(SchemaFingerprint.fingerprint(databaseFile)));
+  }
+
+  @Test
+  public void notADatabase() throws Exception {
+    final Path file = tempDir.resolve("not-a-database.db");
+    Files.writeString(file, "Not a SQLite database");
+    assertThrows(ExecutionRuntimeException.class, () -> SchemaFingerprint.fingerprint(file));
+  }
+
+  @Test
+  public void quotedWhitespaceChangesFingerprint() throws Exception {
+    final Path databaseFile =
+        newDatabase("a.db", "CREATE TABLE T (NAME VARCHAR(20) DEFAULT 'a  b')");
+    final Path otherFile = newDatabase("b.db", "CREATE TABLE T (NAME VARCHAR(20) DEFAULT 'a b')");
+    assertThat(
+        SchemaFingerprint.fingerprint(otherFile),
+        is(not(SchemaFingerprint.fingerprint(databaseFile))));
+  }
+
+  private Path copyTestDatabase() throws Exception {
+    final Path databaseFile = tempDir.resolve("test.db");
+    Files.copy(new ClassPathResource("/test.db").getInputStream(), databaseFile);
+    return databaseFile;
+  }
+
+  private Path newDatabase(final String fileName, final String sql) throws Exception {
+    final Path databaseFile = tempDir.resolve(fileName);
+    execute(databaseFile, sql);
+    return databaseFile;
+  }
+
+  private void execute(final Path databaseFile, final String sql) throws Exception {
+    try (final Connection connection =
+            DriverManager.getConnection("jdbc:sqlite:" + databaseFile.toAbsolutePath());
+        final Statement statement = connection.createStatement()) {
+      statement.executeUpdate(sql);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.fatehi.schemacrawler.webapp.service.processing.SchemaAnalyzer;
+import us.fatehi.schemacrawler.webapp.service.processing.SchemaEstimate;
+import us.fatehi.schemacrawler.webapp.test.utility.SyntheticSchemaGenerator;
+import us.fatehi.schemacrawler.webapp.test.utility.TestUtility;
+
+public class SyntheticSchemaGeneratorTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+  @TempDir private Path tempDir;
+
+  @Test
+  public void generate() throws Exception {
+    final Path databaseFile =
+        new SyntheticSchemaGenerator()
+            .tables(20)
+            .columnsPerTable(6)
+            .foreignKeyDensity(0.5)
+            .indexesPerTable(2)
+            .views(3)
+            .rowsPerTable(10)
+            .generate(tempDir.resolve("synthetic.db"));
+
+    final SchemaEstimate estimate = SchemaAnalyzer.analyze(databaseFile, TIMEOUT);
+    assertThat(estimate.getTables(), is(20));
+    assertThat(estimate.getViews(), is(3));
+    assertThat(estimate.getIndexes(), is(40));
+    // Columns in tables, foreign key columns, and two columns in each view
+    assertThat(estimate.getColumns(), is(20 * 6 + 10 + 3 * 2));
+    assertThat(estimate.getForeignKeys(), is(10));
+
+    try (final Connection connection =
+            DriverManager.getConnection("jdbc:sqlite:" + databaseFile);
+        final Statement statement = connection.createStatement();
+        final ResultSet results = statement.executeQuery("SELECT COUNT(*) FROM table_19")) {
+      results.next();
+      assertThat(results.getInt(1), is(10));
+    }
+  }
+
+  @Test
+  public void seed() throws Exception {
+    final SyntheticSchemaGenerator generator = new SyntheticSchemaGenerator().tables(10);
+
+    final String fingerprint =
+        fingerprint(generator.seed(1).generate(tempDir.resolve("seed-1.db")));
+    assertThat(
+        fingerprint(generator.seed(1).generate(tempDir.resolve("again-1.db"))), is(fingerprint));
+    assertThat(
+        fingerprint(generator.seed(2).generate(tempDir.resolve("seed-2.db"))),
+        is(not(fingerprint)));
+  }
+
+  @Test
+  public void syntheticDatabase() throws Exception {
+    final Path databaseFile = TestUtility.syntheticDatabase(tempDir, 50);
+    assertThat(SchemaAnalyzer.analyze(databaseFile, TIMEOUT).getTables(), is(50));
+  }
+
+  private String fingerprint(final Path databaseFile) {
+    return SchemaAnalyzer.analyze(databaseFile, TIMEOUT).getSchemaFingerprint();
+  }
+}
@@ -0,0 +1,210 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package us.fatehi.schemacrawler.webapp.test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.Duration.ofSeconds;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static us.fatehi.schemacrawler.webapp.controller.URIConstants.API_PREFIX;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.JSON;
+import static us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType.SQLITE_DB;
+import static us.fatehi.schemacrawler.webapp.test.utility.TestUtility.mockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+import us.fatehi.schemacrawler.webapp.model.DiagramRequest;
+import us.fatehi.schemacrawler.webapp.model.JobStatus;
+import us.fatehi.schemacrawler.webapp.service.processing.JobTracker;
+import us.fatehi.schemacrawler.webapp.service.queue.InMemoryWorkQueue;
+import us.fatehi.schemacrawler.webapp.service.queue.WorkQueue;
+import us.fatehi.schemacrawler.webapp.service.storage.StorageService;
+
+@AutoConfigureMockMvc
+@SpringBootTest(
+    properties = {
+      "SC_WEBAPP_WORK_QUEUE_ENABLED=true",
+      "SC_WEBAPP_WORK_QUEUE_POLL_MILLIS=50",
+      "SC_WEBAPP_WORK_QUEUE_MAX_ATTEMPTS=2"
+    })
+@ActiveProfiles("local")
+public class WorkQueueAPITest {
+
+  @Autowired private MockMvc mvc;
+  @Autowired private StorageService storageService;
+  @Autowired private WorkQueue workQueue;
+  @Autowired private JobTracker jobTracker;
+
+  @Test
+  public void apiWithUpload() throws Exception {
+
+    final MvcResult asyncResult =
+        mvc.perform(
+                multipart(API_PREFIX)
+                    .file(mockMultipartFile())
+                    .param("name", "Sualeh")
+                    .param("email", "sualeh@hotmail.com")
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .accept(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    final MvcResult result =
+        mvc.perform(asyncDispatch(asyncResult)).andExpect(status().isCreated()).andReturn();
+
+    final ObjectMapper objectMapper = new ObjectMapper();
+    final String key =
+        objectMapper.readTree(result.getResponse().getContentAsString()).get("key").asText();
+
+    // The upload is stored before the request is queued, since any instance may process it
+    assertThat(storageService.retrieveLocal(new DiagramKey(key), SQLITE_DB).isPresent(), is(true));
+
+    // Processed by the worker, which stores the timeline whether or not a diagram was rendered
+    final JsonNode timeline =
+        assertTimeoutPreemptively(
+            ofSeconds(10),
+            () -> {
+              while (true) {
+                final MvcResult resultsResult =
+                    mvc.perform(get(API_PREFIX + "/" + key).accept(MediaType.APPLICATION_JSON))
+                        .andExpect(status().isOk())
+                        .andReturn();
+                final JsonNode jsonNode =
+                    objectMapper.readTree(resultsResult.getResponse().getContentAsString());
+                if (jsonNode.has("timeline")) {
+                  return jsonNode.get("timeline");
+                }
+                Thread.sleep(100);
+              }
+            });
+    assertThat(timeline.get("enqueued"), is(notNullValue()));
+
+    // Removed from the queue once processed
+    assertTimeoutPreemptively(
+        ofSeconds(10),
+        () -> {
+          while (((InMemoryWorkQueue) workQueue).size() > 0) {
+            Thread.sleep(50);
+          }
+        });
+
+    // Instances that did not process the request read its status from storage
+    jobTracker.forget(new DiagramKey(key));
+    final MvcResult statusAsyncResult =
+        mvc.perform(
+                get(API_PREFIX + "/" + key + "/status")
+                    .param("since", "QUEUED")
+                    .param("wait", "5")
+                    .accept(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    final MvcResult statusResult =
+        mvc.perform(asyncDispatch(statusAsyncResult)).andExpect(status().isOk()).andReturn();
+    final JsonNode jobStatus =
+        objectMapper.readTree(statusResult.getResponse().getContentAsString());
+    assertThat(JobStatus.valueOf(jobStatus.get("status").asText()).isFinished(), is(true));
+  }
+
+  @Test
+  public void unqueuedStatus() throws Exception {
+    final DiagramRequest diagramRequest = new DiagramRequest();
+    diagramRequest.setName("Sualeh");
+    final DiagramKey key = diagramRequest.getKey();
+    final byte[] json = diagramRequest.toJsonBytes();
+    storageService.store(() -> new ByteArrayInputStream(json), key, JSON);
+    storageService.seal(key);
+
+    // A stored request that is neither finished nor in the work queue is not reported as queued,
+    // so clients do not wait on it
+    final MvcResult statusAsyncResult =
+        mvc.perform(
+                get(API_PREFIX + "/" + key + "/status")
+                    .param("since", "QUEUED")
+                    .param("wait", "30")
+                    .accept(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    assertTimeoutPreemptively(
+        ofSeconds(5),
+        () -> {
+          mvc.perform(asyncDispatch(statusAsyncResult)).andExpect(status().isNotFound());
+        });
+  }
+
+  @Test
+  public void missingUpload() throws Exception {
+    final DiagramRequest diagramRequest = new DiagramRequest();
+    diagramRequest.setName("Sualeh");
+    final DiagramKey key = diagramRequest.getKey();
+    final byte[] json = diagramRequest.toJsonBytes();
+    storageService.store(() -> new ByteArrayInputStream(json), key, JSON);
+    storageService.seal(key);
+    workQueue.submit(key, false);
+
+    // Retried, and then marked as failed and removed from the queue, instead of being claimed
+    // forever
+    assertTimeoutPreemptively(
+        ofSeconds(10),
+        () -> {
+          while (((InMemoryWorkQueue) workQueue).size() > 0) {
+            Thread.sleep(50);
+          }
+        });
+    final Path stored = storageService.retrieveLocal(key, JSON).get();
+    try (final Reader reader = Files.newBufferedReader(stored, UTF_8)) {
+      assertThat(
+          DiagramRequest.fromJson(reader).getError(),
+          startsWith("Could not be processed after 2 attempts"));
+    }
+  }
+}
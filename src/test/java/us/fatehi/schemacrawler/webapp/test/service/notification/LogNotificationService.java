@@ -27,6 +27,9 @@ http://www.gnu.org/licenses/
 */
 package us.fatehi.schemacrawler.webapp.test.service.notification;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Profile;
@@ -41,8 +44,27 @@ public class LogNotificationService implements NotificationService {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(LogNotificationService.class);
 
+  private final List<List<DiagramRequest>> notifications = new CopyOnWriteArrayList<>();
+
+  /**
+   * Notifications that have been sent, with the requests in each one.
+   *
+   * @return Sent notifications
+   */
+  public List<List<DiagramRequest>> getNotifications() {
+    return notifications;
+  }
+
   @Override
   public void notify(final DiagramRequest diagramRequest) {
-    LOGGER.info(String.format("**** EMAILING RESULT for %s", diagramRequest.getKey().getKey()));
+    notify(List.of(diagramRequest));
+  }
+
+  @Override
+  public void notify(final List<DiagramRequest> diagramRequests) {
+    for (final DiagramRequest diagramRequest : diagramRequests) {
+      LOGGER.info(String.format("**** EMAILING RESULT for %s", diagramRequest.getKey().getKey()));
+    }
+    notifications.add(List.copyOf(diagramRequests));
   }
 }
@@ -28,13 +28,14 @@ http://www.gnu.org/licenses/
 
 package us.fatehi.schemacrawler.webapp.test.service.storage;
 
-import static java.nio.file.Files.copy;
 import static java.nio.file.Files.createDirectories;
 import static java.nio.file.Files.exists;
 import static java.nio.file.Files.isDirectory;
 import static java.nio.file.Files.isReadable;
 import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -42,13 +43,17 @@ import java.util.Optional;
 
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpRange;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
 import jakarta.annotation.PostConstruct;
 import us.fatehi.schemacrawler.webapp.model.DiagramKey;
 import us.fatehi.schemacrawler.webapp.service.storage.FileExtensionType;
 import us.fatehi.schemacrawler.webapp.service.storage.StorageService;
+import us.fatehi.schemacrawler.webapp.service.storage.StoredObject;
+import us.fatehi.schemacrawler.webapp.service.storage.StoredObjectMetadata;
 
 @Service("fileSystemStorageService")
 @Profile("local")
@@ -60,6 +65,41 @@ public class FileSystemStorageService implements StorageService {
     this.config = config;
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public void copy(
+      @NonNull final DiagramKey sourceKey,
+      @NonNull final DiagramKey targetKey,
+      @NonNull final FileExtensionType extension)
+      throws Exception {
+    final Path storageRoot = config.fileSystemStorageRootPath();
+    Files.copy(
+        storageRoot.resolve(sourceKey + "." + extension.getExtension()),
+        storageRoot.resolve(targetKey + "." + extension.getExtension()));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Optional<StoredObjectMetadata> describe(
+      @NonNull final DiagramKey key, @NonNull final FileExtensionType extension)
+      throws Exception {
+    final Optional<Path> optionalPath = retrieveLocal(key, extension);
+    if (optionalPath.isEmpty()) {
+      return Optional.empty();
+    }
+    final Path path = optionalPath.get();
+    final String eTag;
+    try (final InputStream inputStream = Files.newInputStream(path)) {
+      eTag = DigestUtils.md5DigestAsHex(inputStream);
+    }
+    return Optional.of(
+        new StoredObjectMetadata(
+            extension.getMimeType(),
+            Files.size(path),
+            eTag,
+            Files.getLastModifiedTime(path).toInstant()));
+  }
+
   @Override
   @PostConstruct
   public void init() throws Exception {
@@ -73,6 +113,21 @@ public class FileSystemStorageService implements StorageService {
     }
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public Optional<StoredObject> retrieve(
+      @NonNull final DiagramKey key,
+      @NonNull final FileExtensionType extension,
+      final HttpRange range)
+      throws Exception {
+    final Optional<Path> optionalPath = retrieveLocal(key, extension);
+    if (optionalPath.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        StoredObject.fromFile(optionalPath.get(), extension.getMimeType(), range));
+  }
+
   /** {@inheritDoc} */
   @Override
   public Optional<Path> retrieveLocal(final DiagramKey key, final FileExtensionType extension)
@@ -127,8 +182,8 @@ public class FileSystemStorageService implements StorageService {
       final Path filePath)
       throws Exception {
 
-    // Save stream to a file
-    copy(streamSource.getInputStream(), filePath);
+    // Save stream to a file, replacing an earlier version, as an object store does
+    Files.copy(streamSource.getInputStream(), filePath, REPLACE_EXISTING);
 
     // Check that the file is not empty
     if (Files.size(filePath) == 0) {
@@ -0,0 +1,444 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test.utility;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Load generator for the web application API. Each request uploads a database, retrieves results,
+ * or retrieves a diagram, picked at random with the given weights. Latencies are recorded in
+ * histograms for each endpoint.
+ *
+ * <p>In a closed-loop run, each client waits for the response before sending the next request, so
+ * a slow server also slows down the load, and latencies are only the service time. An open-loop
+ * run sends requests at a fixed rate whether or not earlier requests have finished, and measures
+ * latency from when each request was due to be sent, so that time spent waiting behind a stalled
+ * server shows up in the high percentiles instead of being left out.
+ *
+ * <p>Rejections with 503 Service Unavailable, which show that the processing queues are full, are
+ * counted on their own. Other server errors and failed connections are counted as errors.
+ * Redirects and client errors are counted separately, since a diagram is not available until it
+ * has been generated.
+ */
+public final class LoadGenerator {
+
+  /** Latency and outcomes of requests to one endpoint. */
+  public static final class EndpointStats {
+
+    private final String endpoint;
+    private final Histogram latencies;
+    private final AtomicLong successes;
+    private final AtomicLong unavailable;
+    private final AtomicLong rejections;
+    private final AtomicLong errors;
+
+    EndpointStats(final String endpoint) {
+      this.endpoint = endpoint;
+      // Microseconds, with three significant digits
+      latencies = new ConcurrentHistogram(3);
+      successes = new AtomicLong();
+      unavailable = new AtomicLong();
+      rejections = new AtomicLong();
+      errors = new AtomicLong();
+    }
+
+    public long getCount() {
+      return successes.get() + unavailable.get() + rejections.get() + errors.get();
+    }
+
+    public String getEndpoint() {
+      return endpoint;
+    }
+
+    /**
+     * Fraction of requests that had a server error other than a rejection, or that failed to
+     * connect.
+     *
+     * @return Error rate, from 0 to 1
+     */
+    public double getErrorRate() {
+      final long count = getCount();
+      return count == 0 ? 0 : (double) errors.get() / count;
+    }
+
+    public long getErrors() {
+      return errors.get();
+    }
+
+    /**
+     * Latency at a percentile, in milliseconds.
+     *
+     * @param percentile Percentile, such as 99.9
+     * @return Latency in milliseconds
+     */
+    public double getLatencyMillis(final double percentile) {
+      return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * Fraction of requests that were rejected with 503 Service Unavailable.
+     *
+     * @return Rejection rate, from 0 to 1
+     */
+    public double getRejectionRate() {
+      final long count = getCount();
+      return count == 0 ? 0 : (double) rejections.get() / count;
+    }
+
+    public long getRejections() {
+      return rejections.get();
+    }
+
+    public long getSuccesses() {
+      return successes.get();
+    }
+
+    public long getUnavailable() {
+      return unavailable.get();
+    }
+
+    void record(final long startNanos, final int statusCode) {
+      latencies.recordValue(Math.max(0, (System.nanoTime() - startNanos) / 1000));
+      if (statusCode >= 200 && statusCode < 300 || statusCode == 304) {
+        successes.incrementAndGet();
+      } else if (statusCode < 500) {
+        unavailable.incrementAndGet();
+      } else if (statusCode == 503) {
+        rejections.incrementAndGet();
+      } else {
+        errors.incrementAndGet();
+      }
+    }
+  }
+
+  /** Results of a load run. */
+  public static final class LoadReport {
+
+    private final String load;
+    private final Duration elapsed;
+    private final Map<String, EndpointStats> endpoints;
+
+    LoadReport(
+        final String load, final Duration elapsed, final Map<String, EndpointStats> endpoints) {
+      this.load = load;
+      this.elapsed = elapsed;
+      this.endpoints = endpoints;
+    }
+
+    public EndpointStats getEndpoint(final String endpoint) {
+      return endpoints.get(endpoint);
+    }
+
+    /**
+     * Requests per second to an endpoint, over the whole run.
+     *
+     * @param endpoint Endpoint
+     * @return Throughput in requests per second
+     */
+    public double getThroughput(final String endpoint) {
+      return endpoints.get(endpoint).getCount() / (elapsed.toNanos() / 1e9);
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder buffer = new StringBuilder();
+      buffer.append(
+          String.format(
+              "%s for %.1f s%n%-28s %8s %9s %8s %8s %8s %9s %9s %9s %9s%n",
+              load,
+              elapsed.toMillis() / 1000.0,
+              "endpoint",
+              "count",
+              "req/s",
+              "errors",
+              "503s",
+              "4xx/3xx",
+              "p50 ms",
+              "p99 ms",
+              "p99.9 ms",
+              "max ms"));
+      for (final EndpointStats stats : endpoints.values()) {
+        buffer.append(
+            String.format(
+                "%-28s %8d %9.1f %7.2f%% %7.2f%% %8d %9.1f %9.1f %9.1f %9.1f%n",
+                stats.getEndpoint(),
+                stats.getCount(),
+                getThroughput(stats.getEndpoint()),
+                stats.getErrorRate() * 100,
+                stats.getRejectionRate() * 100,
+                stats.getUnavailable(),
+                stats.getLatencyMillis(50),
+                stats.getLatencyMillis(99),
+                stats.getLatencyMillis(99.9),
+                stats.latencies.getMaxValue() / 1000.0));
+      }
+      return buffer.toString();
+    }
+  }
+
+  public static final String UPLOAD = "POST /diagrams";
+  public static final String RESULTS = "GET /diagrams/{key}";
+  public static final String DIAGRAM = "GET /diagrams/{key}/diagram";
+
+  private static final Pattern KEY =
+      Pattern.compile("\"key\"\\s*:\\s*\"([a-z0-9]{12}|[a-z0-9]{20})\"");
+  private static final int MAX_KEYS = 1000;
+
+  private final URI baseUri;
+  private final byte[] upload;
+  private final String uploadName;
+  private final HttpClient httpClient;
+  private int uploadWeight = 1;
+  private int resultsWeight = 4;
+  private int diagramWeight = 4;
+
+  /**
+   * Load generator for a running web application.
+   *
+   * @param baseUri Base URI of the web application, such as http://localhost:8080
+   * @param databaseFile SQLite database file to upload
+   */
+  public LoadGenerator(final URI baseUri, final Path databaseFile) throws IOException {
+    this.baseUri = requireNonNull(baseUri, "No base URI provided");
+    requireNonNull(databaseFile, "No database file provided");
+    upload = Files.readAllBytes(databaseFile);
+    uploadName = databaseFile.getFileName().toString();
+    httpClient =
+        HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+  }
+
+  /** Relative weight of diagram image requests. */
+  public LoadGenerator diagramWeight(final int diagramWeight) {
+    this.diagramWeight = Math.max(0, diagramWeight);
+    return this;
+  }
+
+  /** Relative weight of results requests. */
+  public LoadGenerator resultsWeight(final int resultsWeight) {
+    this.resultsWeight = Math.max(0, resultsWeight);
+    return this;
+  }
+
+  /**
+   * Runs a number of closed-loop clients for a length of time. Latencies are service times only,
+   * so use {@link #runAtRate(double, Duration)} for high percentiles under overload.
+   *
+   * @param clients Number of concurrent clients
+   * @param duration How long to run for
+   * @return Latencies and outcomes for each endpoint
+   */
+  public LoadReport run(final int clients, final Duration duration) throws InterruptedException {
+    final Map<String, EndpointStats> endpoints = newEndpoints();
+    final List<String> keys = new ArrayList<>();
+
+    final long start = System.nanoTime();
+    final long deadline = start + duration.toNanos();
+    try (final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int client = 0; client < clients; client++) {
+        executor.execute(
+            () -> {
+              while (System.nanoTime() < deadline) {
+                request(endpoints, keys, System::nanoTime);
+              }
+            });
+      }
+      executor.shutdown();
+      executor.awaitTermination(duration.plusMinutes(5).toMillis(), TimeUnit.MILLISECONDS);
+    }
+    return new LoadReport(
+        clients + " clients", Duration.ofNanos(System.nanoTime() - start), endpoints);
+  }
+
+  /**
+   * Sends requests at a fixed rate for a length of time, without waiting for earlier requests to
+   * finish. Latency is measured from when each request was due to be sent, so it includes any
+   * time the generator itself fell behind.
+   *
+   * @param requestsPerSecond Rate of requests to send
+   * @param duration How long to run for
+   * @return Latencies and outcomes for each endpoint
+   */
+  public LoadReport runAtRate(final double requestsPerSecond, final Duration duration)
+      throws InterruptedException {
+    if (requestsPerSecond <= 0) {
+      throw new IllegalArgumentException("Request rate must be positive");
+    }
+    final Map<String, EndpointStats> endpoints = newEndpoints();
+    final List<String> keys = new ArrayList<>();
+    final long interval = Math.max(1, (long) (1e9 / requestsPerSecond));
+
+    final long start = System.nanoTime();
+    final long deadline = start + duration.toNanos();
+    try (final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (long due = start; due < deadline; due += interval) {
+        final long wait = due - System.nanoTime();
+        if (wait > 0) {
+          LockSupport.parkNanos(wait);
+        }
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+        final long intended = due;
+        executor.execute(() -> request(endpoints, keys, () -> intended));
+      }
+      executor.shutdown();
+      executor.awaitTermination(duration.plusMinutes(5).toMillis(), TimeUnit.MILLISECONDS);
+    }
+    return new LoadReport(
+        String.format("%.1f req/s offered", requestsPerSecond),
+        Duration.ofNanos(System.nanoTime() - start),
+        endpoints);
+  }
+
+  /** Relative weight of uploads. */
+  public LoadGenerator uploadWeight(final int uploadWeight) {
+    this.uploadWeight = Math.max(0, uploadWeight);
+    return this;
+  }
+
+  private Map<String, EndpointStats> newEndpoints() {
+    final Map<String, EndpointStats> endpoints = new LinkedHashMap<>();
+    for (final String endpoint : List.of(UPLOAD, RESULTS, DIAGRAM)) {
+      endpoints.put(endpoint, new EndpointStats(endpoint));
+    }
+    return endpoints;
+  }
+
+  private String pickKey(final List<String> keys) {
+    synchronized (keys) {
+      if (keys.isEmpty()) {
+        return null;
+      }
+      return keys.get(ThreadLocalRandom.current().nextInt(keys.size()));
+    }
+  }
+
+  private void request(
+      final Map<String, EndpointStats> endpoints,
+      final List<String> keys,
+      final LongSupplier startTime) {
+    final int totalWeight = uploadWeight + resultsWeight + diagramWeight;
+    final int pick = ThreadLocalRandom.current().nextInt(Math.max(1, totalWeight));
+    final String key = pickKey(keys);
+
+    final String endpoint;
+    final HttpRequest request;
+    if (pick < uploadWeight || key == null) {
+      endpoint = UPLOAD;
+      request = uploadRequest();
+    } else if (pick < uploadWeight + resultsWeight) {
+      endpoint = RESULTS;
+      request = HttpRequest.newBuilder(baseUri.resolve("/diagrams/" + key)).GET().build();
+    } else {
+      endpoint = DIAGRAM;
+      request =
+          HttpRequest.newBuilder(baseUri.resolve("/diagrams/" + key + "/diagram")).GET().build();
+    }
+
+    final EndpointStats stats = endpoints.get(endpoint);
+    final long startNanos = startTime.getAsLong();
+    try {
+      final HttpResponse<String> response =
+          httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+      stats.record(startNanos, response.statusCode());
+      if (endpoint.equals(UPLOAD) && response.statusCode() == 201) {
+        final Matcher matcher = KEY.matcher(response.body());
+        if (matcher.find()) {
+          synchronized (keys) {
+            if (keys.size() >= MAX_KEYS) {
+              keys.remove(0);
+            }
+            keys.add(matcher.group(1));
+          }
+        }
+      }
+    } catch (final IOException e) {
+      stats.record(startNanos, 599);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private HttpRequest uploadRequest() {
+    final String boundary = UUID.randomUUID().toString();
+    final ByteArrayOutputStream body = new ByteArrayOutputStream(upload.length + 1024);
+    final StringBuilder fields = new StringBuilder();
+    for (final String[] field :
+        new String[][] {{"name", "Load Test"}, {"email", "loadtest@example.com"}}) {
+      fields.append(
+          String.format(
+              "--%s\r\nContent-Disposition: form-data; name=\"%s\"\r\n\r\n%s\r\n",
+              boundary, field[0], field[1]));
+    }
+    fields.append(
+        String.format(
+            "--%s\r\nContent-Disposition: form-data; name=\"file\"; filename=\"%s\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n",
+            boundary, uploadName));
+    body.writeBytes(fields.toString().getBytes(UTF_8));
+    body.writeBytes(upload);
+    body.writeBytes(String.format("\r\n--%s--\r\n", boundary).getBytes(UTF_8));
+
+    return HttpRequest.newBuilder(baseUri.resolve("/diagrams"))
+        .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+        .header("Accept", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+        .build();
+  }
+}
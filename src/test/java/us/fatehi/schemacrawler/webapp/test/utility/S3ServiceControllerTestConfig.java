@@ -35,7 +35,9 @@ import org.testcontainers.containers.localstack.LocalStackContainer;
 
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import us.fatehi.schemacrawler.webapp.test.RequestControllerWithS3Test;
 
@@ -51,6 +53,19 @@ public class S3ServiceControllerTestConfig {
     return TEST_SC_WEB_APP_BUCKET;
   }
 
+  @Bean(name = "s3AsyncClient")
+  public S3AsyncClient s3AsyncClient() {
+    return S3AsyncClient.builder()
+        .endpointOverride(localstack.getEndpointOverride(S3))
+        .credentialsProvider(
+            StaticCredentialsProvider.create(
+                AwsBasicCredentials.create(localstack.getAccessKey(), localstack.getSecretKey())))
+        .region(Region.of(localstack.getRegion()))
+        .httpClientBuilder(NettyNioAsyncHttpClient.builder())
+        .multipartEnabled(true)
+        .build();
+  }
+
   @Bean(name = "s3Client")
   public S3Client s3Client() {
     final S3Client s3 =
@@ -0,0 +1,251 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2025, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package us.fatehi.schemacrawler.webapp.test.utility;
+
+import static java.util.Objects.requireNonNull;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.StringJoiner;
+
+/**
+ * Builds SQLite databases with a given number of tables, columns, foreign keys, indexes, views and
+ * rows, for tests and benchmarks that measure how processing scales with schema size. The same
+ * settings and seed always produce the same schema and data.
+ *
+ * <p>Tables are named <code>table_0</code>, <code>table_1</code>, and so on. Each table has an
+ * integer primary key called <code>id</code>, which counts as one of its columns, and the other
+ * columns are called <code>c_1</code>, <code>c_2</code>, and so on. Foreign key columns are in
+ * addition to these, and always reference a table that was created earlier.
+ */
+public final class SyntheticSchemaGenerator {
+
+  private static final String[] COLUMN_TYPES = {
+    "INTEGER", "VARCHAR(100)", "TEXT", "NUMERIC(10, 2)", "TIMESTAMP", "BOOLEAN",
+  };
+
+  private int tables = 10;
+  private int columnsPerTable = 5;
+  private double foreignKeyDensity = 0.5;
+  private int indexesPerTable = 1;
+  private int views;
+  private int rowsPerTable;
+  private long seed = 1;
+
+  /**
+   * Number of columns in each table, including the primary key, but not including foreign key
+   * columns.
+   */
+  public SyntheticSchemaGenerator columnsPerTable(final int columnsPerTable) {
+    if (columnsPerTable < 1) {
+      throw new IllegalArgumentException("A table needs at least one column");
+    }
+    this.columnsPerTable = columnsPerTable;
+    return this;
+  }
+
+  /**
+   * Fraction of tables, other than the first, that have a foreign key to an earlier table, from 0
+   * to 1.
+   */
+  public SyntheticSchemaGenerator foreignKeyDensity(final double foreignKeyDensity) {
+    if (foreignKeyDensity < 0 || foreignKeyDensity > 1) {
+      throw new IllegalArgumentException("Foreign key density needs to be between 0 and 1");
+    }
+    this.foreignKeyDensity = foreignKeyDensity;
+    return this;
+  }
+
+  /**
+   * Creates the database. The file should not exist, or should be empty.
+   *
+   * @param databaseFile SQLite database file to create
+   * @return The database file
+   * @throws SQLException On an exception creating the database
+   */
+  public Path generate(final Path databaseFile) throws SQLException {
+    requireNonNull(databaseFile, "No database file provided");
+
+    final Random random = new Random(seed);
+    final List<Integer> referencedTables = foreignKeys(random);
+
+    try (final Connection connection =
+        DriverManager.getConnection("jdbc:sqlite:" + databaseFile.toAbsolutePath())) {
+      connection.setAutoCommit(false);
+      try (final Statement statement = connection.createStatement()) {
+        for (int table = 0; table < tables; table++) {
+          statement.addBatch(createTable(table, referencedTables.get(table), random));
+          for (int index = 1; index <= indexCount(); index++) {
+            statement.addBatch(
+                String.format(
+                    "CREATE INDEX idx_table_%d_%d ON table_%d (c_%d)", table, index, table, index));
+          }
+        }
+        for (int view = 0; view < views; view++) {
+          statement.addBatch(createView(view));
+        }
+        statement.executeBatch();
+      }
+      for (int table = 0; table < tables; table++) {
+        insertRows(connection, table, referencedTables.get(table) >= 0, random);
+      }
+      connection.commit();
+    }
+    return databaseFile;
+  }
+
+  /** Number of indexes on each table. Each index is on a different column. */
+  public SyntheticSchemaGenerator indexesPerTable(final int indexesPerTable) {
+    if (indexesPerTable < 0) {
+      throw new IllegalArgumentException("Number of indexes cannot be negative");
+    }
+    this.indexesPerTable = indexesPerTable;
+    return this;
+  }
+
+  /** Number of rows in each table. */
+  public SyntheticSchemaGenerator rowsPerTable(final int rowsPerTable) {
+    if (rowsPerTable < 0) {
+      throw new IllegalArgumentException("Number of rows cannot be negative");
+    }
+    this.rowsPerTable = rowsPerTable;
+    return this;
+  }
+
+  /** Seed for the column types, foreign keys and data. */
+  public SyntheticSchemaGenerator seed(final long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  /** Number of tables. */
+  public SyntheticSchemaGenerator tables(final int tables) {
+    if (tables < 1) {
+      throw new IllegalArgumentException("A database needs at least one table");
+    }
+    this.tables = tables;
+    return this;
+  }
+
+  /** Number of views. Each view selects two columns from one of the tables. */
+  public SyntheticSchemaGenerator views(final int views) {
+    if (views < 0) {
+      throw new IllegalArgumentException("Number of views cannot be negative");
+    }
+    this.views = views;
+    return this;
+  }
+
+  private String createTable(final int table, final int referencedTable, final Random random) {
+    final StringJoiner columns = new StringJoiner(", ");
+    columns.add("id INTEGER PRIMARY KEY");
+    for (int column = 1; column < columnsPerTable; column++) {
+      columns.add(
+          String.format("c_%d %s", column, COLUMN_TYPES[random.nextInt(COLUMN_TYPES.length)]));
+    }
+    if (referencedTable >= 0) {
+      columns.add(
+          String.format(
+              "table_%d_id INTEGER REFERENCES table_%d (id)", referencedTable, referencedTable));
+    }
+    return String.format("CREATE TABLE table_%d (%s)", table, columns);
+  }
+
+  private String createView(final int view) {
+    final int table = view % tables;
+    final String columns = columnsPerTable > 1 ? "id, c_1" : "id";
+    return String.format(
+        "CREATE VIEW view_%d AS SELECT %s FROM table_%d WHERE id > %d",
+        view, columns, table, view);
+  }
+
+  /**
+   * Picks which tables have a foreign key, and which earlier table each one references.
+   *
+   * @return Referenced table for each table, or -1 for none
+   */
+  private List<Integer> foreignKeys(final Random random) {
+    final List<Integer> candidates = new ArrayList<>();
+    for (int table = 1; table < tables; table++) {
+      candidates.add(table);
+    }
+    Collections.shuffle(candidates, random);
+    final int foreignKeyCount = (int) Math.round(foreignKeyDensity * candidates.size());
+
+    final List<Integer> referencedTables = new ArrayList<>(Collections.nCopies(tables, -1));
+    for (final int table : candidates.subList(0, foreignKeyCount)) {
+      referencedTables.set(table, random.nextInt(table));
+    }
+    return referencedTables;
+  }
+
+  private int indexCount() {
+    return Math.min(indexesPerTable, columnsPerTable - 1);
+  }
+
+  private void insertRows(
+      final Connection connection,
+      final int table,
+      final boolean hasForeignKey,
+      final Random random)
+      throws SQLException {
+    if (rowsPerTable == 0) {
+      return;
+    }
+
+    final int columnCount = columnsPerTable + (hasForeignKey ? 1 : 0);
+    final StringJoiner parameters = new StringJoiner(", ");
+    for (int column = 0; column < columnCount; column++) {
+      parameters.add("?");
+    }
+    try (final PreparedStatement statement =
+        connection.prepareStatement(
+            String.format("INSERT INTO table_%d VALUES (%s)", table, parameters))) {
+      for (int row = 1; row <= rowsPerTable; row++) {
+        statement.setInt(1, row);
+        for (int column = 2; column <= columnsPerTable; column++) {
+          statement.setString(column, Long.toString(random.nextLong(), Character.MAX_RADIX));
+        }
+        if (hasForeignKey) {
+          // Referenced tables are filled first, and have the same number of rows
+          statement.setInt(columnCount, 1 + random.nextInt(rowsPerTable));
+        }
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    }
+  }
+}
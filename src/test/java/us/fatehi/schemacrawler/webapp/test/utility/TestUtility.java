@@ -1,13 +1,54 @@
 package us.fatehi.schemacrawler.webapp.test.utility;
 
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Optional;
 
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.InputStreamSource;
 import org.springframework.mock.web.MockMultipartFile;
 
+import us.fatehi.schemacrawler.webapp.model.DiagramJobStatus;
+import us.fatehi.schemacrawler.webapp.model.DiagramKey;
+import us.fatehi.schemacrawler.webapp.model.JobStatus;
+import us.fatehi.schemacrawler.webapp.service.processing.ProcessingService;
+
 public class TestUtility {
 
+  /**
+   * Waits for a request to finish processing, whether or not a diagram could be generated, by
+   * long polling its status.
+   *
+   * @param processingService Processing service
+   * @param key Diagram key
+   * @return Final status of the request
+   */
+  public static DiagramJobStatus awaitFinished(
+      final ProcessingService processingService, final DiagramKey key) {
+    return assertTimeoutPreemptively(
+        ofSeconds(30),
+        () -> {
+          JobStatus knownStatus = null;
+          while (true) {
+            final Optional<DiagramJobStatus> status =
+                processingService.awaitJobStatus(key, knownStatus, ofSeconds(5)).get();
+            if (status.isEmpty()) {
+              // Not tracked yet
+              Thread.sleep(50);
+            } else if (status.get().getStatus().isFinished()) {
+              return status.get();
+            }
+            knownStatus = status.map(DiagramJobStatus::getStatus).orElse(null);
+          }
+        });
+  }
+
   public static MockMultipartFile mockMultipartFile() throws IOException {
     final InputStreamSource testDbStreamSource = new ClassPathResource("/test.db");
     final MockMultipartFile multipartFile =
@@ -16,6 +57,30 @@ public class TestUtility {
     return multipartFile;
   }
 
+  public static MockMultipartFile mockMultipartFile(final Path databaseFile) throws IOException {
+    try (final InputStream inputStream = Files.newInputStream(databaseFile)) {
+      return new MockMultipartFile(
+          "file",
+          databaseFile.getFileName().toString(),
+          "application/octet-stream",
+          inputStream);
+    }
+  }
+
+  /**
+   * Creates a synthetic SQLite database, with the default settings of {@link
+   * SyntheticSchemaGenerator} apart from the number of tables.
+   *
+   * @param directory Directory for the database file
+   * @param tables Number of tables
+   * @return Database file
+   */
+  public static Path syntheticDatabase(final Path directory, final int tables)
+      throws SQLException {
+    final Path databaseFile = directory.resolve(String.format("synthetic-%d.db", tables));
+    return new SyntheticSchemaGenerator().tables(tables).generate(databaseFile);
+  }
+
   private TestUtility() {
     // Prevent instantiation
   }